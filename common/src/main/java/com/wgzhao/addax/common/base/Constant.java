@@ -54,12 +54,16 @@ public class Constant
     public static final Object PK_TYPE_MONTE_CARLO = "pkTypeMonteCarlo";
     // The data type of primary key is string.
     public static final Object PK_TYPE_STRING = "pkTypeString";
+    // The data type of primary key is date or timestamp.
+    public static final Object PK_TYPE_DATE = "pkTypeDate";
 
     public static final String INSERT_OR_REPLACE_TEMPLATE_MARK = "insertOrReplaceTemplate";
     public static final String QUERY_SQL_TEMPLATE = "select %s from %s where (%s)";
     public static final String QUERY_SQL_TEMPLATE_WITHOUT_WHERE = "select %s from %s ";
     public static final String TABLE_NAME_PLACEHOLDER = "@table";
     public static final String TABLE_NUMBER_MARK = "tableNumber";
+    // eachTableSplitSize 不是用户配置的, 而是 autoPk 设置的默认值
+    public static final String DEFAULT_EACH_TABLE_SPLIT_SIZE_MARK = "defaultEachTableSplitSize";
 
     public static final Set<String> SUPPORTED_WRITE_MODE = new HashSet<>(Arrays.asList("append", "nonConflict", "overwrite", "truncate"));
     public static final Set<String> SUPPORTED_FILE_FORMAT = new HashSet<>(Arrays.asList("csv", "text"));
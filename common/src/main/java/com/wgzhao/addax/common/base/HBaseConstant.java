@@ -29,6 +29,8 @@ public final class HBaseConstant extends Constant
     public static final String ROWKEY_FLAG = "rowkey";
     public static final int DEFAULT_SCAN_CACHE_SIZE = 256;
     public static final int DEFAULT_SCAN_BATCH_SIZE = 100;
+    public static final long DEFAULT_SCAN_MAX_RESULT_SIZE = -1L;
+    public static final long DEFAULT_MIN_SPLIT_SIZE = 0L;
 
     public static final String DEFAULT_SERIALIZATION = "PROTOBUF";
 
@@ -65,5 +67,9 @@ public final class HBaseConstant extends Constant
     public static final int TYPE_UNSIGNED_TIMESTAMP = 20;
 
     public static final long DEFAULT_WRITE_BUFFER_SIZE = 8 * 1024 * 1024L;
+    public static final String DEFAULT_WRITE_MODE = "put";
+    public static final long DEFAULT_REGION_BUFFER_SIZE = 2 * 1024 * 1024L;
+    public static final long DEFAULT_MAX_IN_FLIGHT_SIZE = 64 * 1024 * 1024L;
+    public static final int DEFAULT_FLUSH_THREADS = 4;
 
 }
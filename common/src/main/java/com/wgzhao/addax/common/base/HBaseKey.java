@@ -49,6 +49,12 @@ public final class HBaseKey
     public static final String IS_BINARY_ROW_KEY = "isBinaryRowkey";
     public static final String SCAN_CACHE_SIZE = "scanCacheSize";
     public static final String SCAN_BATCH_SIZE = "scanBatchSize";
+    // the max bytes returned by one scanner rpc, default is unlimited. long type
+    public static final String SCAN_MAX_RESULT_SIZE = "scanMaxResultSize";
+    // adjacent regions are merged into one task until their total store file size reach it, default is 0(no merge). long type
+    public static final String MIN_SPLIT_SIZE = "minSplitSize";
+    // the region server hosting the split, only used for logging. string type
+    public static final String REGION_SERVER = "regionServer";
 
     // serialization format, default is protobuf. string type
     public static final String SERIALIZATION_NAME = "serialization";
@@ -75,4 +81,12 @@ public final class HBaseKey
     public static final String NULL_MODE = "nullMode";
     public static final String WAL_FLAG = "walFlag";
     public static final String WRITE_BUFFER_SIZE = "writeBufferSize";
+    // the buffer size of each region in region or bulkLoad write mode. long type
+    public static final String REGION_BUFFER_SIZE = "regionBufferSize";
+    // the max bytes of region batches being flushed at the same time. long type
+    public static final String MAX_IN_FLIGHT_SIZE = "maxInFlightSize";
+    // the number of threads used to flush region batches. int type
+    public static final String FLUSH_THREADS = "flushThreads";
+    // the directory where HFiles are written before bulk load. string type
+    public static final String STAGING_DIR = "stagingDir";
 }
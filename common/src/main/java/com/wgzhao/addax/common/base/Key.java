@@ -41,6 +41,10 @@ public class Key
     public static final String VALUE = "value";
     // Compression alg will be read or write, default is NONE. string type
     public static final String COMPRESS = "compress";
+    // The compression level of file writers, -1 means the default level of the algorithm. numeric type
+    public static final String COMPRESS_LEVEL = "compressLevel";
+    // The number of threads which compress blocks in parallel, 1 means compress in the writing thread. numeric type
+    public static final String COMPRESS_THREADS = "compressThreads";
     // data encoding，default is UTF-8. string type
     public static final String ENCODING = "encoding";
     // JDBC driver class name , in most cases, the program can guess automatically, without manual configuration. string type
@@ -68,10 +72,18 @@ public class Key
     public static final String QUERY_SQL = "querySql";
     // The primary key will be split. string type
     public static final String SPLIT_PK = "splitPk";
+    // The monotonically increasing column (timestamp or auto-increment) used to read only new rows on each run. string type
+    public static final String INCREMENTAL_COLUMN = "incrementalColumn";
+    // The exclusive lower bound of incrementalColumn for the first run, a SQL literal such as '2024-01-01 00:00:00'. string type
+    public static final String INCREMENTAL_START = "incrementalStart";
+    // Read each split in splitPk order and checkpoint the last emitted value, so a resumed job restarts mid-range. boolean type
+    public static final String RESUMABLE = "resumable";
     // Auto guess table's split primary key, boolean type
     public static final String AUTO_PK = "autoPk";
     // The split number for each table, if primary key is present. numeric type
     public static final String EACH_TABLE_SPLIT_SIZE = "eachTableSplitSize";
+    // Split tables in proportion to the estimated rows from the database catalog and merge small tables, default is true. boolean type
+    public static final String SPLIT_BY_TABLE_SIZE = "splitByTableSize";
     // Whether dry run or not ? boolean type
     public static final String DRY_RUN = "dryRun";
     // The max size each batch in rdbms reading, default is 2048. numeric type
@@ -96,6 +108,12 @@ public class Key
     public static final String FILE_NAME = "fileName";
     // The source files. list type
     public static final String SOURCE_FILES = "sourceFiles";
+    // The byte ranges of large files, each item has path, start and end, it used internally by file readers. list type
+    public static final String SOURCE_RANGES = "sourceRanges";
+    // Files larger than this byte size are cut into ranges which can be read by several tasks, 0 means never cut. numeric type
+    public static final String SPLIT_SIZE = "splitSize";
+    // The parser of local delimited files, csv(commons-csv) or mmap(memory-mapped byte level parser), default is csv. string type
+    public static final String PARSER = "parser";
     // The file format will be read from or write to, it used on txtfilewriter/txtfilereader plugin. string type
     public static final String FILE_FORMAT = "fileFormat";
     // The hadoop HDFS defaultFS name, it requires on hdfsreader/hdfswriter plugins. string type
@@ -147,6 +165,8 @@ public class Key
     public static final String MANDATORY_ENCODING = "mandatoryEncoding";
     public static final String HEADER = "header";
     public static final String IS_TABLE_MODE = "isTableMode";
+    public static final String RESUME_POSITION = "resumePosition";
+    public static final String MERGED_SLICES = "mergedSlices";
 
     public Key()
     {
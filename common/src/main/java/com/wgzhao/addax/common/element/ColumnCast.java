@@ -22,95 +22,128 @@ package com.wgzhao.addax.common.element;
 import com.wgzhao.addax.common.exception.CommonErrorCode;
 import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.common.util.JobScope;
 import org.apache.commons.lang3.time.DateFormatUtils;
 import org.apache.commons.lang3.time.FastDateFormat;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
 
+/**
+ * 列类型之间的转换, 转换规则来自 core.json 中的 common.column 配置.
+ * 转换规则保存在 {@link JobScope} 中, 守护进程模式下每个作业使用自己的规则
+ */
 public final class ColumnCast
 {
+    private static final Casts DEFAULT_CASTS = new Casts(Configuration.newDefault());
 
     private ColumnCast() {}
 
     public static void bind(final Configuration configuration)
     {
-        StringCast.init(configuration);
-        DateCast.init(configuration);
-        BytesCast.init(configuration);
+        JobScope.current().set(Casts.class, new Casts(configuration));
+    }
+
+    private static Casts casts()
+    {
+        Casts casts = JobScope.current().get(Casts.class);
+        return casts == null ? DEFAULT_CASTS : casts;
     }
 
     public static Date string2Date(final StringColumn column)
             throws ParseException
     {
-        return StringCast.asDate(column);
+        return casts().stringCast.asDate(column);
+    }
+
+    /**
+     * The date formatters tried in order by {@link #string2Date(StringColumn)}
+     *
+     * @return list of {@link FastDateFormat}
+     */
+    public static List<FastDateFormat> getDateFormatters()
+    {
+        return casts().stringCast.getDateFormatters();
     }
 
     public static byte[] string2Bytes(final StringColumn column)
             throws UnsupportedEncodingException
     {
-        return StringCast.asBytes(column);
+        return casts().stringCast.asBytes(column);
     }
 
     public static String date2String(final DateColumn column)
     {
-        return DateCast.asString(column);
+        return casts().dateCast.asString(column);
     }
 
     public static String bytes2String(final BytesColumn column)
             throws UnsupportedEncodingException
     {
-        return BytesCast.asString(column);
+        return casts().bytesCast.asString(column);
+    }
+
+    private static final class Casts
+    {
+        final StringCast stringCast;
+        final DateCast dateCast;
+        final BytesCast bytesCast;
+
+        Casts(final Configuration configuration)
+        {
+            this.stringCast = new StringCast(configuration);
+            this.dateCast = new DateCast(configuration);
+            this.bytesCast = new BytesCast(configuration);
+        }
     }
 }
 
 class StringCast
 {
 
-    static String datetimeFormat = "yyyy-MM-dd HH:mm:ss";
-    static String dateFormat = "yyyy-MM-dd";
-    static String timeFormat = "HH:mm:ss";
-    static List<String> extraFormats = Collections.emptyList();
-    static String timeZone = "GMT+8";
-    static FastDateFormat dateFormatter;
-    static FastDateFormat timeFormatter;
-    static FastDateFormat datetimeFormatter;
-    static TimeZone timeZoner;
-    static String encoding = "UTF-8";
-
-    private StringCast() {}
-
-    static void init(final Configuration configuration)
-    {
-        StringCast.datetimeFormat = configuration.getString(
-                "common.column.datetimeFormat", StringCast.datetimeFormat);
-        StringCast.dateFormat = configuration.getString(
-                "common.column.dateFormat", StringCast.dateFormat);
-        StringCast.timeFormat = configuration.getString(
-                "common.column.timeFormat", StringCast.timeFormat);
-        StringCast.extraFormats = configuration.getList(
+    String datetimeFormat = "yyyy-MM-dd HH:mm:ss";
+    String dateFormat = "yyyy-MM-dd";
+    String timeFormat = "HH:mm:ss";
+    List<String> extraFormats = Collections.emptyList();
+    String timeZone = "GMT+8";
+    FastDateFormat dateFormatter;
+    FastDateFormat timeFormatter;
+    FastDateFormat datetimeFormatter;
+    TimeZone timeZoner;
+    String encoding = "UTF-8";
+
+    StringCast(final Configuration configuration)
+    {
+        this.datetimeFormat = configuration.getString(
+                "common.column.datetimeFormat", this.datetimeFormat);
+        this.dateFormat = configuration.getString(
+                "common.column.dateFormat", this.dateFormat);
+        this.timeFormat = configuration.getString(
+                "common.column.timeFormat", this.timeFormat);
+        this.extraFormats = configuration.getList(
                 "common.column.extraFormats", Collections.emptyList(), String.class);
 
-        StringCast.timeZone = configuration.getString("common.column.timeZone",
-                StringCast.timeZone);
-        StringCast.timeZoner = TimeZone.getTimeZone(StringCast.timeZone);
+        this.timeZone = configuration.getString("common.column.timeZone",
+                this.timeZone);
+        this.timeZoner = TimeZone.getTimeZone(this.timeZone);
 
-        StringCast.datetimeFormatter = FastDateFormat.getInstance(
-                StringCast.datetimeFormat, StringCast.timeZoner);
-        StringCast.dateFormatter = FastDateFormat.getInstance(
-                StringCast.dateFormat, StringCast.timeZoner);
-        StringCast.timeFormatter = FastDateFormat.getInstance(
-                StringCast.timeFormat, StringCast.timeZoner);
+        this.datetimeFormatter = FastDateFormat.getInstance(
+                this.datetimeFormat, this.timeZoner);
+        this.dateFormatter = FastDateFormat.getInstance(
+                this.dateFormat, this.timeZoner);
+        this.timeFormatter = FastDateFormat.getInstance(
+                this.timeFormat, this.timeZoner);
 
-        StringCast.encoding = configuration.getString("common.column.encoding",
-                StringCast.encoding);
+        this.encoding = configuration.getString("common.column.encoding",
+                this.encoding);
     }
 
-    static Date asDate(final StringColumn column)
+    Date asDate(final StringColumn column)
             throws ParseException
     {
         if (null == column.asString()) {
@@ -118,14 +151,14 @@ class StringCast
         }
 
         try {
-            return StringCast.datetimeFormatter.parse(column.asString());
+            return this.datetimeFormatter.parse(column.asString());
         }
         catch (ParseException ignored) {
             //
         }
 
         try {
-            return StringCast.dateFormatter.parse(column.asString());
+            return this.dateFormatter.parse(column.asString());
         }
         catch (ParseException ignored) {
             //
@@ -133,15 +166,15 @@ class StringCast
 
         ParseException e;
         try {
-            return StringCast.timeFormatter.parse(column.asString());
+            return this.timeFormatter.parse(column.asString());
         }
         catch (ParseException pe) {
             e = pe;
         }
 
-        for (String format : StringCast.extraFormats) {
+        for (String format : this.extraFormats) {
             try {
-                return FastDateFormat.getInstance(format, StringCast.timeZoner).parse(column.asString());
+                return FastDateFormat.getInstance(format, this.timeZoner).parse(column.asString());
             }
             catch (ParseException pe) {
                 e = pe;
@@ -150,14 +183,26 @@ class StringCast
         throw e;
     }
 
-    static byte[] asBytes(final StringColumn column)
+    List<FastDateFormat> getDateFormatters()
+    {
+        List<FastDateFormat> formatters = new ArrayList<>(3 + this.extraFormats.size());
+        formatters.add(this.datetimeFormatter);
+        formatters.add(this.dateFormatter);
+        formatters.add(this.timeFormatter);
+        for (String format : this.extraFormats) {
+            formatters.add(FastDateFormat.getInstance(format, this.timeZoner));
+        }
+        return formatters;
+    }
+
+    byte[] asBytes(final StringColumn column)
             throws UnsupportedEncodingException
     {
         if (null == column.asString()) {
             return new byte[0];
         }
 
-        return column.asString().getBytes(StringCast.encoding);
+        return column.asString().getBytes(this.encoding);
     }
 }
 
@@ -168,28 +213,26 @@ class StringCast
  */
 class DateCast
 {
-    static String datetimeFormat = "yyyy-MM-dd HH:mm:ss";
-    static String dateFormat = "yyyy-MM-dd";
-    static String timeFormat = "HH:mm:ss";
-    static String timeZone = "GMT+8";
-    static TimeZone timeZoner = TimeZone.getTimeZone(DateCast.timeZone);
+    String datetimeFormat = "yyyy-MM-dd HH:mm:ss";
+    String dateFormat = "yyyy-MM-dd";
+    String timeFormat = "HH:mm:ss";
+    String timeZone = "GMT+8";
+    TimeZone timeZoner = TimeZone.getTimeZone(this.timeZone);
 
-    private DateCast() {}
-
-    static void init(final Configuration configuration)
+    DateCast(final Configuration configuration)
     {
-        DateCast.datetimeFormat = configuration.getString(
+        this.datetimeFormat = configuration.getString(
                 "common.column.datetimeFormat", datetimeFormat);
-        DateCast.timeFormat = configuration.getString(
+        this.timeFormat = configuration.getString(
                 "common.column.timeFormat", timeFormat);
-        DateCast.dateFormat = configuration.getString(
+        this.dateFormat = configuration.getString(
                 "common.column.dateFormat", dateFormat);
-        DateCast.timeZone = configuration.getString("common.column.timeZone",
-                DateCast.timeZone);
-        DateCast.timeZoner = TimeZone.getTimeZone(DateCast.timeZone);
+        this.timeZone = configuration.getString("common.column.timeZone",
+                this.timeZone);
+        this.timeZoner = TimeZone.getTimeZone(this.timeZone);
     }
 
-    static String asString(final DateColumn column)
+    String asString(final DateColumn column)
     {
         if (null == column.asDate()) {
             return null;
@@ -197,14 +240,14 @@ class DateCast
 
         switch (column.getSubType()) {
             case DATE:
-                return DateFormatUtils.format(column.asDate(), DateCast.dateFormat,
-                        DateCast.timeZoner);
+                return DateFormatUtils.format(column.asDate(), this.dateFormat,
+                        this.timeZoner);
             case TIME:
-                return DateFormatUtils.format(column.asDate(), DateCast.timeFormat,
-                        DateCast.timeZoner);
+                return DateFormatUtils.format(column.asDate(), this.timeFormat,
+                        this.timeZoner);
             case DATETIME:
                 return DateFormatUtils.format(column.asDate(),
-                        DateCast.datetimeFormat, DateCast.timeZoner);
+                        this.datetimeFormat, this.timeZoner);
             default:
                 throw AddaxException
                         .asAddaxException(CommonErrorCode.CONVERT_NOT_SUPPORT,
@@ -215,17 +258,15 @@ class DateCast
 
 class BytesCast
 {
-    static String encoding = "utf-8";
-
-    private BytesCast() {}
+    String encoding = "utf-8";
 
-    static void init(final Configuration configuration)
+    BytesCast(final Configuration configuration)
     {
-        BytesCast.encoding = configuration.getString("common.column.encoding",
-                BytesCast.encoding);
+        this.encoding = configuration.getString("common.column.encoding",
+                this.encoding);
     }
 
-    static String asString(final BytesColumn column)
+    String asString(final BytesColumn column)
             throws UnsupportedEncodingException
     {
         if (null == column.asBytes()) {
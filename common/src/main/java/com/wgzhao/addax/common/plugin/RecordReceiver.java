@@ -43,4 +43,13 @@ public interface RecordReceiver
     Record getFromReader();
 
     void shutdown();
+
+    /**
+     * 通知框架此前通过 {@link #getFromReader()} 取得的记录都已经处理完毕（写入成功或者作为脏数据收集），
+     * 框架据此推进断点续传的位置。默认不做任何事情。
+     */
+    default void commit()
+    {
+        // do nothing
+    }
 }
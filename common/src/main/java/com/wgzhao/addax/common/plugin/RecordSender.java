@@ -33,4 +33,16 @@ public interface RecordSender
     void terminate();
 
     void shutdown();
+
+    /**
+     * 标记读取进度：此前发送的所有记录都不晚于 position。
+     * 框架会在写端确认这些记录落地之后保存该位置，任务续跑时通过 {@code resumePosition} 参数交还给插件。
+     * 默认不做任何事情，不支持断点续传的插件无需关心。
+     *
+     * @param position 插件自行解释的位置，例如切分主键的值
+     */
+    default void markPosition(String position)
+    {
+        // do nothing
+    }
 }
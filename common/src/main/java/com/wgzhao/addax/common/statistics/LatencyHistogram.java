@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.common.statistics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内的延迟直方图, 插件(主要是 writer 的批量提交)通过 {@link #get(String)} 获取后调用 {@link #observe(long)} 记录耗时,
+ * 由 core 的 metrics 接口统一输出. 没有开启 metrics 接口时, 记录的开销仅为几次 LongAdder 累加
+ */
+public final class LatencyHistogram
+{
+    /**
+     * bucket 上界, 单位为毫秒
+     */
+    public static final long[] BUCKETS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+    private final String name;
+    // 最后一个为 +Inf
+    private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAdder count = new LongAdder();
+
+    private LatencyHistogram(String name)
+    {
+        this.name = name;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 获取名字对应的直方图, 不存在则创建. 名字一般为插件名, 如 mysqlwriter
+     *
+     * @param name histogram name
+     * @return histogram
+     */
+    public static LatencyHistogram get(String name)
+    {
+        return HISTOGRAMS.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    public static Map<String, LatencyHistogram> getAll()
+    {
+        return Collections.unmodifiableMap(HISTOGRAMS);
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param startNanos 开始时间, 由 {@link System#nanoTime()} 获取
+     */
+    public void observeSince(long startNanos)
+    {
+        observe(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时, 单位纳秒
+     */
+    public void observe(long nanos)
+    {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int i = 0;
+        while (i < BUCKETS.length && millis > BUCKETS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        sumNanos.add(nanos);
+        count.increment();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * 各 bucket 的累计计数, 即小于等于对应上界的观测次数, 最后一个元素为 +Inf
+     *
+     * @return cumulative counts
+     */
+    public long[] getCumulativeCounts()
+    {
+        long[] result = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            result[i] = total;
+        }
+        return result;
+    }
+
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    public double getSumSeconds()
+    {
+        return sumNanos.sum() / 1_000_000_000.0d;
+    }
+}
@@ -21,6 +21,7 @@ package com.wgzhao.addax.common.statistics;
 
 import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.common.util.HostUtils;
+import com.wgzhao.addax.common.util.JobScope;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,13 +40,13 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * PerfTrace 记录 job（local模式），taskGroup（distribute模式），因为这2种都是jvm，即一个jvm里只需要有1个PerfTrace。
+ * 守护进程模式下一个 jvm 会同时运行多个 job, 因此实例保存在 {@link JobScope} 中, 每个 job 各有一个
  */
 
 public class PerfTrace
 {
 
     private static final Logger LOG = LoggerFactory.getLogger(PerfTrace.class);
-    private static PerfTrace instance;
     //jobid_jobversion,instanceid,taskid, src_mark, dst_mark,
     private final Map<Integer, String> taskDetails = new ConcurrentHashMap<>();
     //PHASE => PerfRecord
@@ -94,10 +95,7 @@ public class PerfTrace
 
     public static synchronized PerfTrace getInstance(boolean isJob, long jobId, int taskGroupId, int priority, boolean enable)
     {
-        if (instance == null) {
-            instance = new PerfTrace(isJob, jobId, taskGroupId, priority, enable);
-        }
-        return instance;
+        return JobScope.current().get(PerfTrace.class, () -> new PerfTrace(isJob, jobId, taskGroupId, priority, enable));
     }
 
     /*
@@ -105,11 +103,10 @@ public class PerfTrace
      */
     public static synchronized PerfTrace getInstance()
     {
-        if (instance == null) {
+        return JobScope.current().get(PerfTrace.class, () -> {
             LOG.error("PerfTrace instance not be init! must have some error! ");
-            instance = new PerfTrace(false, -1111, -1111, 0, false);
-            }
-        return instance;
+            return new PerfTrace(false, -1111, -1111, 0, false);
+        });
     }
 
     //缺省传入的时间是nano
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.common.util;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.wgzhao.addax.common.element.BoolColumn;
+import com.wgzhao.addax.common.element.BytesColumn;
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.DateColumn;
+import com.wgzhao.addax.common.element.DoubleColumn;
+import com.wgzhao.addax.common.element.LongColumn;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.element.StringColumn;
+import com.wgzhao.addax.common.element.TimestampColumn;
+
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 脏数据落盘文件的编解码, 每条脏数据为一行 JSON, 格式如下:
+ * <pre>
+ * {"type":"WRITER","time":1650000000000,"message":"...","exception":"...",
+ *  "columns":[{"type":"LONG","value":"1"},{"type":"DATE","subType":"DATETIME","value":1650000000000},...]}
+ * </pre>
+ * 列值均按原始数据保存, 以便修复后无损地重放
+ */
+public final class DirtyRecordCodec
+{
+    public static final String KEY_TYPE = "type";
+    public static final String KEY_TIME = "time";
+    public static final String KEY_MESSAGE = "message";
+    public static final String KEY_EXCEPTION = "exception";
+    public static final String KEY_COLUMNS = "columns";
+
+    private static final String KEY_VALUE = "value";
+    private static final String KEY_SUB_TYPE = "subType";
+    private static final String KEY_NANOS = "nanos";
+
+    private DirtyRecordCodec()
+    {
+    }
+
+    public static String encode(String pluginType, long time, Record record, String message, String exception)
+    {
+        JSONObject entry = new JSONObject(true);
+        entry.put(KEY_TYPE, pluginType);
+        entry.put(KEY_TIME, time);
+        if (message != null) {
+            entry.put(KEY_MESSAGE, message);
+        }
+        if (exception != null) {
+            entry.put(KEY_EXCEPTION, exception);
+        }
+        JSONArray columns = new JSONArray();
+        if (record != null) {
+            for (int i = 0; i < record.getColumnNumber(); i++) {
+                columns.add(encodeColumn(record.getColumn(i)));
+            }
+        }
+        entry.put(KEY_COLUMNS, columns);
+        return entry.toJSONString();
+    }
+
+    public static JSONObject parse(String line)
+    {
+        return JSON.parseObject(line);
+    }
+
+    /**
+     * 将解析后的脏数据中的列依次添加到 record 中
+     *
+     * @param entry {@link #parse(String)} 的结果
+     * @param record 目标 record
+     */
+    public static void decodeColumns(JSONObject entry, Record record)
+    {
+        JSONArray columns = entry.getJSONArray(KEY_COLUMNS);
+        if (columns == null) {
+            return;
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            record.addColumn(decodeColumn(columns.getJSONObject(i)));
+        }
+    }
+
+    private static JSONObject encodeColumn(Column column)
+    {
+        JSONObject result = new JSONObject(true);
+        if (column == null) {
+            result.put(KEY_TYPE, Column.Type.NULL.name());
+            return result;
+        }
+        Object raw = column.getRawData();
+        result.put(KEY_TYPE, column.getType().name());
+        if (raw == null) {
+            return result;
+        }
+        switch (column.getType()) {
+            case BOOL:
+                result.put(KEY_VALUE, raw);
+                break;
+            case DATE:
+                result.put(KEY_SUB_TYPE, ((DateColumn) column).getSubType().name());
+                result.put(KEY_VALUE, raw instanceof Date ? ((Date) raw).getTime() : raw);
+                break;
+            case TIMESTAMP:
+                Timestamp ts = (Timestamp) raw;
+                result.put(KEY_VALUE, ts.getTime());
+                result.put(KEY_NANOS, ts.getNanos());
+                break;
+            case BYTES:
+                result.put(KEY_VALUE, Base64.getEncoder().encodeToString((byte[]) raw));
+                break;
+            default:
+                // LONG 和 DOUBLE 的原始数据为 BigInteger 或者字符串, 统一保存为字符串以免丢失精度
+                result.put(KEY_VALUE, raw.toString());
+        }
+        return result;
+    }
+
+    private static Column decodeColumn(JSONObject column)
+    {
+        Column.Type type = Column.Type.valueOf(column.getString(KEY_TYPE));
+        boolean isNull = column.get(KEY_VALUE) == null;
+        switch (type) {
+            case INT:
+            case LONG:
+                return isNull ? new LongColumn() : new LongColumn(column.getString(KEY_VALUE));
+            case DOUBLE:
+                return isNull ? new DoubleColumn() : new DoubleColumn(column.getString(KEY_VALUE));
+            case BOOL:
+                return isNull ? new BoolColumn() : new BoolColumn(column.getBoolean(KEY_VALUE));
+            case DATE:
+                DateColumn date = isNull ? new DateColumn() : new DateColumn(column.getLong(KEY_VALUE));
+                if (column.containsKey(KEY_SUB_TYPE)) {
+                    date.setSubType(DateColumn.DateType.valueOf(column.getString(KEY_SUB_TYPE)));
+                }
+                return date;
+            case TIMESTAMP:
+                if (isNull) {
+                    return new TimestampColumn();
+                }
+                Timestamp ts = new Timestamp(column.getLong(KEY_VALUE));
+                ts.setNanos(column.getIntValue(KEY_NANOS));
+                return new TimestampColumn(ts);
+            case BYTES:
+                return isNull ? new BytesColumn() : new BytesColumn(Base64.getDecoder().decode(column.getString(KEY_VALUE)));
+            default:
+                return isNull ? new StringColumn() : new StringColumn(column.getString(KEY_VALUE));
+        }
+    }
+}
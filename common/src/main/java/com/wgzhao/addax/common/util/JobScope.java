@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.common.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 作业级别的单例容器.
+ * 命令行模式下一个进程只运行一个作业, 所有单例都保存在全局作用域中;
+ * 守护进程模式下多个作业在同一个 JVM 中并发运行, 每个作业的线程进入自己的作用域,
+ * 作业线程派生出来的 taskGroup、reader、writer 等线程都会继承该作用域, 因此各自只会看到本作业的单例
+ */
+public final class JobScope
+{
+    private static final JobScope GLOBAL = new JobScope(-1L);
+    private static final InheritableThreadLocal<JobScope> CURRENT = new InheritableThreadLocal<>();
+
+    private final long jobId;
+    private final Map<Class<?>, Object> instances = new ConcurrentHashMap<>();
+
+    private JobScope(long jobId)
+    {
+        this.jobId = jobId;
+    }
+
+    /**
+     * 当前线程所属的作用域
+     *
+     * @return 没有进入任何作业作用域时返回全局作用域
+     */
+    public static JobScope current()
+    {
+        JobScope scope = CURRENT.get();
+        return scope == null ? GLOBAL : scope;
+    }
+
+    /**
+     * 当前线程进入一个新的作业作用域, 之后创建的线程都会继承它
+     *
+     * @param jobId 作业 ID
+     * @return 新的作用域
+     */
+    public static JobScope enter(long jobId)
+    {
+        JobScope scope = new JobScope(jobId);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * 当前线程退出作业作用域, 回到全局作用域
+     */
+    public static void exit()
+    {
+        CURRENT.remove();
+    }
+
+    public long getJobId()
+    {
+        return jobId;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(Class<T> type)
+    {
+        return (T) instances.get(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(Class<T> type, Supplier<T> supplier)
+    {
+        return (T) instances.computeIfAbsent(type, k -> supplier.get());
+    }
+
+    public <T> void set(Class<T> type, T instance)
+    {
+        if (instance == null) {
+            instances.remove(type);
+        }
+        else {
+            instances.put(type, instance);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T remove(Class<T> type)
+    {
+        return (T) instances.remove(type);
+    }
+}
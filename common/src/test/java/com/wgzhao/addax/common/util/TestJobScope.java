@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.common.util;
+
+import com.wgzhao.addax.common.element.ColumnCast;
+import com.wgzhao.addax.common.element.DateColumn;
+import com.wgzhao.addax.common.element.StringColumn;
+import com.wgzhao.addax.common.statistics.PerfTrace;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Two jobs run at the same time in one JVM, like in the daemon mode, each one must only see its own
+ * {@code common.column} rules and {@link PerfTrace}, in the job thread and in the threads it starts
+ */
+public class TestJobScope
+{
+    // 2021-01-02 03:04:05 GMT+8
+    private static final long TIME = 1609527845000L;
+
+    @Test
+    public void testConcurrentJobsAreIsolated()
+            throws Exception
+    {
+        CyclicBarrier bound = new CyclicBarrier(2);
+        Map<Long, String> results = new ConcurrentHashMap<>();
+        Map<Long, Throwable> errors = new ConcurrentHashMap<>();
+
+        Thread job1 = startJob(1L, "yyyy-MM-dd HH:mm:ss", bound, results, errors);
+        Thread job2 = startJob(2L, "yyyyMMddHHmmss", bound, results, errors);
+        job1.join(TimeUnit.SECONDS.toMillis(30));
+        job2.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertEquals(0, errors.size(), "errors: " + errors);
+        assertEquals("1|2021-01-02 03:04:05|1|2021-01-02 03:04:05|1", results.get(1L));
+        assertEquals("2|20210102030405|2|20210102030405|2", results.get(2L));
+
+        // the test thread has not entered any job, it keeps the global scope
+        assertEquals(-1L, JobScope.current().getJobId());
+        assertNull(JobScope.current().get(PerfTrace.class));
+        assertEquals("2021-01-02 03:04:05", ColumnCast.date2String(new DateColumn(new Date(TIME))));
+    }
+
+    private static Thread startJob(long jobId, String datetimeFormat, CyclicBarrier bound,
+            Map<Long, String> results, Map<Long, Throwable> errors)
+    {
+        Thread thread = new Thread(() -> {
+            JobScope.enter(jobId);
+            try {
+                Configuration configuration = Configuration.newDefault();
+                configuration.set("common.column.datetimeFormat", datetimeFormat);
+                configuration.set("common.column.timeZone", "GMT+8");
+                ColumnCast.bind(configuration);
+                PerfTrace.getInstance(true, jobId, 0, 0, false);
+                // both jobs have bound their settings before any of them reads
+                bound.await(10, TimeUnit.SECONDS);
+
+                StringBuilder sb = new StringBuilder();
+                sb.append(JobScope.current().getJobId()).append('|');
+                sb.append(ColumnCast.date2String(new DateColumn(new Date(TIME)))).append('|');
+                sb.append(PerfTrace.getInstance().getInstId()).append('|');
+                // a task thread started by the job inherits the scope
+                StringBuilder child = new StringBuilder();
+                Thread task = new Thread(() -> {
+                    try {
+                        Date parsed = ColumnCast.string2Date(new StringColumn(
+                                ColumnCast.date2String(new DateColumn(new Date(TIME)))));
+                        child.append(ColumnCast.date2String(new DateColumn(parsed))).append('|');
+                        child.append(PerfTrace.getInstance().getInstId());
+                    }
+                    catch (Exception e) {
+                        errors.put(jobId, e);
+                    }
+                });
+                task.start();
+                task.join();
+                results.put(jobId, sb.append(child).toString());
+            }
+            catch (Throwable e) {
+                errors.put(jobId, e);
+            }
+            finally {
+                JobScope.exit();
+            }
+        }, "job-" + jobId);
+        thread.start();
+        return thread;
+    }
+}
@@ -30,11 +30,14 @@ DEBUG=0
 LOG_LEVEL="info"
 JOB_FILE=
 LOG_FILE=
+RESUME=
+DAEMON=0
 
 # ---------------------------- base function --------------------------
 function usage {
     cat <<-EOF
     Usage: $(basename $0) [options] job-url-or-path
+           $(basename $0) [options] -D
 
     Options:
     -h, --help                  This help text
@@ -48,6 +51,8 @@ function usage {
     -l, --logdir <log directory> the directory which log writes to
     -d, --debug                 Set to remote debug mode.
     -L, --loglevel <log level>  Set log level such as: debug, info, warn, error, all etc.
+    -r, --resume                Resume the last failed run of the job, the finished tasks are skipped.
+    -D, --daemon                Run as a daemon which accepts jobs over HTTP, see core.daemon in conf/core.json.
 EOF
     exit 1
 }
@@ -204,7 +209,7 @@ fi
 os=$(uname -s)
 has_get_opt=$(which getopt 2>/dev/null)
 if [ "x${os}" = "xDarwin" -o "x${has_get_opt}" = "x" ]; then
-    while getopts 'hj:p:l:vdL:' option; do
+    while getopts 'hj:p:l:vdL:rD' option; do
         case "$option" in
         h) usage ;;
         j) CUST_JVM=${OPTARG} ;;
@@ -213,12 +218,14 @@ if [ "x${os}" = "xDarwin" -o "x${has_get_opt}" = "x" ]; then
         v) print_version ;;
         d) DEBUG=1 ;;
         L) LOG_LEVEL=${OPTARG} ;;
+        r) RESUME="-resume" ;;
+        D) DAEMON=1 ;;
         ?) usage ;;
         esac
     done
     shift $((OPTIND - 1))
 else
-    PARSED_ARGUMENTS=$(getopt -a -n 'addax' -o hj:p:l:vL:d -l help,jvm:,params:,logdir:,version,loglevel:,debug -- "$@")
+    PARSED_ARGUMENTS=$(getopt -a -n 'addax' -o hj:p:l:vL:drD -l help,jvm:,params:,logdir:,version,loglevel:,debug,resume,daemon -- "$@")
     if [ $? -ne 0 ]; then
         echo "Terminating...." >&2
         exit 65
@@ -254,6 +261,14 @@ else
             LOG_LEVEL="$2"
             shift 2
             ;;
+        -r | --resume)
+            RESUME="-resume"
+            shift
+            ;;
+        -D | --daemon)
+            DAEMON=1
+            shift
+            ;;
         --)
             shift
             break
@@ -265,15 +280,19 @@ else
     done
 fi
 
-# check job file
-if [ $# -eq 0 ]; then
-    echo "The job file is required"
-    usage
-fi
+if [ ${DAEMON} -eq 1 ]; then
+    LOG_FILE="addax_daemon_$(date +"%Y%m%d_%H%M%S")_$$.log"
+else
+    # check job file
+    if [ $# -eq 0 ]; then
+        echo "The job file is required"
+        usage
+    fi
 
-JOB_FILE=${1}
-parse_job_file
-gen_log_file
+    JOB_FILE=${1}
+    parse_job_file
+    gen_log_file
+fi
 
 # combine command
 cmd="${ENGINE_COMMAND} ${CUST_JVM} ${PARAMS} -Dloglevel=${LOG_LEVEL} -Daddax.log=${LOG_DIR} -Dlog.file.name=${LOG_FILE}"
@@ -283,7 +302,11 @@ if [ ${DEBUG} -eq 1 ]; then
 fi
 
 # attach main class
-cmd="${cmd} com.wgzhao.addax.core.Engine -job ${JOB_FILE} "
+if [ ${DAEMON} -eq 1 ]; then
+    cmd="${cmd} com.wgzhao.addax.core.Engine -daemon"
+else
+    cmd="${cmd} com.wgzhao.addax.core.Engine -job ${JOB_FILE} ${RESUME}"
+fi
 
 # run it
 bash -c "${cmd}"
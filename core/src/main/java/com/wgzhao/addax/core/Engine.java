@@ -25,6 +25,7 @@ import com.wgzhao.addax.common.spi.ErrorCode;
 import com.wgzhao.addax.common.statistics.PerfTrace;
 import com.wgzhao.addax.common.statistics.VMInfo;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.core.daemon.JobServer;
 import com.wgzhao.addax.core.job.JobContainer;
 import com.wgzhao.addax.core.util.ConfigParser;
 import com.wgzhao.addax.core.util.ConfigurationValidate;
@@ -38,7 +39,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Properties;
 import java.util.Set;
 
@@ -72,7 +75,13 @@ public class Engine
         //初始化PerfTrace
         PerfTrace perfTrace = PerfTrace.getInstance(true, instanceId, -1, 0, false);
         perfTrace.setJobInfo(jobInfoConfig, false, channelNumber);
-        container.start();
+        try {
+            container.start();
+        }
+        finally {
+            // 插件的 jarLoader 保留给后续的作业复用
+            LoadUtil.unbind(allConf);
+        }
     }
 
     // 注意屏蔽敏感信息
@@ -107,15 +116,23 @@ public class Engine
     {
         Options options = new Options();
         options.addOption("job", true, "Job config.");
+        options.addOption("resume", false, "Skip the tasks finished by the last failed run.");
+        options.addOption("daemon", false, "Run as a daemon which accepts jobs over HTTP.");
 
         DefaultParser parser = new DefaultParser();
         CommandLine cl = parser.parse(options, args);
 
+        if (cl.hasOption("daemon")) {
+            startDaemon();
+            return;
+        }
+
         String jobPath = cl.getOptionValue("job");
         Configuration configuration = ConfigParser.parse(jobPath);
 
         // job id 默认值为-1
         configuration.set(CoreConstant.CORE_CONTAINER_JOB_ID, -1);
+        configuration.set(CoreConstant.CORE_CONTAINER_JOB_RESUME, cl.hasOption("resume"));
 
         //打印vmInfo
         VMInfo vmInfo = VMInfo.getVmInfo();
@@ -132,6 +149,19 @@ public class Engine
         engine.start(configuration);
     }
 
+    /*
+     * 守护进程模式, 一直运行到进程收到退出信号
+     */
+    private static void startDaemon()
+            throws IOException, InterruptedException
+    {
+        Configuration coreConfig = Configuration.from(new File(CoreConstant.CONF_PATH));
+        JobServer jobServer = new JobServer(coreConfig);
+        Runtime.getRuntime().addShutdownHook(new Thread(jobServer::stop, "daemon-shutdown"));
+        jobServer.start();
+        jobServer.awaitStop();
+    }
+
     public static String getVersion()
     {
         try {
@@ -154,7 +184,7 @@ public class Engine
                 "\\_| |_/\\__,_|\\__,_|\\__,_/_/\\_\\\n");
         System.out.println(":: Addax version ::    (v" + Engine.getVersion() + ")\n");
         int exitCode = 0;
-        if (args.length < 2) {
+        if (args.length < 2 && !Arrays.asList(args).contains("-daemon")) {
             LOG.error("need a job file");
             System.exit(1);
         }
@@ -27,6 +27,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -166,7 +167,11 @@ public final class JobAssignUtil
      */
     private static List<Configuration> doAssign(LinkedHashMap<String, List<Integer>> resourceMarkAndTaskIdMap, Configuration jobConfiguration, int taskGroupNumber)
     {
-        List<Configuration> contentConfig = jobConfiguration.getListConfiguration(CoreConstant.JOB_CONTENT);
+        // 续跑时已经完成的 task 会被剔除, taskId 不再与下标一一对应
+        Map<Integer, Configuration> contentConfig = new HashMap<>();
+        for (Configuration taskConfig : jobConfiguration.getListConfiguration(CoreConstant.JOB_CONTENT)) {
+            contentConfig.put(taskConfig.getInt(CoreConstant.TASK_ID), taskConfig);
+        }
 
         Configuration taskGroupTemplate = jobConfiguration.clone();
         taskGroupTemplate.remove(CoreConstant.JOB_CONTENT);
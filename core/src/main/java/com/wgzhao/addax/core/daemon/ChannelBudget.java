@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.daemon;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * 守护进程中所有作业共享的 channel 配额.
+ * 作业在调度前申请 channel, 至少要拿到一个才会开始运行, 配额不足时按剩余的数量降低并发, 调度结束后归还
+ */
+public class ChannelBudget
+{
+    private final int total;
+    private final Semaphore permits;
+
+    public ChannelBudget(int total)
+    {
+        this.total = Math.max(1, total);
+        this.permits = new Semaphore(this.total, true);
+    }
+
+    /**
+     * 申请 channel, 没有空闲的 channel 时阻塞
+     *
+     * @param wanted 作业希望使用的 channel 数
+     * @return 实际分配到的 channel 数, 介于 1 和 wanted 之间
+     * @throws InterruptedException 等待时被中断
+     */
+    public int acquire(int wanted)
+            throws InterruptedException
+    {
+        int limit = Math.max(1, Math.min(wanted, total));
+        permits.acquire();
+        int granted = 1;
+        while (granted < limit && permits.tryAcquire()) {
+            granted++;
+        }
+        return granted;
+    }
+
+    public void release(int granted)
+    {
+        permits.release(granted);
+    }
+
+    public int getTotal()
+    {
+        return total;
+    }
+
+    public int getAvailable()
+    {
+        return permits.availablePermits();
+    }
+}
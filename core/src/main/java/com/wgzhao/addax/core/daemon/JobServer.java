@@ -0,0 +1,388 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.daemon;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.common.util.JobScope;
+import com.wgzhao.addax.core.Engine;
+import com.wgzhao.addax.core.util.ConfigParser;
+import com.wgzhao.addax.core.util.ConfigurationValidate;
+import com.wgzhao.addax.core.util.container.CoreConstant;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 守护进程模式: 在同一个 JVM 中持续接收并运行作业, 省去每个作业启动 JVM、加载插件 jar 的开销.
+ * <p>
+ * 接口:
+ * <ul>
+ *     <li>POST /jobs 提交作业, 请求体为作业的 json, 带上 wait=true 参数时等待作业结束后再返回, 带上 resume=true 参数时续跑上一次失败的作业</li>
+ *     <li>GET /jobs 列出最近的作业</li>
+ *     <li>GET /jobs/{id} 查询单个作业的状态</li>
+ * </ul>
+ * 同时运行的作业数受 core.daemon.maxJobs 限制, 所有作业使用的 channel 总数受 core.daemon.channel 限制
+ */
+public class JobServer
+{
+    private static final Logger LOG = LoggerFactory.getLogger(JobServer.class);
+
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String JOBS_PATH = "/jobs";
+
+    private final HttpServer server;
+    private final ExecutorService jobExecutor;
+    private final ExecutorService httpExecutor;
+    private final ChannelBudget channelBudget;
+    private final int history;
+    private final AtomicLong jobIds = new AtomicLong(0);
+    private final Map<Long, JobRecord> jobs;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    public JobServer(Configuration coreConfig)
+            throws IOException
+    {
+        String host = coreConfig.getString(CoreConstant.CORE_DAEMON_HOST, "127.0.0.1");
+        int port = coreConfig.getInt(CoreConstant.CORE_DAEMON_PORT, 8764);
+        int maxJobs = Math.max(1, coreConfig.getInt(CoreConstant.CORE_DAEMON_MAX_JOBS, 8));
+        this.channelBudget = new ChannelBudget(coreConfig.getInt(CoreConstant.CORE_DAEMON_CHANNEL, 32));
+        this.history = Math.max(1, coreConfig.getInt(CoreConstant.CORE_DAEMON_HISTORY, 1000));
+        this.jobs = new LinkedHashMap<Long, JobRecord>()
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, JobRecord> eldest)
+            {
+                return size() > history && eldest.getValue().isFinished();
+            }
+        };
+
+        this.jobExecutor = Executors.newFixedThreadPool(maxJobs, new NamedThreadFactory("daemon-job-", false));
+        this.httpExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("daemon-http-", true));
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.server.createContext(JOBS_PATH, this::handle);
+        this.server.setExecutor(httpExecutor);
+        LOG.info("Daemon accepts at most {} concurrent job(s) sharing {} channel(s).", maxJobs, channelBudget.getTotal());
+    }
+
+    public void start()
+    {
+        server.start();
+        LOG.info("The daemon is listening on http://{}:{}{}",
+                server.getAddress().getHostString(), server.getAddress().getPort(), JOBS_PATH);
+    }
+
+    /**
+     * 停止接收新作业, 等待已经提交的作业运行结束
+     */
+    public void stop()
+    {
+        server.stop(0);
+        jobExecutor.shutdown();
+        try {
+            if (!jobExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.warn("Some jobs are still running when the daemon stops.");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        httpExecutor.shutdownNow();
+        stopped.countDown();
+    }
+
+    public void awaitStop()
+            throws InterruptedException
+    {
+        stopped.await();
+    }
+
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 提交一个作业
+     *
+     * @param jobContent 作业的 json
+     * @param resume 是否跳过上一次失败时已经完成的 task
+     * @return 作业记录, 作业在后台运行
+     */
+    public JobRecord submit(String jobContent, boolean resume)
+    {
+        long jobId = jobIds.incrementAndGet();
+        Configuration configuration = ConfigParser.parse(Configuration.from(jobContent));
+        configuration.set(CoreConstant.CORE_CONTAINER_JOB_ID, jobId);
+        configuration.set(CoreConstant.CORE_CONTAINER_JOB_RESUME, resume);
+        // 各个作业的 metrics 端口会相互冲突, 守护进程中不启用
+        configuration.set(CoreConstant.CORE_METRICS_PORT, 0);
+        ConfigurationValidate.doValidate(configuration);
+
+        JobRecord record = new JobRecord(jobId);
+        synchronized (jobs) {
+            jobs.put(jobId, record);
+        }
+        record.future = jobExecutor.submit(() -> run(record, configuration));
+        return record;
+    }
+
+    private void run(JobRecord record, Configuration configuration)
+    {
+        String threadName = Thread.currentThread().getName();
+        JobScope.enter(record.jobId).set(ChannelBudget.class, channelBudget);
+        record.start();
+        try {
+            LOG.info("Job [{}] starts.\n{}\n", record.jobId, Engine.filterJobConfiguration(configuration));
+            new Engine().start(configuration);
+            record.finish(null);
+            LOG.info("Job [{}] succeeded in {} ms.", record.jobId, record.endTime - record.startTime);
+        }
+        catch (Throwable e) {
+            record.finish(e);
+            LOG.error("Job [{}] failed.", record.jobId, e);
+        }
+        finally {
+            JobScope.exit();
+            // JobContainer 会把线程名改为 job-<id>
+            Thread.currentThread().setName(threadName);
+        }
+    }
+
+    private void handle(HttpExchange exchange)
+            throws IOException
+    {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = StringUtils.removeEnd(exchange.getRequestURI().getPath(), "/");
+            if (JOBS_PATH.equals(path)) {
+                if ("POST".equalsIgnoreCase(method)) {
+                    handleSubmit(exchange);
+                }
+                else if ("GET".equalsIgnoreCase(method)) {
+                    respond(exchange, 200, listJobs());
+                }
+                else {
+                    respond(exchange, 405, error("Method " + method + " is not allowed"));
+                }
+                return;
+            }
+            String id = StringUtils.removeStart(path, JOBS_PATH + "/");
+            JobRecord record = StringUtils.isNumeric(id) ? getJob(Long.parseLong(id)) : null;
+            if (record == null) {
+                respond(exchange, 404, error("No such job: " + id));
+            }
+            else {
+                respond(exchange, 200, record.toJson());
+            }
+        }
+        catch (RuntimeException e) {
+            LOG.warn("Failed to handle the request {}: {}", exchange.getRequestURI(), e.getMessage());
+            respond(exchange, 500, error(e.getMessage()));
+        }
+    }
+
+    private void handleSubmit(HttpExchange exchange)
+            throws IOException
+    {
+        String body = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+        String query = exchange.getRequestURI().getQuery();
+        JobRecord record;
+        try {
+            record = submit(body, hasFlag(query, "resume"));
+        }
+        catch (RuntimeException e) {
+            respond(exchange, 400, error(e.getMessage()));
+            return;
+        }
+        if (hasFlag(query, "wait")) {
+            try {
+                record.future.get();
+            }
+            catch (Exception e) {
+                // 作业本身的异常已经记录在 record 中
+            }
+        }
+        respond(exchange, 200, record.toJson());
+    }
+
+    private JobRecord getJob(long jobId)
+    {
+        synchronized (jobs) {
+            return jobs.get(jobId);
+        }
+    }
+
+    private JSONArray listJobs()
+    {
+        List<JobRecord> records;
+        synchronized (jobs) {
+            records = new ArrayList<>(jobs.values());
+        }
+        JSONArray array = new JSONArray(records.size());
+        for (JobRecord record : records) {
+            array.add(record.toJson());
+        }
+        return array;
+    }
+
+    private static boolean hasFlag(String query, String name)
+    {
+        if (query == null) {
+            return false;
+        }
+        for (String param : query.split("&")) {
+            if (param.equalsIgnoreCase(name + "=true")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static JSONObject error(String message)
+    {
+        JSONObject json = new JSONObject(true);
+        json.put("error", message);
+        return json;
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object json)
+            throws IOException
+    {
+        byte[] body = JSONObject.toJSONString(json).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public static class JobRecord
+    {
+        private final long jobId;
+        private final long submitTime;
+        private volatile String state = "QUEUED";
+        private volatile long startTime;
+        private volatile long endTime;
+        private volatile String message;
+        private volatile Future<?> future;
+
+        JobRecord(long jobId)
+        {
+            this.jobId = jobId;
+            this.submitTime = System.currentTimeMillis();
+        }
+
+        void start()
+        {
+            this.startTime = System.currentTimeMillis();
+            this.state = "RUNNING";
+        }
+
+        void finish(Throwable t)
+        {
+            this.endTime = System.currentTimeMillis();
+            if (t == null) {
+                this.state = "SUCCEEDED";
+            }
+            else {
+                this.message = t.getMessage();
+                this.state = "FAILED";
+            }
+        }
+
+        boolean isFinished()
+        {
+            return endTime > 0;
+        }
+
+        public long getJobId()
+        {
+            return jobId;
+        }
+
+        public String getState()
+        {
+            return state;
+        }
+
+        JSONObject toJson()
+        {
+            JSONObject json = new JSONObject(true);
+            json.put("id", jobId);
+            json.put("state", state);
+            json.put("submitTime", submitTime);
+            if (startTime > 0) {
+                json.put("startTime", startTime);
+            }
+            if (endTime > 0) {
+                json.put("endTime", endTime);
+                json.put("elapsed", endTime - startTime);
+            }
+            if (message != null) {
+                json.put("message", message);
+            }
+            return json;
+        }
+    }
+
+    private static class NamedThreadFactory
+            implements ThreadFactory
+    {
+        private final String prefix;
+        private final boolean daemon;
+        private final AtomicInteger seq = new AtomicInteger(0);
+
+        NamedThreadFactory(String prefix, boolean daemon)
+        {
+            this.prefix = prefix;
+            this.daemon = daemon;
+        }
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, prefix + seq.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        }
+    }
+}
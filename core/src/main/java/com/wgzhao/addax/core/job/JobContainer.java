@@ -20,6 +20,7 @@
 package com.wgzhao.addax.core.job;
 
 import com.alibaba.fastjson.JSON;
+import com.wgzhao.addax.common.base.Key;
 import com.wgzhao.addax.common.constant.PluginType;
 import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.AbstractJobPlugin;
@@ -29,18 +30,25 @@ import com.wgzhao.addax.common.spi.Writer;
 import com.wgzhao.addax.common.statistics.PerfTrace;
 import com.wgzhao.addax.common.statistics.VMInfo;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.common.util.JobScope;
 import com.wgzhao.addax.common.util.StrUtil;
 import com.wgzhao.addax.core.AbstractContainer;
 import com.wgzhao.addax.core.Engine;
 import com.wgzhao.addax.core.container.util.JobAssignUtil;
+import com.wgzhao.addax.core.daemon.ChannelBudget;
 import com.wgzhao.addax.core.hook.JobReport;
+import com.wgzhao.addax.core.job.checkpoint.CheckpointStore;
 import com.wgzhao.addax.core.job.scheduler.AbstractScheduler;
 import com.wgzhao.addax.core.job.scheduler.processinner.StandAloneScheduler;
 import com.wgzhao.addax.core.statistics.communication.Communication;
 import com.wgzhao.addax.core.statistics.communication.CommunicationTool;
 import com.wgzhao.addax.core.statistics.container.communicator.AbstractContainerCommunicator;
 import com.wgzhao.addax.core.statistics.container.communicator.job.StandAloneJobContainerCommunicator;
+import com.wgzhao.addax.core.statistics.metrics.BottleneckAnalyzer;
+import com.wgzhao.addax.core.statistics.metrics.MetricsServer;
+import com.wgzhao.addax.core.statistics.metrics.TaskMetricsRegistry;
 import com.wgzhao.addax.core.statistics.plugin.DefaultJobPluginCollector;
+import com.wgzhao.addax.core.statistics.plugin.task.util.DirtyRecordSpiller;
 import com.wgzhao.addax.core.util.ErrorRecordChecker;
 import com.wgzhao.addax.core.util.FrameworkErrorCode;
 import com.wgzhao.addax.core.util.container.ClassLoaderSwapper;
@@ -95,6 +103,8 @@ public class JobContainer
     private long endTransferTimeStamp;
     private int needChannelNumber;
     private int totalStage = 1;
+    private MetricsServer metricsServer;
+    private BottleneckAnalyzer bottleneckAnalyzer;
 
     public JobContainer(Configuration configuration)
     {
@@ -114,6 +124,7 @@ public class JobContainer
 
         boolean hasException = false;
         boolean isDryRun = false;
+        boolean succeeded = false;
         try {
             this.startTimeStamp = System.currentTimeMillis();
             isDryRun = configuration.getBool(CoreConstant.JOB_SETTING_DRY_RUN, false);
@@ -124,6 +135,7 @@ public class JobContainer
             }
             else {
                 userConf = configuration.clone();
+                this.openCheckpoint();
                 LOG.debug("jobContainer starts to do preHandle ...");
                 this.preHandle();
 
@@ -132,7 +144,9 @@ public class JobContainer
                 LOG.debug("jobContainer starts to do prepare ...");
                 this.prepare();
                 LOG.debug("jobContainer starts to do split ...");
-                this.totalStage = this.split();
+                this.totalStage = Math.max(1, this.split());
+                this.startMetricsServer();
+                this.startBottleneckAnalyzer();
                 LOG.debug("jobContainer starts to do schedule ...");
                 this.schedule();
                 LOG.debug("jobContainer starts to do post ...");
@@ -144,6 +158,7 @@ public class JobContainer
                 LOG.debug("Addax jobId [{}] completed successfully.", this.jobId);
                 // disable hook function
                 this.invokeHooks();
+                succeeded = true;
             }
         }
         catch (OutOfMemoryError e) {
@@ -181,7 +196,13 @@ public class JobContainer
         finally {
             if (!isDryRun) {
 
+                this.stopMetricsServer();
+                if (this.bottleneckAnalyzer != null) {
+                    this.bottleneckAnalyzer.stop();
+                }
                 this.destroy();
+                this.closeDirtySpiller();
+                CheckpointStore.closeInstance(succeeded);
                 this.endTimeStamp = System.currentTimeMillis();
                 if (!hasException) {
                     //最后打印cpu的平均消耗，GC的统计
@@ -193,7 +214,10 @@ public class JobContainer
 
                     LOG.info(PerfTrace.getInstance().summarizeNoException());
                     this.logStatistics();
+                    this.logBottleneck();
                 }
+                this.bottleneckAnalyzer = null;
+                TaskMetricsRegistry.getInstance().clear();
             }
         }
     }
@@ -405,6 +429,11 @@ public class JobContainer
          */
         List<Configuration> contentConfig = mergeReaderAndWriterTaskConfigs(readerTaskConfigs, writerTaskConfigs, transformerList);
 
+        CheckpointStore checkpointStore = CheckpointStore.getInstance();
+        if (checkpointStore != null) {
+            contentConfig = checkpointStore.restore(contentConfig);
+        }
+
         LOG.debug("contentConfig configuration:{} ", JSON.toJSONString(contentConfig));
 
         this.configuration.set(CoreConstant.JOB_CONTENT, contentConfig);
@@ -474,20 +503,27 @@ public class JobContainer
          */
         int channelsPerTaskGroup = this.configuration.getInt(CoreConstant.CORE_CONTAINER_TASK_GROUP_CHANNEL, 5);
         int taskNumber = this.configuration.getList(CoreConstant.JOB_CONTENT).size();
+        if (taskNumber == 0) {
+            // 续跑时所有 task 都已经完成, 只需要再执行 post
+            LOG.info("All tasks have been finished by the previous run, skip scheduling.");
+            super.setContainerCommunicator(new StandAloneJobContainerCommunicator(configuration));
+            return;
+        }
 
         this.needChannelNumber = Math.min(this.needChannelNumber, taskNumber);
+        int grantedChannel = this.acquireChannelBudget();
         PerfTrace.getInstance().setChannelNumber(needChannelNumber);
 
-        /*
-         * 通过获取配置信息得到每个taskGroup需要运行哪些tasks任务
-         */
+        AbstractScheduler scheduler;
+        try {
+            /*
+             * 通过获取配置信息得到每个taskGroup需要运行哪些tasks任务
+             */
 
-        List<Configuration> taskGroupConfigs = JobAssignUtil.assignFairly(this.configuration, this.needChannelNumber, channelsPerTaskGroup);
+            List<Configuration> taskGroupConfigs = JobAssignUtil.assignFairly(this.configuration, this.needChannelNumber, channelsPerTaskGroup);
 
-        LOG.info("Scheduler starts [{}] taskGroups.", taskGroupConfigs.size());
+            LOG.info("Scheduler starts [{}] taskGroups.", taskGroupConfigs.size());
 
-        AbstractScheduler scheduler;
-        try {
             scheduler = initStandaloneScheduler(this.configuration);
             this.startTransferTimeStamp = System.currentTimeMillis();
             scheduler.schedule(taskGroupConfigs);
@@ -499,6 +535,11 @@ public class JobContainer
             throw AddaxException.asAddaxException(
                     FrameworkErrorCode.RUNTIME_ERROR, e);
         }
+        finally {
+            if (grantedChannel > 0) {
+                JobScope.current().get(ChannelBudget.class).release(grantedChannel);
+            }
+        }
 
         /*
          * 检查任务执行情况
@@ -506,6 +547,31 @@ public class JobContainer
         this.checkLimit();
     }
 
+    /*
+     * 守护进程模式下所有作业共享 channel 配额, 配额不足时降低本作业的并发, 一个都没有时等待其他作业归还
+     */
+    private int acquireChannelBudget()
+    {
+        ChannelBudget budget = JobScope.current().get(ChannelBudget.class);
+        if (budget == null) {
+            return 0;
+        }
+        int granted;
+        try {
+            granted = budget.acquire(this.needChannelNumber);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AddaxException.asAddaxException(FrameworkErrorCode.RUNTIME_ERROR, "Interrupted while waiting for channels", e);
+        }
+        if (granted < this.needChannelNumber) {
+            LOG.info("Only {} of {} channel(s) are available in the daemon, the job runs with {} channel(s).",
+                    granted, this.needChannelNumber, granted);
+            this.needChannelNumber = granted;
+        }
+        return granted;
+    }
+
     private AbstractScheduler initStandaloneScheduler(Configuration configuration)
     {
         AbstractContainerCommunicator containerCommunicator = new StandAloneJobContainerCommunicator(configuration);
@@ -514,6 +580,97 @@ public class JobContainer
         return new StandAloneScheduler(containerCommunicator);
     }
 
+    /*
+     * 配置了 core.metrics.port 时启动内嵌的 metrics 服务, 启动失败不影响作业运行
+     */
+    private void startMetricsServer()
+    {
+        int port = configuration.getInt(CoreConstant.CORE_METRICS_PORT, 0);
+        if (port <= 0) {
+            return;
+        }
+        String host = configuration.getString(CoreConstant.CORE_METRICS_HOST, "0.0.0.0");
+        try {
+            this.metricsServer = new MetricsServer(this.jobId, host, port);
+            this.metricsServer.start();
+        }
+        catch (IOException e) {
+            LOG.warn("Failed to start the metrics endpoint on {}:{}, metrics will not be exposed: {}", host, port, e.getMessage());
+            this.metricsServer = null;
+        }
+    }
+
+    private void stopMetricsServer()
+    {
+        if (this.metricsServer != null) {
+            this.metricsServer.stop();
+            this.metricsServer = null;
+        }
+    }
+
+    /*
+     * 打开作业的断点文件. 续跑时 writer 在 prepare 阶段的清理动作会把上一次已经写入的数据删掉,
+     * 因此需要跳过 preSql, 并把 truncate/overwrite 的写入模式改为 append
+     */
+    private void openCheckpoint()
+    {
+        boolean resume = configuration.getBool(CoreConstant.CORE_CONTAINER_JOB_RESUME, false);
+        if (!configuration.getBool(CoreConstant.CORE_CHECKPOINT_ENABLE, false)) {
+            if (resume) {
+                LOG.warn("The job can not be resumed because the checkpoint is disabled, set {} to true to enable it.",
+                        CoreConstant.CORE_CHECKPOINT_ENABLE);
+            }
+            return;
+        }
+        CheckpointStore checkpointStore = CheckpointStore.open(configuration, resume);
+        if (!checkpointStore.hasHistory()) {
+            return;
+        }
+        String preSqlPath = CoreConstant.JOB_CONTENT_WRITER_PARAMETER + "." + Key.PRE_SQL;
+        if (configuration.get(preSqlPath) != null) {
+            LOG.warn("The writer preSql is skipped because the job is resumed from a checkpoint.");
+            configuration.remove(preSqlPath);
+        }
+        String writeModePath = CoreConstant.JOB_CONTENT_WRITER_PARAMETER + "." + Key.WRITE_MODE;
+        String writeMode = configuration.getString(writeModePath);
+        if ("truncate".equalsIgnoreCase(writeMode) || "overwrite".equalsIgnoreCase(writeMode)) {
+            LOG.warn("The writer writeMode [{}] is changed to [append] because the job is resumed from a checkpoint.", writeMode);
+            configuration.set(writeModePath, "append");
+        }
+    }
+
+    /*
+     * 等待异步落盘的脏数据全部写入文件
+     */
+    private void closeDirtySpiller()
+    {
+        DirtyRecordSpiller spiller = DirtyRecordSpiller.closeInstance();
+        if (spiller != null && spiller.getSpilledCount() > 0) {
+            LOG.info("{} dirty record(s) are saved to [{}].", spiller.getSpilledCount(), spiller.getLocation());
+        }
+    }
+
+    private void startBottleneckAnalyzer()
+    {
+        if (!configuration.getBool(CoreConstant.CORE_ANALYZER_ENABLE, true)) {
+            return;
+        }
+        this.bottleneckAnalyzer = new BottleneckAnalyzer(configuration.getLong(CoreConstant.CORE_ANALYZER_SAMPLE_INTERVAL, 1000L));
+        this.bottleneckAnalyzer.start();
+    }
+
+    private void logBottleneck()
+    {
+        if (this.bottleneckAnalyzer == null) {
+            return;
+        }
+        int batchSize = configuration.getInt(CoreConstant.JOB_CONTENT_WRITER_PARAMETER + "." + Key.BATCH_SIZE, -1);
+        String report = this.bottleneckAnalyzer.report(this.needChannelNumber, batchSize);
+        if (report != null) {
+            LOG.info(report);
+        }
+    }
+
     private void post()
     {
         this.postJobWriter();
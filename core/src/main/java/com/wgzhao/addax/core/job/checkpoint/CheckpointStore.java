@@ -0,0 +1,356 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.job.checkpoint;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.common.util.JobScope;
+import com.wgzhao.addax.core.util.container.CoreConstant;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 作业的断点文件, 以 JSON-lines 的形式追加记录每个 task 的完成状态以及已经落地的读取位置.
+ * 文件名取自作业内容的指纹, 同一个作业再次提交时会找到同一个文件; 作业成功结束后文件即被删除.
+ * 每个 task 另外记录其切分后 reader/writer 配置的指纹, 只有指纹一致时, 上一次的状态才会在续跑时生效
+ * <p>
+ * writer 中续跑时会被改写的配置项({@link #VOLATILE_WRITER_KEYS}) 不计入指纹, 否则续跑时所有 task 的指纹都会变化
+ */
+public final class CheckpointStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointStore.class);
+
+    private static final String KEY_TASK = "task";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_STATE = "state";
+    private static final String KEY_POSITION = "position";
+    private static final String STATE_SUCCEEDED = "SUCCEEDED";
+    private static final long DEFAULT_INTERVAL = 5000L;
+    // 续跑时 preSql 被跳过, truncate/overwrite 被改为 append, 文件类 writer 的文件名在每次切分时随机生成
+    private static final List<String> VOLATILE_WRITER_KEYS = Arrays.asList(Key.PRE_SQL, Key.WRITE_MODE, Key.FILE_NAME);
+
+    private final File file;
+    private final long interval;
+    // 上一次运行留下的状态, 只在续跑时加载
+    private final Map<Integer, Entry> previous = new HashMap<>();
+    private final Map<Integer, String> fingerprints = new HashMap<>();
+    private Writer writer;
+    private boolean failed = false;
+
+    private CheckpointStore(Configuration configuration, boolean resume)
+    {
+        String defaultPath = CoreConstant.HOME == null ? "checkpoint" : CoreConstant.HOME + File.separator + "checkpoint";
+        String path = configuration.getString(CoreConstant.CORE_CHECKPOINT_PATH);
+        File directory = new File(StringUtils.isBlank(path) ? defaultPath : path);
+        this.file = new File(directory, fingerprint(configuration.get(CoreConstant.JOB_CONTENT)) + ".ckpt");
+        this.interval = configuration.getLong(CoreConstant.CORE_CHECKPOINT_INTERVAL, DEFAULT_INTERVAL);
+
+        if (!file.exists()) {
+            if (resume) {
+                LOG.info("No checkpoint found at [{}], the job will run from the beginning.", file.getAbsolutePath());
+            }
+            return;
+        }
+        if (resume) {
+            load();
+        }
+        else {
+            LOG.info("The checkpoint [{}] left by a previous failed run is discarded, run with -resume to skip the finished tasks.",
+                    file.getAbsolutePath());
+        }
+    }
+
+    public static CheckpointStore open(Configuration configuration, boolean resume)
+    {
+        return JobScope.current().get(CheckpointStore.class, () -> new CheckpointStore(configuration, resume));
+    }
+
+    /**
+     * 当前作业的断点文件
+     *
+     * @return 没有启用断点时返回 null
+     */
+    public static CheckpointStore getInstance()
+    {
+        return JobScope.current().get(CheckpointStore.class);
+    }
+
+    /**
+     * 关闭断点文件, 作业成功时删除该文件, 否则保留给下一次续跑
+     *
+     * @param succeeded 作业是否成功
+     */
+    public static void closeInstance(boolean succeeded)
+    {
+        CheckpointStore instance = JobScope.current().remove(CheckpointStore.class);
+        if (instance != null) {
+            instance.close(succeeded);
+        }
+    }
+
+    /**
+     * 上一次运行是否留下了可用的状态
+     *
+     * @return true 表示本次是真正的续跑
+     */
+    public boolean hasHistory()
+    {
+        return !previous.isEmpty();
+    }
+
+    /**
+     * 计算每个 task 的指纹, 剔除上一次已经成功的 task, 并把尚未完成的 task 已经落地的位置写入 reader 参数中.
+     * 同时用仍然有效的状态重写断点文件
+     *
+     * @param taskConfigs 切分后的全部 task
+     * @return 需要运行的 task
+     */
+    public synchronized List<Configuration> restore(List<Configuration> taskConfigs)
+    {
+        List<Configuration> remains = new ArrayList<>(taskConfigs.size());
+        List<JSONObject> carried = new ArrayList<>();
+        int positions = 0;
+        for (Configuration taskConfig : taskConfigs) {
+            int taskId = taskConfig.getInt(CoreConstant.TASK_ID);
+            String fingerprint = fingerprint(taskFingerprintSource(taskConfig));
+            fingerprints.put(taskId, fingerprint);
+
+            Entry entry = previous.get(taskId);
+            if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+                remains.add(taskConfig);
+                continue;
+            }
+            if (entry.succeeded) {
+                carried.add(line(taskId, fingerprint, KEY_STATE, STATE_SUCCEEDED));
+                continue;
+            }
+            if (entry.position != null) {
+                taskConfig.set(CoreConstant.JOB_READER_PARAMETER + "." + Key.RESUME_POSITION, entry.position);
+                carried.add(line(taskId, fingerprint, KEY_POSITION, entry.position));
+                positions++;
+            }
+            remains.add(taskConfig);
+        }
+        if (hasHistory()) {
+            LOG.info("Resume from checkpoint [{}]: {} of {} task(s) already finished, {} task(s) restart from a saved position.",
+                    file.getAbsolutePath(), taskConfigs.size() - remains.size(), taskConfigs.size(), positions);
+        }
+        rewrite(carried);
+        previous.clear();
+        return remains;
+    }
+
+    public TaskCheckpoint newTaskCheckpoint(int taskId)
+    {
+        return new TaskCheckpoint(this, taskId, interval);
+    }
+
+    public void taskSucceeded(int taskId)
+    {
+        append(taskId, KEY_STATE, STATE_SUCCEEDED);
+    }
+
+    void savePosition(int taskId, String position)
+    {
+        append(taskId, KEY_POSITION, position);
+    }
+
+    public String getLocation()
+    {
+        return file.getAbsolutePath();
+    }
+
+    private synchronized void append(int taskId, String key, String value)
+    {
+        if (failed || writer == null) {
+            return;
+        }
+        try {
+            writer.write(line(taskId, fingerprints.get(taskId), key, value).toJSONString());
+            writer.write('\n');
+            writer.flush();
+        }
+        catch (IOException e) {
+            // 断点只是辅助手段, 写入失败不影响作业本身
+            LOG.warn("Failed to write checkpoint [{}], the job can not be resumed from the current progress.", file.getAbsolutePath(), e);
+            failed = true;
+        }
+    }
+
+    private void load()
+    {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+                JSONObject json;
+                try {
+                    json = JSON.parseObject(line);
+                }
+                catch (RuntimeException e) {
+                    // 进程被杀死时最后一行可能只写了一半
+                    LOG.warn("Skip the malformed checkpoint line: {}", line);
+                    continue;
+                }
+                int taskId = json.getIntValue(KEY_TASK);
+                String fingerprint = json.getString(KEY_FINGERPRINT);
+                Entry entry = previous.get(taskId);
+                if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+                    entry = new Entry(fingerprint);
+                    previous.put(taskId, entry);
+                }
+                if (STATE_SUCCEEDED.equals(json.getString(KEY_STATE))) {
+                    entry.succeeded = true;
+                }
+                if (json.containsKey(KEY_POSITION)) {
+                    entry.position = json.getString(KEY_POSITION);
+                }
+            }
+        }
+        catch (IOException e) {
+            LOG.warn("Failed to read checkpoint [{}], the job will run from the beginning.", file.getAbsolutePath(), e);
+            previous.clear();
+        }
+    }
+
+    private void rewrite(List<JSONObject> lines)
+    {
+        File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            LOG.warn("Failed to create checkpoint directory [{}], the job can not be resumed if it fails.", directory.getAbsolutePath());
+            failed = true;
+            return;
+        }
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, false), StandardCharsets.UTF_8));
+            for (JSONObject line : lines) {
+                writer.write(line.toJSONString());
+                writer.write('\n');
+            }
+            writer.flush();
+        }
+        catch (IOException e) {
+            LOG.warn("Failed to write checkpoint [{}], the job can not be resumed if it fails.", file.getAbsolutePath(), e);
+            failed = true;
+        }
+    }
+
+    private synchronized void close(boolean succeeded)
+    {
+        boolean opened = writer != null;
+        if (opened) {
+            try {
+                writer.close();
+            }
+            catch (IOException e) {
+                LOG.warn("Failed to close checkpoint [{}].", file.getAbsolutePath(), e);
+            }
+            writer = null;
+        }
+        if (succeeded) {
+            if (file.exists() && !file.delete()) {
+                LOG.warn("Failed to delete checkpoint [{}].", file.getAbsolutePath());
+            }
+        }
+        else if (opened && !failed) {
+            LOG.info("The progress is saved to checkpoint [{}], run the job again with -resume to skip the finished tasks.",
+                    file.getAbsolutePath());
+        }
+    }
+
+    private static JSONObject line(int taskId, String fingerprint, String key, String value)
+    {
+        JSONObject json = new JSONObject(true);
+        json.put(KEY_TASK, taskId);
+        json.put(KEY_FINGERPRINT, fingerprint);
+        json.put(key, value);
+        return json;
+    }
+
+    private static Map<String, Object> taskFingerprintSource(Configuration taskConfig)
+    {
+        Map<String, Object> source = new HashMap<>();
+        source.put("reader", taskConfig.get(CoreConstant.JOB_READER));
+        // getConfiguration 返回的是副本, 删除其中的配置项不影响 task 本身
+        Configuration writer = taskConfig.getConfiguration(CoreConstant.JOB_WRITER);
+        if (writer != null && writer.get("parameter") instanceof Map) {
+            Map<?, ?> parameter = (Map<?, ?>) writer.get("parameter");
+            VOLATILE_WRITER_KEYS.forEach(parameter::remove);
+        }
+        source.put("writer", writer == null ? null : writer.getInternal());
+        source.put("transformer", taskConfig.get(CoreConstant.JOB_TRANSFORMER));
+        return source;
+    }
+
+    /*
+     * 对配置按照键排序后序列化, 再取 MD5, 保证同样的配置在不同的运行中得到同样的指纹
+     */
+    private static String fingerprint(Object object)
+    {
+        String json = JSON.toJSONString(object, SerializerFeature.MapSortField, SerializerFeature.WriteMapNullValue);
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(json.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entry
+    {
+        final String fingerprint;
+        boolean succeeded = false;
+        String position;
+
+        Entry(String fingerprint)
+        {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
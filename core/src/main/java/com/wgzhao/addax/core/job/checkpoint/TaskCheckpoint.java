@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.job.checkpoint;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 单个 task 的读取位置跟踪.
+ * 读端每次标记位置时记下当时已经交给框架的记录数, 写端确认落地的记录数达到该值之后, 这个位置才会被保存,
+ * 因此续跑时最多重复读取一部分数据, 但不会丢失数据. 保存的频率受 core.checkpoint.interval 限制
+ */
+public class TaskCheckpoint
+{
+    // 写端严重落后时只保留最近的位置, 丢弃旧的位置只会让保存的进度更保守
+    private static final int MAX_MARKS = 1024;
+
+    private final CheckpointStore store;
+    private final int taskId;
+    private final long interval;
+    private final Deque<Mark> marks = new ArrayDeque<>();
+    private String pending;
+    private long lastSaved = 0;
+
+    TaskCheckpoint(CheckpointStore store, int taskId, long interval)
+    {
+        this.store = store;
+        this.taskId = taskId;
+        this.interval = interval;
+    }
+
+    /**
+     * 读端调用: 前 count 条记录都不晚于 position
+     *
+     * @param count 已经交给框架的记录数
+     * @param position 读取位置
+     */
+    public synchronized void mark(long count, String position)
+    {
+        Mark last = marks.peekLast();
+        if (last != null && last.count == count) {
+            marks.pollLast();
+        }
+        else if (marks.size() >= MAX_MARKS) {
+            marks.pollFirst();
+        }
+        marks.addLast(new Mark(count, position));
+    }
+
+    /**
+     * 写端调用: 前 count 条记录已经落地
+     *
+     * @param count 已经处理完毕的记录数
+     */
+    public void commit(long count)
+    {
+        String position = null;
+        synchronized (this) {
+            while (!marks.isEmpty() && marks.peekFirst().count <= count) {
+                position = marks.pollFirst().position;
+            }
+            if (position != null) {
+                pending = position;
+            }
+            long now = System.currentTimeMillis();
+            if (pending == null || now - lastSaved < interval) {
+                return;
+            }
+            position = pending;
+            pending = null;
+            lastSaved = now;
+        }
+        store.savePosition(taskId, position);
+    }
+
+    private static class Mark
+    {
+        final long count;
+        final String position;
+
+        Mark(long count, String position)
+        {
+            this.count = count;
+            this.position = position;
+        }
+    }
+}
@@ -25,10 +25,13 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Communication
         extends BaseObject
@@ -37,8 +40,10 @@ public class Communication
     // task给job的信息
     Map<String, List<String>> message;
 
-    // 所有的数值key-value对
+    // 预定义的 long 型统计项, 按 CommunicationMetric 的 ordinal 存放
+    private final LongAdder[] metrics = new LongAdder[CommunicationMetric.values().length];
 
+    // 其他数值key-value对, 包括 double 型的统计项
     private Map<String, Number> counter;
     private Long jobId;
 
@@ -53,35 +58,34 @@ public class Communication
 
     public Communication()
     {
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = new LongAdder();
+        }
         this.init();
     }
 
+    /**
+     * 复制一份 communication 的快照
+     *
+     * @param communication the communication to be copied
+     */
     public Communication(Communication communication)
     {
-        for (Map.Entry<String, Number> entry : this.counter.entrySet()) {
-            String key = entry.getKey();
-            Number value = entry.getValue();
-            if (value instanceof Long) {
-                communication.setLongCounter(key, (Long) value);
-            }
-            else if (value instanceof Double) {
-                communication.setDoubleCounter(key, (Double) value);
-            }
+        this();
+        for (int i = 0; i < metrics.length; i++) {
+            this.metrics[i].add(communication.metrics[i].sum());
         }
+        this.counter.putAll(communication.counter);
 
-        communication.setState(this.state, true);
-        communication.setThrowable(this.throwable, true);
-        communication.setTimestamp(this.timestamp);
+        this.setState(communication.getState(), true);
+        this.setThrowable(communication.getThrowable(), true);
+        this.setTimestamp(communication.getTimestamp());
 
         /*
          * clone message
          */
-        if (this.message != null) {
-            for (Map.Entry<String, List<String>> entry : this.message.entrySet()) {
-                String key = entry.getKey();
-                List<String> value = new ArrayList<>(entry.getValue());
-                communication.getMessage().put(key, value);
-            }
+        for (Map.Entry<String, List<String>> entry : communication.getMessage().entrySet()) {
+            this.message.put(entry.getKey(), new ArrayList<>(entry.getValue()));
         }
     }
 
@@ -92,6 +96,9 @@ public class Communication
 
     private void init()
     {
+        for (LongAdder metric : metrics) {
+            metric.reset();
+        }
         this.counter = new ConcurrentHashMap<>();
         this.state = State.RUNNING;
         this.throwable = null;
@@ -99,9 +106,59 @@ public class Communication
         this.timestamp = System.currentTimeMillis();
     }
 
+    /**
+     * 兼容旧接口的计数器视图, 为当前值的快照, 修改返回的 map 不会影响本对象.
+     * 预定义统计项只包含非 0 值
+     *
+     * @return map of counter key to value
+     */
     public Map<String, Number> getCounter()
     {
-        return this.counter;
+        Map<String, Number> result = new HashMap<>(this.counter);
+        for (CommunicationMetric metric : CommunicationMetric.values()) {
+            long value = metrics[metric.ordinal()].sum();
+            if (value != 0) {
+                result.put(metric.getName(), value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 预定义统计项的快照, 供汇报使用
+     *
+     * @return metric to value
+     */
+    public Map<CommunicationMetric, Long> snapshot()
+    {
+        Map<CommunicationMetric, Long> result = new EnumMap<>(CommunicationMetric.class);
+        for (CommunicationMetric metric : CommunicationMetric.values()) {
+            result.put(metric, metrics[metric.ordinal()].sum());
+        }
+        return result;
+    }
+
+    public long getLongCounter(CommunicationMetric metric)
+    {
+        return metrics[metric.ordinal()].sum();
+    }
+
+    /**
+     * 设置统计项的值. 与 {@link #increaseCounter(CommunicationMetric, long)} 对同一统计项并发调用时不保证原子性,
+     * 目前每个统计项只会被单一线程设置
+     *
+     * @param metric metric
+     * @param value new value
+     */
+    public void setLongCounter(CommunicationMetric metric, long value)
+    {
+        LongAdder adder = metrics[metric.ordinal()];
+        adder.add(value - adder.sum());
+    }
+
+    public void increaseCounter(CommunicationMetric metric, long deltaValue)
+    {
+        metrics[metric.ordinal()].add(deltaValue);
     }
 
     public synchronized State getState()
@@ -176,38 +233,55 @@ public class Communication
         valueList.add(value);
     }
 
-    public synchronized Long getLongCounter(String key)
+    public Long getLongCounter(String key)
     {
+        CommunicationMetric metric = CommunicationMetric.fromName(key);
+        if (metric != null) {
+            return getLongCounter(metric);
+        }
         Number value = this.counter.get(key);
         return value == null ? 0 : value.longValue();
     }
 
-    public synchronized void setLongCounter(String key, long value)
+    public void setLongCounter(String key, long value)
     {
         Validate.isTrue(StringUtils.isNotBlank(key), "设置counter的key不能为空");
-        this.counter.put(key, value);
+        CommunicationMetric metric = CommunicationMetric.fromName(key);
+        if (metric != null) {
+            setLongCounter(metric, value);
+        }
+        else {
+            this.counter.put(key, value);
+        }
     }
 
-    public synchronized Double getDoubleCounter(String key)
+    public Double getDoubleCounter(String key)
     {
+        CommunicationMetric metric = CommunicationMetric.fromName(key);
+        if (metric != null) {
+            return (double) getLongCounter(metric);
+        }
         Number value = this.counter.get(key);
 
         return value == null ? 0.0d : value.doubleValue();
     }
 
-    public synchronized void setDoubleCounter(String key, double value)
+    public void setDoubleCounter(String key, double value)
     {
         Validate.isTrue(StringUtils.isNotBlank(key), "设置counter的key不能为空");
         this.counter.put(key, value);
     }
 
-    public synchronized void increaseCounter(String key, long deltaValue)
+    public void increaseCounter(String key, long deltaValue)
     {
         Validate.isTrue(StringUtils.isNotBlank(key), "增加counter的key不能为空");
-
-        long value = this.getLongCounter(key);
-
-        this.counter.put(key, value + deltaValue);
+        CommunicationMetric metric = CommunicationMetric.fromName(key);
+        if (metric != null) {
+            increaseCounter(metric, deltaValue);
+        }
+        else {
+            this.counter.merge(key, deltaValue, (a, b) -> a.longValue() + b.longValue());
+        }
     }
 
     public synchronized Communication mergeFrom(Communication otherComm)
@@ -216,11 +290,15 @@ public class Communication
             return this;
         }
 
+        for (int i = 0; i < metrics.length; i++) {
+            this.metrics[i].add(otherComm.metrics[i].sum());
+        }
+
         /*
          * counter的合并，将otherComm的值累加到this中，不存在的则创建
          * 同为long
          */
-        for (Entry<String, Number> entry : otherComm.getCounter().entrySet()) {
+        for (Entry<String, Number> entry : otherComm.counter.entrySet()) {
             String key = entry.getKey();
             Number otherValue = entry.getValue();
             if (otherValue == null) {
@@ -236,7 +314,7 @@ public class Communication
                     value = value.longValue() + otherValue.longValue();
                 }
                 else {
-                    value = value.doubleValue() + value.doubleValue();
+                    value = value.doubleValue() + otherValue.doubleValue();
                 }
             }
 
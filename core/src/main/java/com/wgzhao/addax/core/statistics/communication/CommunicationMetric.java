@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.statistics.communication;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 所有 long 型统计项, 每一项在 {@link Communication} 中占用固定的槽位,
+ * 热路径上通过枚举直接定位, 不再做字符串查找和 Long 装箱
+ */
+public enum CommunicationMetric
+{
+    STAGE(CommunicationTool.STAGE),
+    BYTE_SPEED(CommunicationTool.BYTE_SPEED),
+    RECORD_SPEED(CommunicationTool.RECORD_SPEED),
+
+    READ_SUCCEED_RECORDS(CommunicationTool.READ_SUCCEED_RECORDS),
+    READ_SUCCEED_BYTES(CommunicationTool.READ_SUCCEED_BYTES),
+    READ_FAILED_RECORDS(CommunicationTool.READ_FAILED_RECORDS),
+    READ_FAILED_BYTES(CommunicationTool.READ_FAILED_BYTES),
+
+    WRITE_RECEIVED_RECORDS(CommunicationTool.WRITE_RECEIVED_RECORDS),
+    WRITE_RECEIVED_BYTES(CommunicationTool.WRITE_RECEIVED_BYTES),
+    WRITE_FAILED_RECORDS(CommunicationTool.WRITE_FAILED_RECORDS),
+    WRITE_FAILED_BYTES(CommunicationTool.WRITE_FAILED_BYTES),
+    WRITE_SUCCEED_RECORDS(CommunicationTool.WRITE_SUCCEED_RECORDS),
+    WRITE_SUCCEED_BYTES(CommunicationTool.WRITE_SUCCEED_BYTES),
+
+    TOTAL_READ_RECORDS(CommunicationTool.TOTAL_READ_RECORDS),
+    TOTAL_READ_BYTES(CommunicationTool.TOTAL_READ_BYTES),
+    TOTAL_ERROR_RECORDS(CommunicationTool.TOTAL_ERROR_RECORDS),
+    TOTAL_ERROR_BYTES(CommunicationTool.TOTAL_ERROR_BYTES),
+
+    WAIT_WRITER_TIME(CommunicationTool.WAIT_WRITER_TIME),
+    WAIT_READER_TIME(CommunicationTool.WAIT_READER_TIME),
+
+    TRANSFORMER_USED_TIME(CommunicationTool.TRANSFORMER_USED_TIME),
+    TRANSFORMER_SUCCEED_RECORDS(CommunicationTool.TRANSFORMER_SUCCEED_RECORDS),
+    TRANSFORMER_FAILED_RECORDS(CommunicationTool.TRANSFORMER_FAILED_RECORDS),
+    TRANSFORMER_FILTER_RECORDS(CommunicationTool.TRANSFORMER_FILTER_RECORDS);
+
+    private static final Map<String, CommunicationMetric> BY_NAME = new HashMap<>();
+
+    static {
+        for (CommunicationMetric metric : values()) {
+            BY_NAME.put(metric.getName(), metric);
+        }
+    }
+
+    private final String name;
+
+    CommunicationMetric(String name)
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @param name counter key
+     * @return the metric, or null if the key is not a predefined metric
+     */
+    public static CommunicationMetric fromName(String name)
+    {
+        return BY_NAME.get(name);
+    }
+}
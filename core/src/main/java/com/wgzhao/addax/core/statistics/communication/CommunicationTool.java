@@ -54,11 +54,11 @@ public final class CommunicationTool
     public static final String TRANSFORMER_SUCCEED_RECORDS = "totalTransformerSuccessRecords";
     public static final String TRANSFORMER_FAILED_RECORDS = "totalTransformerFailedRecords";
     public static final String TRANSFORMER_FILTER_RECORDS = "totalTransformerFilterRecords";
-    private static final String TOTAL_READ_BYTES = "totalReadBytes";
-    private static final String TOTAL_ERROR_RECORDS = "totalErrorRecords";
-    private static final String TOTAL_ERROR_BYTES = "totalErrorBytes";
-    private static final String WRITE_SUCCEED_RECORDS = "writeSucceedRecords";
-    private static final String WRITE_SUCCEED_BYTES = "writeSucceedBytes";
+    static final String TOTAL_READ_BYTES = "totalReadBytes";
+    static final String TOTAL_ERROR_RECORDS = "totalErrorRecords";
+    static final String TOTAL_ERROR_BYTES = "totalErrorBytes";
+    static final String WRITE_SUCCEED_RECORDS = "writeSucceedRecords";
+    static final String WRITE_SUCCEED_BYTES = "writeSucceedBytes";
     //public static final String TRANSFORMER_NAME_PREFIX = "usedTimeByTransformer_"
 
     private CommunicationTool() {}
@@ -70,21 +70,21 @@ public final class CommunicationTool
 
         long totalReadRecords = getTotalReadRecords(now);
         long totalReadBytes = getTotalReadBytes(now);
-        now.setLongCounter(TOTAL_READ_RECORDS, totalReadRecords);
-        now.setLongCounter(TOTAL_READ_BYTES, totalReadBytes);
-        now.setLongCounter(TOTAL_ERROR_RECORDS, getTotalErrorRecords(now));
-        now.setLongCounter(TOTAL_ERROR_BYTES, getTotalErrorBytes(now));
-        now.setLongCounter(WRITE_SUCCEED_RECORDS, getWriteSucceedRecords(now));
-        now.setLongCounter(WRITE_SUCCEED_BYTES, getWriteSucceedBytes(now));
+        now.setLongCounter(CommunicationMetric.TOTAL_READ_RECORDS, totalReadRecords);
+        now.setLongCounter(CommunicationMetric.TOTAL_READ_BYTES, totalReadBytes);
+        now.setLongCounter(CommunicationMetric.TOTAL_ERROR_RECORDS, getTotalErrorRecords(now));
+        now.setLongCounter(CommunicationMetric.TOTAL_ERROR_BYTES, getTotalErrorBytes(now));
+        now.setLongCounter(CommunicationMetric.WRITE_SUCCEED_RECORDS, getWriteSucceedRecords(now));
+        now.setLongCounter(CommunicationMetric.WRITE_SUCCEED_BYTES, getWriteSucceedBytes(now));
 
         long timeInterval = now.getTimestamp() - old.getTimestamp();
         long sec = timeInterval <= 1000 ? 1 : timeInterval / 1000;
         long bytesSpeed = (totalReadBytes - getTotalReadBytes(old)) / sec;
         long recordsSpeed = (totalReadRecords - getTotalReadRecords(old)) / sec;
 
-        now.setLongCounter(BYTE_SPEED, bytesSpeed < 0 ? 0 : bytesSpeed);
-        now.setLongCounter(RECORD_SPEED, recordsSpeed < 0 ? 0 : recordsSpeed);
-        now.setDoubleCounter(PERCENTAGE, now.getLongCounter(STAGE) / (double) totalStage);
+        now.setLongCounter(CommunicationMetric.BYTE_SPEED, bytesSpeed < 0 ? 0 : bytesSpeed);
+        now.setLongCounter(CommunicationMetric.RECORD_SPEED, recordsSpeed < 0 ? 0 : recordsSpeed);
+        now.setDoubleCounter(PERCENTAGE, now.getLongCounter(CommunicationMetric.STAGE) / (double) totalStage);
 
         if (old.getThrowable() != null) {
             now.setThrowable(old.getThrowable());
@@ -96,32 +96,32 @@ public final class CommunicationTool
     public static long getTotalReadRecords(Communication communication)
     {
 
-        return communication.getLongCounter(READ_SUCCEED_RECORDS) + communication.getLongCounter(READ_FAILED_RECORDS);
+        return communication.getLongCounter(CommunicationMetric.READ_SUCCEED_RECORDS) + communication.getLongCounter(CommunicationMetric.READ_FAILED_RECORDS);
     }
 
     public static long getTotalReadBytes(Communication communication)
     {
-        return communication.getLongCounter(READ_SUCCEED_BYTES) + communication.getLongCounter(READ_FAILED_BYTES);
+        return communication.getLongCounter(CommunicationMetric.READ_SUCCEED_BYTES) + communication.getLongCounter(CommunicationMetric.READ_FAILED_BYTES);
     }
 
     public static long getTotalErrorRecords(Communication communication)
     {
-        return communication.getLongCounter(READ_FAILED_RECORDS) + communication.getLongCounter(WRITE_FAILED_RECORDS);
+        return communication.getLongCounter(CommunicationMetric.READ_FAILED_RECORDS) + communication.getLongCounter(CommunicationMetric.WRITE_FAILED_RECORDS);
     }
 
     public static long getTotalErrorBytes(Communication communication)
     {
-        return communication.getLongCounter(READ_FAILED_BYTES) + communication.getLongCounter(WRITE_FAILED_BYTES);
+        return communication.getLongCounter(CommunicationMetric.READ_FAILED_BYTES) + communication.getLongCounter(CommunicationMetric.WRITE_FAILED_BYTES);
     }
 
     public static long getWriteSucceedRecords(Communication communication)
     {
-        return communication.getLongCounter(WRITE_RECEIVED_RECORDS) - communication.getLongCounter(WRITE_FAILED_RECORDS);
+        return communication.getLongCounter(CommunicationMetric.WRITE_RECEIVED_RECORDS) - communication.getLongCounter(CommunicationMetric.WRITE_FAILED_RECORDS);
     }
 
     public static long getWriteSucceedBytes(Communication communication)
     {
-        return communication.getLongCounter(WRITE_RECEIVED_BYTES) - communication.getLongCounter(WRITE_FAILED_BYTES);
+        return communication.getLongCounter(CommunicationMetric.WRITE_RECEIVED_BYTES) - communication.getLongCounter(CommunicationMetric.WRITE_FAILED_BYTES);
     }
 
     public static class Stringify
@@ -143,26 +143,26 @@ public final class CommunicationTool
             sb.append(getError(communication));
             sb.append(" | ");
             sb.append(" All Task WaitWriterTime ");
-            sb.append(PerfTrace.unitTime(communication.getLongCounter(WAIT_WRITER_TIME)));
+            sb.append(PerfTrace.unitTime(communication.getLongCounter(CommunicationMetric.WAIT_WRITER_TIME)));
             sb.append(" | ");
             sb.append(" All Task WaitReaderTime ");
-            sb.append(PerfTrace.unitTime(communication.getLongCounter(WAIT_READER_TIME)));
+            sb.append(PerfTrace.unitTime(communication.getLongCounter(CommunicationMetric.WAIT_READER_TIME)));
             sb.append(" | ");
-            if (communication.getLongCounter(CommunicationTool.TRANSFORMER_USED_TIME) > 0
-                    || communication.getLongCounter(CommunicationTool.TRANSFORMER_SUCCEED_RECORDS) > 0
-                    || communication.getLongCounter(CommunicationTool.TRANSFORMER_FAILED_RECORDS) > 0
-                    || communication.getLongCounter(CommunicationTool.TRANSFORMER_FILTER_RECORDS) > 0) {
+            if (communication.getLongCounter(CommunicationMetric.TRANSFORMER_USED_TIME) > 0
+                    || communication.getLongCounter(CommunicationMetric.TRANSFORMER_SUCCEED_RECORDS) > 0
+                    || communication.getLongCounter(CommunicationMetric.TRANSFORMER_FAILED_RECORDS) > 0
+                    || communication.getLongCounter(CommunicationMetric.TRANSFORMER_FILTER_RECORDS) > 0) {
                 sb.append("Transformer Success ");
-                sb.append(String.format("%d records", communication.getLongCounter(CommunicationTool.TRANSFORMER_SUCCEED_RECORDS)));
+                sb.append(String.format("%d records", communication.getLongCounter(CommunicationMetric.TRANSFORMER_SUCCEED_RECORDS)));
                 sb.append(" | ");
                 sb.append("Transformer Error ");
-                sb.append(String.format("%d records", communication.getLongCounter(CommunicationTool.TRANSFORMER_FAILED_RECORDS)));
+                sb.append(String.format("%d records", communication.getLongCounter(CommunicationMetric.TRANSFORMER_FAILED_RECORDS)));
                 sb.append(" | ");
                 sb.append("Transformer Filter ");
-                sb.append(String.format("%d records", communication.getLongCounter(CommunicationTool.TRANSFORMER_FILTER_RECORDS)));
+                sb.append(String.format("%d records", communication.getLongCounter(CommunicationMetric.TRANSFORMER_FILTER_RECORDS)));
                 sb.append(" | ");
                 sb.append("Transformer usedTime ");
-                sb.append(PerfTrace.unitTime(communication.getLongCounter(CommunicationTool.TRANSFORMER_USED_TIME)));
+                sb.append(PerfTrace.unitTime(communication.getLongCounter(CommunicationMetric.TRANSFORMER_USED_TIME)));
                 sb.append(" | ");
             }
             sb.append("Percentage ");
@@ -172,17 +172,17 @@ public final class CommunicationTool
 
         private static String getTotal(Communication communication)
         {
-            return String.format("%d records, %d bytes", communication.getLongCounter(TOTAL_READ_RECORDS), communication.getLongCounter(TOTAL_READ_BYTES));
+            return String.format("%d records, %d bytes", communication.getLongCounter(CommunicationMetric.TOTAL_READ_RECORDS), communication.getLongCounter(CommunicationMetric.TOTAL_READ_BYTES));
         }
 
         private static String getSpeed(Communication communication)
         {
-            return String.format("%s/s, %d records/s", StrUtil.stringify(communication.getLongCounter(BYTE_SPEED)), communication.getLongCounter(RECORD_SPEED));
+            return String.format("%s/s, %d records/s", StrUtil.stringify(communication.getLongCounter(CommunicationMetric.BYTE_SPEED)), communication.getLongCounter(CommunicationMetric.RECORD_SPEED));
         }
 
         private static String getError(Communication communication)
         {
-            return String.format("%d records, %d bytes", communication.getLongCounter(TOTAL_ERROR_RECORDS), communication.getLongCounter(TOTAL_ERROR_BYTES));
+            return String.format("%d records, %d bytes", communication.getLongCounter(CommunicationMetric.TOTAL_ERROR_RECORDS), communication.getLongCounter(CommunicationMetric.TOTAL_ERROR_BYTES));
         }
 
         private static String getPercentage(Communication communication)
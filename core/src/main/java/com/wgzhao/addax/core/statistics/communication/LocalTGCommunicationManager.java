@@ -19,6 +19,7 @@
 
 package com.wgzhao.addax.core.statistics.communication;
 
+import com.wgzhao.addax.common.util.JobScope;
 import com.wgzhao.addax.core.meta.State;
 import org.apache.commons.lang3.Validate;
 
@@ -27,13 +28,19 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public final class LocalTGCommunicationManager
 {
-    private static final Map<Integer, Communication> taskGroupCommunicationMap = new ConcurrentHashMap<>();
-
     private LocalTGCommunicationManager() {}
 
+    /*
+     * 守护进程模式下多个作业的 taskGroupId 都从 0 开始, 因此每个作业使用自己的 map
+     */
+    private static Map<Integer, Communication> communications()
+    {
+        return JobScope.current().get(TaskGroupCommunications.class, TaskGroupCommunications::new);
+    }
+
     public static void registerTaskGroupCommunication(int taskGroupId, Communication communication)
     {
-        taskGroupCommunicationMap.put(taskGroupId, communication);
+        communications().put(taskGroupId, communication);
     }
 
     public static Communication getJobCommunication(Long jobId)
@@ -41,7 +48,7 @@ public final class LocalTGCommunicationManager
         Communication communication = new Communication();
         communication.setState(State.SUCCEEDED);
 
-        for (Communication taskGroupCommunication : taskGroupCommunicationMap.values()) {
+        for (Communication taskGroupCommunication : communications().values()) {
             if (taskGroupCommunication.getJobId() == null) {
                 communication.mergeFrom(taskGroupCommunication);
             }
@@ -66,12 +73,13 @@ public final class LocalTGCommunicationManager
     {
         Validate.isTrue(taskGroupId >= 0, "taskGroupId不能小于0");
 
-        return taskGroupCommunicationMap.get(taskGroupId);
+        return communications().get(taskGroupId);
     }
 
     public static void updateTaskGroupCommunication(final int taskGroupId,
             final Communication communication)
     {
+        Map<Integer, Communication> taskGroupCommunicationMap = communications();
         Validate.isTrue(taskGroupCommunicationMap.containsKey(
                 taskGroupId), String.format("taskGroupCommunicationMap中没有注册taskGroupId[%d]的Communication，" +
                 "无法更新该taskGroup的信息", taskGroupId));
@@ -80,11 +88,16 @@ public final class LocalTGCommunicationManager
 
     public static void clear()
     {
-        taskGroupCommunicationMap.clear();
+        communications().clear();
     }
 
     public static Map<Integer, Communication> getTaskGroupCommunicationMap()
     {
-        return taskGroupCommunicationMap;
+        return communications();
+    }
+
+    private static class TaskGroupCommunications
+            extends ConcurrentHashMap<Integer, Communication>
+    {
     }
-}
\ No newline at end of file
+}
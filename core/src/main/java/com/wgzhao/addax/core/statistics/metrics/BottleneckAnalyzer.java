@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.statistics.metrics;
+
+import com.wgzhao.addax.core.statistics.communication.Communication;
+import com.wgzhao.addax.core.statistics.communication.CommunicationMetric;
+import com.wgzhao.addax.core.transport.channel.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * 作业运行期间定时采样每个 task 的 channel 占用率, 作业结束时结合读写等待时间, transformer 耗时和限速休眠时间,
+ * 判断每个 task 的瓶颈在读端, 写端, transformer 还是限速, 并输出最慢的 task, 数据倾斜的切分以及 channel/batchSize 的建议值
+ * <p>
+ * 判断依据: reader 线程因 channel 满而阻塞的时间 (waitWriterTime) 说明写端慢, writer 线程因 channel 空而阻塞的时间
+ * (waitReaderTime) 说明读端慢, transformer 在 reader 线程中执行, 其耗时占比高时读端的等待也会随之升高, 因此先于读写两端判断
+ */
+public class BottleneckAnalyzer
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BottleneckAnalyzer.class);
+
+    // 限速休眠占 task 耗时的比例超过该值时认为受限于限速
+    private static final double THROTTLE_RATIO = 0.2d;
+    // transformer 耗时占比超过该值时认为受限于 transformer
+    private static final double TRANSFORM_RATIO = 0.5d;
+    // 读写两端的等待时间都低于该比例时认为两端均衡
+    private static final double WAIT_RATIO = 0.1d;
+    // 耗时或记录数超过中位数的倍数时认为数据倾斜
+    private static final double SKEW_FACTOR = 2.0d;
+    // 耗时太短的 task 不参与倾斜判断
+    private static final long SKEW_MIN_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int TOP_N = 5;
+
+    private final long sampleIntervalMs;
+    private final Map<Integer, TaskSample> samples = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public BottleneckAnalyzer(long sampleIntervalMs)
+    {
+        this.sampleIntervalMs = sampleIntervalMs;
+    }
+
+    public enum Bound
+    {
+        SOURCE("source-bound"),
+        SINK("sink-bound"),
+        TRANSFORM("transform-bound"),
+        THROTTLE("throttle-bound"),
+        BALANCED("balanced");
+
+        private final String desc;
+
+        Bound(String desc)
+        {
+            this.desc = desc;
+        }
+
+        public String getDesc()
+        {
+            return desc;
+        }
+    }
+
+    public void start()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bottleneck-analyzer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, sampleIntervalMs, sampleIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop()
+    {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        sample();
+    }
+
+    void sample()
+    {
+        try {
+            long now = System.nanoTime();
+            for (TaskMetricsRegistry.TaskEntry entry : TaskMetricsRegistry.getInstance().getTasks().values()) {
+                TaskSample sample = samples.get(entry.getTaskId());
+                // task 重试时会重新注册, 此时丢弃之前的采样
+                if (sample == null || sample.entry != entry) {
+                    sample = new TaskSample(entry);
+                    samples.put(entry.getTaskId(), sample);
+                }
+                sample.sample(now);
+            }
+        }
+        catch (RuntimeException e) {
+            LOG.debug("Failed to sample the task metrics: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 生成分析报告
+     *
+     * @param channelNumber 当前作业的并发数
+     * @param batchSize writer 配置的 batchSize, 未配置时为 -1
+     * @return 报告内容, 没有任何 task 时返回 null
+     */
+    public String report(int channelNumber, int batchSize)
+    {
+        List<TaskResult> results = new ArrayList<>();
+        long now = System.nanoTime();
+        for (TaskSample sample : samples.values()) {
+            results.add(sample.analyze(now));
+        }
+        if (results.isEmpty()) {
+            return null;
+        }
+
+        Map<Bound, Integer> boundCount = new EnumMap<>(Bound.class);
+        for (TaskResult result : results) {
+            boundCount.merge(result.bound, 1, Integer::sum);
+        }
+
+        StringBuilder sb = new StringBuilder("\n瓶颈分析:\n");
+        for (Map.Entry<Bound, Integer> entry : boundCount.entrySet()) {
+            sb.append(String.format("  %-16s: %d task(s)%n", entry.getKey().getDesc(), entry.getValue()));
+        }
+
+        results.sort(Comparator.comparingLong((TaskResult r) -> r.elapsedNanos).reversed());
+        sb.append("最慢的 task:\n");
+        sb.append(String.format("  %-12s %10s %12s %8s %8s %8s %8s %8s  %s%n",
+                "taskGroup-id", "elapsed", "records", "readerW", "writerW", "transf", "throttle", "fill", "bound"));
+        for (TaskResult result : results.subList(0, Math.min(TOP_N, results.size()))) {
+            sb.append(String.format("  %-12s %9.1fs %12d %7.1f%% %7.1f%% %7.1f%% %7.1f%% %7.1f%%  %s%n",
+                    result.taskGroupId + "-" + result.taskId,
+                    result.elapsedNanos / 1e9,
+                    result.records,
+                    result.ratio(result.waitWriterNanos) * 100,
+                    result.ratio(result.waitReaderNanos) * 100,
+                    result.ratio(result.transformerNanos) * 100,
+                    result.ratio(result.throttleNanos) * 100,
+                    result.avgFill * 100,
+                    result.bound.getDesc()));
+        }
+        sb.append("  (readerW: reader 等待写端的时间占比, writerW: writer 等待读端的时间占比, fill: channel 平均占用率)\n");
+
+        List<TaskResult> skewed = findSkewed(results);
+        if (!skewed.isEmpty()) {
+            sb.append("数据倾斜的切分:\n");
+            for (TaskResult result : skewed) {
+                sb.append(String.format("  task %d-%d: elapsed %.1fs, %d records%n",
+                        result.taskGroupId, result.taskId, result.elapsedNanos / 1e9, result.records));
+            }
+        }
+
+        sb.append("建议:\n");
+        for (String suggestion : suggest(boundCount, results, skewed, channelNumber, batchSize)) {
+            sb.append("  - ").append(suggestion).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static List<TaskResult> findSkewed(List<TaskResult> results)
+    {
+        List<TaskResult> skewed = new ArrayList<>();
+        if (results.size() < 3) {
+            return skewed;
+        }
+        long medianElapsed = median(results, r -> r.elapsedNanos);
+        long medianRecords = median(results, r -> r.records);
+        for (TaskResult result : results) {
+            boolean slow = result.elapsedNanos > SKEW_MIN_NANOS && result.elapsedNanos > medianElapsed * SKEW_FACTOR;
+            boolean large = medianRecords > 0 && result.records > medianRecords * SKEW_FACTOR;
+            if (slow || large) {
+                skewed.add(result);
+            }
+        }
+        return skewed;
+    }
+
+    private static long median(List<TaskResult> results, ToLongFunction<TaskResult> getter)
+    {
+        long[] values = results.stream().mapToLong(getter).sorted().toArray();
+        return values[values.length / 2];
+    }
+
+    private static List<String> suggest(Map<Bound, Integer> boundCount, List<TaskResult> results, List<TaskResult> skewed,
+            int channelNumber, int batchSize)
+    {
+        List<String> suggestions = new ArrayList<>();
+        Bound dominant = Bound.BALANCED;
+        int max = 0;
+        for (Map.Entry<Bound, Integer> entry : boundCount.entrySet()) {
+            if (entry.getValue() > max) {
+                max = entry.getValue();
+                dominant = entry.getKey();
+            }
+        }
+        switch (dominant) {
+            case SOURCE:
+                if (results.size() > channelNumber) {
+                    suggestions.add(String.format("读端是瓶颈, 写端大部分时间在等待数据, 可将 job.setting.speed.channel 从 %d 提高到 %d",
+                            channelNumber, Math.min(results.size(), channelNumber * 2)));
+                }
+                else {
+                    suggestions.add("读端是瓶颈, 且每个切分已独占一个 channel, 可配置 splitPk 等参数产生更多切分, 或检查源端查询的执行计划");
+                }
+                break;
+            case SINK:
+                if (batchSize > 0) {
+                    suggestions.add(String.format("写端是瓶颈, channel 经常处于满的状态, 可将 writer 的 batchSize 从 %d 提高到 %d; "
+                            + "如果目标端负载已经很高, 提高 channel 数不会有帮助", batchSize, Math.min(batchSize * 2, 8192)));
+                }
+                else {
+                    suggestions.add("写端是瓶颈, channel 经常处于满的状态, 可增大 writer 的批量提交大小; 如果目标端负载已经很高, 提高 channel 数不会有帮助");
+                }
+                break;
+            case TRANSFORM:
+                suggestions.add(String.format("transformer 是瓶颈, 可简化 transformer 逻辑, 或将 job.setting.speed.channel 从 %d 提高到 %d",
+                        channelNumber, channelNumber * 2));
+                break;
+            case THROTTLE:
+                suggestions.add("作业受限于 job.setting.speed.byte/record 的限速配置, 如果源端和目标端都能承受, 可提高或去掉限速");
+                break;
+            default:
+                suggestions.add("读写两端较为均衡, 当前的 channel 和 batchSize 配置合适");
+        }
+        if (!skewed.isEmpty()) {
+            suggestions.add(String.format("有 %d 个切分明显大于其它切分, 作业耗时取决于这些切分, 建议选择分布更均匀的 splitPk 或者增加切分数", skewed.size()));
+        }
+        return suggestions;
+    }
+
+    private static class TaskSample
+    {
+        final TaskMetricsRegistry.TaskEntry entry;
+        long samples = 0;
+        double fillSum = 0;
+        long endNanos = 0;
+
+        TaskSample(TaskMetricsRegistry.TaskEntry entry)
+        {
+            this.entry = entry;
+        }
+
+        synchronized void sample(long now)
+        {
+            if (endNanos > 0) {
+                return;
+            }
+            Channel channel = entry.getChannel();
+            if (channel.getCapacity() > 0) {
+                fillSum += (double) channel.size() / channel.getCapacity();
+                samples++;
+            }
+            if (entry.getCommunication().isFinished()) {
+                endNanos = now;
+            }
+        }
+
+        synchronized TaskResult analyze(long now)
+        {
+            Communication communication = entry.getCommunication();
+            TaskResult result = new TaskResult();
+            result.taskGroupId = entry.getTaskGroupId();
+            result.taskId = entry.getTaskId();
+            result.elapsedNanos = Math.max((endNanos > 0 ? endNanos : now) - entry.getStartNanos(), 1L);
+            result.records = communication.getLongCounter(CommunicationMetric.READ_SUCCEED_RECORDS);
+            result.waitReaderNanos = communication.getLongCounter(CommunicationMetric.WAIT_READER_TIME);
+            result.waitWriterNanos = communication.getLongCounter(CommunicationMetric.WAIT_WRITER_TIME);
+            result.transformerNanos = communication.getLongCounter(CommunicationMetric.TRANSFORMER_USED_TIME);
+            result.throttleNanos = entry.getChannel().getThrottleTime();
+            result.avgFill = samples > 0 ? fillSum / samples : 0;
+            result.bound = classify(result);
+            return result;
+        }
+    }
+
+    static Bound classify(TaskResult result)
+    {
+        if (result.ratio(result.throttleNanos) >= THROTTLE_RATIO) {
+            return Bound.THROTTLE;
+        }
+        if (result.ratio(result.transformerNanos) >= TRANSFORM_RATIO) {
+            return Bound.TRANSFORM;
+        }
+        double readerWait = result.ratio(result.waitWriterNanos);
+        double writerWait = result.ratio(result.waitReaderNanos);
+        if (readerWait < WAIT_RATIO && writerWait < WAIT_RATIO) {
+            // 等待时间都不明显时参考 channel 的平均占用率
+            if (result.avgFill >= 0.8d) {
+                return Bound.SINK;
+            }
+            if (result.avgFill > 0 && result.avgFill <= 0.2d && writerWait > readerWait) {
+                return Bound.SOURCE;
+            }
+            return Bound.BALANCED;
+        }
+        return readerWait > writerWait ? Bound.SINK : Bound.SOURCE;
+    }
+
+    static class TaskResult
+    {
+        int taskGroupId;
+        int taskId;
+        long elapsedNanos;
+        long records;
+        long waitReaderNanos;
+        long waitWriterNanos;
+        long transformerNanos;
+        long throttleNanos;
+        double avgFill;
+        Bound bound;
+
+        double ratio(long nanos)
+        {
+            return Math.min((double) nanos / elapsedNanos, 1.0d);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.statistics.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wgzhao.addax.common.statistics.LatencyHistogram;
+import com.wgzhao.addax.common.statistics.VMInfo;
+import com.wgzhao.addax.core.statistics.communication.Communication;
+import com.wgzhao.addax.core.statistics.communication.CommunicationMetric;
+import com.wgzhao.addax.core.transport.channel.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * 内嵌的 HTTP 服务, 以 OpenMetrics 文本格式输出当前作业的实时统计, 访问路径为 /metrics
+ * <p>
+ * 包括每个 task 的读写记录数和字节数, 脏数据数, channel 队列占用, 读写等待时间, transformer 耗时,
+ * 插件记录的批量提交延迟直方图以及 JVM 内存和 GC 信息
+ */
+public class MetricsServer
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsServer.class);
+
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0d;
+
+    private static final TaskMetric[] TASK_METRICS = {
+            new TaskMetric("addax_task_read_records", "Records read successfully by the reader", CommunicationMetric.READ_SUCCEED_RECORDS, false),
+            new TaskMetric("addax_task_read_bytes", "Bytes read successfully by the reader", CommunicationMetric.READ_SUCCEED_BYTES, false),
+            new TaskMetric("addax_task_read_failed_records", "Dirty records on the reader side", CommunicationMetric.READ_FAILED_RECORDS, false),
+            new TaskMetric("addax_task_read_failed_bytes", "Dirty bytes on the reader side", CommunicationMetric.READ_FAILED_BYTES, false),
+            new TaskMetric("addax_task_write_received_records", "Records received by the writer", CommunicationMetric.WRITE_RECEIVED_RECORDS, false),
+            new TaskMetric("addax_task_write_received_bytes", "Bytes received by the writer", CommunicationMetric.WRITE_RECEIVED_BYTES, false),
+            new TaskMetric("addax_task_write_failed_records", "Dirty records on the writer side", CommunicationMetric.WRITE_FAILED_RECORDS, false),
+            new TaskMetric("addax_task_write_failed_bytes", "Dirty bytes on the writer side", CommunicationMetric.WRITE_FAILED_BYTES, false),
+            new TaskMetric("addax_task_wait_reader_seconds", "Time the writer waited for the reader because the channel was empty", CommunicationMetric.WAIT_READER_TIME, true),
+            new TaskMetric("addax_task_wait_writer_seconds", "Time the reader waited for the writer because the channel was full", CommunicationMetric.WAIT_WRITER_TIME, true),
+            new TaskMetric("addax_task_transformer_seconds", "Time used by transformers", CommunicationMetric.TRANSFORMER_USED_TIME, true),
+            new TaskMetric("addax_task_transformer_succeed_records", "Records transformed successfully", CommunicationMetric.TRANSFORMER_SUCCEED_RECORDS, false),
+            new TaskMetric("addax_task_transformer_failed_records", "Records failed in transformers", CommunicationMetric.TRANSFORMER_FAILED_RECORDS, false),
+            new TaskMetric("addax_task_transformer_filter_records", "Records filtered by transformers", CommunicationMetric.TRANSFORMER_FILTER_RECORDS, false),
+    };
+
+    private final long jobId;
+    private final TaskMetricsRegistry registry;
+    private final HttpServer server;
+
+    public MetricsServer(long jobId, String host, int port)
+            throws IOException
+    {
+        this.jobId = jobId;
+        this.registry = TaskMetricsRegistry.getInstance();
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.server.createContext("/metrics", this::handle);
+        this.server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    public void start()
+    {
+        server.start();
+        LOG.info("The metrics endpoint is listening on http://{}:{}/metrics",
+                server.getAddress().getHostString(), server.getAddress().getPort());
+    }
+
+    public void stop()
+    {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange)
+            throws IOException
+    {
+        byte[] body;
+        int status = 200;
+        try {
+            body = render().getBytes(StandardCharsets.UTF_8);
+        }
+        catch (RuntimeException e) {
+            LOG.warn("Failed to render metrics: {}", e.getMessage());
+            body = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            status = 500;
+        }
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    String render()
+    {
+        StringBuilder sb = new StringBuilder(4096);
+        Collection<TaskMetricsRegistry.TaskEntry> tasks = registry.getTasks().values();
+
+        for (TaskMetric metric : TASK_METRICS) {
+            family(sb, metric.name, "counter", metric.help);
+            for (TaskMetricsRegistry.TaskEntry task : tasks) {
+                long value = task.getCommunication().getLongCounter(metric.metric);
+                sb.append(metric.name).append("_total");
+                taskLabels(sb, task);
+                sb.append(' ').append(metric.nanos ? value / NANOS_PER_SECOND : value).append('\n');
+            }
+        }
+
+        family(sb, "addax_task_throttle_seconds", "counter", "Time the reader slept because of the channel speed limit");
+        for (TaskMetricsRegistry.TaskEntry task : tasks) {
+            sb.append("addax_task_throttle_seconds_total");
+            taskLabels(sb, task);
+            sb.append(' ').append(task.getChannel().getThrottleTime() / NANOS_PER_SECOND).append('\n');
+        }
+
+        family(sb, "addax_task_finished", "gauge", "Whether the task has finished, 1 for finished");
+        for (TaskMetricsRegistry.TaskEntry task : tasks) {
+            sample(sb, "addax_task_finished", task, task.getCommunication().isFinished() ? 1 : 0);
+        }
+
+        family(sb, "addax_channel_queue_records", "gauge", "Records buffered in the channel between reader and writer");
+        for (TaskMetricsRegistry.TaskEntry task : tasks) {
+            sample(sb, "addax_channel_queue_records", task, task.getChannel().size());
+        }
+        family(sb, "addax_channel_queue_capacity_records", "gauge", "Record capacity of the channel");
+        for (TaskMetricsRegistry.TaskEntry task : tasks) {
+            sample(sb, "addax_channel_queue_capacity_records", task, task.getChannel().getCapacity());
+        }
+        family(sb, "addax_channel_queue_bytes", "gauge", "Bytes buffered in the channel, -1 if the channel does not track it");
+        for (TaskMetricsRegistry.TaskEntry task : tasks) {
+            sample(sb, "addax_channel_queue_bytes", task, task.getChannel().getMemoryBytes());
+        }
+        family(sb, "addax_channel_queue_capacity_bytes", "gauge", "Byte capacity of the channel");
+        for (TaskMetricsRegistry.TaskEntry task : tasks) {
+            sample(sb, "addax_channel_queue_capacity_bytes", task, task.getChannel().getByteCapacity());
+        }
+
+        renderHistograms(sb);
+        renderJvm(sb);
+        sb.append("# EOF\n");
+        return sb.toString();
+    }
+
+    private void renderHistograms(StringBuilder sb)
+    {
+        Map<String, LatencyHistogram> histograms = LatencyHistogram.getAll();
+        if (histograms.isEmpty()) {
+            return;
+        }
+        String name = "addax_batch_latency_seconds";
+        family(sb, name, "histogram", "Latency of batch operations recorded by plugins, such as writer flushes");
+        for (LatencyHistogram histogram : histograms.values()) {
+            String labels = "job=\"" + jobId + "\",name=\"" + escape(histogram.getName()) + "\"";
+            long[] counts = histogram.getCumulativeCounts();
+            for (int i = 0; i < counts.length; i++) {
+                String le = i < LatencyHistogram.BUCKETS.length ? String.valueOf(LatencyHistogram.BUCKETS[i] / 1000.0d) : "+Inf";
+                sb.append(name).append("_bucket{").append(labels).append(",le=\"").append(le).append("\"} ").append(counts[i]).append('\n');
+            }
+            // count 必须与 +Inf bucket 一致
+            sb.append(name).append("_count{").append(labels).append("} ").append(counts[counts.length - 1]).append('\n');
+            sb.append(name).append("_sum{").append(labels).append("} ").append(histogram.getSumSeconds()).append('\n');
+        }
+    }
+
+    private void renderJvm(StringBuilder sb)
+    {
+        String jobLabel = "{job=\"" + jobId + "\"}";
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        family(sb, "addax_jvm_heap_used_bytes", "gauge", "Used heap memory");
+        sb.append("addax_jvm_heap_used_bytes").append(jobLabel).append(' ').append(heap.getUsed()).append('\n');
+        family(sb, "addax_jvm_heap_max_bytes", "gauge", "Max heap memory");
+        sb.append("addax_jvm_heap_max_bytes").append(jobLabel).append(' ').append(heap.getMax()).append('\n');
+        family(sb, "addax_jvm_threads", "gauge", "Live threads");
+        sb.append("addax_jvm_threads").append(jobLabel).append(' ').append(ManagementFactory.getThreadMXBean().getThreadCount()).append('\n');
+
+        family(sb, "addax_jvm_gc_collections", "counter", "GC collections by collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sb.append("addax_jvm_gc_collections_total{job=\"").append(jobId).append("\",gc=\"").append(escape(gc.getName())).append("\"} ")
+                    .append(Math.max(gc.getCollectionCount(), 0)).append('\n');
+        }
+        family(sb, "addax_jvm_gc_seconds", "counter", "GC time by collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sb.append("addax_jvm_gc_seconds_total{job=\"").append(jobId).append("\",gc=\"").append(escape(gc.getName())).append("\"} ")
+                    .append(Math.max(gc.getCollectionTime(), 0) / 1000.0d).append('\n');
+        }
+
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (VMInfo.isSunOsMBean(os)) {
+            family(sb, "addax_process_cpu_seconds", "counter", "CPU time used by the process");
+            sb.append("addax_process_cpu_seconds_total").append(jobLabel).append(' ')
+                    .append(VMInfo.getLongFromOperatingSystem(os, "getProcessCpuTime") / NANOS_PER_SECOND).append('\n');
+        }
+    }
+
+    private static void family(StringBuilder sb, String name, String type, String help)
+    {
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private void sample(StringBuilder sb, String name, TaskMetricsRegistry.TaskEntry task, long value)
+    {
+        sb.append(name);
+        taskLabels(sb, task);
+        sb.append(' ').append(value).append('\n');
+    }
+
+    private void taskLabels(StringBuilder sb, TaskMetricsRegistry.TaskEntry task)
+    {
+        sb.append("{job=\"").append(jobId)
+                .append("\",task_group=\"").append(task.getTaskGroupId())
+                .append("\",task=\"").append(task.getTaskId())
+                .append("\"}");
+    }
+
+    private static String escape(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class TaskMetric
+    {
+        final String name;
+        final String help;
+        final CommunicationMetric metric;
+        // 值的单位为纳秒, 输出时转换为秒
+        final boolean nanos;
+
+        TaskMetric(String name, String help, CommunicationMetric metric, boolean nanos)
+        {
+            this.name = name;
+            this.help = help;
+            this.metric = metric;
+            this.nanos = nanos;
+        }
+    }
+}
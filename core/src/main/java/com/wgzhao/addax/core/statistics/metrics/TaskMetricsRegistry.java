@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.statistics.metrics;
+
+import com.wgzhao.addax.common.util.JobScope;
+import com.wgzhao.addax.core.statistics.communication.Communication;
+import com.wgzhao.addax.core.transport.channel.Channel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 记录当前进程中每个 task 的 communication 和 channel, 供 metrics 接口读取实时数据.
+ * task 重试时后注册的会覆盖之前的, task 结束后仍保留, 以便输出最终值. 守护进程模式下每个作业各有一份
+ */
+public class TaskMetricsRegistry
+{
+    private final Map<Integer, TaskEntry> tasks = new ConcurrentSkipListMap<>();
+
+    private TaskMetricsRegistry()
+    {
+    }
+
+    public static TaskMetricsRegistry getInstance()
+    {
+        return JobScope.current().get(TaskMetricsRegistry.class, TaskMetricsRegistry::new);
+    }
+
+    public void registerTask(int taskGroupId, int taskId, Communication communication, Channel channel)
+    {
+        tasks.put(taskId, new TaskEntry(taskGroupId, taskId, communication, channel));
+    }
+
+    public Map<Integer, TaskEntry> getTasks()
+    {
+        return tasks;
+    }
+
+    public void clear()
+    {
+        tasks.clear();
+    }
+
+    public static class TaskEntry
+    {
+        private final int taskGroupId;
+        private final int taskId;
+        private final Communication communication;
+        private final Channel channel;
+        private final long startNanos;
+
+        private TaskEntry(int taskGroupId, int taskId, Communication communication, Channel channel)
+        {
+            this.startNanos = System.nanoTime();
+            this.taskGroupId = taskGroupId;
+            this.taskId = taskId;
+            this.communication = communication;
+            this.channel = channel;
+        }
+
+        public int getTaskGroupId()
+        {
+            return taskGroupId;
+        }
+
+        public int getTaskId()
+        {
+            return taskId;
+        }
+
+        public Communication getCommunication()
+        {
+            return communication;
+        }
+
+        public Channel getChannel()
+        {
+            return channel;
+        }
+
+        public long getStartNanos()
+        {
+            return startNanos;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.statistics.plugin.task;
+
+import com.wgzhao.addax.common.constant.PluginType;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.core.statistics.communication.Communication;
+import com.wgzhao.addax.core.statistics.plugin.task.util.DirtyRecordSpiller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 将脏数据写入本地文件而不是日志, 只在第一次出现脏数据时打印异常堆栈.
+ * 脏数据的统计与 {@link StdoutPluginCollector} 一致, 仍然受 errorLimit 的限制
+ */
+public class FilePluginCollector
+        extends AbstractTaskPluginCollector
+{
+    private static final Logger LOG = LoggerFactory.getLogger(FilePluginCollector.class);
+
+    private final AtomicBoolean logged = new AtomicBoolean(false);
+    private final DirtyRecordSpiller spiller;
+
+    public FilePluginCollector(Configuration configuration, Communication communication, PluginType type)
+    {
+        super(configuration, communication, type);
+        this.spiller = DirtyRecordSpiller.getInstance(configuration);
+    }
+
+    @Override
+    public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage)
+    {
+        if (logged.compareAndSet(false, true)) {
+            LOG.error("Got the first dirty record of this task, all dirty records are saved to [{}]: {}",
+                    spiller.getLocation(), errorMessage, t);
+        }
+        spiller.append(super.getPluginType(), dirtyRecord, t, errorMessage);
+
+        super.collectDirtyRecord(dirtyRecord, t, errorMessage);
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.statistics.plugin.task.util;
+
+import com.wgzhao.addax.common.constant.PluginType;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.common.util.JobScope;
+import com.wgzhao.addax.common.util.DirtyRecordCodec;
+import com.wgzhao.addax.core.util.container.CoreConstant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 将脏数据异步追加到本地的 gzip 压缩的 JSON-lines 文件中, 单个文件超过 maxFileSize (未压缩的字节数) 后滚动到下一个文件.
+ * task 线程只负责入队, 序列化和压缩都在独立的线程中完成; 队列满时 task 线程会阻塞等待, 保证脏数据不丢失.
+ * 文件格式见 {@link DirtyRecordCodec}, 可以通过 dirtyreader 插件重放
+ */
+public final class DirtyRecordSpiller
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DirtyRecordSpiller.class);
+
+    private static final long DEFAULT_MAX_FILE_SIZE = 128L * 1024 * 1024;
+    private static final int QUEUE_SIZE = 8192;
+    private static final Entry POISON = new Entry(null, null, null, null);
+
+    private final File directory;
+    private final String filePrefix;
+    private final long maxFileSize;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final AtomicLong spilled = new AtomicLong(0);
+    private final Thread spillThread;
+
+    private Writer writer;
+    private long currentSize;
+    private int fileSeq = 0;
+    private volatile boolean failed = false;
+
+    private DirtyRecordSpiller(Configuration configuration)
+    {
+        String defaultPath = CoreConstant.HOME == null ? "dirty" : CoreConstant.HOME + File.separator + "dirty";
+        this.directory = new File(configuration.getString(CoreConstant.CORE_STATISTICS_COLLECTOR_PLUGIN_DIRTY_PATH, defaultPath));
+        this.maxFileSize = configuration.getLong(CoreConstant.CORE_STATISTICS_COLLECTOR_PLUGIN_DIRTY_MAX_FILE_SIZE, DEFAULT_MAX_FILE_SIZE);
+        this.filePrefix = String.format("dirty_%d_%s", configuration.getLong(CoreConstant.CORE_CONTAINER_JOB_ID, -1L),
+                new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()));
+        this.spillThread = new Thread(this::run, "dirty-spiller");
+        this.spillThread.setDaemon(true);
+        this.spillThread.start();
+        LOG.info("Dirty records will be spilled to the directory [{}] with the prefix [{}].", directory.getAbsolutePath(), filePrefix);
+    }
+
+    public static synchronized DirtyRecordSpiller getInstance(Configuration configuration)
+    {
+        return JobScope.current().get(DirtyRecordSpiller.class, () -> new DirtyRecordSpiller(configuration));
+    }
+
+    /**
+     * 关闭当前的实例, 等待队列中的脏数据全部落盘
+     *
+     * @return 已关闭的实例, 没有创建过实例时返回 null
+     */
+    public static synchronized DirtyRecordSpiller closeInstance()
+    {
+        DirtyRecordSpiller closed = JobScope.current().remove(DirtyRecordSpiller.class);
+        if (closed != null) {
+            closed.close();
+        }
+        return closed;
+    }
+
+    /**
+     * 当前实例的脏数据文件位置, 用于在错误信息中提示用户
+     *
+     * @return 文件位置, 没有启用落盘时返回 null
+     */
+    public static synchronized String currentLocation()
+    {
+        DirtyRecordSpiller instance = JobScope.current().get(DirtyRecordSpiller.class);
+        return instance == null ? null : instance.getLocation();
+    }
+
+    public void append(PluginType pluginType, Record record, Throwable t, String message)
+    {
+        Entry entry = new Entry(pluginType, record, t == null ? null : t.getMessage(), message);
+        try {
+            queue.put(entry);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while spilling a dirty record, it is lost.");
+        }
+    }
+
+    public long getSpilledCount()
+    {
+        return spilled.get();
+    }
+
+    public String getLocation()
+    {
+        return directory.getAbsolutePath() + File.separator + filePrefix + "_*.json.gz";
+    }
+
+    private void close()
+    {
+        try {
+            queue.put(POISON);
+            spillThread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run()
+    {
+        try {
+            while (true) {
+                Entry entry = queue.poll(1, TimeUnit.SECONDS);
+                if (entry == null) {
+                    // 空闲时刷盘, 使文件内容尽快可见
+                    flush();
+                    continue;
+                }
+                if (entry == POISON) {
+                    break;
+                }
+                write(entry);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            closeWriter();
+        }
+    }
+
+    private void write(Entry entry)
+    {
+        if (failed) {
+            return;
+        }
+        try {
+            String line = DirtyRecordCodec.encode(entry.pluginType.toString(), entry.time, entry.record, entry.message, entry.exception);
+            if (writer == null || currentSize >= maxFileSize) {
+                rotate();
+            }
+            writer.write(line);
+            writer.write('\n');
+            currentSize += line.length() + 1L;
+            spilled.incrementAndGet();
+        }
+        catch (IOException | RuntimeException e) {
+            // 落盘失败时不影响作业本身, 脏数据仍然会计入 errorLimit
+            LOG.error("Failed to spill dirty records to [{}], the following dirty records will not be saved.", directory, e);
+            failed = true;
+            closeWriter();
+        }
+    }
+
+    private void rotate()
+            throws IOException
+    {
+        closeWriter();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("can not create the directory " + directory);
+        }
+        File file = new File(directory, String.format("%s_%04d.json.gz", filePrefix, fileSeq++));
+        writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file), 64 * 1024), StandardCharsets.UTF_8));
+        currentSize = 0;
+    }
+
+    private void flush()
+    {
+        if (writer == null || failed) {
+            return;
+        }
+        try {
+            writer.flush();
+        }
+        catch (IOException e) {
+            LOG.warn("Failed to flush the dirty record file: {}", e.getMessage());
+        }
+    }
+
+    private void closeWriter()
+    {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        }
+        catch (IOException e) {
+            LOG.warn("Failed to close the dirty record file: {}", e.getMessage());
+        }
+        writer = null;
+    }
+
+    private static class Entry
+    {
+        final PluginType pluginType;
+        final Record record;
+        final String exception;
+        final String message;
+        final long time;
+
+        Entry(PluginType pluginType, Record record, String exception, String message)
+        {
+            this.pluginType = pluginType;
+            this.record = record;
+            this.exception = exception;
+            this.message = message;
+            this.time = System.currentTimeMillis();
+        }
+    }
+}
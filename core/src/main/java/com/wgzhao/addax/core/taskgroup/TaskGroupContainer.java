@@ -30,11 +30,14 @@ import com.wgzhao.addax.common.statistics.PerfTrace;
 import com.wgzhao.addax.common.statistics.VMInfo;
 import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.core.AbstractContainer;
+import com.wgzhao.addax.core.job.checkpoint.CheckpointStore;
+import com.wgzhao.addax.core.job.checkpoint.TaskCheckpoint;
 import com.wgzhao.addax.core.meta.State;
 import com.wgzhao.addax.core.statistics.communication.Communication;
 import com.wgzhao.addax.core.statistics.communication.CommunicationTool;
 import com.wgzhao.addax.core.statistics.communication.LocalTGCommunicationManager;
 import com.wgzhao.addax.core.statistics.container.communicator.taskgroup.StandaloneTGContainerCommunicator;
+import com.wgzhao.addax.core.statistics.metrics.TaskMetricsRegistry;
 import com.wgzhao.addax.core.statistics.plugin.task.AbstractTaskPluginCollector;
 import com.wgzhao.addax.core.statistics.plugin.task.StdoutPluginCollector;
 import com.wgzhao.addax.core.taskgroup.runner.AbstractRunner;
@@ -200,6 +203,10 @@ public class TaskGroupContainer
                                     usedTime * 1000L * 1000L);
                             taskStartTimeMap.remove(taskId);
                             taskConfigMap.remove(taskId);
+                            CheckpointStore checkpointStore = CheckpointStore.getInstance();
+                            if (checkpointStore != null) {
+                                checkpointStore.taskSucceeded(taskId);
+                            }
                         }
                     }
                 }
@@ -370,8 +377,7 @@ public class TaskGroupContainer
     {
         try {
 
-            // 移除根据JOB ID做的一些标记 防止内存溢出
-            LoadUtil.getConfigurationSet().remove(this.jobId);
+            // 移除根据JOB ID做的一些标记 防止内存溢出, 插件配置在作业结束时由 Engine 移除
             Iterator<Map.Entry<Integer, Communication>> it = LocalTGCommunicationManager.getTaskGroupCommunicationMap().entrySet().iterator();
             while (it.hasNext()) {
                 Map.Entry<Integer, Communication> entry = it.next();
@@ -417,6 +423,9 @@ public class TaskGroupContainer
          */
         private final Communication taskCommunication;
 
+        // 断点续传的位置跟踪, 没有启用断点时为 null
+        private final TaskCheckpoint checkpoint;
+
         public TaskExecutor(Configuration taskConf, int attemptCount)
         {
             // 获取该taskExecutor的配置
@@ -440,6 +449,10 @@ public class TaskGroupContainer
             this.channel = ClassUtil.instantiate(channelClazz,
                     Channel.class, configuration);
             this.channel.setCommunication(this.taskCommunication);
+            TaskMetricsRegistry.getInstance().registerTask(taskGroupId, this.taskId, this.taskCommunication, this.channel);
+
+            CheckpointStore checkpointStore = CheckpointStore.getInstance();
+            this.checkpoint = checkpointStore == null ? null : checkpointStore.newTaskCheckpoint(this.taskId);
 
             /*
              * 获取transformer的参数
@@ -503,10 +516,15 @@ public class TaskGroupContainer
 
                     RecordSender recordSender;
                     if (transformerInfoExecs != null && !transformerInfoExecs.isEmpty()) {
-                        recordSender = new BufferedRecordTransformerExchanger(taskGroupId, this.taskId, this.channel, this.taskCommunication, pluginCollector, transformerInfoExecs);
+                        BufferedRecordTransformerExchanger exchanger = new BufferedRecordTransformerExchanger(taskGroupId, this.taskId,
+                                this.channel, this.taskCommunication, pluginCollector, transformerInfoExecs);
+                        exchanger.setCheckpoint(this.checkpoint);
+                        recordSender = exchanger;
                     }
                     else {
-                        recordSender = new BufferedRecordExchanger(this.channel, pluginCollector);
+                        BufferedRecordExchanger exchanger = new BufferedRecordExchanger(this.channel, pluginCollector);
+                        exchanger.setCheckpoint(this.checkpoint);
+                        recordSender = exchanger;
                     }
 
                     ((ReaderRunner) newRunner).setRecordSender(recordSender);
@@ -521,7 +539,9 @@ public class TaskGroupContainer
                     newRunner.setJobConf(this.taskConfig.getConfiguration(CoreConstant.JOB_WRITER_PARAMETER));
 
                     pluginCollector = ClassUtil.instantiate(taskCollectorClass, AbstractTaskPluginCollector.class, configuration, this.taskCommunication, PluginType.WRITER);
-                    ((WriterRunner) newRunner).setRecordReceiver(new BufferedRecordExchanger(this.channel, pluginCollector));
+                    BufferedRecordExchanger recordReceiver = new BufferedRecordExchanger(this.channel, pluginCollector);
+                    recordReceiver.setCheckpoint(this.checkpoint);
+                    ((WriterRunner) newRunner).setRecordReceiver(recordReceiver);
                     /*
                      * 设置taskPlugin的collector，用来处理脏数据和job/task通信
                      */
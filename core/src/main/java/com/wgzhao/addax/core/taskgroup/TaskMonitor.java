@@ -21,6 +21,7 @@ package com.wgzhao.addax.core.taskgroup;
 
 import com.wgzhao.addax.common.exception.CommonErrorCode;
 import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.util.JobScope;
 import com.wgzhao.addax.core.meta.State;
 import com.wgzhao.addax.core.statistics.communication.Communication;
 import com.wgzhao.addax.core.statistics.communication.CommunicationTool;
@@ -31,13 +32,12 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by liqiang on 15/7/23.
+ * 按 taskId 记录 task 的进度, 用于判断 task 是否卡住. 守护进程模式下不同作业的 taskId 会重复, 因此每个作业各有一份
  */
 public class TaskMonitor
 {
 
     private static final Logger LOG = LoggerFactory.getLogger(TaskMonitor.class);
-    private static final TaskMonitor instance = new TaskMonitor();
-
     private final ConcurrentHashMap<Integer, TaskCommunication> tasks = new ConcurrentHashMap<>();
 
     private TaskMonitor()
@@ -46,7 +46,7 @@ public class TaskMonitor
 
     public static TaskMonitor getInstance()
     {
-        return instance;
+        return JobScope.current().get(TaskMonitor.class, TaskMonitor::new);
     }
 
     public void registerTask(Integer taskId, Communication communication)
@@ -24,7 +24,7 @@ import com.wgzhao.addax.common.plugin.TaskPluginCollector;
 import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.core.meta.State;
 import com.wgzhao.addax.core.statistics.communication.Communication;
-import com.wgzhao.addax.core.statistics.communication.CommunicationTool;
+import com.wgzhao.addax.core.statistics.communication.CommunicationMetric;
 import org.apache.commons.lang3.Validate;
 
 public abstract class AbstractRunner
@@ -87,8 +87,8 @@ public abstract class AbstractRunner
         this.runnerCommunication.setState(state);
         if (state == State.SUCCEEDED) {
             // 对 stage + 1
-            this.runnerCommunication.setLongCounter(CommunicationTool.STAGE,
-                    this.runnerCommunication.getLongCounter(CommunicationTool.STAGE) + 1);
+            this.runnerCommunication.setLongCounter(CommunicationMetric.STAGE,
+                    this.runnerCommunication.getLongCounter(CommunicationMetric.STAGE) + 1);
         }
     }
 
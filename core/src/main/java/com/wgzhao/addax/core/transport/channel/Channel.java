@@ -22,6 +22,7 @@ package com.wgzhao.addax.core.transport.channel;
 import com.wgzhao.addax.common.element.Record;
 import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.core.statistics.communication.Communication;
+import com.wgzhao.addax.core.statistics.communication.CommunicationMetric;
 import com.wgzhao.addax.core.statistics.communication.CommunicationTool;
 import com.wgzhao.addax.core.transport.record.TerminateRecord;
 import com.wgzhao.addax.core.util.container.CoreConstant;
@@ -47,6 +48,8 @@ public abstract class Channel
     protected int byteCapacity;
     protected long byteSpeed; // bps: bytes/s
     protected long recordSpeed; // tps: records/s
+    // 因限速而休眠的累计时间, 单位纳秒
+    protected volatile long throttleTime = 0L;
     protected long flowControlInterval;
     protected volatile boolean isClosed = false;
     protected Configuration configuration;
@@ -98,6 +101,26 @@ public abstract class Channel
         return capacity;
     }
 
+    public long getThrottleTime()
+    {
+        return throttleTime;
+    }
+
+    public int getByteCapacity()
+    {
+        return byteCapacity;
+    }
+
+    /**
+     * 当前缓存在 channel 中的记录所占内存字节数, 不支持统计的实现返回 -1
+     *
+     * @return 字节数
+     */
+    public long getMemoryBytes()
+    {
+        return -1;
+    }
+
     public long getByteSpeed()
     {
         return byteSpeed;
@@ -174,12 +197,12 @@ public abstract class Channel
 
     private void statPush(long recordSize, long byteSize)
     {
-        currentCommunication.increaseCounter(CommunicationTool.READ_SUCCEED_RECORDS, recordSize);
-        currentCommunication.increaseCounter(CommunicationTool.READ_SUCCEED_BYTES, byteSize);
+        currentCommunication.increaseCounter(CommunicationMetric.READ_SUCCEED_RECORDS, recordSize);
+        currentCommunication.increaseCounter(CommunicationMetric.READ_SUCCEED_BYTES, byteSize);
         //在读的时候进行统计waitCounter即可，因为写（pull）的时候可能正在阻塞，但读的时候已经能读到这个阻塞的counter数
 
-        currentCommunication.setLongCounter(CommunicationTool.WAIT_READER_TIME, waitReaderTime);
-        currentCommunication.setLongCounter(CommunicationTool.WAIT_WRITER_TIME, waitWriterTime);
+        currentCommunication.setLongCounter(CommunicationMetric.WAIT_READER_TIME, waitReaderTime);
+        currentCommunication.setLongCounter(CommunicationMetric.WAIT_WRITER_TIME, waitWriterTime);
 
         boolean isChannelByteSpeedLimit = (this.byteSpeed > 0);
         boolean isChannelRecordSpeedLimit = (this.recordSpeed > 0);
@@ -214,6 +237,7 @@ public abstract class Channel
             // 休眠时间取较大值
             long sleepTime = Math.max(byteLimitSleepTime, recordLimitSleepTime);
             if (sleepTime > 0) {
+                throttleTime += sleepTime * 1_000_000L;
                 try {
                     Thread.sleep(sleepTime);
                 }
@@ -222,21 +246,21 @@ public abstract class Channel
                 }
             }
 
-            lastCommunication.setLongCounter(CommunicationTool.READ_SUCCEED_BYTES,
-                    currentCommunication.getLongCounter(CommunicationTool.READ_SUCCEED_BYTES));
-            lastCommunication.setLongCounter(CommunicationTool.READ_FAILED_BYTES,
-                    currentCommunication.getLongCounter(CommunicationTool.READ_FAILED_BYTES));
-            lastCommunication.setLongCounter(CommunicationTool.READ_SUCCEED_RECORDS,
-                    currentCommunication.getLongCounter(CommunicationTool.READ_SUCCEED_RECORDS));
-            lastCommunication.setLongCounter(CommunicationTool.READ_FAILED_RECORDS,
-                    currentCommunication.getLongCounter(CommunicationTool.READ_FAILED_RECORDS));
+            lastCommunication.setLongCounter(CommunicationMetric.READ_SUCCEED_BYTES,
+                    currentCommunication.getLongCounter(CommunicationMetric.READ_SUCCEED_BYTES));
+            lastCommunication.setLongCounter(CommunicationMetric.READ_FAILED_BYTES,
+                    currentCommunication.getLongCounter(CommunicationMetric.READ_FAILED_BYTES));
+            lastCommunication.setLongCounter(CommunicationMetric.READ_SUCCEED_RECORDS,
+                    currentCommunication.getLongCounter(CommunicationMetric.READ_SUCCEED_RECORDS));
+            lastCommunication.setLongCounter(CommunicationMetric.READ_FAILED_RECORDS,
+                    currentCommunication.getLongCounter(CommunicationMetric.READ_FAILED_RECORDS));
             lastCommunication.setTimestamp(nowTimestamp);
         }
     }
 
     private void statPull(long recordSize, long byteSize)
     {
-        currentCommunication.increaseCounter(CommunicationTool.WRITE_RECEIVED_RECORDS, recordSize);
-        currentCommunication.increaseCounter(CommunicationTool.WRITE_RECEIVED_BYTES, byteSize);
+        currentCommunication.increaseCounter(CommunicationMetric.WRITE_RECEIVED_RECORDS, recordSize);
+        currentCommunication.increaseCounter(CommunicationMetric.WRITE_RECEIVED_BYTES, byteSize);
     }
 }
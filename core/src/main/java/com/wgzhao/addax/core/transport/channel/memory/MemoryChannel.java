@@ -167,6 +167,12 @@ public class MemoryChannel
         return bytes;
     }
 
+    @Override
+    public long getMemoryBytes()
+    {
+        return memoryBytes.get();
+    }
+
     @Override
     public int size()
     {
@@ -26,6 +26,7 @@ import com.wgzhao.addax.common.plugin.RecordReceiver;
 import com.wgzhao.addax.common.plugin.RecordSender;
 import com.wgzhao.addax.common.plugin.TaskPluginCollector;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.core.job.checkpoint.TaskCheckpoint;
 import com.wgzhao.addax.core.transport.channel.Channel;
 import com.wgzhao.addax.core.transport.record.TerminateRecord;
 import com.wgzhao.addax.core.util.FrameworkErrorCode;
@@ -49,6 +50,10 @@ public class BufferedRecordExchanger
     private int bufferSize;
     private int bufferIndex = 0;
     private volatile boolean shutdown = false;
+    private TaskCheckpoint checkpoint;
+    // 读端交给框架的记录数以及写端取走的记录数, 用于断点续传
+    private long sentRecords = 0;
+    private long receivedRecords = 0;
 
     @SuppressWarnings("unchecked")
     public BufferedRecordExchanger(Channel channel, TaskPluginCollector pluginCollector)
@@ -112,9 +117,31 @@ public class BufferedRecordExchanger
 
         this.buffer.add(record);
         this.bufferIndex++;
+        this.sentRecords++;
         memoryBytes.addAndGet(record.getMemorySize());
     }
 
+    public void setCheckpoint(TaskCheckpoint checkpoint)
+    {
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public void markPosition(String position)
+    {
+        if (this.checkpoint != null) {
+            this.checkpoint.mark(this.sentRecords, position);
+        }
+    }
+
+    @Override
+    public void commit()
+    {
+        if (this.checkpoint != null) {
+            this.checkpoint.commit(this.receivedRecords);
+        }
+    }
+
     @Override
     public void flush()
     {
@@ -152,6 +179,9 @@ public class BufferedRecordExchanger
         if (record instanceof TerminateRecord) {
             record = null;
         }
+        else {
+            this.receivedRecords++;
+        }
         return record;
     }
 
@@ -23,7 +23,7 @@ import com.wgzhao.addax.common.element.Record;
 import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.TaskPluginCollector;
 import com.wgzhao.addax.core.statistics.communication.Communication;
-import com.wgzhao.addax.core.statistics.communication.CommunicationTool;
+import com.wgzhao.addax.core.statistics.communication.CommunicationMetric;
 import com.wgzhao.addax.core.transport.transformer.TransformerErrorCode;
 import com.wgzhao.addax.core.transport.transformer.TransformerExecution;
 import com.wgzhao.addax.core.util.container.ClassLoaderSwapper;
@@ -155,9 +155,9 @@ public abstract class TransformerExchanger
 //                currentCommunication.setLongCounter(CommunicationTool.TRANSFORMER_NAME_PREFIX + transformerInfoExec.getTransformerName(), transformerInfoExec.getExaustedTime());
 //            }
 //        }
-        currentCommunication.setLongCounter(CommunicationTool.TRANSFORMER_SUCCEED_RECORDS, totalSuccessRecords);
-        currentCommunication.setLongCounter(CommunicationTool.TRANSFORMER_FAILED_RECORDS, totalFailedRecords);
-        currentCommunication.setLongCounter(CommunicationTool.TRANSFORMER_FILTER_RECORDS, totalFilterRecords);
-        currentCommunication.setLongCounter(CommunicationTool.TRANSFORMER_USED_TIME, totalExhaustedTime);
+        currentCommunication.setLongCounter(CommunicationMetric.TRANSFORMER_SUCCEED_RECORDS, totalSuccessRecords);
+        currentCommunication.setLongCounter(CommunicationMetric.TRANSFORMER_FAILED_RECORDS, totalFailedRecords);
+        currentCommunication.setLongCounter(CommunicationMetric.TRANSFORMER_FILTER_RECORDS, totalFilterRecords);
+        currentCommunication.setLongCounter(CommunicationMetric.TRANSFORMER_USED_TIME, totalExhaustedTime);
     }
 }
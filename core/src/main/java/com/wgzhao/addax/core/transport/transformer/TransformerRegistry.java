@@ -31,9 +31,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * no comments.
@@ -43,7 +43,8 @@ public class TransformerRegistry
 {
 
     private static final Logger LOG = LoggerFactory.getLogger(TransformerRegistry.class);
-    private static final Map<String, TransformerInfo> registeredTransformer = new HashMap<>();
+    // 守护进程模式下多个作业会并发注册
+    private static final Map<String, TransformerInfo> registeredTransformer = new ConcurrentHashMap<>();
 
     public static void loadTransformerFromLocalStorage()
     {
@@ -49,8 +49,14 @@ public final class ConfigParser
      */
     public static Configuration parse(String jobPath)
     {
-        Configuration configuration = ConfigParser.parseJobConfig(jobPath);
+        return parse(ConfigParser.parseJobConfig(jobPath));
+    }
 
+    /*
+     * 作业内容已经读取到内存中, 例如守护进程模式下通过 HTTP 提交的作业
+     */
+    public static Configuration parse(Configuration configuration)
+    {
         // Upgrade the new job format to the old one
         configuration = upgradeJobConfig(configuration);
         //validate job json
@@ -23,6 +23,7 @@ import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.core.statistics.communication.Communication;
 import com.wgzhao.addax.core.statistics.communication.CommunicationTool;
+import com.wgzhao.addax.core.statistics.plugin.task.util.DirtyRecordSpiller;
 import com.wgzhao.addax.core.util.container.CoreConstant;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
@@ -64,6 +65,12 @@ public final class ErrorRecordChecker
         }
     }
 
+    private static String spillHint()
+    {
+        String location = DirtyRecordSpiller.currentLocation();
+        return location == null ? "" : String.format(" 脏数据已保存到[%s]，修复后可以使用 dirtyreader 重放.", location);
+    }
+
     public void checkRecordLimit(Communication communication)
     {
         if (recordLimit == null) {
@@ -76,7 +83,7 @@ public final class ErrorRecordChecker
             throw AddaxException.asAddaxException(
                     FrameworkErrorCode.PLUGIN_DIRTY_DATA_LIMIT_EXCEED,
                     String.format("脏数据条数检查不通过，限制是[%d]条，但实际上捕获了[%d]条.",
-                            recordLimit, errorNumber));
+                            recordLimit, errorNumber) + spillHint());
         }
     }
 
@@ -94,7 +101,7 @@ public final class ErrorRecordChecker
             throw AddaxException.asAddaxException(
                     FrameworkErrorCode.PLUGIN_DIRTY_DATA_LIMIT_EXCEED,
                     String.format("脏数据百分比检查不通过，限制是[%f]，但实际上捕获到[%f].",
-                            percentageLimit, ((double) error / (double) total)));
+                            percentageLimit, ((double) error / (double) total)) + spillHint());
         }
     }
 }
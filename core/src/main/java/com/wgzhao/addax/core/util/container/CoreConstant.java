@@ -36,6 +36,8 @@ public class CoreConstant
 
     public static final String CORE_CONTAINER_JOB_ID = "core.container.job.id";
 
+    public static final String CORE_CONTAINER_JOB_RESUME = "core.container.job.resume";
+
     public static final String CORE_CONTAINER_JOB_REPORT_INTERVAL = "core.container.job.reportInterval";
 
     public static final String CORE_CONTAINER_JOB_SLEEP_INTERVAL = "core.container.job.sleepInterval";
@@ -56,6 +58,30 @@ public class CoreConstant
 
     public static final String CORE_SERVER_TIMEOUT_SEC = "core.server.timeout";
 
+    public static final String CORE_METRICS_HOST = "core.metrics.host";
+
+    public static final String CORE_METRICS_PORT = "core.metrics.port";
+
+    public static final String CORE_ANALYZER_ENABLE = "core.analyzer.enable";
+
+    public static final String CORE_ANALYZER_SAMPLE_INTERVAL = "core.analyzer.sampleInterval";
+
+    public static final String CORE_CHECKPOINT_ENABLE = "core.checkpoint.enable";
+
+    public static final String CORE_CHECKPOINT_PATH = "core.checkpoint.path";
+
+    public static final String CORE_CHECKPOINT_INTERVAL = "core.checkpoint.interval";
+
+    public static final String CORE_DAEMON_HOST = "core.daemon.host";
+
+    public static final String CORE_DAEMON_PORT = "core.daemon.port";
+
+    public static final String CORE_DAEMON_CHANNEL = "core.daemon.channel";
+
+    public static final String CORE_DAEMON_MAX_JOBS = "core.daemon.maxJobs";
+
+    public static final String CORE_DAEMON_HISTORY = "core.daemon.history";
+
     public static final String CORE_TRANSPORT_CHANNEL_CLASS = "core.transport.channel.class";
 
     public static final String CORE_TRANSPORT_CHANNEL_CAPACITY = "core.transport.channel.capacity";
@@ -76,6 +102,10 @@ public class CoreConstant
 
     public static final String CORE_STATISTICS_COLLECTOR_PLUGIN_MAX_DIRTY_NUMBER = "core.statistics.collector.plugin.maxDirtyNumber";
 
+    public static final String CORE_STATISTICS_COLLECTOR_PLUGIN_DIRTY_PATH = "core.statistics.collector.plugin.dirty.path";
+
+    public static final String CORE_STATISTICS_COLLECTOR_PLUGIN_DIRTY_MAX_FILE_SIZE = "core.statistics.collector.plugin.dirty.maxFileSize";
+
     public static final String JOB_CONTENT_READER_NAME = "job.content.reader.name";
 
     public static final String JOB_CONTENT_READER = "job.content.reader";
@@ -76,6 +76,18 @@ public class LoadUtil
         configurationSet.put(jobId, pluginConfigs);
     }
 
+    /*
+     * 作业结束后移除其插件配置, 已经创建的 jarLoader 仍然保留, 守护进程模式下后续的作业可以直接复用
+     */
+    public static synchronized void unbind(Configuration pluginConfigs)
+    {
+        Long jobId = pluginConfigs.getLong(CoreConstant.CORE_CONTAINER_JOB_ID);
+        if (jobId == -1) {
+            jobId = (long) 0;
+        }
+        configurationSet.remove(jobId);
+    }
+
     private static String generatePluginKey(PluginType pluginType, String pluginName)
     {
         return String.format(pluginTypeNameFormat, pluginType.toString(), pluginName);
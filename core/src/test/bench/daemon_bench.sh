@@ -0,0 +1,47 @@
+#!/bin/bash
+#
+# Compare running many small jobs in the daemon with starting one JVM per job.
+#
+# usage: daemon_bench.sh daemon|jvm [jobs] [parallel] [job file]
+#
+#   daemon  submit the jobs to a running daemon (bin/addax.sh -D) at $DAEMON_URL
+#   jvm     run every job with $ADDAX_CMD, one JVM per job
+#
+# environment:
+#   ADDAX_HOME  the installed addax, default is the current directory
+#   ADDAX_CMD   the command to run one job, default is $ADDAX_HOME/bin/addax.sh
+#   DAEMON_URL  default is http://127.0.0.1:8764
+#
+# The elapsed time and the number of failed jobs are printed at the end.
+
+MODE=$1
+N=${2:-1000}
+P=${3:-8}
+JOB=${4:-$(cd "$(dirname "$0")" && pwd)/small.json}
+ADDAX_HOME=${ADDAX_HOME:-$(pwd)}
+ADDAX_CMD=${ADDAX_CMD:-${ADDAX_HOME}/bin/addax.sh}
+DAEMON_URL=${DAEMON_URL:-http://127.0.0.1:8764}
+
+if [ "$MODE" != "daemon" ] && [ "$MODE" != "jvm" ]; then
+    sed -n '3,15p' "$0"
+    exit 1
+fi
+
+RESULT=$(mktemp)
+trap 'rm -f ${RESULT}' EXIT
+export JOB ADDAX_CMD DAEMON_URL
+
+start=$(date +%s.%N)
+if [ "$MODE" = "daemon" ]; then
+    # wait=true returns once the job has finished, the reply carries its final state
+    seq "$N" | xargs -P "$P" -I{} sh -c \
+        'curl -s -XPOST --data-binary @"$JOB" "$DAEMON_URL/jobs?wait=true" | grep -q "\"state\":\"SUCCEEDED\"" || echo FAIL' >> "$RESULT"
+else
+    seq "$N" | xargs -P "$P" -I{} sh -c '$ADDAX_CMD "$JOB" > /dev/null 2>&1 || echo FAIL' >> "$RESULT"
+fi
+end=$(date +%s.%N)
+
+failed=$(grep -c FAIL "$RESULT")
+elapsed=$(awk -v s="$start" -v e="$end" 'BEGIN { printf "%.1f", e - s }')
+echo "mode=$MODE jobs=$N parallel=$P elapsed=${elapsed}s failed=$failed"
+[ "$failed" -eq 0 ]
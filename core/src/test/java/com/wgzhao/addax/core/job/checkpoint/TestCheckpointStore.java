@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.job.checkpoint;
+
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.core.util.container.CoreConstant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestCheckpointStore
+{
+    private static final String JOB = "{\"job\":{\"content\":[{"
+            + "\"reader\":{\"name\":\"mysqlreader\",\"parameter\":{\"table\":[\"t\"]}},"
+            + "\"writer\":{\"name\":\"mysqlwriter\",\"parameter\":{\"table\":[\"t2\"],\"writeMode\":\"truncate\",\"preSql\":[\"delete from t2\"]}}"
+            + "}]}}";
+
+    private File directory;
+
+    @BeforeEach
+    public void setUp()
+            throws IOException
+    {
+        directory = Files.createTempDirectory("checkpoint").toFile();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        CheckpointStore.closeInstance(true);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /*
+     * on resume, preSql is skipped, truncate becomes append and the file writers generate new file names,
+     * the finished tasks must still be recognized
+     */
+    @Test
+    public void testResumeSkipsFinishedTasks()
+    {
+        Configuration jobConf = jobConfiguration();
+        CheckpointStore store = CheckpointStore.open(jobConf, false);
+        assertEquals(3, store.restore(tasks("truncate", true, "")).size());
+        store.taskSucceeded(0);
+        store.taskSucceeded(2);
+        CheckpointStore.closeInstance(false);
+
+        store = CheckpointStore.open(jobConfiguration(), true);
+        List<Configuration> remains = store.restore(tasks("append", false, ""));
+        assertEquals(1, remains.size());
+        assertEquals(1, (int) remains.get(0).getInt(CoreConstant.TASK_ID));
+    }
+
+    @Test
+    public void testChangedReaderSliceRunsAgain()
+    {
+        CheckpointStore store = CheckpointStore.open(jobConfiguration(), false);
+        store.restore(tasks("truncate", true, ""));
+        store.taskSucceeded(0);
+        store.taskSucceeded(1);
+        CheckpointStore.closeInstance(false);
+
+        store = CheckpointStore.open(jobConfiguration(), true);
+        // the split range of every task has moved
+        List<Configuration> remains = store.restore(tasks("append", false, " and id > 0"));
+        assertEquals(3, remains.size());
+    }
+
+    @Test
+    public void testSucceededJobRemovesCheckpoint()
+    {
+        CheckpointStore store = CheckpointStore.open(jobConfiguration(), false);
+        store.restore(tasks("truncate", true, ""));
+        store.taskSucceeded(0);
+        File file = new File(store.getLocation());
+        CheckpointStore.closeInstance(true);
+        assertEquals(false, file.exists());
+
+        store = CheckpointStore.open(jobConfiguration(), true);
+        assertEquals(3, store.restore(tasks("append", false, "")).size());
+    }
+
+    private Configuration jobConfiguration()
+    {
+        Configuration configuration = Configuration.from(JOB);
+        configuration.set(CoreConstant.CORE_CHECKPOINT_PATH, directory.getAbsolutePath());
+        return configuration;
+    }
+
+    private static List<Configuration> tasks(String writeMode, boolean withPreSql, String where)
+    {
+        List<Configuration> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Configuration task = Configuration.newDefault();
+            task.set(CoreConstant.TASK_ID, i);
+            task.set("reader.name", "mysqlreader");
+            task.set("reader.parameter.querySql", "select * from t where id % 3 = " + i + where);
+            task.set("writer.name", "mysqlwriter");
+            task.set("writer.parameter.table", "t2");
+            task.set("writer.parameter.writeMode", writeMode);
+            if (withPreSql) {
+                task.set("writer.parameter.preSql", "delete from t2");
+            }
+            // file writers give every task a random file name
+            task.set("writer.parameter.fileName", "t2__" + UUID.randomUUID());
+            tasks.add(task);
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.core.taskgroup;
+
+import com.wgzhao.addax.common.util.JobScope;
+import com.wgzhao.addax.core.statistics.communication.Communication;
+import com.wgzhao.addax.core.statistics.communication.CommunicationTool;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Like {@code TestJobScope} in common: two jobs run at the same time in one JVM with the same task ids,
+ * each one must only see and remove its own tasks, in the job thread and in the threads it starts
+ */
+public class TestTaskMonitor
+{
+    @Test
+    public void testConcurrentJobsWithSameTaskIds()
+            throws Exception
+    {
+        CyclicBarrier registered = new CyclicBarrier(2);
+        CyclicBarrier removed = new CyclicBarrier(2);
+        Map<Long, String> results = new ConcurrentHashMap<>();
+        Map<Long, Throwable> errors = new ConcurrentHashMap<>();
+
+        Thread job1 = startJob(1L, true, registered, removed, results, errors);
+        Thread job2 = startJob(2L, false, registered, removed, results, errors);
+        job1.join(TimeUnit.SECONDS.toMillis(30));
+        job2.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertEquals(0, errors.size(), "errors: " + errors);
+        // job 1 removed its task 0, job 2 still has its own one
+        assertEquals("null|101|101", results.get(1L));
+        assertEquals("200|201|201", results.get(2L));
+
+        // the test thread has not entered any job, nothing was registered in the global scope
+        assertNull(TaskMonitor.getInstance().getTaskCommunication(0));
+        assertNull(TaskMonitor.getInstance().getTaskCommunication(1));
+    }
+
+    private static Thread startJob(long jobId, boolean removeFirstTask, CyclicBarrier registered, CyclicBarrier removed,
+            Map<Long, String> results, Map<Long, Throwable> errors)
+    {
+        Thread thread = new Thread(() -> {
+            JobScope.enter(jobId);
+            try {
+                TaskMonitor monitor = TaskMonitor.getInstance();
+                monitor.registerTask(0, readRecords(jobId * 100));
+                monitor.registerTask(1, readRecords(jobId * 100 + 1));
+                registered.await(10, TimeUnit.SECONDS);
+                if (removeFirstTask) {
+                    monitor.removeTask(0);
+                }
+                removed.await(10, TimeUnit.SECONDS);
+
+                StringBuilder sb = new StringBuilder();
+                TaskMonitor.TaskCommunication first = monitor.getTaskCommunication(0);
+                sb.append(first == null ? "null" : String.valueOf(first.getLastAllReadRecords())).append('|');
+                sb.append(monitor.getTaskCommunication(1).getLastAllReadRecords()).append('|');
+                // a task group thread started by the job inherits the scope
+                StringBuilder child = new StringBuilder();
+                Thread taskGroup = new Thread(() ->
+                        child.append(TaskMonitor.getInstance().getTaskCommunication(1).getLastAllReadRecords()));
+                taskGroup.start();
+                taskGroup.join();
+                results.put(jobId, sb.append(child).toString());
+            }
+            catch (Throwable e) {
+                errors.put(jobId, e);
+            }
+            finally {
+                JobScope.exit();
+            }
+        }, "job-" + jobId);
+        thread.start();
+        return thread;
+    }
+
+    private static Communication readRecords(long records)
+    {
+        Communication communication = new Communication();
+        communication.setLongCounter(CommunicationTool.READ_SUCCEED_RECORDS, records);
+        return communication;
+    }
+}
@@ -39,10 +39,12 @@ import com.wgzhao.addax.common.statistics.PerfRecord;
 import com.wgzhao.addax.common.statistics.PerfTrace;
 import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.rdbms.reader.util.GetPrimaryKeyUtil;
+import com.wgzhao.addax.rdbms.reader.util.IncrementalUtil;
 import com.wgzhao.addax.rdbms.reader.util.OriginalConfPretreatmentUtil;
 import com.wgzhao.addax.rdbms.reader.util.PreCheckTask;
 import com.wgzhao.addax.rdbms.reader.util.ReaderSplitUtil;
 import com.wgzhao.addax.rdbms.reader.util.SingleTableSplitUtil;
+import com.wgzhao.addax.rdbms.reader.util.TableSizeSplitUtil;
 import com.wgzhao.addax.rdbms.util.DBUtil;
 import com.wgzhao.addax.rdbms.util.DBUtilErrorCode;
 import com.wgzhao.addax.rdbms.util.DataBaseType;
@@ -59,6 +61,7 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -72,25 +75,37 @@ public class CommonRdbmsReader
     {
         private static final Logger LOG = LoggerFactory.getLogger(Job.class);
 
+        private List<IncrementalUtil.Watermark> watermarks = Collections.emptyList();
+
         public Job(DataBaseType dataBaseType)
         {
             OriginalConfPretreatmentUtil.dataBaseType = dataBaseType;
             SingleTableSplitUtil.dataBaseType = dataBaseType;
             GetPrimaryKeyUtil.dataBaseType = dataBaseType;
+            IncrementalUtil.dataBaseType = dataBaseType;
+            TableSizeSplitUtil.dataBaseType = dataBaseType;
         }
 
         public Configuration init(Configuration originalConfig)
         {
 
             OriginalConfPretreatmentUtil.doPretreatment(originalConfig);
+            this.watermarks = IncrementalUtil.prepare(originalConfig);
+            if (originalConfig.getString(Key.SPLIT_PK) == null && IncrementalUtil.isSplittable(watermarks)) {
+                String incrementalColumn = originalConfig.getString(Key.INCREMENTAL_COLUMN).trim();
+                LOG.info("Does not configure splitPk, use the incremental column `{}` to split", incrementalColumn);
+                originalConfig.set(Key.SPLIT_PK, incrementalColumn);
+            }
             if (originalConfig.getString(Key.SPLIT_PK) == null && originalConfig.getBool(Key.AUTO_PK, false)) {
                 LOG.info("Does not configure splitPk, try to guess");
                 String splitPK = GetPrimaryKeyUtil.getPrimaryKey(originalConfig);
                 if (splitPK != null) {
                     LOG.info("Try to use `" + splitPK + "` as primary key to split");
                     originalConfig.set(Key.SPLIT_PK, splitPK);
+                    // 按表大小切分时由各表的行数决定份数, 无法按表大小切分时仍使用该默认值
                     if (originalConfig.getInt(Key.EACH_TABLE_SPLIT_SIZE, -1) == -1) {
                         originalConfig.set(Key.EACH_TABLE_SPLIT_SIZE, Constant.DEFAULT_EACH_TABLE_SPLIT_SIZE);
+                        originalConfig.set(Constant.DEFAULT_EACH_TABLE_SPLIT_SIZE_MARK, true);
                     }
                 }
             }
@@ -149,7 +164,8 @@ public class CommonRdbmsReader
 
         public void post(Configuration originalConfig)
         {
-            // do nothing
+            // 只有作业成功时才会调用 post, 此时才推进增量读取的水位
+            IncrementalUtil.save(watermarks);
         }
 
         public void destroy(Configuration originalConfig)
@@ -162,6 +178,8 @@ public class CommonRdbmsReader
     {
         private static final Logger LOG = LoggerFactory.getLogger(Task.class);
         private static final boolean IS_DEBUG = LOG.isDebugEnabled();
+        // 每读取多少条记录标记一次 splitPk 的位置
+        private static final int MARK_INTERVAL = 1000;
         protected final byte[] EMPTY_CHAR_ARRAY = new byte[0];
 
         private final DataBaseType dataBaseType;
@@ -204,9 +222,31 @@ public class CommonRdbmsReader
 
         public void startRead(Configuration readerSliceConfig, RecordSender recordSender,
                 TaskPluginCollector taskPluginCollector, int fetchSize)
+        {
+            List<Configuration> mergedSlices = readerSliceConfig.getListConfiguration(Key.MERGED_SLICES);
+            if (mergedSlices.isEmpty()) {
+                readSlice(readerSliceConfig, recordSender, taskPluginCollector, fetchSize);
+                return;
+            }
+            // 合并在一个任务中的多个小表, 依次读取
+            for (Configuration merged : mergedSlices) {
+                Configuration sliceConfig = readerSliceConfig.clone();
+                sliceConfig.remove(Key.MERGED_SLICES);
+                sliceConfig.set(Key.TABLE, merged.getString(Key.TABLE));
+                sliceConfig.set(Key.QUERY_SQL, merged.getString(Key.QUERY_SQL));
+                readSlice(sliceConfig, recordSender, taskPluginCollector, fetchSize);
+            }
+        }
+
+        private void readSlice(Configuration readerSliceConfig, RecordSender recordSender,
+                TaskPluginCollector taskPluginCollector, int fetchSize)
         {
             String querySql = readerSliceConfig.getString(Key.QUERY_SQL);
             String table = readerSliceConfig.getString(Key.TABLE);
+            String resumePk = getResumePk(readerSliceConfig);
+            if (resumePk != null) {
+                querySql = buildResumableSql(querySql, resumePk, readerSliceConfig.getString(Key.RESUME_POSITION));
+            }
 
             PerfTrace.getInstance().addTaskDetails(taskId, table + "," + basicMsg);
 
@@ -232,11 +272,19 @@ public class CommonRdbmsReader
                 PerfRecord allResultPerfRecord = new PerfRecord(taskGroupId, taskId, PerfRecord.PHASE.RESULT_NEXT_ALL);
                 allResultPerfRecord.start();
 
+                int pkIndex = resumePk == null ? -1 : findColumn(rs, resumePk);
+                boolean numericPk = pkIndex > 0 && isNumericType(metaData.getColumnType(pkIndex));
+                int unmarked = 0;
+
                 long rsNextUsedTime = 0;
                 long lastTime = System.nanoTime();
                 while (rs.next()) {
                     rsNextUsedTime += (System.nanoTime() - lastTime);
                     transportOneRecord(recordSender, rs, metaData, columnNumber, taskPluginCollector);
+                    if (pkIndex > 0 && ++unmarked >= MARK_INTERVAL) {
+                        markPosition(recordSender, rs.getString(pkIndex), numericPk);
+                        unmarked = 0;
+                    }
                     lastTime = System.nanoTime();
                 }
 
@@ -257,6 +305,73 @@ public class CommonRdbmsReader
             // do nothing
         }
 
+        /*
+         * 开启 resumable 时，按 splitPk 的顺序读取，并在续跑时从保存的位置开始读。
+         * 只有表模式并且 splitPk 在读取的字段中时才能支持
+         */
+        private String getResumePk(Configuration readerSliceConfig)
+        {
+            String splitPk = readerSliceConfig.getString(Key.SPLIT_PK);
+            if (!readerSliceConfig.getBool(Key.RESUMABLE, false) || StringUtils.isBlank(splitPk)) {
+                return null;
+            }
+            if (!readerSliceConfig.getBool(Key.IS_TABLE_MODE, true)) {
+                LOG.warn("The resumable option only works in table mode, the split can only be resumed from the beginning.");
+                return null;
+            }
+            String column = readerSliceConfig.getString(Key.COLUMN, "*");
+            boolean selected = "*".equals(column.trim());
+            for (String item : column.split(",")) {
+                if (splitPk.trim().equalsIgnoreCase(item.trim())) {
+                    selected = true;
+                    break;
+                }
+            }
+            if (!selected) {
+                LOG.warn("The splitPk [{}] is not in the selected columns, the split can only be resumed from the beginning.", splitPk);
+                return null;
+            }
+            return splitPk.trim();
+        }
+
+        private String buildResumableSql(String querySql, String splitPk, String position)
+        {
+            StringBuilder sql = new StringBuilder("SELECT * FROM (").append(querySql).append(") addax_t");
+            if (StringUtils.isNotBlank(position)) {
+                LOG.info("Resume reading from {} >= {}.", splitPk, position);
+                sql.append(" WHERE ").append(splitPk).append(" >= ").append(position);
+            }
+            return sql.append(" ORDER BY ").append(splitPk).toString();
+        }
+
+        /*
+         * 位置保存为可以直接拼接到 SQL 中的字面量，相同的 splitPk 值在续跑时会被重复读取，但不会遗漏
+         */
+        private void markPosition(RecordSender recordSender, String value, boolean numeric)
+        {
+            if (value == null) {
+                return;
+            }
+            recordSender.markPosition(numeric ? value : "'" + value.replace("'", "''") + "'");
+        }
+
+        private int findColumn(ResultSet rs, String column)
+        {
+            try {
+                return rs.findColumn(column);
+            }
+            catch (SQLException e) {
+                LOG.warn("Can not find the splitPk [{}] in the result set, the split can only be resumed from the beginning.", column);
+                return -1;
+            }
+        }
+
+        private boolean isNumericType(int type)
+        {
+            return type == Types.TINYINT || type == Types.SMALLINT || type == Types.INTEGER || type == Types.BIGINT
+                    || type == Types.NUMERIC || type == Types.DECIMAL;
+        }
+
         public void destroy(Configuration originalConfig)
         {
             // do nothing
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.rdbms.reader.cdc;
+
+import com.wgzhao.addax.common.base.Key;
+
+/**
+ * 变更数据捕获(CDC)类 reader 的配置项
+ */
+public class CdcKey
+        extends Key
+{
+    // 第一次运行时是否先通过查询读取表中已有的数据. boolean type
+    public static final String SNAPSHOT = "snapshot";
+    // 第一次运行时开始读取的位置, 格式由具体的数据库决定. string type
+    public static final String START_POSITION = "startPosition";
+
+    // 以下为切分后内部使用的配置项
+    public static final String CDC_MODE = "cdcMode";
+    public static final String CDC_START = "cdcStart";
+    public static final String CDC_END = "cdcEnd";
+
+    public static final String MODE_SNAPSHOT = "snapshot";
+    public static final String MODE_STREAM = "stream";
+}
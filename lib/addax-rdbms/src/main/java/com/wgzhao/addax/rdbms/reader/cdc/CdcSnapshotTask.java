@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.rdbms.reader.cdc;
+
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import com.wgzhao.addax.rdbms.reader.CommonRdbmsReader;
+import com.wgzhao.addax.rdbms.util.DataBaseType;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+
+/**
+ * 第一次运行时通过查询读取表中已有的数据, 复用 CommonRdbmsReader 的切分和读取逻辑, 每条记录的操作类型为 INSERT
+ */
+public class CdcSnapshotTask
+        extends CommonRdbmsReader.Task
+{
+    public CdcSnapshotTask(DataBaseType dataBaseType, int taskGroupId, int taskId)
+    {
+        super(dataBaseType, taskGroupId, taskId);
+    }
+
+    @Override
+    protected void transportOneRecord(RecordSender recordSender, ResultSet rs, ResultSetMetaData metaData,
+            int columnNumber, TaskPluginCollector taskPluginCollector)
+    {
+        Record row = buildRecord(recordSender, rs, metaData, columnNumber, taskPluginCollector);
+        recordSender.sendToWriter(ChangeRecord.withOperation(recordSender, ChangeRecord.INSERT, row));
+    }
+}
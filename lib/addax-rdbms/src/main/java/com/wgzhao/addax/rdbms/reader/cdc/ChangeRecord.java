@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.rdbms.reader.cdc;
+
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.element.StringColumn;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.List;
+
+/**
+ * CDC 类 reader 输出的记录格式: 第一列为操作类型, 之后为 column 中配置的字段.
+ * 新增和快照读取的数据为 INSERT, 更新为 UPDATE (取更新后的值), 删除为 DELETE (取删除前的值)
+ */
+public final class ChangeRecord
+{
+    public static final String INSERT = "INSERT";
+    public static final String UPDATE = "UPDATE";
+    public static final String DELETE = "DELETE";
+
+    private ChangeRecord() {}
+
+    public static Record create(RecordSender recordSender, String operation)
+    {
+        Record record = recordSender.createRecord();
+        record.addColumn(new StringColumn(operation));
+        return record;
+    }
+
+    /**
+     * 在已有的记录前面加上操作类型
+     *
+     * @param recordSender record sender
+     * @param operation 操作类型
+     * @param row 查询得到的记录
+     * @return 新的记录
+     */
+    public static Record withOperation(RecordSender recordSender, String operation, Record row)
+    {
+        Record record = create(recordSender, operation);
+        for (int i = 0, len = row.getColumnNumber(); i < len; i++) {
+            record.addColumn(row.getColumn(i));
+        }
+        return record;
+    }
+
+    /**
+     * 计算 column 中配置的字段在表中的位置
+     *
+     * @param columns column 配置, "*" 表示表中所有字段
+     * @param tableColumns 表中按顺序排列的字段
+     * @param table 表名, 用于错误信息
+     * @return 每个输出字段在表中的下标
+     */
+    public static int[] selectColumns(List<String> columns, List<String> tableColumns, String table)
+    {
+        if (columns.size() == 1 && "*".equals(columns.get(0).trim())) {
+            int[] indexes = new int[tableColumns.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = i;
+            }
+            return indexes;
+        }
+        int[] indexes = new int[columns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            String name = unquote(columns.get(i));
+            indexes[i] = -1;
+            for (int j = 0; j < tableColumns.size(); j++) {
+                if (name.equalsIgnoreCase(tableColumns.get(j))) {
+                    indexes[i] = j;
+                    break;
+                }
+            }
+            if (indexes[i] == -1) {
+                throw AddaxException.asAddaxException(CdcErrorCode.ILLEGAL_VALUE,
+                        String.format("表 [%s] 中没有字段 [%s], 变更数据只能输出表中的字段.", table, columns.get(i)));
+            }
+        }
+        return indexes;
+    }
+
+    public static String unquote(String name)
+    {
+        String trimmed = name.trim();
+        return StringUtils.strip(trimmed, "`\"[]");
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.rdbms.reader.cdc;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.wgzhao.addax.common.exception.AddaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 把变更日志读取到的位置保存在 ${addax.home}/cdc 目录下, 每个数据源和表的组合一个文件.
+ * 只有作业成功后才会保存, 因此失败的作业会在下一次运行时从上一次成功的位置重新读取
+ */
+public class PositionStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger(PositionStore.class);
+
+    private static final String STATE_DIR = "cdc";
+
+    private final String source;
+    private final File file;
+
+    /**
+     * @param source 数据源的唯一标识, 比如 jdbcUrl 和表名的组合
+     */
+    public PositionStore(String source)
+    {
+        this.source = source;
+        String home = System.getProperty("addax.home");
+        File directory = home == null ? new File(STATE_DIR) : new File(home, STATE_DIR);
+        this.file = new File(directory, md5(source) + ".json");
+    }
+
+    /**
+     * @return 上一次成功运行时保存的位置, 没有时返回 null
+     */
+    public String load()
+    {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            JSONObject state = JSON.parseObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            return state.getString("position");
+        }
+        catch (IOException | RuntimeException e) {
+            throw AddaxException.asAddaxException(CdcErrorCode.POSITION_ERROR,
+                    String.format("读取位置文件 [%s] 失败, 请检查该文件或者删除后重新开始.", file.getAbsolutePath()), e);
+        }
+    }
+
+    public void save(String position)
+    {
+        JSONObject state = new JSONObject(true);
+        state.put("source", source);
+        state.put("position", position);
+        state.put("updateTime", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+        File directory = file.getParentFile();
+        try {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("can not create directory " + directory.getAbsolutePath());
+            }
+            // 先写临时文件再改名, 避免进程退出时留下不完整的文件
+            File tmp = new File(directory, file.getName() + ".tmp");
+            Files.write(tmp.toPath(), state.toJSONString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.info("Saved the position {} to {}.", position, file.getAbsolutePath());
+        }
+        catch (IOException e) {
+            throw AddaxException.asAddaxException(CdcErrorCode.POSITION_ERROR,
+                    String.format("保存位置文件 [%s] 失败, 下一次运行会重复读取本次的数据.", file.getAbsolutePath()), e);
+        }
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    private static String md5(String text)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.rdbms.reader.util;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.util.DBUtil;
+import com.wgzhao.addax.rdbms.util.DBUtilErrorCode;
+import com.wgzhao.addax.rdbms.util.DataBaseType;
+import com.wgzhao.addax.rdbms.util.RdbmsException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 增量读取: 用户指定一个单调递增的字段(时间戳或者自增主键), 每次运行只读取上一次成功运行之后新增的数据.
+ * <p>
+ * 作业开始时对每个表执行 SELECT MAX 得到本次的上界, 读取条件为 {@code 字段 > 上一次的上界 AND 字段 <= 本次的上界},
+ * 作业成功后把本次的上界保存到 ${addax.home}/incremental 目录下, 作为下一次的下界. 运行期间新增的数据会在下一次读取
+ */
+public final class IncrementalUtil
+{
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalUtil.class);
+
+    // 每个表的增量条件, 与 connection 中的 table 列表一一对应
+    private static final String INCREMENTAL_WHERE = "incrementalWhere";
+    private static final String STATE_DIR = "incremental";
+
+    public static DataBaseType dataBaseType;
+
+    private IncrementalUtil() {}
+
+    /**
+     * 计算每个表本次读取的范围, 并把增量条件写入配置中, 切分时通过 {@link #combineWhere} 取出
+     *
+     * @param originalConfig 预处理之后的 reader 配置
+     * @return 每个表的水位, 作业成功后需要调用 {@link #save(List)} 保存
+     */
+    public static List<Watermark> prepare(Configuration originalConfig)
+    {
+        String column = originalConfig.getString(Key.INCREMENTAL_COLUMN);
+        if (StringUtils.isBlank(column)) {
+            return Collections.emptyList();
+        }
+        if (!originalConfig.getBool(Key.IS_TABLE_MODE, true)) {
+            throw AddaxException.asAddaxException(DBUtilErrorCode.ILLEGAL_VALUE,
+                    "incrementalColumn 仅支持配置 table 的方式, 使用 querySql 时请在 SQL 中自行指定增量条件.");
+        }
+        column = column.trim();
+        String start = originalConfig.getString(Key.INCREMENTAL_START);
+        String where = originalConfig.getString(Key.WHERE, null);
+        String username = originalConfig.getString(Key.USERNAME);
+        String password = originalConfig.getString(Key.PASSWORD);
+
+        List<Watermark> watermarks = new ArrayList<>();
+        List<Object> conns = originalConfig.getList(Key.CONNECTION, Object.class);
+        for (int i = 0, len = conns.size(); i < len; i++) {
+            Configuration connConf = Configuration.from(conns.get(i).toString());
+            String jdbcUrl = connConf.getString(Key.JDBC_URL);
+            List<String> predicates = new ArrayList<>();
+            for (String table : connConf.getList(Key.TABLE, String.class)) {
+                Watermark watermark = new Watermark(jdbcUrl, table, column, where);
+                String lower = watermark.load();
+                if (lower == null) {
+                    lower = start;
+                }
+                queryUpper(watermark, username, password);
+                String predicate = watermark.predicate(lower);
+                LOG.info("Incremental range of table [{}]: {}", table, predicate);
+                predicates.add(predicate);
+                watermarks.add(watermark);
+            }
+            originalConfig.set(String.format("%s[%d].%s", Key.CONNECTION, i, INCREMENTAL_WHERE), predicates);
+        }
+        return watermarks;
+    }
+
+    /**
+     * 把表的增量条件合并到用户配置的 where 中
+     *
+     * @param where 用户配置的 where
+     * @param connConf connection 配置
+     * @param tableIndex 表在 connection 中的序号
+     * @return 合并后的 where
+     */
+    public static String combineWhere(String where, Configuration connConf, int tableIndex)
+    {
+        List<String> predicates = connConf.getList(INCREMENTAL_WHERE, String.class);
+        if (predicates == null || predicates.size() <= tableIndex) {
+            return where;
+        }
+        String predicate = predicates.get(tableIndex);
+        return StringUtils.isBlank(where) ? predicate : "(" + where + ") AND " + predicate;
+    }
+
+    /**
+     * 增量字段是否可以作为切分主键, 以便每次新增的数据也能够并发读取
+     *
+     * @param watermarks {@link #prepare(Configuration)} 的返回值
+     * @return 所有表的增量字段都是整数或者时间类型, 并且都有新增的数据时返回 true
+     */
+    public static boolean isSplittable(List<Watermark> watermarks)
+    {
+        if (watermarks.isEmpty()) {
+            return false;
+        }
+        for (Watermark watermark : watermarks) {
+            if (watermark.isEmpty()
+                    || (!SingleTableSplitUtil.isLongType(watermark.type) && !SingleTableSplitUtil.isDateType(watermark.type))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 作业成功后保存每个表本次的上界
+     *
+     * @param watermarks {@link #prepare(Configuration)} 的返回值
+     */
+    public static void save(List<Watermark> watermarks)
+    {
+        for (Watermark watermark : watermarks) {
+            watermark.save();
+        }
+    }
+
+    /**
+     * 把时间转换为可以拼接在 SQL 中的字面量, 保留必要的小数位
+     *
+     * @param ts 时间
+     * @param dataBaseType 数据库类型
+     * @return 字面量
+     */
+    public static String timestampLiteral(Timestamp ts, DataBaseType dataBaseType)
+    {
+        int nanos = ts.getNanos();
+        String fraction;
+        if (nanos == 0) {
+            fraction = "";
+        }
+        else if (nanos % 1_000_000 == 0) {
+            fraction = String.format(".%03d", nanos / 1_000_000);
+        }
+        else if (nanos % 1_000 == 0) {
+            fraction = String.format(".%06d", nanos / 1_000);
+        }
+        else {
+            fraction = String.format(".%09d", nanos);
+        }
+        if (dataBaseType == DataBaseType.Oracle) {
+            String seconds = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(ts);
+            // 没有小数时使用 DATE, 以免 DATE 类型的字段被隐式转换为 TIMESTAMP 而无法使用索引
+            return fraction.isEmpty()
+                    ? String.format("TO_DATE('%s', 'YYYY-MM-DD HH24:MI:SS')", seconds)
+                    : String.format("TO_TIMESTAMP('%s%s', 'YYYY-MM-DD HH24:MI:SS.FF')", seconds, fraction);
+        }
+        // SQL Server 只有 ISO 8601 格式与语言设置无关
+        String pattern = dataBaseType == DataBaseType.SQLServer ? "yyyy-MM-dd'T'HH:mm:ss" : "yyyy-MM-dd HH:mm:ss";
+        return "'" + new SimpleDateFormat(pattern).format(ts) + fraction + "'";
+    }
+
+    private static void queryUpper(Watermark watermark, String username, String password)
+    {
+        String sql = String.format("SELECT MAX(%s) FROM %s", watermark.column, watermark.table);
+        if (StringUtils.isNotBlank(watermark.where)) {
+            sql = String.format("%s WHERE (%s)", sql, watermark.where);
+        }
+        LOG.info("Query the upper bound of incremental column [sql={}] ...", sql);
+        Connection conn = DBUtil.getConnection(dataBaseType, watermark.jdbcUrl, username, password);
+        ResultSet rs = null;
+        try {
+            rs = DBUtil.query(conn, sql, 1);
+            ResultSetMetaData metaData = rs.getMetaData();
+            int type = metaData.getColumnType(1);
+            watermark.type = type;
+            if (!rs.next() || rs.getObject(1) == null) {
+                // 表中没有数据
+                return;
+            }
+            switch (type) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    watermark.upper = rs.getString(1);
+                    break;
+                case Types.DATE:
+                case Types.TIMESTAMP:
+                case Types.TIMESTAMP_WITH_TIMEZONE:
+                    watermark.upper = timestampLiteral(rs.getTimestamp(1), dataBaseType);
+                    break;
+                case Types.CHAR:
+                case Types.NCHAR:
+                case Types.VARCHAR:
+                case Types.NVARCHAR:
+                    watermark.upper = "'" + rs.getString(1).replace("'", "''") + "'";
+                    break;
+                default:
+                    throw AddaxException.asAddaxException(DBUtilErrorCode.ILLEGAL_VALUE,
+                            String.format("增量字段 [%s] 的类型 [%s] 不支持, 仅支持整数、时间和字符串类型.",
+                                    watermark.column, metaData.getColumnTypeName(1)));
+            }
+        }
+        catch (SQLException e) {
+            throw RdbmsException.asQueryException(e, sql);
+        }
+        finally {
+            DBUtil.closeDBResources(rs, null, conn);
+        }
+    }
+
+    private static String md5(String text)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 单个表的水位, 以 SQL 字面量的形式保存
+     */
+    public static class Watermark
+    {
+        private final String jdbcUrl;
+        private final String table;
+        private final String column;
+        private final String where;
+        private final File file;
+        private String lower;
+        private String upper;
+        private int type;
+
+        Watermark(String jdbcUrl, String table, String column, String where)
+        {
+            this.jdbcUrl = jdbcUrl;
+            this.table = table;
+            this.column = column;
+            this.where = where;
+            String home = System.getProperty("addax.home");
+            File directory = home == null ? new File(STATE_DIR) : new File(home, STATE_DIR);
+            this.file = new File(directory, md5(jdbcUrl + "|" + table + "|" + column + "|" + StringUtils.defaultString(where)) + ".json");
+        }
+
+        /*
+         * 表中没有数据时本次不读取, 以免运行期间写入的数据在下一次被重复读取
+         */
+        String predicate(String lower)
+        {
+            this.lower = lower;
+            if (upper == null) {
+                return "1 = 0";
+            }
+            String predicate = String.format("%s <= %s", column, upper);
+            return StringUtils.isBlank(lower) ? predicate : String.format("%s > %s AND %s", column, lower, predicate);
+        }
+
+        boolean isEmpty()
+        {
+            return upper == null || upper.equals(lower);
+        }
+
+        String load()
+        {
+            if (!file.exists()) {
+                LOG.info("No incremental state of table [{}] found, read from incrementalStart.", table);
+                return null;
+            }
+            try {
+                JSONObject state = JSON.parseObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+                return state.getString("value");
+            }
+            catch (IOException | RuntimeException e) {
+                throw AddaxException.asAddaxException(DBUtilErrorCode.CONF_ERROR,
+                        String.format("读取增量状态文件 [%s] 失败, 请检查该文件或者删除后重新全量读取.", file.getAbsolutePath()), e);
+            }
+        }
+
+        void save()
+        {
+            if (upper == null) {
+                return;
+            }
+            JSONObject state = new JSONObject(true);
+            state.put("jdbcUrl", jdbcUrl);
+            state.put("table", table);
+            state.put("column", column);
+            state.put("where", where);
+            state.put("value", upper);
+            state.put("updateTime", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+            File directory = file.getParentFile();
+            try {
+                if (!directory.exists() && !directory.mkdirs()) {
+                    throw new IOException("can not create directory " + directory.getAbsolutePath());
+                }
+                // 先写临时文件再改名, 避免进程退出时留下不完整的文件
+                File tmp = new File(directory, file.getName() + ".tmp");
+                Files.write(tmp.toPath(), state.toJSONString().getBytes(StandardCharsets.UTF_8));
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                LOG.info("Saved the incremental state of table [{}]: {} = {}.", table, column, upper);
+            }
+            catch (IOException e) {
+                throw AddaxException.asAddaxException(DBUtilErrorCode.CONF_ERROR,
+                        String.format("保存增量状态文件 [%s] 失败, 下一次运行会重复读取本次的数据.", file.getAbsolutePath()), e);
+            }
+        }
+    }
+}
@@ -41,6 +41,14 @@ public final class ReaderSplitUtil
     {
         boolean isTableMode = originalSliceConfig.getBool(Key.IS_TABLE_MODE);
         boolean isUserSpecifyEachTableSplitSize = originalSliceConfig.getInt(Key.EACH_TABLE_SPLIT_SIZE, -1) != -1;
+        boolean isDefaultEachTableSplitSize = originalSliceConfig.getBool(Constant.DEFAULT_EACH_TABLE_SPLIT_SIZE_MARK, false);
+        if ((!isUserSpecifyEachTableSplitSize || isDefaultEachTableSplitSize) && TableSizeSplitUtil.isApplicable(originalSliceConfig)) {
+            // 按各表的估计行数分配切分份数, 无法获取统计信息时仍按 eachTableSplitSize 或平均分配
+            List<Configuration> splitConfigs = TableSizeSplitUtil.doSplit(originalSliceConfig, adviceNumber);
+            if (splitConfigs != null) {
+                return splitConfigs;
+            }
+        }
         int eachTableShouldSplitNumber = -1;
         if (isTableMode) {
             // adviceNumber这里是channel数量大小, 即addax并发task数量
@@ -64,16 +72,8 @@ public final class ReaderSplitUtil
         List<Configuration> splitConfigs = new ArrayList<>();
 
         for (Object conn : conns) {
-            Configuration sliceConfig = originalSliceConfig.clone();
-
             Configuration connConf = Configuration.from(conn.toString());
-            String jdbcUrl = connConf.getString(Key.JDBC_URL);
-            sliceConfig.set(Key.JDBC_URL, jdbcUrl);
-
-            // 抽取 jdbcUrl 中的 ip/port 进行资源使用的打标，以提供给 core 做有意义的 shuffle 操作
-            sliceConfig.set(CommonConstant.LOAD_BALANCE_RESOURCE_MARK, DataBaseType.parseIpFromJdbcUrl(jdbcUrl));
-
-            sliceConfig.remove(Key.CONNECTION);
+            Configuration sliceConfig = buildConnectionSlice(originalSliceConfig, connConf);
             int tableSplitNumber = eachTableShouldSplitNumber;
             Configuration tempSlice;
 
@@ -97,9 +97,14 @@ public final class ReaderSplitUtil
                         tableSplitNumber = tableSplitNumber * 5;
                     }
                     // 尝试对每个表，切分为eachTableShouldSplitNumber 份
-                    for (String table : tables) {
+                    for (int i = 0; i < tables.size(); i++) {
+                        String table = tables.get(i);
                         tempSlice = sliceConfig.clone();
                         tempSlice.set(Key.TABLE, table);
+                        String tableWhere = IncrementalUtil.combineWhere(where, connConf, i);
+                        if (tableWhere != null) {
+                            tempSlice.set(Key.WHERE, tableWhere);
+                        }
 
                         List<Configuration> splitSlices = SingleTableSplitUtil.splitSingleTable(tempSlice, tableSplitNumber);
 
@@ -107,12 +112,8 @@ public final class ReaderSplitUtil
                     }
                 }
                 else {
-                    for (String table : tables) {
-                        tempSlice = sliceConfig.clone();
-                        tempSlice.set(Key.TABLE, table);
-                        String queryColumn = HintUtil.buildQueryColumn(table, column);
-                        tempSlice.set(Key.QUERY_SQL, SingleTableSplitUtil.buildQuerySql(queryColumn, table, where));
-                        splitConfigs.add(tempSlice);
+                    for (int i = 0; i < tables.size(); i++) {
+                        splitConfigs.add(buildTableSlice(sliceConfig, connConf, tables.get(i), i, column, where));
                     }
                 }
             }
@@ -152,10 +153,12 @@ public final class ReaderSplitUtil
                 // 已在之前进行了扩展和`处理，可以直接使用
                 List<String> tables = connConf.getList(Key.TABLE, String.class);
                 Validate.isTrue(null != tables && !tables.isEmpty(), "您读取数据库表配置错误.");
-                for (String table : tables) {
-                    queries.add(SingleTableSplitUtil.buildQuerySql(column, table, where));
+                for (int j = 0; j < tables.size(); j++) {
+                    String table = tables.get(j);
+                    String tableWhere = IncrementalUtil.combineWhere(where, connConf, j);
+                    queries.add(SingleTableSplitUtil.buildQuerySql(column, table, tableWhere));
                     if (splitPK != null && !splitPK.isEmpty()) {
-                        splitPkQueries.add(SingleTableSplitUtil.genPKSql(splitPK.trim(), table, where));
+                        splitPkQueries.add(SingleTableSplitUtil.genPKSql(splitPK.trim(), table, tableWhere));
                     }
                 }
                 if (!splitPkQueries.isEmpty()) {
@@ -175,7 +178,33 @@ public final class ReaderSplitUtil
         return queryConfig;
     }
 
-    private static int calculateEachTableShouldSplitNumber(int adviceNumber, int tableNumber)
+    static Configuration buildConnectionSlice(Configuration originalSliceConfig, Configuration connConf)
+    {
+        Configuration sliceConfig = originalSliceConfig.clone();
+
+        String jdbcUrl = connConf.getString(Key.JDBC_URL);
+        sliceConfig.set(Key.JDBC_URL, jdbcUrl);
+
+        // 抽取 jdbcUrl 中的 ip/port 进行资源使用的打标，以提供给 core 做有意义的 shuffle 操作
+        sliceConfig.set(CommonConstant.LOAD_BALANCE_RESOURCE_MARK, DataBaseType.parseIpFromJdbcUrl(jdbcUrl));
+
+        sliceConfig.remove(Key.CONNECTION);
+        return sliceConfig;
+    }
+
+    // 不切分的表, 整表一个查询
+    static Configuration buildTableSlice(Configuration sliceConfig, Configuration connConf, String table, int tableIndex,
+            String column, String where)
+    {
+        Configuration tempSlice = sliceConfig.clone();
+        tempSlice.set(Key.TABLE, table);
+        String queryColumn = HintUtil.buildQueryColumn(table, column);
+        tempSlice.set(Key.QUERY_SQL, SingleTableSplitUtil.buildQuerySql(queryColumn, table,
+                IncrementalUtil.combineWhere(where, connConf, tableIndex)));
+        return tempSlice;
+    }
+
+    static int calculateEachTableShouldSplitNumber(int adviceNumber, int tableNumber)
     {
         double tempNum = 1.0 * adviceNumber / tableNumber;
 
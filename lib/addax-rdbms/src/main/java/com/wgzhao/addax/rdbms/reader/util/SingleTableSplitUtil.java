@@ -43,6 +43,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -87,6 +88,7 @@ public class SingleTableSplitUtil
 
             boolean isStringType = Constant.PK_TYPE_STRING.equals(configuration.getString(Constant.PK_TYPE));
             boolean isLongType = Constant.PK_TYPE_LONG.equals(configuration.getString(Constant.PK_TYPE));
+            boolean isDateType = Constant.PK_TYPE_DATE.equals(configuration.getString(Constant.PK_TYPE));
 
             if (isStringType) {
                 rangeList = splitStringPk(configuration, table, where, minMaxPK.getLeft().toString(), minMaxPK.getRight().toString(),
@@ -96,6 +98,9 @@ public class SingleTableSplitUtil
                 rangeList = RdbmsRangeSplitWrap.splitAndWrap(new BigInteger(minMaxPK.getLeft().toString()),
                         new BigInteger(minMaxPK.getRight().toString()), adviceNum, splitPkName);
             }
+            else if (isDateType) {
+                rangeList = splitDatePk((Timestamp) minMaxPK.getLeft(), (Timestamp) minMaxPK.getRight(), adviceNum, splitPkName);
+            }
             else {
                 throw AddaxException.asAddaxException(DBUtilErrorCode.ILLEGAL_SPLIT_PK,
                         "您配置的切分主键(splitPk) 类型不支持. 仅支持切分主键为一个,并且类型为整数或者字符串类型. 请尝试使用其他的切分主键或者联系 DBA 进行处理.");
@@ -235,6 +240,14 @@ public class SingleTableSplitUtil
                         }
                     }
                 }
+                else if (isDateType(rsMetaData.getColumnType(1))) {
+                    if (configuration != null) {
+                        configuration.set(Constant.PK_TYPE, Constant.PK_TYPE_DATE);
+                    }
+                    while (DBUtil.asyncResultSetNext(rs)) {
+                        minMaxPK = new ImmutablePair<>(rs.getTimestamp(1), rs.getTimestamp(2));
+                    }
+                }
                 else {
                     throw AddaxException.asAddaxException(DBUtilErrorCode.ILLEGAL_SPLIT_PK, errorMsg);
                 }
@@ -264,8 +277,9 @@ public class SingleTableSplitUtil
             int maxType = rsMetaData.getColumnType(2);
             boolean isNumberType = isLongType(minType);
             boolean isStringType = isStringType(minType);
+            boolean isDateType = isDateType(minType);
 
-            if (minType == maxType && (isNumberType || isStringType)) {
+            if (minType == maxType && (isNumberType || isStringType || isDateType)) {
                 ret = true;
             }
         }
@@ -279,7 +293,7 @@ public class SingleTableSplitUtil
     // warn: Types.NUMERIC is used for oracle! because oracle use NUMBER to
     // store INT, SMALLINT, INTEGER etc, and only oracle need to concern
     // Types.NUMERIC
-    private static boolean isLongType(int type)
+    static boolean isLongType(int type)
     {
         boolean isValidLongType = type == Types.BIGINT || type == Types.INTEGER || type == Types.SMALLINT || type == Types.TINYINT;
 
@@ -294,6 +308,12 @@ public class SingleTableSplitUtil
         return type == Types.CHAR || type == Types.NCHAR || type == Types.VARCHAR || type == Types.LONGVARCHAR || type == Types.NVARCHAR;
     }
 
+    // oracle 的切分通过采样完成, 不支持按时间切分
+    static boolean isDateType(int type)
+    {
+        return (type == Types.DATE || type == Types.TIMESTAMP) && SingleTableSplitUtil.dataBaseType != DataBaseType.Oracle;
+    }
+
     private static String genPKRangeSQL(Configuration configuration)
     {
 
@@ -405,6 +425,34 @@ public class SingleTableSplitUtil
         return rangeSql;
     }
 
+    /**
+     * 按时间范围均匀切分, 最后一个区间包含最大值
+     *
+     * @param minVal minimal value
+     * @param maxVal maximal value
+     * @param splitNum expected split number
+     * @param pkName the column which split by
+     * @return list of string
+     */
+    private static List<String> splitDatePk(Timestamp minVal, Timestamp maxVal, int splitNum, String pkName)
+    {
+        List<String> rangeList = new ArrayList<>();
+        long start = minVal.getTime();
+        long step = (maxVal.getTime() - start) / Math.max(1, splitNum);
+        Timestamp lower = minVal;
+        if (step > 0) {
+            for (int i = 1; i < splitNum; i++) {
+                Timestamp upper = new Timestamp(start + step * i);
+                rangeList.add(String.format("%1$s >= %2$s AND %1$s < %3$s", pkName,
+                        IncrementalUtil.timestampLiteral(lower, dataBaseType), IncrementalUtil.timestampLiteral(upper, dataBaseType)));
+                lower = upper;
+            }
+        }
+        rangeList.add(String.format("%1$s >= %2$s AND %1$s <= %3$s", pkName,
+                IncrementalUtil.timestampLiteral(lower, dataBaseType), IncrementalUtil.timestampLiteral(maxVal, dataBaseType)));
+        return rangeList;
+    }
+
     /**
      * common String split method
      *
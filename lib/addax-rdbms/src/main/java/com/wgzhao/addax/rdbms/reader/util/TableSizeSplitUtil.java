@@ -0,0 +1,378 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.rdbms.reader.util;
+
+import com.wgzhao.addax.common.base.Constant;
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.util.DBUtil;
+import com.wgzhao.addax.rdbms.util.DataBaseType;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * 表模式下按各表的估计行数分配切分份数.
+ * <p>
+ * 行数取自数据库的统计信息(MySQL 的 information_schema.tables, PostgreSQL 的 pg_class.reltuples, Oracle 的 all_tables.num_rows 等),
+ * 不执行 count. 所有表总共切分为 channel 数的 5 倍左右, 每个表分到的份数与行数成正比; 行数不足一份的小表在同一个连接内合并为一个任务,
+ * 依次读取. 切分结果按估计行数从大到小排列, 大的任务先开始, 以减少作业末尾等待少数大任务的时间.
+ * <p>
+ * 没有统计信息的表仍按原来的方式平均切分, 所有表都没有统计信息时完全使用原来的切分方式.
+ * 统计信息可能与实际行数相差很大, 因此默认关闭, 需要配置 splitByTableSize 为 true 开启.
+ */
+public final class TableSizeSplitUtil
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TableSizeSplitUtil.class);
+
+    // 每个 channel 平均分到的任务数, 与单表切分时的倍数一致
+    private static final int SPLITS_PER_CHANNEL = 5;
+
+    public static DataBaseType dataBaseType;
+
+    private TableSizeSplitUtil() {}
+
+    /**
+     * 开启了 splitByTableSize, 表模式, 多于一个表, 数据库支持获取统计信息, 并且没有开启 resumable 时才按表大小切分.
+     * resumable 依赖每次切分的结果相同, 而统计信息随时可能变化
+     *
+     * @param originalConfig 读取配置
+     * @return 是否按表大小切分
+     */
+    public static boolean isApplicable(Configuration originalConfig)
+    {
+        return originalConfig.getBool(Key.IS_TABLE_MODE, false)
+                && originalConfig.getBool(Key.SPLIT_BY_TABLE_SIZE, false)
+                && !originalConfig.getBool(Key.RESUMABLE, false)
+                && originalConfig.getInt(Constant.TABLE_NUMBER_MARK, 0) > 1
+                && getRowCountSql() != null;
+    }
+
+    /**
+     * @param originalSliceConfig 读取配置
+     * @param adviceNumber channel 数
+     * @return 切分结果, 所有表都没有统计信息时返回 null
+     */
+    public static List<Configuration> doSplit(Configuration originalSliceConfig, int adviceNumber)
+    {
+        return doSplit(originalSliceConfig, adviceNumber, TableSizeSplitUtil::estimateRows, SingleTableSplitUtil::splitSingleTable);
+    }
+
+    /*
+     * estimator 估计一个连接中各表的行数, splitter 按主键切分单表, 单元测试中替换为不访问数据库的实现
+     */
+    static List<Configuration> doSplit(Configuration originalSliceConfig, int adviceNumber,
+            BiFunction<Configuration, List<String>, long[]> estimator, BiFunction<Configuration, Integer, List<Configuration>> splitter)
+    {
+        String column = originalSliceConfig.getString(Key.COLUMN);
+        String where = originalSliceConfig.getString(Key.WHERE, null);
+        boolean splittable = StringUtils.isNotBlank(originalSliceConfig.getString(Key.SPLIT_PK, null));
+
+        List<TableStat> tables = new ArrayList<>();
+        for (Object conn : originalSliceConfig.getList(Key.CONNECTION, Object.class)) {
+            Configuration connConf = Configuration.from(conn.toString());
+            Configuration sliceConfig = ReaderSplitUtil.buildConnectionSlice(originalSliceConfig, connConf);
+            List<String> names = connConf.getList(Key.TABLE, String.class);
+            Validate.isTrue(null != names && !names.isEmpty(), "您读取数据库表配置错误.");
+            long[] rows = estimator.apply(sliceConfig, names);
+            for (int i = 0; i < names.size(); i++) {
+                tables.add(new TableStat(sliceConfig, connConf, names.get(i), i, rows[i]));
+            }
+        }
+
+        long totalRows = 0;
+        int known = 0;
+        for (TableStat table : tables) {
+            if (table.rows >= 0) {
+                totalRows += table.rows;
+                known++;
+            }
+        }
+        if (known == 0) {
+            LOG.info("Can not get the statistics of the tables, split each table equally.");
+            return null;
+        }
+
+        int budget = adviceNumber * SPLITS_PER_CHANNEL;
+        // 每个任务的目标行数
+        long target = Math.max(1, (totalRows + budget - 1) / budget);
+        int equalShare = ReaderSplitUtil.calculateEachTableShouldSplitNumber(adviceNumber, tables.size());
+
+        List<WeightedSlice> slices = new ArrayList<>();
+        Map<String, List<TableStat>> smallTables = new LinkedHashMap<>();
+        for (TableStat table : tables) {
+            if (table.rows < 0) {
+                LOG.warn("Can not get the statistics of the table [{}], split it equally.", table.name);
+                addTable(slices, table, equalShare, splittable, column, where, target * equalShare, splitter);
+            }
+            else if (table.rows < target) {
+                smallTables.computeIfAbsent(table.sliceConfig.getString(Key.JDBC_URL), k -> new ArrayList<>()).add(table);
+            }
+            else {
+                int splitNumber = (int) Math.min(budget, Math.round((double) table.rows / target));
+                addTable(slices, table, splitNumber, splittable, column, where, table.rows, splitter);
+            }
+        }
+
+        int mergedTables = 0;
+        int mergedTasks = 0;
+        for (List<TableStat> group : smallTables.values()) {
+            group.sort(Comparator.comparingLong((TableStat t) -> t.rows).reversed());
+            List<TableStat> batch = new ArrayList<>();
+            long batchRows = 0;
+            for (TableStat table : group) {
+                if (!batch.isEmpty() && batchRows + table.rows > target) {
+                    slices.add(buildMergedSlice(batch, batchRows, column, where));
+                    if (batch.size() > 1) {
+                        mergedTables += batch.size();
+                        mergedTasks++;
+                    }
+                    batch = new ArrayList<>();
+                    batchRows = 0;
+                }
+                batch.add(table);
+                batchRows += table.rows;
+            }
+            if (!batch.isEmpty()) {
+                slices.add(buildMergedSlice(batch, batchRows, column, where));
+                if (batch.size() > 1) {
+                    mergedTables += batch.size();
+                    mergedTasks++;
+                }
+            }
+        }
+
+        // 稳定排序, 估计行数相同时保持配置中的顺序
+        slices.sort(Comparator.comparingLong((WeightedSlice s) -> s.rows).reversed());
+        List<Configuration> splitConfigs = new ArrayList<>(slices.size());
+        for (WeightedSlice slice : slices) {
+            splitConfigs.add(slice.config);
+        }
+        LOG.info("Split {} tables by the estimated rows (about {} rows in total, {} rows per task): {} tasks, "
+                + "{} small tables are merged into {} tasks.", tables.size(), totalRows, target, splitConfigs.size(), mergedTables, mergedTasks);
+        return splitConfigs;
+    }
+
+    private static void addTable(List<WeightedSlice> slices, TableStat table, int splitNumber, boolean splittable,
+            String column, String where, long rows, BiFunction<Configuration, Integer, List<Configuration>> splitter)
+    {
+        if (!splittable || splitNumber <= 1) {
+            slices.add(new WeightedSlice(ReaderSplitUtil.buildTableSlice(table.sliceConfig, table.connConf, table.name,
+                    table.index, column, where), rows));
+            return;
+        }
+        Configuration tempSlice = table.sliceConfig.clone();
+        tempSlice.set(Key.TABLE, table.name);
+        String tableWhere = IncrementalUtil.combineWhere(where, table.connConf, table.index);
+        if (tableWhere != null) {
+            tempSlice.set(Key.WHERE, tableWhere);
+        }
+        List<Configuration> parts = splitter.apply(tempSlice, splitNumber);
+        for (Configuration part : parts) {
+            slices.add(new WeightedSlice(part, rows / parts.size()));
+        }
+    }
+
+    /*
+     * 多个小表合并为一个任务, 每个表的查询放在 mergedSlices 中依次执行
+     */
+    private static WeightedSlice buildMergedSlice(List<TableStat> batch, long rows, String column, String where)
+    {
+        List<Map<String, Object>> merged = new ArrayList<>(batch.size());
+        Configuration first = null;
+        for (TableStat table : batch) {
+            Configuration tableSlice = ReaderSplitUtil.buildTableSlice(table.sliceConfig, table.connConf, table.name,
+                    table.index, column, where);
+            if (first == null) {
+                first = tableSlice;
+            }
+            Map<String, Object> item = new HashMap<>();
+            item.put(Key.TABLE, table.name);
+            item.put(Key.QUERY_SQL, tableSlice.getString(Key.QUERY_SQL));
+            merged.add(item);
+        }
+        if (batch.size() > 1) {
+            first.set(Key.MERGED_SLICES, merged);
+        }
+        return new WeightedSlice(first, rows);
+    }
+
+    /*
+     * 估计每个表的行数, 无法获取时为 -1
+     */
+    private static long[] estimateRows(Configuration sliceConfig, List<String> tables)
+    {
+        long[] rows = new long[tables.size()];
+        Arrays.fill(rows, -1);
+        String jdbcUrl = sliceConfig.getString(Key.JDBC_URL);
+        boolean qualifiedName = dataBaseType == DataBaseType.PostgreSQL || dataBaseType == DataBaseType.SQLServer;
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+            conn = DBUtil.getConnection(dataBaseType, jdbcUrl, sliceConfig.getString(Key.USERNAME), sliceConfig.getString(Key.PASSWORD));
+            stmt = conn.prepareStatement(getRowCountSql());
+            for (int i = 0; i < tables.size(); i++) {
+                if (qualifiedName) {
+                    stmt.setString(1, tables.get(i));
+                }
+                else {
+                    String[] schemaAndName = splitName(tables.get(i));
+                    stmt.setString(1, schemaAndName[0]);
+                    stmt.setString(2, schemaAndName[1]);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        long value = rs.getLong(1);
+                        if (!rs.wasNull() && value >= 0) {
+                            rows[i] = value;
+                        }
+                    }
+                }
+            }
+        }
+        catch (SQLException e) {
+            LOG.warn("Failed to get the statistics of the tables from [{}]: {}", jdbcUrl, e.getMessage());
+        }
+        finally {
+            DBUtil.closeDBResources(stmt, conn);
+        }
+        return rows;
+    }
+
+    /*
+     * PostgreSQL 和 SQL Server 的参数为表名本身, 由数据库按 SQL 的规则解析; 其他数据库的参数为 schema(可以为 null) 和表名
+     */
+    private static String getRowCountSql()
+    {
+        if (dataBaseType == null) {
+            return null;
+        }
+        switch (dataBaseType) {
+            case MySql:
+                // InnoDB 新建或未 analyze 的表 table_rows 常为 0, 与 PostgreSQL 一样视为没有统计信息
+                return "SELECT NULLIF(table_rows, 0) FROM information_schema.tables WHERE table_schema = COALESCE(?, DATABASE()) AND table_name = ?";
+            case PostgreSQL:
+                // 从未 analyze 过的表 reltuples 为 -1(PostgreSQL 14 之前为 0)
+                return "SELECT CASE WHEN reltuples < 0 OR (reltuples = 0 AND relpages > 0) THEN -1 ELSE reltuples::bigint END "
+                        + "FROM pg_class WHERE oid = to_regclass(?)";
+            case Oracle:
+                return "SELECT num_rows FROM all_tables WHERE owner = NVL(?, SYS_CONTEXT('USERENV', 'CURRENT_SCHEMA')) AND table_name = ?";
+            case SQLServer:
+                return "SELECT SUM(rows) FROM sys.partitions WHERE object_id = OBJECT_ID(?) AND index_id IN (0, 1)";
+            case DB2:
+                return "SELECT card FROM syscat.tables WHERE tabschema = COALESCE(CAST(? AS VARCHAR(128)), CURRENT SCHEMA) AND tabname = ?";
+            default:
+                return null;
+        }
+    }
+
+    /*
+     * 拆分为 schema 和表名, 去掉引号; Oracle 和 DB2 中没有引号的名称保存为大写
+     */
+    private static String[] splitName(String table)
+    {
+        List<String> parts = new ArrayList<>();
+        StringBuilder part = new StringBuilder();
+        char quote = 0;
+        for (char c : table.trim().toCharArray()) {
+            if (quote != 0) {
+                part.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            }
+            else if (c == '"' || c == '`') {
+                quote = c;
+                part.append(c);
+            }
+            else if (c == '[') {
+                quote = ']';
+                part.append(c);
+            }
+            else if (c == '.') {
+                parts.add(part.toString());
+                part.setLength(0);
+            }
+            else {
+                part.append(c);
+            }
+        }
+        parts.add(part.toString());
+        String name = normalize(parts.get(parts.size() - 1));
+        String schema = parts.size() > 1 ? normalize(parts.get(parts.size() - 2)) : null;
+        return new String[] {schema, name};
+    }
+
+    private static String normalize(String identifier)
+    {
+        String id = identifier.trim();
+        if (id.length() > 1 && (id.charAt(0) == '"' || id.charAt(0) == '`' || id.charAt(0) == '[')) {
+            return id.substring(1, id.length() - 1);
+        }
+        if (dataBaseType == DataBaseType.Oracle || dataBaseType == DataBaseType.DB2) {
+            return id.toUpperCase();
+        }
+        return id;
+    }
+
+    private static class TableStat
+    {
+        final Configuration sliceConfig;
+        final Configuration connConf;
+        final String name;
+        final int index;
+        final long rows;
+
+        TableStat(Configuration sliceConfig, Configuration connConf, String name, int index, long rows)
+        {
+            this.sliceConfig = sliceConfig;
+            this.connConf = connConf;
+            this.name = name;
+            this.index = index;
+            this.rows = rows;
+        }
+    }
+
+    private static class WeightedSlice
+    {
+        final Configuration config;
+        final long rows;
+
+        WeightedSlice(Configuration config, long rows)
+        {
+            this.config = config;
+            this.rows = rows;
+        }
+    }
+}
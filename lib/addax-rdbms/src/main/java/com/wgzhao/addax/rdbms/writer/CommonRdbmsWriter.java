@@ -28,12 +28,14 @@ import com.wgzhao.addax.common.element.Record;
 import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.RecordReceiver;
 import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import com.wgzhao.addax.common.statistics.LatencyHistogram;
 import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.rdbms.util.DBUtil;
 import com.wgzhao.addax.rdbms.util.DBUtilErrorCode;
 import com.wgzhao.addax.rdbms.util.DataBaseType;
 import com.wgzhao.addax.rdbms.util.RdbmsException;
 import com.wgzhao.addax.rdbms.writer.util.OriginalConfPretreatmentUtil;
+import com.wgzhao.addax.rdbms.writer.util.UpsertTemplate;
 import com.wgzhao.addax.rdbms.writer.util.WriterUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -45,7 +47,6 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
@@ -211,6 +212,8 @@ public class CommonRdbmsWriter
         protected String writeMode;
         protected boolean emptyAsNull;
         protected List<Map<String, Object>> resultSetMetaData;
+        // writeMode 为 update 时生成多行的 upsert 语句
+        protected UpsertTemplate upsertTemplate;
 
         public Task(DataBaseType dataBaseType)
         {
@@ -260,40 +263,16 @@ public class CommonRdbmsWriter
         public void startWriteWithConnection(RecordReceiver recordReceiver, TaskPluginCollector taskPluginCollector, Connection connection)
         {
             this.taskPluginCollector = taskPluginCollector;
-            List<String> mergeColumns = new ArrayList<>();
-
-            if ((this.dataBaseType == DataBaseType.Oracle || this.dataBaseType == DataBaseType.SQLServer)
-                    && !"insert".equalsIgnoreCase(this.writeMode)) {
-                LOG.info("write {} using {} mode", this.dataBaseType, this.writeMode);
-                List<String> columnsOne = new ArrayList<>();
-                List<String> columnsTwo = new ArrayList<>();
-                String merge = this.writeMode;
-                String[] sArray = WriterUtil.getStrings(merge);
-                for (String s : this.columns) {
-                    if (Arrays.asList(sArray).contains(s)) {
-                        columnsOne.add(s);
-                    }
-                }
-                for (String s : this.columns) {
-                    if (!Arrays.asList(sArray).contains(s)) {
-                        columnsTwo.add(s);
-                    }
-                }
-                int i = 0;
-                for (String column : columnsOne) {
-                    mergeColumns.add(i++, column);
-                }
-                for (String column : columnsTwo) {
-                    mergeColumns.add(i++, column);
-                }
-            }
-            mergeColumns.addAll(this.columns);
 
             // 用于写入数据的时候的类型根据目的表字段类型转换
-            this.resultSetMetaData = DBUtil.getColumnMetaData(connection, this.table, StringUtils.join(mergeColumns, ","));
+            this.resultSetMetaData = DBUtil.getColumnMetaData(connection, this.table, StringUtils.join(this.columns, ","));
 
             // 写数据库的SQL语句
             calcWriteRecordSql();
+            if (upsertTemplate != null) {
+                LOG.info("write {} using {} mode, up to {} rows per statement", this.dataBaseType, this.writeMode, upsertTemplate.getMaxRows());
+                upsertTemplate.check(connection);
+            }
 
             List<Record> writeBuffer = new ArrayList<>(this.batchSize);
             int bufferBytes = 0;
@@ -314,14 +293,16 @@ public class CommonRdbmsWriter
                     bufferBytes += record.getMemorySize();
 
                     if (writeBuffer.size() >= batchSize || bufferBytes >= batchByteSize) {
-                        doBatchInsert(connection, writeBuffer);
+                        flush(connection, writeBuffer);
                         writeBuffer.clear();
                         bufferBytes = 0;
+                        recordReceiver.commit();
                     }
                 }
                 if (!writeBuffer.isEmpty()) {
-                    doBatchInsert(connection, writeBuffer);
+                    flush(connection, writeBuffer);
                     writeBuffer.clear();
+                    recordReceiver.commit();
                 }
             }
             catch (Exception e) {
@@ -362,44 +343,28 @@ public class CommonRdbmsWriter
             //
         }
 
+        private void flush(Connection connection, List<Record> buffer)
+                throws SQLException
+        {
+            long startTime = System.nanoTime();
+            doBatchInsert(connection, buffer);
+            LatencyHistogram.get(dataBaseType.getTypeName() + ".batchInsert").observeSince(startTime);
+        }
+
         protected void doBatchInsert(Connection connection, List<Record> buffer)
                 throws SQLException
         {
+            if (upsertTemplate != null) {
+                doBatchUpsert(connection, buffer);
+                return;
+            }
             PreparedStatement preparedStatement = null;
             try {
                 connection.setAutoCommit(false);
                 preparedStatement = connection.prepareStatement(writeRecordSql);
-                if ((this.dataBaseType == DataBaseType.Oracle || this.dataBaseType == DataBaseType.SQLServer)
-                        && !"insert".equalsIgnoreCase(writeMode)) {
-                    String merge = this.writeMode;
-                    String[] sArray = WriterUtil.getStrings(merge);
-                    for (Record record : buffer) {
-                        List<Column> recordOne = new ArrayList<>();
-                        for (int j = 0; j < this.columns.size(); j++) {
-                            if (Arrays.asList(sArray).contains(columns.get(j))) {
-                                recordOne.add(record.getColumn(j));
-                            }
-                        }
-                        for (int j = 0; j < this.columns.size(); j++) {
-                            if (!Arrays.asList(sArray).contains(columns.get(j))) {
-                                recordOne.add(record.getColumn(j));
-                            }
-                        }
-                        for (int j = 0; j < this.columns.size(); j++) {
-                            recordOne.add(record.getColumn(j));
-                        }
-                        for (int j = 0; j < recordOne.size(); j++) {
-                            record.setColumn(j, recordOne.get(j));
-                        }
-                        preparedStatement = fillPreparedStatement(preparedStatement, record);
-                        preparedStatement.addBatch();
-                    }
-                }
-                else {
-                    for (Record record : buffer) {
-                        preparedStatement = fillPreparedStatement(preparedStatement, record);
-                        preparedStatement.addBatch();
-                    }
+                for (Record record : buffer) {
+                    preparedStatement = fillPreparedStatement(preparedStatement, record);
+                    preparedStatement.addBatch();
                 }
                 preparedStatement.executeBatch();
                 connection.commit();
@@ -418,6 +383,42 @@ public class CommonRdbmsWriter
             }
         }
 
+        /*
+         * 一个批次的记录按 UpsertTemplate 生成的多行语句写入, 行数超过单条语句的上限时拆分为多条语句, 在同一个事务中提交.
+         * 失败时回滚, 与 insert 模式一样改为逐条写入以便找出脏数据
+         */
+        protected void doBatchUpsert(Connection connection, List<Record> buffer)
+                throws SQLException
+        {
+            List<Record> rows = new ArrayList<>(upsertTemplate.removeDuplicateKeys(buffer));
+            int maxRows = upsertTemplate.getMaxRows();
+            try {
+                connection.setAutoCommit(false);
+                for (int from = 0; from < rows.size(); from += maxRows) {
+                    List<Record> chunk = rows.subList(from, Math.min(from + maxRows, rows.size()));
+                    try (PreparedStatement preparedStatement = connection.prepareStatement(upsertTemplate.getSql(chunk.size()))) {
+                        int parameterIndex = 0;
+                        for (Record record : chunk) {
+                            for (int i = 1; i <= columnNumber; i++) {
+                                int columnSqlType = (int) this.resultSetMetaData.get(i).get("type");
+                                fillPreparedStatementColumnType(preparedStatement, ++parameterIndex, i, columnSqlType, record.getColumn(i - 1));
+                            }
+                        }
+                        preparedStatement.executeUpdate();
+                    }
+                }
+                connection.commit();
+            }
+            catch (SQLException e) {
+                LOG.warn("回滚此次写入, 采用每次写入一行方式提交. 因为: {}", e.getMessage());
+                connection.rollback();
+                doOneInsert(connection, buffer);
+            }
+            catch (Exception e) {
+                throw AddaxException.asAddaxException(DBUtilErrorCode.WRITE_DATA_ERROR, e);
+            }
+        }
+
         protected void doOneInsert(Connection connection, List<Record> buffer)
         {
             PreparedStatement preparedStatement = null;
@@ -454,16 +455,28 @@ public class CommonRdbmsWriter
         {
             for (int i = 1, len = record.getColumnNumber(); i <= len; i++) {
                 int columnSqlType = (int) this.resultSetMetaData.get(i).get("type");
-                preparedStatement = fillPreparedStatementColumnType(preparedStatement, i, columnSqlType, record.getColumn(i - 1));
+                preparedStatement = fillPreparedStatementColumnType(preparedStatement, i, i, columnSqlType, record.getColumn(i - 1));
             }
             return preparedStatement;
         }
 
-        protected PreparedStatement fillPreparedStatementColumnType(PreparedStatement preparedStatement, int columnIndex, int columnSqlType, Column column)
+        /**
+         * 按目的表字段的类型设置参数
+         *
+         * @param preparedStatement 语句
+         * @param parameterIndex 参数的下标, 多行语句中为 行号 * 字段数 + columnIndex
+         * @param columnIndex 字段的下标, 从 1 开始, 用于获取 resultSetMetaData 中的字段信息
+         * @param columnSqlType 字段的 SQL 类型
+         * @param column 字段的值
+         * @return 语句
+         * @throws SQLException 设置参数失败
+         */
+        protected PreparedStatement fillPreparedStatementColumnType(PreparedStatement preparedStatement, int parameterIndex, int columnIndex,
+                int columnSqlType, Column column)
                 throws SQLException
         {
             if (column == null || column.getRawData() == null) {
-                preparedStatement.setObject(columnIndex, null);
+                preparedStatement.setObject(parameterIndex, null);
                 return preparedStatement;
             }
             java.util.Date utilDate;
@@ -478,40 +491,40 @@ public class CommonRdbmsWriter
                 case Types.LONGNVARCHAR:
                 case Types.SQLXML:
                 case Types.ARRAY:
-                    preparedStatement.setString(columnIndex, column.asString());
+                    preparedStatement.setString(parameterIndex, column.asString());
                     break;
 
                 case Types.BOOLEAN:
-                    preparedStatement.setBoolean(columnIndex, column.asBoolean());
+                    preparedStatement.setBoolean(parameterIndex, column.asBoolean());
                     break;
 
                 case Types.TINYINT:
                 case Types.SMALLINT:
                 case Types.INTEGER:
                 case Types.BIGINT:
-                    preparedStatement.setLong(columnIndex, column.asLong());
+                    preparedStatement.setLong(parameterIndex, column.asLong());
                     break;
 
                 case Types.NUMERIC:
                 case Types.DECIMAL:
                     if ((int) this.resultSetMetaData.get(columnIndex).get("scale") == 0) {
-                        preparedStatement.setLong(columnIndex, column.asLong());
+                        preparedStatement.setLong(parameterIndex, column.asLong());
                     }
                     else {
-                        preparedStatement.setBigDecimal(columnIndex, new BigDecimal(column.asString()));
+                        preparedStatement.setBigDecimal(parameterIndex, new BigDecimal(column.asString()));
                     }
                     break;
 
                 case Types.FLOAT:
                 case Types.REAL:
                 case Types.DOUBLE:
-                    preparedStatement.setDouble(columnIndex, column.asDouble());
+                    preparedStatement.setDouble(parameterIndex, column.asDouble());
                     break;
 
                 case Types.DATE:
                     try {
                         utilDate = column.asDate();
-                        preparedStatement.setDate(columnIndex, new java.sql.Date(utilDate.getTime()));
+                        preparedStatement.setDate(parameterIndex, new java.sql.Date(utilDate.getTime()));
                     }
                     catch (AddaxException e) {
                         throw new SQLException(String.format("Date 类型转换错误：[%s]", column));
@@ -531,33 +544,33 @@ public class CommonRdbmsWriter
                     if (null != utilDate) {
                         sqlTime = new java.sql.Time(utilDate.getTime());
                     }
-                    preparedStatement.setTime(columnIndex, sqlTime);
+                    preparedStatement.setTime(parameterIndex, sqlTime);
                     break;
 
                 case Types.TIMESTAMP:
-                    preparedStatement.setTimestamp(columnIndex, column.asTimestamp(), Calendar.getInstance());
+                    preparedStatement.setTimestamp(parameterIndex, column.asTimestamp(), Calendar.getInstance());
                     break;
 
                 case Types.BINARY:
                 case Types.VARBINARY:
                 case Types.BLOB:
                 case Types.LONGVARBINARY:
-                    preparedStatement.setBytes(columnIndex, column.asBytes());
+                    preparedStatement.setBytes(parameterIndex, column.asBytes());
                     break;
 
                 // warn: bit(1) -> Types.BIT 可使用setBoolean
                 // warn: bit(>1) -> Types.VARBINARY 可使用setBytes
                 case Types.BIT:
                     if ((int) this.resultSetMetaData.get(columnIndex).get("precision") == 1) {
-                        preparedStatement.setBoolean(columnIndex, column.asBoolean());
+                        preparedStatement.setBoolean(parameterIndex, column.asBoolean());
                     }
                     else {
-                        preparedStatement.setBytes(columnIndex, column.asBytes());
+                        preparedStatement.setBytes(parameterIndex, column.asBytes());
                     }
                     break;
 
                 case Types.OTHER:
-                    preparedStatement.setObject(columnIndex, column.asString(), Types.OTHER);
+                    preparedStatement.setObject(parameterIndex, column.asString(), Types.OTHER);
                     break;
 
                 default:
@@ -582,6 +595,9 @@ public class CommonRdbmsWriter
 
             insertOrReplaceTemplate = WriterUtil.getWriteTemplate(columns, valueHolders, writeMode, dataBaseType, false);
             writeRecordSql = String.format(insertOrReplaceTemplate, table);
+            if (UpsertTemplate.isUpsert(writeMode)) {
+                upsertTemplate = new UpsertTemplate(dataBaseType, table, columns, valueHolders, writeMode, batchSize);
+            }
         }
 
         protected String calcValueHolder(String columnType)
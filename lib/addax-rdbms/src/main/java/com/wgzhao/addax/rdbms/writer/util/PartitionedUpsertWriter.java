@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.rdbms.writer.util;
+
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.spi.ErrorCode;
+import com.wgzhao.addax.common.statistics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按主键的哈希值把记录分到多个分区, 每个分区攒满一批后在少量连接上异步提交, 用于 Phoenix 等 upsert 写入.
+ * 每个分区同时最多只有一个批次在提交, 以保证同一行的多次写入按顺序生效; 所有分区同时提交的批次不超过线程数的 2 倍.
+ * 提交失败的批次单独重试, 最后逐行写入, 以便把写不进去的行作为脏数据收集
+ */
+public abstract class PartitionedUpsertWriter
+{
+    public static final String WRITE_MODE = "partition";
+
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedUpsertWriter.class);
+    private static final LatencyHistogram LATENCY = LatencyHistogram.get("phoenix.partitionCommit");
+    private static final int MAX_RETRIES = 3;
+
+    private final ErrorCode errorCode;
+    // 主键列在记录中的位置, 为空时使用所有列
+    private final int[] keyIndexes;
+    private final int batchSize;
+    private final List<Record>[] buffers;
+    private final Future<?>[] inFlightBatches;
+    private final Semaphore inFlightPermits;
+    private final ExecutorService flushPool;
+    private final BlockingQueue<Session> sessions;
+
+    private volatile Exception flushException = null;
+    private boolean closed = false;
+
+    /**
+     * @param errorCode 写入失败时抛出的错误码
+     * @param partitions 分区数
+     * @param threads 提交线程数, 也是连接数
+     * @param batchSize 每个批次的记录数
+     * @param keyIndexes 主键列在记录中的位置
+     */
+    @SuppressWarnings("unchecked")
+    public PartitionedUpsertWriter(ErrorCode errorCode, int partitions, int threads, int batchSize, int[] keyIndexes)
+    {
+        this.errorCode = errorCode;
+        this.keyIndexes = keyIndexes;
+        this.batchSize = batchSize;
+        this.buffers = new List[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.buffers[i] = new ArrayList<>(batchSize);
+        }
+        this.inFlightBatches = new Future<?>[partitions];
+        this.inFlightPermits = new Semaphore(threads * 2);
+        this.sessions = new ArrayBlockingQueue<>(threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.flushPool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "phoenix-commit-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOG.info("Write {} partitions with {} threads.", partitions, threads);
+    }
+
+    /**
+     * @return 关闭了自动提交的新连接
+     * @throws SQLException 连接失败
+     */
+    protected abstract Connection newConnection()
+            throws SQLException;
+
+    /**
+     * @param connection 连接
+     * @return 该连接上的 upsert 语句
+     * @throws SQLException 创建失败
+     */
+    protected abstract PreparedStatement prepareUpsert(Connection connection)
+            throws SQLException;
+
+    /**
+     * 把记录绑定到 upsert 语句的参数上
+     *
+     * @param ps upsert 语句
+     * @param record 记录
+     * @throws SQLException 绑定失败
+     */
+    protected abstract void bind(PreparedStatement ps, Record record)
+            throws SQLException;
+
+    /**
+     * 记录写入失败时在提交线程中调用
+     *
+     * @param record 记录
+     * @param e 失败原因
+     */
+    protected abstract void collectDirtyRecord(Record record, Exception e);
+
+    public void write(Record record)
+    {
+        checkFlushException();
+        int partition = partitionOf(record);
+        this.buffers[partition].add(record);
+        if (this.buffers[partition].size() >= this.batchSize) {
+            submit(partition);
+        }
+    }
+
+    public void close()
+    {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            if (this.flushException == null) {
+                for (int i = 0; i < this.buffers.length; i++) {
+                    if (!this.buffers[i].isEmpty()) {
+                        submit(i);
+                    }
+                }
+            }
+            this.flushPool.shutdown();
+            while (!this.flushPool.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.info("Waiting for the partition batches to be committed.");
+            }
+            checkFlushException();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AddaxException.asAddaxException(this.errorCode, e);
+        }
+        finally {
+            this.flushPool.shutdownNow();
+            Session session;
+            while ((session = this.sessions.poll()) != null) {
+                session.close();
+            }
+        }
+    }
+
+    int partitionOf(Record record)
+    {
+        int hash = 0;
+        if (this.keyIndexes.length == 0) {
+            for (int i = 0; i < record.getColumnNumber(); i++) {
+                hash = 31 * hash + hashOf(record.getColumn(i));
+            }
+        }
+        else {
+            for (int idx : this.keyIndexes) {
+                hash = 31 * hash + hashOf(record.getColumn(idx));
+            }
+        }
+        return (hash & Integer.MAX_VALUE) % this.buffers.length;
+    }
+
+    private static int hashOf(Column column)
+    {
+        return column == null || column.getRawData() == null ? 0 : column.asString().hashCode();
+    }
+
+    private void submit(int partition)
+    {
+        // 每个分区只有一个批次在提交, 同一行的多次写入按顺序生效
+        waitInFlight(partition);
+        List<Record> batch = this.buffers[partition];
+        this.buffers[partition] = new ArrayList<>(this.batchSize);
+        try {
+            this.inFlightPermits.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AddaxException.asAddaxException(this.errorCode, e);
+        }
+        this.inFlightBatches[partition] = this.flushPool.submit(() -> {
+            long startTime = System.nanoTime();
+            try {
+                commitWithRetry(batch);
+                LATENCY.observeSince(startTime);
+            }
+            catch (Exception e) {
+                LOG.error("Failed to commit {} records of the partition {}.", batch.size(), partition, e);
+                this.flushException = e;
+            }
+            finally {
+                this.inFlightPermits.release();
+            }
+        });
+    }
+
+    private void commitWithRetry(List<Record> batch)
+            throws SQLException, InterruptedException
+    {
+        // 每个提交线程同时只占用一个会话, 会话数与线程数相同
+        Session session = this.sessions.poll();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                if (session == null || session.connection.isClosed()) {
+                    if (session != null) {
+                        session.close();
+                    }
+                    session = new Session(newConnection());
+                }
+                try {
+                    for (Record record : batch) {
+                        bind(session.ps, record);
+                        session.ps.addBatch();
+                    }
+                    session.ps.executeBatch();
+                }
+                catch (SQLException e) {
+                    // 数据在发送到服务端之前就被拒绝, 重试整个批次没有意义
+                    session.clearBatch();
+                    session.rollback();
+                    LOG.warn("Failed to upsert {} records, write them one by one.", batch.size(), e);
+                    commitOneByOne(session, batch);
+                    return;
+                }
+                try {
+                    session.connection.commit();
+                    return;
+                }
+                catch (SQLException e) {
+                    session.clearBatch();
+                    session.rollback();
+                    if (attempt >= MAX_RETRIES) {
+                        LOG.warn("Failed to commit {} records after {} attempts, write them one by one.", batch.size(), attempt, e);
+                        commitOneByOne(session, batch);
+                        return;
+                    }
+                    LOG.warn("Failed to commit {} records, retry {}/{}.", batch.size(), attempt, MAX_RETRIES, e);
+                    sleepBeforeRetry(attempt);
+                }
+            }
+        }
+        finally {
+            if (session != null && !this.sessions.offer(session)) {
+                session.close();
+            }
+        }
+    }
+
+    /*
+     * 第 attempt 次提交失败后等待 attempt 秒再重试
+     */
+    void sleepBeforeRetry(int attempt)
+            throws InterruptedException
+    {
+        TimeUnit.SECONDS.sleep(attempt);
+    }
+
+    private void commitOneByOne(Session session, List<Record> batch)
+    {
+        for (Record record : batch) {
+            try {
+                bind(session.ps, record);
+                session.ps.executeUpdate();
+                session.connection.commit();
+            }
+            catch (SQLException e) {
+                session.rollback();
+                collectDirtyRecord(record, e);
+            }
+        }
+    }
+
+    private void waitInFlight(int partition)
+    {
+        Future<?> future = this.inFlightBatches[partition];
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AddaxException.asAddaxException(this.errorCode, e);
+        }
+        catch (ExecutionException e) {
+            throw AddaxException.asAddaxException(this.errorCode, e.getCause());
+        }
+        this.inFlightBatches[partition] = null;
+    }
+
+    private void checkFlushException()
+    {
+        if (this.flushException != null) {
+            throw AddaxException.asAddaxException(this.errorCode, this.flushException);
+        }
+    }
+
+    private class Session
+    {
+        final Connection connection;
+        final PreparedStatement ps;
+
+        Session(Connection connection)
+                throws SQLException
+        {
+            this.connection = connection;
+            try {
+                this.ps = prepareUpsert(connection);
+            }
+            catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        void clearBatch()
+        {
+            try {
+                this.ps.clearBatch();
+            }
+            catch (SQLException e) {
+                LOG.warn("Failed to clear the batch.", e);
+            }
+        }
+
+        void rollback()
+        {
+            try {
+                this.connection.rollback();
+            }
+            catch (SQLException e) {
+                LOG.warn("Failed to rollback the connection.", e);
+            }
+        }
+
+        void close()
+        {
+            try {
+                this.ps.close();
+                this.connection.close();
+            }
+            catch (SQLException e) {
+                LOG.warn("Failed to close the connection.", e);
+            }
+        }
+    }
+}
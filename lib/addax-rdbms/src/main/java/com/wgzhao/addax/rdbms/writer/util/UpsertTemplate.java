@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.rdbms.writer.util;
+
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.rdbms.util.DBUtilErrorCode;
+import com.wgzhao.addax.rdbms.util.DataBaseType;
+import com.wgzhao.addax.rdbms.util.RdbmsException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * writeMode 为 update 时按数据库方言生成多行的 upsert 语句, 一个批次只需要执行一条(或少数几条)语句:
+ * <ul>
+ *     <li>MySQL: INSERT ... VALUES (...),(...) ON DUPLICATE KEY UPDATE</li>
+ *     <li>PostgreSQL/SQLite: INSERT ... VALUES (...),(...) ON CONFLICT (keys) DO UPDATE</li>
+ *     <li>Oracle: MERGE INTO ... USING (SELECT ... FROM DUAL UNION ALL ...)</li>
+ *     <li>SQL Server: MERGE INTO ... USING (VALUES (...),(...))</li>
+ *     <li>ClickHouse: 普通 INSERT, 由 ReplacingMergeTree 在合并时按排序键去重</li>
+ * </ul>
+ * 每一行的参数按 column 的顺序绑定, 第 r 行(从 0 开始)第 i 列的参数下标为 {@code r * columnNumber + i}
+ */
+public class UpsertTemplate
+{
+    private static final Set<DataBaseType> SUPPORTED = EnumSet.of(DataBaseType.MySql, DataBaseType.PostgreSQL, DataBaseType.SQLite,
+            DataBaseType.Oracle, DataBaseType.SQLServer, DataBaseType.ClickHouse);
+
+    private final DataBaseType dataBaseType;
+    private final String table;
+    private final List<String> columns;
+    private final List<String> valueHolders;
+    private final List<String> keys;
+    private final int[] keyIndexes;
+    private final int maxRows;
+    private final Map<Integer, String> sqlCache = new HashMap<>();
+
+    /**
+     * @param dataBaseType 数据库类型
+     * @param table 表名
+     * @param columns 写入的字段
+     * @param valueHolders 每个字段的占位符, 一般为 ?, 也可以带类型转换, 比如 ?::INT
+     * @param writeMode update 或者 update(key1, key2)
+     * @param batchSize 每个批次的记录数, 单条语句的行数不超过该值以及数据库参数个数的限制
+     */
+    public UpsertTemplate(DataBaseType dataBaseType, String table, List<String> columns, List<String> valueHolders,
+            String writeMode, int batchSize)
+    {
+        if (!SUPPORTED.contains(dataBaseType)) {
+            throw AddaxException.asAddaxException(DBUtilErrorCode.ILLEGAL_VALUE,
+                    String.format("当前数据库 %s 不支持 writeMode update 模式.", dataBaseType.getTypeName()));
+        }
+        this.dataBaseType = dataBaseType;
+        this.table = table;
+        this.columns = columns;
+        this.valueHolders = valueHolders;
+        this.keys = parseKeys(writeMode);
+        this.keyIndexes = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            keyIndexes[i] = indexOf(columns, keys.get(i));
+            if (keyIndexes[i] == -1) {
+                throw AddaxException.asAddaxException(DBUtilErrorCode.CONF_ERROR,
+                        String.format("writeMode [%s] 中的字段 [%s] 不在 column 配置中.", writeMode, keys.get(i)));
+            }
+        }
+        if (keys.isEmpty() && dataBaseType != DataBaseType.MySql && dataBaseType != DataBaseType.ClickHouse) {
+            throw AddaxException.asAddaxException(DBUtilErrorCode.CONF_ERROR,
+                    String.format("%s 的 writeMode 需要指定唯一键, 比如 update(id).", dataBaseType.getTypeName()));
+        }
+        this.maxRows = Math.max(1, Math.min(batchSize, maxParameters(dataBaseType) / columns.size()));
+    }
+
+    public static boolean isUpsert(String writeMode)
+    {
+        return writeMode != null && writeMode.trim().toLowerCase().startsWith("update");
+    }
+
+    /*
+     * update(id, name) -> [id, name], update -> []
+     */
+    public static List<String> parseKeys(String writeMode)
+    {
+        List<String> keys = new ArrayList<>();
+        String mode = writeMode.trim();
+        int left = mode.indexOf('(');
+        if (left == -1) {
+            return keys;
+        }
+        int right = mode.lastIndexOf(')');
+        for (String key : mode.substring(left + 1, right == -1 ? mode.length() : right).split(",")) {
+            if (StringUtils.isNotBlank(key)) {
+                keys.add(key.trim());
+            }
+        }
+        return keys;
+    }
+
+    /*
+     * 单条语句中绑定参数的个数上限
+     */
+    private static int maxParameters(DataBaseType dataBaseType)
+    {
+        switch (dataBaseType) {
+            case SQLServer:
+                return 2099;
+            case SQLite:
+                return 999;
+            case PostgreSQL:
+                return Short.MAX_VALUE;
+            default:
+                return 65535;
+        }
+    }
+
+    /**
+     * @return 单条语句最多包含的行数
+     */
+    public int getMaxRows()
+    {
+        return maxRows;
+    }
+
+    public List<String> getKeys()
+    {
+        return keys;
+    }
+
+    /**
+     * ClickHouse 没有 upsert 语句, 只有 ReplacingMergeTree 系列的表引擎会在合并时按排序键保留最后写入的记录,
+     * 其他引擎上使用 update 模式会产生重复数据, 因此直接报错
+     *
+     * @param connection 目的端的连接
+     */
+    public void check(Connection connection)
+    {
+        if (dataBaseType != DataBaseType.ClickHouse) {
+            return;
+        }
+        String sql = "SELECT engine FROM system.tables WHERE database = " + (table.contains(".") ? "?" : "currentDatabase()") + " AND name = ?";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int dot = table.indexOf('.');
+            if (dot > 0) {
+                ps.setString(1, table.substring(0, dot));
+                ps.setString(2, table.substring(dot + 1));
+            }
+            else {
+                ps.setString(1, table);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                String engine = rs.next() ? rs.getString(1) : null;
+                if (engine == null || !engine.contains("ReplacingMergeTree")) {
+                    throw AddaxException.asAddaxException(DBUtilErrorCode.CONF_ERROR,
+                            String.format("ClickHouse 表 [%s] 的引擎为 %s, writeMode update 只支持 ReplacingMergeTree 系列的表引擎.", table, engine));
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw RdbmsException.asQueryException(e, sql);
+        }
+    }
+
+    public String getSql(int rows)
+    {
+        return sqlCache.computeIfAbsent(rows, this::buildSql);
+    }
+
+    /**
+     * 同一条语句中不能出现重复的唯一键(PostgreSQL 会报错 "ON CONFLICT DO UPDATE command cannot affect row a second time",
+     * MERGE 语句同样会失败), 因此同一个批次中唯一键重复的记录只保留最后一条, 与逐条写入的结果一致
+     *
+     * @param buffer 一个批次的记录
+     * @return 去重后的记录, 保持原有的先后顺序
+     */
+    public Collection<Record> removeDuplicateKeys(List<Record> buffer)
+    {
+        if (keyIndexes.length == 0) {
+            return buffer;
+        }
+        Map<String, Record> distinct = new LinkedHashMap<>(buffer.size() * 2);
+        StringBuilder sb = new StringBuilder();
+        for (Record record : buffer) {
+            sb.setLength(0);
+            for (int index : keyIndexes) {
+                Column column = record.getColumn(index);
+                sb.append(column == null || column.getRawData() == null ? "\u0000" : column.asString()).append('\u0001');
+            }
+            // 删除后重新放入, 使重复的记录排在最后一次出现的位置
+            String key = sb.toString();
+            distinct.remove(key);
+            distinct.put(key, record);
+        }
+        return distinct.values();
+    }
+
+    private String buildSql(int rows)
+    {
+        String columnList = StringUtils.join(columns, ",");
+        switch (dataBaseType) {
+            case MySql:
+                return "INSERT INTO " + table + " (" + columnList + ") VALUES " + valuesRows(rows) + WriterUtil.doMysqlUpdate(columns);
+            case PostgreSQL:
+            case SQLite:
+                return "INSERT INTO " + table + " (" + columnList + ") VALUES " + valuesRows(rows) + onConflict();
+            case Oracle:
+                StringBuilder source = new StringBuilder();
+                for (int r = 0; r < rows; r++) {
+                    source.append(r == 0 ? "SELECT " : " UNION ALL SELECT ");
+                    for (int i = 0; i < columns.size(); i++) {
+                        source.append(i == 0 ? "" : ",").append(valueHolders.get(i));
+                        if (r == 0) {
+                            source.append(" AS ").append(columns.get(i));
+                        }
+                    }
+                    source.append(" FROM DUAL");
+                }
+                return merge(source.toString());
+            case SQLServer:
+                return merge("VALUES " + valuesRows(rows)) + ";";
+            default:
+                // ClickHouse
+                return "INSERT INTO " + table + " (" + columnList + ") VALUES " + valuesRows(rows);
+        }
+    }
+
+    private String valuesRows(int rows)
+    {
+        String row = "(" + StringUtils.join(valueHolders, ",") + ")";
+        StringBuilder sb = new StringBuilder(rows * (row.length() + 1));
+        for (int r = 0; r < rows; r++) {
+            sb.append(r == 0 ? "" : ",").append(row);
+        }
+        return sb.toString();
+    }
+
+    private String onConflict()
+    {
+        List<String> updates = new ArrayList<>();
+        for (String column : columns) {
+            if (indexOf(keys, column) == -1) {
+                updates.add(column + "=excluded." + column);
+            }
+        }
+        String conflict = " ON CONFLICT (" + StringUtils.join(keys, ",") + ") DO ";
+        return updates.isEmpty() ? conflict + "NOTHING" : conflict + "UPDATE SET " + StringUtils.join(updates, ",");
+    }
+
+    /*
+     * MERGE INTO t A USING (source) TMP (c1,c2) ON (A.k = TMP.k)
+     * WHEN MATCHED THEN UPDATE SET A.c2 = TMP.c2
+     * WHEN NOT MATCHED THEN INSERT (c1,c2) VALUES (TMP.c1,TMP.c2)
+     */
+    private String merge(String source)
+    {
+        StringBuilder sb = new StringBuilder("MERGE INTO ").append(table).append(" A USING (").append(source).append(") TMP");
+        if (dataBaseType == DataBaseType.SQLServer) {
+            sb.append(" (").append(StringUtils.join(columns, ",")).append(")");
+        }
+        sb.append(" ON (");
+        for (int i = 0; i < keys.size(); i++) {
+            sb.append(i == 0 ? "" : " AND ").append("A.").append(keys.get(i)).append(" = TMP.").append(keys.get(i));
+        }
+        sb.append(")");
+        List<String> updates = new ArrayList<>();
+        List<String> inserts = new ArrayList<>();
+        for (String column : columns) {
+            if (indexOf(keys, column) == -1) {
+                updates.add("A." + column + " = TMP." + column);
+            }
+            inserts.add("TMP." + column);
+        }
+        if (!updates.isEmpty()) {
+            sb.append(" WHEN MATCHED THEN UPDATE SET ").append(StringUtils.join(updates, ","));
+        }
+        sb.append(" WHEN NOT MATCHED THEN INSERT (").append(StringUtils.join(columns, ",")).append(") VALUES (")
+                .append(StringUtils.join(inserts, ",")).append(")");
+        return sb.toString();
+    }
+
+    private static int indexOf(List<String> names, String name)
+    {
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
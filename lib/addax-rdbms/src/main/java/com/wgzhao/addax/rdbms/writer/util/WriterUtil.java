@@ -37,7 +37,6 @@ import org.slf4j.LoggerFactory;
 import java.sql.Connection;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -145,65 +144,16 @@ public final class WriterUtil
         }
         String writeDataSqlTemplate;
         if (forceUseUpdate || mode.startsWith("update")) {
-            if (dataBaseType == DataBaseType.MySql) {
-                writeDataSqlTemplate = "INSERT INTO %s (" + columns + ") VALUES(" + placeHolders + ")" +
-                        doMysqlUpdate(columnHolders);
-            }
-            else if (dataBaseType == DataBaseType.Oracle) {
-                writeDataSqlTemplate = doOracleOrSqlServerUpdate(writeMode, columnHolders, valueHolders, dataBaseType) +
-                        "INSERT (" + columns + ") VALUES ( " + placeHolders + " )";
-            }
-            else if (dataBaseType == DataBaseType.PostgreSQL) {
-                writeDataSqlTemplate = "INSERT INTO %s (" + columns + ") VALUES ( " + placeHolders + " )" +
-                        doPostgresqlUpdate(writeMode, columnHolders);
-            }
-            else if (dataBaseType == DataBaseType.SQLServer) {
-                writeDataSqlTemplate = doOracleOrSqlServerUpdate(writeMode, columnHolders, valueHolders, dataBaseType) +
-                        "INSERT (" + columns + ") VALUES ( " + placeHolders + " );";
-            }
-            else {
-                throw AddaxException.asAddaxException(DBUtilErrorCode.ILLEGAL_VALUE,
-                        String.format("当前数据库不支持 writeMode:%s 模式.", writeMode));
-            }
+            // 单行的 upsert 语句, 批量写入时由 UpsertTemplate 生成多行的语句
+            writeDataSqlTemplate = new UpsertTemplate(dataBaseType, "%s", columnHolders, valueHolders, writeMode, 1).getSql(1);
         }
         else {
-            //这里是保护,如果其他错误的使用了update,需要更换为replace
-            if (mode.startsWith("update")) {
-                writeMode = "replace";
-            }
             writeDataSqlTemplate = writeMode + " INTO %s ( " + columns + ") VALUES ( " + placeHolders + " )";
         }
 
         return writeDataSqlTemplate;
     }
 
-    private static String doPostgresqlUpdate(String writeMode, List<String> columnHolders)
-    {
-        String conflict = writeMode.replace("update", "");
-        StringBuilder sb = new StringBuilder();
-        sb.append(" ON CONFLICT ");
-        sb.append(conflict);
-        sb.append(" DO ");
-        if (columnHolders == null || columnHolders.size() < 1) {
-            sb.append("NOTHING");
-            return sb.toString();
-        }
-        sb.append(" UPDATE SET ");
-        boolean first = true;
-        for (String column : columnHolders) {
-            if (!first) {
-                sb.append(",");
-            }
-            else {
-                first = false;
-            }
-            sb.append(column);
-            sb.append("=excluded.");
-            sb.append(column);
-        }
-        return sb.toString();
-    }
-
     public static String doMysqlUpdate(List<String> columnHolders)
     {
         if (columnHolders == null || columnHolders.isEmpty()) {
@@ -228,71 +178,6 @@ public final class WriterUtil
         return sb.toString();
     }
 
-    public static String doOracleOrSqlServerUpdate(String merge, List<String> columnHolders, List<String> valueHolders, DataBaseType dataBaseType)
-    {
-        String[] sArray = getStrings(merge);
-        StringBuilder sb = new StringBuilder();
-        sb.append("MERGE INTO %s A USING ( SELECT ");
-
-        boolean first = true;
-        boolean first1 = true;
-        StringBuilder str = new StringBuilder();
-        StringBuilder update = new StringBuilder();
-        for (int i = 0; i < columnHolders.size(); i++) {
-            String columnHolder = columnHolders.get(i);
-            if (Arrays.asList(sArray).contains(columnHolder)) {
-                if (!first) {
-                    sb.append(",");
-                    str.append(" AND ");
-                }
-                else {
-                    first = false;
-                }
-                str.append("TMP.").append(columnHolder);
-                sb.append(valueHolders.get(i));
-                str.append(" = ");
-                sb.append(" AS ");
-                str.append("A.").append(columnHolder);
-                sb.append(columnHolder);
-            }
-        }
-
-        for (int i = 0; i < columnHolders.size(); i++) {
-            if (!Arrays.asList(sArray).contains(columnHolders.get(i))) {
-                if (!first1) {
-                    update.append(",");
-                }
-                else {
-                    first1 = false;
-                }
-                update.append(columnHolders.get(i));
-                update.append(" = ");
-                update.append(valueHolders.get(i));
-            }
-        }
-
-        if (dataBaseType == DataBaseType.Oracle) {
-            sb.append(" FROM DUAL ) TMP ON (");
-        }
-        else {
-            sb.append(" ) TMP ON (");
-        }
-        sb.append(str);
-        sb.append(" ) WHEN MATCHED THEN UPDATE SET ");
-        sb.append(update);
-        sb.append(" WHEN NOT MATCHED THEN ");
-        return sb.toString();
-    }
-
-    public static String[] getStrings(String merge)
-    {
-        merge = merge.replace("update", "");
-        merge = merge.replace("(", "");
-        merge = merge.replace(")", "");
-        merge = merge.replace(" ", "");
-        return merge.split(",");
-    }
-
     public static void preCheckPrePareSQL(Configuration originalConfig, DataBaseType type)
     {
         Configuration connConf = originalConfig.getListConfiguration(Key.CONNECTION).get(0);
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.rdbms.reader.cdc;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestChangeRecord
+{
+    private static final List<String> TABLE_COLUMNS = Arrays.asList("id", "name", "Age", "updated_at");
+
+    @Test
+    public void testSelectAllColumns()
+    {
+        assertArrayEquals(new int[] {0, 1, 2, 3},
+                ChangeRecord.selectColumns(Collections.singletonList(" * "), TABLE_COLUMNS, "t"));
+    }
+
+    @Test
+    public void testSelectColumnsInConfiguredOrder()
+    {
+        assertArrayEquals(new int[] {3, 0, 2},
+                ChangeRecord.selectColumns(Arrays.asList("updated_at", "id", "age"), TABLE_COLUMNS, "t"));
+    }
+
+    @Test
+    public void testSelectQuotedColumns()
+    {
+        assertArrayEquals(new int[] {1, 2, 0},
+                ChangeRecord.selectColumns(Arrays.asList("`name`", "\"AGE\"", " [id] "), TABLE_COLUMNS, "t"));
+    }
+
+    @Test
+    public void testSelectRepeatedColumn()
+    {
+        assertArrayEquals(new int[] {0, 0},
+                ChangeRecord.selectColumns(Arrays.asList("id", "ID"), TABLE_COLUMNS, "t"));
+    }
+
+    @Test
+    public void testSelectUnknownColumn()
+    {
+        AddaxException e = assertThrows(AddaxException.class,
+                () -> ChangeRecord.selectColumns(Arrays.asList("id", "missing"), TABLE_COLUMNS, "db.t"));
+        assertEquals(CdcErrorCode.ILLEGAL_VALUE, e.getErrorCode());
+    }
+
+    @Test
+    public void testUnquote()
+    {
+        assertEquals("name", ChangeRecord.unquote(" `name` "));
+        assertEquals("name", ChangeRecord.unquote("\"name\""));
+        assertEquals("name", ChangeRecord.unquote("[name]"));
+        assertEquals("first name", ChangeRecord.unquote("`first name`"));
+    }
+}
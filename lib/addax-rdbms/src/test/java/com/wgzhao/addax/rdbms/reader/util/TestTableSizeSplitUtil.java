@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.rdbms.reader.util;
+
+import com.wgzhao.addax.common.base.Constant;
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.util.DataBaseType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTableSizeSplitUtil
+{
+    private static final String URL1 = "jdbc:mysql://127.0.0.1:3306/db1";
+    private static final String URL2 = "jdbc:mysql://127.0.0.2:3306/db2";
+
+    private final Map<String, Long> rows = new HashMap<>();
+    private final Map<String, Integer> splitRequests = new HashMap<>();
+
+    @Test
+    public void testSplitByTableSizeIsOptIn()
+    {
+        TableSizeSplitUtil.dataBaseType = DataBaseType.MySql;
+        Configuration config = newConfig(true, connection(URL1, "a", "b"));
+        assertFalse(TableSizeSplitUtil.isApplicable(config));
+
+        config.set(Key.SPLIT_BY_TABLE_SIZE, true);
+        assertTrue(TableSizeSplitUtil.isApplicable(config));
+
+        config.set(Key.RESUMABLE, true);
+        assertFalse(TableSizeSplitUtil.isApplicable(config));
+    }
+
+    @Test
+    public void testSplitNumberIsProportionalAndLargestFirst()
+    {
+        // 2 channels -> 10 tasks, 10000 rows in total -> 1000 rows per task
+        rows.put("big", 8000L);
+        rows.put("mid", 1500L);
+        rows.put("s1", 200L);
+        rows.put("s2", 150L);
+        rows.put("s3", 100L);
+        rows.put("s4", 30L);
+        rows.put("s5", 20L);
+        Configuration config = newConfig(true, connection(URL1, "s3", "mid", "s1", "big", "s2"), connection(URL2, "s5", "s4"));
+
+        List<Configuration> splits = split(config, 2);
+
+        assertEquals(8, (int) splitRequests.get("big"));
+        assertEquals(2, (int) splitRequests.get("mid"));
+        assertEquals(2, splitRequests.size());
+        // 1000 rows per piece of big, 750 per piece of mid, then the merged small tables
+        assertEquals(Arrays.asList("big", "big", "big", "big", "big", "big", "big", "big", "mid", "mid", "s1", "s4"), tables(splits));
+
+        // the small tables are packed per jdbcUrl, largest first
+        assertEquals(Arrays.asList("s1", "s2", "s3"), mergedTables(splits.get(10)));
+        assertEquals(URL1, splits.get(10).getString(Key.JDBC_URL));
+        assertEquals(Arrays.asList("s4", "s5"), mergedTables(splits.get(11)));
+        assertEquals(URL2, splits.get(11).getString(Key.JDBC_URL));
+    }
+
+    @Test
+    public void testSmallTablesAreSplitIntoBatchesOfTargetRows()
+    {
+        // 1 channel -> 5 tasks, 5000 rows in total -> 1000 rows per task
+        rows.put("big", 2000L);
+        rows.put("a", 700L);
+        rows.put("b", 600L);
+        rows.put("c", 500L);
+        rows.put("d", 400L);
+        rows.put("e", 300L);
+        rows.put("f", 0L);
+        rows.put("g", 500L);
+        Configuration config = newConfig(true, connection(URL1, "a", "b", "c", "d", "e", "f", "g", "big"));
+
+        List<Configuration> splits = split(config, 1);
+
+        assertEquals(2, (int) splitRequests.get("big"));
+        // 700, 600, 500, 500, 400, 300, 0 -> [700], [600], [500, 500], [400, 300, 0]
+        assertEquals(Arrays.asList("big", "big", "c", "a", "d", "b"), tables(splits));
+        assertEquals(Arrays.asList("c", "g"), mergedTables(splits.get(2)));
+        assertNull(splits.get(3).get(Key.MERGED_SLICES));
+        assertEquals(Arrays.asList("d", "e", "f"), mergedTables(splits.get(4)));
+        assertNull(splits.get(5).get(Key.MERGED_SLICES));
+    }
+
+    @Test
+    public void testTableWithoutStatisticsIsSplitEqually()
+    {
+        // 4 channels -> 20 tasks, 3600 known rows -> 180 rows per task, 3 tables -> 2 pieces for the unknown one
+        rows.put("known", 3000L);
+        rows.put("tiny", 600L);
+        Configuration config = newConfig(true, connection(URL1, "unknown", "known", "tiny"));
+
+        List<Configuration> splits = split(config, 4);
+
+        assertEquals(17, (int) splitRequests.get("known"));
+        assertEquals(3, (int) splitRequests.get("tiny"));
+        assertEquals(2, (int) splitRequests.get("unknown"));
+        assertEquals(22, splits.size());
+        // 200 rows per piece of tiny, the unknown table is weighted as 180 rows per piece, 176 per piece of known
+        assertEquals("tiny", splits.get(0).getString(Key.TABLE));
+        assertEquals("unknown", splits.get(3).getString(Key.TABLE));
+        assertEquals("unknown", splits.get(4).getString(Key.TABLE));
+        assertEquals("known", splits.get(5).getString(Key.TABLE));
+    }
+
+    @Test
+    public void testNotSplittableWithoutSplitPk()
+    {
+        rows.put("big", 9000L);
+        rows.put("small", 100L);
+        Configuration config = newConfig(false, connection(URL1, "small", "big"));
+
+        List<Configuration> splits = split(config, 2);
+
+        assertTrue(splitRequests.isEmpty());
+        assertEquals(Arrays.asList("big", "small"), tables(splits));
+        assertEquals("select * from big ", splits.get(0).getString(Key.QUERY_SQL));
+    }
+
+    @Test
+    public void testNoStatisticsReturnsNull()
+    {
+        Configuration config = newConfig(true, connection(URL1, "a", "b"), connection(URL2, "c"));
+        assertNull(split(config, 2));
+        assertTrue(splitRequests.isEmpty());
+    }
+
+    private List<Configuration> split(Configuration config, int adviceNumber)
+    {
+        BiFunction<Configuration, List<String>, long[]> estimator = (sliceConfig, tables) -> {
+            long[] result = new long[tables.size()];
+            for (int i = 0; i < tables.size(); i++) {
+                result[i] = rows.getOrDefault(tables.get(i), -1L);
+            }
+            return result;
+        };
+        BiFunction<Configuration, Integer, List<Configuration>> splitter = (slice, number) -> {
+            splitRequests.put(slice.getString(Key.TABLE), number);
+            List<Configuration> parts = new ArrayList<>();
+            for (int i = 0; i < number; i++) {
+                Configuration part = slice.clone();
+                part.set(Key.QUERY_SQL, "select * from " + slice.getString(Key.TABLE) + " where part = " + i);
+                parts.add(part);
+            }
+            return parts;
+        };
+        List<Configuration> splits = TableSizeSplitUtil.doSplit(config, adviceNumber, estimator, splitter);
+        if (splits != null) {
+            for (Configuration split : splits) {
+                assertNotNull(split.getString(Key.QUERY_SQL));
+                assertNull(split.get(Key.CONNECTION));
+            }
+        }
+        return splits;
+    }
+
+    private static Configuration newConfig(boolean splittable, String... connections)
+    {
+        Configuration config = Configuration.from("{\"column\": \"*\", \"isTableMode\": true, \"connection\": ["
+                + String.join(",", connections) + "]}");
+        if (splittable) {
+            config.set(Key.SPLIT_PK, "id");
+        }
+        int tableNumber = 0;
+        for (Configuration conn : config.getListConfiguration(Key.CONNECTION)) {
+            tableNumber += conn.getList(Key.TABLE).size();
+        }
+        config.set(Constant.TABLE_NUMBER_MARK, tableNumber);
+        return config;
+    }
+
+    private static String connection(String jdbcUrl, String... tables)
+    {
+        return "{\"jdbcUrl\": \"" + jdbcUrl + "\", \"table\": [\"" + String.join("\", \"", tables) + "\"]}";
+    }
+
+    private static List<String> tables(List<Configuration> splits)
+    {
+        List<String> tables = new ArrayList<>();
+        for (Configuration split : splits) {
+            tables.add(split.getString(Key.TABLE));
+        }
+        return tables;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> mergedTables(Configuration split)
+    {
+        List<String> tables = new ArrayList<>();
+        for (Object item : split.getList(Key.MERGED_SLICES)) {
+            tables.add((String) ((Map<String, Object>) item).get(Key.TABLE));
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.rdbms.writer.util;
+
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.LongColumn;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.element.StringColumn;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.rdbms.util.DBUtilErrorCode;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the writer against stub JDBC connections built with {@link Proxy}, a row is a record of (id, value)
+ */
+public class TestPartitionedUpsertWriter
+{
+    private static final int PARTITIONS = 4;
+
+    // committed rows in commit order
+    private final List<String> committed = Collections.synchronizedList(new ArrayList<>());
+    // the sizes of the committed batches
+    private final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> dirty = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> sleeps = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger failedBatches = new AtomicInteger();
+    private final AtomicInteger failedCommits = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger[] inFlight = new AtomicInteger[PARTITIONS];
+    private final Map<Integer, String> mixedBatches = new ConcurrentHashMap<>();
+
+    // the rows rejected by executeBatch and executeUpdate
+    private Predicate<String> badRow = row -> false;
+    // how many batch commits fail before one succeeds
+    private int commitFailures = 0;
+
+    public TestPartitionedUpsertWriter()
+    {
+        for (int i = 0; i < PARTITIONS; i++) {
+            inFlight[i] = new AtomicInteger();
+        }
+    }
+
+    @Test
+    public void testPartitionByKeyAndKeepOrder()
+    {
+        PartitionedUpsertWriter writer = newWriter(3, 5);
+        // 40 keys, each one is written 5 times
+        for (int round = 0; round < 5; round++) {
+            for (int id = 0; id < 40; id++) {
+                writer.write(record(id, "v" + round));
+            }
+        }
+        writer.close();
+
+        assertEquals(200, committed.size());
+        assertEquals(40, batches.size());
+        assertEquals(Collections.emptyMap(), mixedBatches);
+        // at most one batch of a partition in flight
+        assertEquals(1, maxInFlight.get());
+        assertTrue(connections.get() <= 3, "connections: " + connections.get());
+
+        // the upserts of the same key are applied in the written order
+        Map<String, List<String>> values = new HashMap<>();
+        for (String row : committed) {
+            String[] parts = row.split("=");
+            values.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(parts[1]);
+        }
+        assertEquals(40, values.size());
+        for (List<String> list : values.values()) {
+            assertEquals(Arrays.asList("v0", "v1", "v2", "v3", "v4"), list);
+        }
+    }
+
+    @Test
+    public void testRetryCommitBeforeRowByRow()
+    {
+        commitFailures = 2;
+        PartitionedUpsertWriter writer = newWriter(1, 4);
+        for (int i = 0; i < 4; i++) {
+            writer.write(record(0, "v" + i));
+        }
+        writer.close();
+
+        // sleep 1s after the first failure, 2s after the second one
+        assertEquals(Arrays.asList(1, 2), sleeps);
+        assertEquals(Collections.singletonList(4), batches);
+        assertEquals(Collections.emptyList(), dirty);
+    }
+
+    @Test
+    public void testWriteRowByRowAfterMaxRetries()
+    {
+        commitFailures = Integer.MAX_VALUE;
+        PartitionedUpsertWriter writer = newWriter(1, 3);
+        for (int i = 0; i < 3; i++) {
+            writer.write(record(0, "v" + i));
+        }
+        writer.close();
+
+        // MAX_RETRIES = 3, no sleep after the last attempt
+        assertEquals(Arrays.asList(1, 2), sleeps);
+        assertEquals(Arrays.asList(1, 1, 1), batches);
+        assertEquals(Arrays.asList("0=v0", "0=v1", "0=v2"), committed);
+        assertEquals(Collections.emptyList(), dirty);
+    }
+
+    @Test
+    public void testRejectedBatchIsWrittenRowByRowWithoutRetry()
+    {
+        badRow = row -> row.endsWith("=bad");
+        PartitionedUpsertWriter writer = newWriter(1, 4);
+        // the same key, so all rows are in one batch
+        writer.write(record(7, "a"));
+        writer.write(record(7, "bad"));
+        writer.write(record(7, "c"));
+        writer.write(record(7, "d"));
+        writer.close();
+
+        assertEquals(Collections.emptyList(), sleeps);
+        assertEquals(1, failedBatches.get());
+        assertEquals(Arrays.asList("7=a", "7=c", "7=d"), committed);
+        assertEquals(Collections.singletonList("7=bad"), dirty);
+    }
+
+    @Test
+    public void testConnectFailureFailsTheWrite()
+    {
+        PartitionedUpsertWriter writer = new PartitionedUpsertWriter(DBUtilErrorCode.WRITE_DATA_ERROR, PARTITIONS, 1, 1, new int[] {0})
+        {
+            @Override
+            protected Connection newConnection()
+                    throws SQLException
+            {
+                throw new SQLException("connection refused");
+            }
+
+            @Override
+            protected PreparedStatement prepareUpsert(Connection connection)
+            {
+                throw new AssertionError("not connected");
+            }
+
+            @Override
+            protected void bind(PreparedStatement ps, Record record) {}
+
+            @Override
+            protected void collectDirtyRecord(Record record, Exception e) {}
+        };
+        writer.write(record(1, "a"));
+        AddaxException e = assertThrows(AddaxException.class, writer::close);
+        assertEquals(DBUtilErrorCode.WRITE_DATA_ERROR, e.getErrorCode());
+    }
+
+    private PartitionedUpsertWriter newWriter(int threads, int batchSize)
+    {
+        return new PartitionedUpsertWriter(DBUtilErrorCode.WRITE_DATA_ERROR, PARTITIONS, threads, batchSize, new int[] {0})
+        {
+            @Override
+            protected Connection newConnection()
+            {
+                connections.incrementAndGet();
+                return new StubSession().connection;
+            }
+
+            @Override
+            protected PreparedStatement prepareUpsert(Connection connection)
+            {
+                return sessionOf(connection).statement;
+            }
+
+            @Override
+            protected void bind(PreparedStatement ps, Record record)
+            {
+                sessionOf(ps).bound = record;
+            }
+
+            @Override
+            protected void collectDirtyRecord(Record record, Exception e)
+            {
+                dirty.add(format(record));
+            }
+
+            @Override
+            void sleepBeforeRetry(int attempt)
+            {
+                sleeps.add(attempt);
+            }
+        };
+    }
+
+    private static Record record(long id, String value)
+    {
+        Record record = new ListRecord();
+        record.addColumn(new LongColumn(id));
+        record.addColumn(new StringColumn(value));
+        return record;
+    }
+
+    private static String format(Record record)
+    {
+        return record.getColumn(0).asString() + "=" + record.getColumn(1).asString();
+    }
+
+    // the same hash as PartitionedUpsertWriter.partitionOf with the key index 0
+    private static int partitionOf(String row)
+    {
+        int hash = row.substring(0, row.indexOf('=')).hashCode();
+        return (hash & Integer.MAX_VALUE) % PARTITIONS;
+    }
+
+    private static StubSession sessionOf(Object proxy)
+    {
+        return ((StubHandler) Proxy.getInvocationHandler(proxy)).session;
+    }
+
+    private static class StubHandler
+            implements InvocationHandler
+    {
+        final StubSession session;
+        final boolean statement;
+
+        StubHandler(StubSession session, boolean statement)
+        {
+            this.session = session;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable
+        {
+            return statement ? session.onStatement(method.getName()) : session.onConnection(method.getName());
+        }
+    }
+
+    /*
+     * A connection and its upsert statement, the rows are kept until commit
+     */
+    private class StubSession
+    {
+        final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, new StubHandler(this, false));
+        final PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, new StubHandler(this, true));
+
+        Record bound;
+        final List<String> batch = new ArrayList<>();
+        final List<String> pending = new ArrayList<>();
+        int partition = -1;
+        boolean batchCommit;
+
+        Object onStatement(String method)
+                throws SQLException
+        {
+            switch (method) {
+                case "addBatch":
+                    batch.add(format(bound));
+                    return null;
+                case "executeBatch":
+                    enter(batch);
+                    for (String row : batch) {
+                        if (badRow.test(row)) {
+                            failedBatches.incrementAndGet();
+                            throw new SQLException("bad row " + row);
+                        }
+                    }
+                    pending.addAll(batch);
+                    batch.clear();
+                    batchCommit = true;
+                    // give the other partitions a chance to overlap
+                    pause();
+                    return new int[pending.size()];
+                case "clearBatch":
+                    batch.clear();
+                    return null;
+                case "executeUpdate":
+                    String row = format(bound);
+                    if (badRow.test(row)) {
+                        throw new SQLException("bad row " + row);
+                    }
+                    pending.add(row);
+                    batchCommit = false;
+                    return 1;
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        }
+
+        Object onConnection(String method)
+                throws SQLException
+        {
+            switch (method) {
+                case "commit":
+                    if (batchCommit && failedCommits.getAndIncrement() < commitFailures) {
+                        throw new SQLException("commit timeout");
+                    }
+                    committed.addAll(pending);
+                    batches.add(pending.size());
+                    pending.clear();
+                    leave();
+                    return null;
+                case "rollback":
+                    pending.clear();
+                    batch.clear();
+                    leave();
+                    return null;
+                case "isClosed":
+                    return false;
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        }
+
+        private void enter(List<String> rows)
+        {
+            partition = partitionOf(rows.get(0));
+            for (String row : rows) {
+                if (partitionOf(row) != partition) {
+                    mixedBatches.put(partition, row);
+                }
+            }
+            maxInFlight.accumulateAndGet(inFlight[partition].incrementAndGet(), Math::max);
+        }
+
+        private void leave()
+        {
+            if (partition >= 0) {
+                inFlight[partition].decrementAndGet();
+                partition = -1;
+            }
+        }
+
+        private void pause()
+        {
+            try {
+                Thread.sleep(2);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class ListRecord
+            implements Record
+    {
+        private final List<Column> columns = new ArrayList<>();
+
+        @Override
+        public void addColumn(Column column)
+        {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column)
+        {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i)
+        {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize()
+        {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.storage.reader;
+
+/**
+ * 以原始字节保存的一行字段, 读取时才解码, 整数字段可以不创建字符串直接读取为 long
+ */
+public interface FieldSource
+{
+    /**
+     * @return 当前行的字段数
+     */
+    int size();
+
+    /**
+     * @param index 字段下标
+     * @return 字段是否等于 nullFormat
+     */
+    boolean isNull(int index);
+
+    /**
+     * @param index 字段下标
+     * @return 解码后的字段
+     */
+    String getString(int index);
+
+    /**
+     * @param index 字段下标
+     * @return 字段是否为 {@link #getLong(int)} 可以读取的整数(可选的正负号加不超过 18 位数字)
+     */
+    boolean isLong(int index);
+
+    /**
+     * @param index 字段下标, 该字段的 {@link #isLong(int)} 必须为 true
+     * @return 字段的 long 值
+     */
+    long getLong(int index);
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.storage.reader;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 读取文件中 [start, end) 字节区间对应的完整行.
+ * 一行属于起始位置落在 (start, end] 之间的区间(start 为 0 时包含 0): start 大于 0 时跳过第一个换行符之前的内容,
+ * 这部分由上一个区间读取; 最后一行即使超过 end 也读取完整. 相邻的区间按照这个规则读取, 每一行只会被读取一次.
+ * 换行符为 \n(\r\n 同样适用), 字段中包含换行符的 CSV 文件不能按区间读取
+ */
+public class LineRangeInputStream
+        extends FilterInputStream
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final long end;
+    // 下一个读取的字节在文件中的位置
+    private long pos;
+    private boolean lineStart = true;
+    private boolean finished = false;
+
+    /**
+     * @param in 已经定位到 start 的输入流
+     * @param start 区间的开始位置
+     * @param end 区间的结束位置(不包含)
+     * @throws IOException 读取失败
+     */
+    public LineRangeInputStream(InputStream in, long start, long end)
+            throws IOException
+    {
+        super(new BufferedInputStream(in, BUFFER_SIZE));
+        this.end = end;
+        this.pos = start;
+        if (start > 0) {
+            int b;
+            do {
+                b = this.in.read();
+                pos++;
+            }
+            while (b != -1 && b != '\n');
+            finished = b == -1;
+        }
+    }
+
+    @Override
+    public int read()
+            throws IOException
+    {
+        if (isDone()) {
+            return -1;
+        }
+        int b = in.read();
+        if (b == -1) {
+            finished = true;
+            return -1;
+        }
+        pos++;
+        lineStart = b == '\n';
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+            throws IOException
+    {
+        if (len == 0) {
+            return 0;
+        }
+        if (isDone()) {
+            return -1;
+        }
+        int n = in.read(b, off, len);
+        if (n == -1) {
+            finished = true;
+            return -1;
+        }
+        // 位置不小于 end 的换行符之后的行属于下一个区间
+        int from = (int) Math.max(0, Math.min(n, end - pos));
+        for (int i = from; i < n; i++) {
+            if (b[off + i] == '\n') {
+                n = i + 1;
+                finished = true;
+                break;
+            }
+        }
+        pos += n;
+        lineStart = b[off + n - 1] == '\n';
+        return n;
+    }
+
+    @Override
+    public long skip(long n)
+            throws IOException
+    {
+        // 逐字节跳过, 以便检查区间的结束位置
+        long skipped = 0;
+        while (skipped < n && read() != -1) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available()
+            throws IOException
+    {
+        return finished ? 0 : in.available();
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    private boolean isDone()
+    {
+        if (!finished && lineStart && pos > end) {
+            finished = true;
+        }
+        return finished;
+    }
+}
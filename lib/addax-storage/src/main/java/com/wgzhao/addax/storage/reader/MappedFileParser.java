@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.storage.reader;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 通过 {@link FileChannel#map} 读取本地未压缩的 UTF-8 分隔符文件.
+ * 文件按窗口映射, 逐字节查找分隔符、引号和换行符, 字段只记录在映射内存中的区间,
+ * 由 {@link RecordConverter} 读取时才解码, 整数字段直接从字节解析为 long.
+ * 引号规则与 commons-csv 的默认格式相同: 以双引号开头的字段可以包含分隔符和换行符, 其中两个双引号表示一个;
+ * 行以 \n 或 \r\n 结尾, 忽略空行
+ */
+public class MappedFileParser
+        implements FieldSource, Closeable
+{
+    private static final int DEFAULT_WINDOW_SIZE = 128 * 1024 * 1024;
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE - 8;
+    private static final byte QUOTE = '"';
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private final String fileName;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final byte delimiter;
+    private final byte[] nullBytes;
+    private final String nullFormat;
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+
+    // 当前窗口为文件的 [windowStart, windowStart + limit)
+    private MappedByteBuffer buffer;
+    // 用于批量复制, 不改变 buffer 的位置
+    private ByteBuffer view;
+    private long windowStart;
+    private int limit;
+    private boolean lastWindow;
+
+    // 当前行的字段, 偏移量相对于当前窗口
+    private int fieldCount;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] escaped = new boolean[16];
+    private boolean emptyLine;
+    private byte[] scratch = new byte[1024];
+
+    public MappedFileParser(String fileName, char delimiter, String nullFormat)
+            throws IOException
+    {
+        if (delimiter > 0x7f || delimiter == QUOTE || delimiter == LF || delimiter == CR) {
+            throw AddaxException.asAddaxException(StorageReaderErrorCode.ILLEGAL_VALUE,
+                    String.format("The delimiter '%s' is not supported by the mmap parser, only ASCII characters are supported", delimiter));
+        }
+        this.fileName = fileName;
+        this.delimiter = (byte) delimiter;
+        this.nullFormat = nullFormat;
+        this.nullBytes = nullFormat == null ? null : nullFormat.getBytes(StandardCharsets.UTF_8);
+        this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+    }
+
+    public long getFileSize()
+    {
+        return fileSize;
+    }
+
+    /*
+     * 单元测试使用较小的窗口, 以覆盖跨窗口的行
+     */
+    void setWindowSize(int windowSize)
+    {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * 读取文件中 [start, end) 字节区间内的行, 行的归属规则与 {@link LineRangeInputStream} 相同
+     *
+     * @param start 区间的开始位置, 读取整个文件时为 0
+     * @param end 区间的结束位置(不包含), 读取整个文件时为文件大小
+     * @param skipHeader 是否跳过表头, 只在 start 为 0 时有效
+     * @param converter 行的转换器
+     * @param recordSender record sender
+     * @param taskPluginCollector 脏数据收集器
+     * @throws IOException 映射文件失败
+     */
+    public void read(long start, long end, boolean skipHeader, RecordConverter converter,
+            RecordSender recordSender, TaskPluginCollector taskPluginCollector)
+            throws IOException
+    {
+        long pos = start > 0 ? skipLine(start) : 0;
+        boolean skip = skipHeader && start == 0;
+        while (pos < fileSize && pos <= end) {
+            ensureMapped(pos);
+            int from = (int) (pos - windowStart);
+            int next = parseLine(from);
+            if (next < 0) {
+                // 行超出了当前窗口, 从行首重新映射
+                if (from == 0) {
+                    windowSize = (int) Math.min(MAX_WINDOW_SIZE, windowSize * 2L);
+                }
+                map(pos);
+                continue;
+            }
+            pos = windowStart + next;
+            if (emptyLine) {
+                continue;
+            }
+            if (skip) {
+                skip = false;
+                continue;
+            }
+            converter.transport(recordSender, this, taskPluginCollector);
+        }
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        buffer = null;
+        view = null;
+        channel.close();
+    }
+
+    @Override
+    public int size()
+    {
+        return fieldCount;
+    }
+
+    @Override
+    public boolean isNull(int index)
+    {
+        if (nullBytes == null) {
+            return false;
+        }
+        if (escaped[index]) {
+            return nullFormat.equals(getString(index));
+        }
+        int start = starts[index];
+        if (ends[index] - start != nullBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < nullBytes.length; i++) {
+            if (buffer.get(start + i) != nullBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String getString(int index)
+    {
+        int start = starts[index];
+        int length = ends[index] - start;
+        if (length == 0) {
+            return "";
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        // 转换为 Buffer, 避免在 Java 8 上运行 Java 9+ 编译的协变返回类型
+        ((Buffer) view).position(start);
+        view.get(scratch, 0, length);
+        if (escaped[index]) {
+            // 两个双引号表示一个
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                scratch[n++] = scratch[i];
+                if (scratch[i] == QUOTE) {
+                    i++;
+                }
+            }
+            length = n;
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean isLong(int index)
+    {
+        int start = starts[index];
+        int end = ends[index];
+        if (escaped[index] || start == end) {
+            return false;
+        }
+        byte first = buffer.get(start);
+        if (first == '-' || first == '+') {
+            start++;
+        }
+        // 18 位以内不会溢出
+        if (start == end || end - start > 18) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getLong(int index)
+    {
+        int start = starts[index];
+        int end = ends[index];
+        byte first = buffer.get(start);
+        boolean negative = first == '-';
+        if (negative || first == '+') {
+            start++;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (buffer.get(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private void ensureMapped(long pos)
+            throws IOException
+    {
+        if (buffer == null || pos < windowStart || pos >= windowStart + limit) {
+            map(pos);
+        }
+    }
+
+    private void map(long pos)
+            throws IOException
+    {
+        long size = Math.min(windowSize, fileSize - pos);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+        view = buffer.duplicate();
+        windowStart = pos;
+        limit = (int) size;
+        lastWindow = pos + size == fileSize;
+    }
+
+    /*
+     * 返回 start 及之后第一个换行符的下一个位置
+     */
+    private long skipLine(long start)
+            throws IOException
+    {
+        long pos = start;
+        while (pos < fileSize) {
+            ensureMapped(pos);
+            for (int i = (int) (pos - windowStart); i < limit; i++) {
+                if (buffer.get(i) == LF) {
+                    return windowStart + i + 1;
+                }
+            }
+            pos = windowStart + limit;
+        }
+        return fileSize;
+    }
+
+    /*
+     * 解析从 p 开始的一行, 返回下一行的位置; 该行在当前窗口内没有结束时返回 -1
+     */
+    private int parseLine(int p)
+    {
+        fieldCount = 0;
+        emptyLine = false;
+        while (true) {
+            if (p >= limit) {
+                // 行以分隔符结尾
+                if (!lastWindow) {
+                    return -1;
+                }
+                addField(p, p, false);
+                return p;
+            }
+            if (buffer.get(p) == QUOTE) {
+                int start = p + 1;
+                int q = start;
+                boolean hasEscape = false;
+                while (true) {
+                    if (q >= limit) {
+                        if (!lastWindow) {
+                            return -1;
+                        }
+                        throw error(start, "EOF reached before encapsulated token finished");
+                    }
+                    if (buffer.get(q) == QUOTE) {
+                        if (q + 1 >= limit && !lastWindow) {
+                            return -1;
+                        }
+                        if (q + 1 < limit && buffer.get(q + 1) == QUOTE) {
+                            hasEscape = true;
+                            q += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    q++;
+                }
+                addField(start, q, hasEscape);
+                p = q + 1;
+                if (p >= limit) {
+                    return lastWindow ? p : -1;
+                }
+                byte b = buffer.get(p);
+                if (b == delimiter) {
+                    p++;
+                    continue;
+                }
+                if (b == LF) {
+                    return p + 1;
+                }
+                if (b == CR) {
+                    if (p + 1 >= limit) {
+                        return lastWindow ? p + 1 : -1;
+                    }
+                    if (buffer.get(p + 1) == LF) {
+                        return p + 2;
+                    }
+                }
+                throw error(p, "invalid char between encapsulated token and delimiter");
+            }
+            int start = p;
+            byte b = 0;
+            while (p < limit) {
+                b = buffer.get(p);
+                if (b == delimiter || b == LF) {
+                    break;
+                }
+                p++;
+            }
+            if (p < limit && b == delimiter) {
+                addField(start, p, false);
+                p++;
+                continue;
+            }
+            if (p >= limit && !lastWindow) {
+                return -1;
+            }
+            // 行尾或文件末尾, \n 之前的 \r 不属于字段
+            int end = p > start && buffer.get(p - 1) == CR ? p - 1 : p;
+            addField(start, end, false);
+            emptyLine = fieldCount == 1 && start == end;
+            return p < limit ? p + 1 : p;
+        }
+    }
+
+    private void addField(int start, int end, boolean hasEscape)
+    {
+        if (fieldCount == starts.length) {
+            int capacity = fieldCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            escaped = Arrays.copyOf(escaped, capacity);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        escaped[fieldCount] = hasEscape;
+        fieldCount++;
+    }
+
+    private AddaxException error(int p, String message)
+    {
+        return AddaxException.asAddaxException(StorageReaderErrorCode.READ_FILE_IO_ERROR,
+                String.format("Read file '%s' failure, %s at offset %d", fileName, message, windowStart + p));
+    }
+}
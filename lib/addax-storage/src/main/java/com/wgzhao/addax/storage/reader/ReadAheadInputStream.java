@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.storage.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在后台线程中读取输入流的数据.
+ * <p>
+ * 用于解压: gzip, bzip2 等格式的压缩流没有索引, 无法从中间开始并行解压, 但解压和解析可以在两个线程中同时进行.
+ * 后台线程从压缩流中读出已解压的数据块放入有界队列, 读取线程只从队列中取数据, 解压不再占用解析的时间.
+ */
+public class ReadAheadInputStream
+        extends InputStream
+{
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int QUEUE_CAPACITY = 8;
+    private static final Chunk EOF = new Chunk(new byte[0], 0);
+
+    private final InputStream in;
+    private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread reader;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private Chunk current;
+    private int pos;
+
+    public ReadAheadInputStream(InputStream in, String name)
+    {
+        this.in = in;
+        this.reader = new Thread(this::readAhead, "read-ahead-" + name);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    @Override
+    public int read()
+            throws IOException
+    {
+        if (!fill()) {
+            return -1;
+        }
+        return current.data[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+            throws IOException
+    {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current.data, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available()
+    {
+        return current == null || current == EOF ? 0 : current.length - pos;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reader.interrupt();
+        queue.clear();
+        try {
+            reader.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        in.close();
+    }
+
+    /*
+     * returns false at the end of the stream
+     */
+    private boolean fill()
+            throws IOException
+    {
+        if (current == EOF) {
+            return false;
+        }
+        if (current != null && pos < current.length) {
+            return true;
+        }
+        try {
+            current = queue.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading ahead");
+        }
+        pos = 0;
+        if (current == EOF) {
+            if (failure != null) {
+                throw failure;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private void readAhead()
+    {
+        try {
+            while (!closed) {
+                byte[] data = new byte[CHUNK_SIZE];
+                int length = 0;
+                int n = 0;
+                while (length < CHUNK_SIZE && (n = in.read(data, length, CHUNK_SIZE - length)) != -1) {
+                    length += n;
+                }
+                if (length > 0) {
+                    queue.put(new Chunk(data, length));
+                }
+                if (n == -1) {
+                    break;
+                }
+            }
+        }
+        catch (IOException e) {
+            failure = e;
+        }
+        catch (InterruptedException e) {
+            // closed by the reading thread
+            return;
+        }
+        catch (RuntimeException e) {
+            failure = new IOException(e);
+        }
+        try {
+            queue.put(EOF);
+        }
+        catch (InterruptedException ignored) {
+            // closed by the reading thread
+        }
+    }
+
+    private static class Chunk
+    {
+        final byte[] data;
+        final int length;
+
+        Chunk(byte[] data, int length)
+        {
+            this.data = data;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ *
+ *  * Licensed to the Apache Software Foundation (ASF) under one
+ *  * or more contributor license agreements.  See the NOTICE file
+ *  * distributed with this work for additional information
+ *  * regarding copyright ownership.  The ASF licenses this file
+ *  * to you under the Apache License, Version 2.0 (the
+ *  * "License"); you may not use this file except in compliance
+ *  * with the License.  You may obtain a copy of the License at
+ *  *
+ *  *   http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing,
+ *  * software distributed under the License is distributed on an
+ *  * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  * KIND, either express or implied.  See the License for the
+ *  * specific language governing permissions and limitations
+ *  * under the License.
+ *
+ */
+
+package com.wgzhao.addax.storage.reader;
+
+import com.wgzhao.addax.common.constant.Type;
+import com.wgzhao.addax.common.element.BoolColumn;
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.ColumnCast;
+import com.wgzhao.addax.common.element.ColumnEntry;
+import com.wgzhao.addax.common.element.DateColumn;
+import com.wgzhao.addax.common.element.DoubleColumn;
+import com.wgzhao.addax.common.element.LongColumn;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.element.StringColumn;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.FastDateFormat;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.util.Date;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * 把源文件的一行转换为 {@link Record}.
+ * column 配置在每个 task 中只校验和编译一次, 生成 {@link FieldConverter} 数组, 每行只需要取字段并转换为目标类型;
+ * 没有配置格式的日期字段优先尝试上一次匹配的格式. 按字节解析的行以 {@link FieldSource} 传入, 整数字段转换时不创建字符串
+ */
+public class RecordConverter
+{
+    private final FieldConverter[] converters;
+    private final String nullFormat;
+
+    /**
+     * @param columns column configuration, null or empty means all fields are read as string
+     * @param nullFormat the string which represents null, may be null
+     */
+    public RecordConverter(List<ColumnEntry> columns, String nullFormat)
+    {
+        this.nullFormat = nullFormat;
+        if (null == columns || columns.isEmpty()) {
+            this.converters = null;
+        }
+        else {
+            this.converters = new FieldConverter[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                this.converters[i] = compile(columns.get(i));
+            }
+        }
+    }
+
+    public void transport(RecordSender recordSender, String[] sourceLine, TaskPluginCollector taskPluginCollector)
+    {
+        Record record = recordSender.createRecord();
+        if (null == converters) {
+            for (String columnValue : sourceLine) {
+                record.addColumn(new StringColumn(isNull(columnValue) ? null : columnValue));
+            }
+            recordSender.sendToWriter(record);
+            return;
+        }
+        try {
+            for (FieldConverter converter : converters) {
+                String columnValue;
+                if (converter.index < 0) {
+                    columnValue = converter.constant;
+                }
+                else if (converter.index < sourceLine.length) {
+                    columnValue = sourceLine[converter.index];
+                }
+                else {
+                    throw outOfRange(converter.index, sourceLine.length, StringUtils.join(sourceLine, ","));
+                }
+                record.addColumn(convert(converter, columnValue));
+            }
+            recordSender.sendToWriter(record);
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            taskPluginCollector.collectDirtyRecord(record, e.getMessage());
+        }
+    }
+
+    public void transport(RecordSender recordSender, CSVRecord csvRecord, TaskPluginCollector taskPluginCollector)
+    {
+        Record record = recordSender.createRecord();
+        int size = csvRecord.size();
+        if (null == converters) {
+            for (int i = 0; i < size; i++) {
+                String columnValue = csvRecord.get(i);
+                record.addColumn(new StringColumn(isNull(columnValue) ? null : columnValue));
+            }
+            recordSender.sendToWriter(record);
+            return;
+        }
+        try {
+            for (FieldConverter converter : converters) {
+                String columnValue;
+                if (converter.index < 0) {
+                    columnValue = converter.constant;
+                }
+                else if (converter.index < size) {
+                    columnValue = csvRecord.get(converter.index);
+                }
+                else {
+                    StringJoiner joiner = new StringJoiner(",");
+                    csvRecord.forEach(joiner::add);
+                    throw outOfRange(converter.index, size, joiner.toString());
+                }
+                record.addColumn(convert(converter, columnValue));
+            }
+            recordSender.sendToWriter(record);
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            taskPluginCollector.collectDirtyRecord(record, e.getMessage());
+        }
+    }
+
+    public void transport(RecordSender recordSender, FieldSource fieldSource, TaskPluginCollector taskPluginCollector)
+    {
+        Record record = recordSender.createRecord();
+        int size = fieldSource.size();
+        if (null == converters) {
+            for (int i = 0; i < size; i++) {
+                record.addColumn(new StringColumn(fieldSource.isNull(i) ? null : fieldSource.getString(i)));
+            }
+            recordSender.sendToWriter(record);
+            return;
+        }
+        try {
+            for (FieldConverter converter : converters) {
+                if (converter.index < 0) {
+                    record.addColumn(convert(converter, converter.constant));
+                }
+                else if (converter.index < size) {
+                    record.addColumn(convert(converter, fieldSource, converter.index));
+                }
+                else {
+                    StringJoiner joiner = new StringJoiner(",");
+                    for (int i = 0; i < size; i++) {
+                        joiner.add(fieldSource.getString(i));
+                    }
+                    throw outOfRange(converter.index, size, joiner.toString());
+                }
+            }
+            recordSender.sendToWriter(record);
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            taskPluginCollector.collectDirtyRecord(record, e.getMessage());
+        }
+    }
+
+    private boolean isNull(String columnValue)
+    {
+        // not equalsIgnoreCase, it's all ok if nullFormat is null
+        return columnValue == null || columnValue.equals(nullFormat);
+    }
+
+    private Column convert(FieldConverter converter, String columnValue)
+    {
+        if (isNull(columnValue)) {
+            return new StringColumn();
+        }
+        try {
+            return converter.convert(columnValue);
+        }
+        catch (Exception e) {
+            throw new IllegalArgumentException(String.format("Cast value '%s' to type '%s' failure", columnValue, converter.type.name()));
+        }
+    }
+
+    private Column convert(FieldConverter converter, FieldSource fieldSource, int index)
+    {
+        if (fieldSource.isNull(index)) {
+            return new StringColumn();
+        }
+        try {
+            return converter.convert(fieldSource, index);
+        }
+        catch (Exception e) {
+            throw new IllegalArgumentException(String.format("Cast value '%s' to type '%s' failure",
+                    fieldSource.getString(index), converter.type.name()));
+        }
+    }
+
+    private static IndexOutOfBoundsException outOfRange(int index, int length, String line)
+    {
+        return new IndexOutOfBoundsException(String.format("The column index %s you try to read is out of range(%s): [%s]",
+                index + 1, length, line));
+    }
+
+    private static FieldConverter compile(ColumnEntry columnConfig)
+    {
+        Integer columnIndex = columnConfig.getIndex();
+        String columnConst = columnConfig.getValue();
+        if (null == columnIndex && null == columnConst) {
+            throw AddaxException.asAddaxException(
+                    StorageReaderErrorCode.NO_INDEX_VALUE, "The index or type is required when type is present.");
+        }
+        if (null != columnIndex && null != columnConst) {
+            throw AddaxException.asAddaxException(
+                    StorageReaderErrorCode.MIXED_INDEX_VALUE, "The index and value are both present, choose one of them");
+        }
+        Type type;
+        try {
+            type = Type.valueOf(columnConfig.getType().toUpperCase());
+        }
+        catch (IllegalArgumentException | NullPointerException e) {
+            throw AddaxException.asAddaxException(StorageReaderErrorCode.NOT_SUPPORT_TYPE,
+                    String.format("The column type '%s' is unsupported", columnConfig.getType()));
+        }
+        int index = null == columnIndex ? -1 : columnIndex;
+        switch (type) {
+            case STRING:
+                return new FieldConverter(type, index, columnConst)
+                {
+                    @Override
+                    Column convert(String value)
+                    {
+                        return new StringColumn(value);
+                    }
+                };
+            case LONG:
+                return new FieldConverter(type, index, columnConst)
+                {
+                    @Override
+                    Column convert(String value)
+                    {
+                        return new LongColumn(value);
+                    }
+
+                    @Override
+                    Column convert(FieldSource fieldSource, int index)
+                    {
+                        if (fieldSource.isLong(index)) {
+                            return new LongColumn(fieldSource.getLong(index));
+                        }
+                        return new LongColumn(fieldSource.getString(index));
+                    }
+                };
+            case DOUBLE:
+                return new FieldConverter(type, index, columnConst)
+                {
+                    @Override
+                    Column convert(String value)
+                    {
+                        return new DoubleColumn(value);
+                    }
+                };
+            case BOOLEAN:
+                return new FieldConverter(type, index, columnConst)
+                {
+                    @Override
+                    Column convert(String value)
+                    {
+                        return new BoolColumn(value);
+                    }
+                };
+            case DATE:
+                if (StringUtils.isNotBlank(columnConfig.getFormat())) {
+                    // 用户自己配置的格式转换, 脏数据行为出现变化
+                    DateFormat format = columnConfig.getDateFormat();
+                    return new FieldConverter(type, index, columnConst)
+                    {
+                        @Override
+                        Column convert(String value)
+                                throws ParseException
+                        {
+                            return new DateColumn(format.parse(value));
+                        }
+                    };
+                }
+                return new GuessDateConverter(index, columnConst);
+            default:
+                throw AddaxException.asAddaxException(StorageReaderErrorCode.NOT_SUPPORT_TYPE,
+                        String.format("The column type '%s' is unsupported", columnConfig.getType()));
+        }
+    }
+
+    private abstract static class FieldConverter
+    {
+        final Type type;
+        // -1 means constant column
+        final int index;
+        final String constant;
+
+        FieldConverter(Type type, int index, String constant)
+        {
+            this.type = type;
+            this.index = index;
+            this.constant = constant;
+        }
+
+        abstract Column convert(String value)
+                throws Exception;
+
+        Column convert(FieldSource fieldSource, int index)
+                throws Exception
+        {
+            return convert(fieldSource.getString(index));
+        }
+    }
+
+    /**
+     * Tries the framework date formats in the same order as {@link StringColumn#asDate()},
+     * but starts with the formatter which matched the previous value.
+     * The cached formatter is only accepted when it consumes the whole value, otherwise
+     * a longer value (e.g. datetime after date) could be truncated by a shorter pattern.
+     */
+    private static class GuessDateConverter
+            extends FieldConverter
+    {
+        private final FastDateFormat[] formatters;
+        private int lastMatched = -1;
+
+        GuessDateConverter(int index, String constant)
+        {
+            super(Type.DATE, index, constant);
+            this.formatters = ColumnCast.getDateFormatters().toArray(new FastDateFormat[0]);
+        }
+
+        @Override
+        Column convert(String value)
+                throws ParseException
+        {
+            if (lastMatched >= 0) {
+                ParsePosition pos = new ParsePosition(0);
+                Date date = formatters[lastMatched].parse(value, pos);
+                if (date != null && pos.getIndex() == value.length()) {
+                    return new DateColumn(date);
+                }
+            }
+            ParseException error = null;
+            for (int i = 0; i < formatters.length; i++) {
+                try {
+                    Date date = formatters[i].parse(value);
+                    lastMatched = i;
+                    return new DateColumn(date);
+                }
+                catch (ParseException e) {
+                    error = e;
+                }
+            }
+            throw error == null ? new ParseException(value, 0) : error;
+        }
+    }
+}
@@ -27,24 +27,16 @@ import com.wgzhao.addax.common.base.Constant;
 import com.wgzhao.addax.common.base.Key;
 import com.wgzhao.addax.common.compress.ExpandLzopInputStream;
 import com.wgzhao.addax.common.compress.ZipCycleInputStream;
-import com.wgzhao.addax.common.constant.Type;
-import com.wgzhao.addax.common.element.BoolColumn;
-import com.wgzhao.addax.common.element.Column;
 import com.wgzhao.addax.common.element.ColumnEntry;
-import com.wgzhao.addax.common.element.DateColumn;
-import com.wgzhao.addax.common.element.DoubleColumn;
-import com.wgzhao.addax.common.element.LongColumn;
-import com.wgzhao.addax.common.element.Record;
-import com.wgzhao.addax.common.element.StringColumn;
 import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.RecordSender;
 import com.wgzhao.addax.common.plugin.TaskPluginCollector;
 import com.wgzhao.addax.common.util.Configuration;
 import org.apache.commons.compress.compressors.CompressorException;
-import org.apache.commons.compress.compressors.CompressorInputStream;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.io.Charsets;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -58,14 +50,14 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.UnsupportedCharsetException;
-import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 public class StorageReaderUtil
 {
     private static final Logger LOG = LoggerFactory.getLogger(StorageReaderUtil.class);
+    private static final String CSV_PARSER = "csv";
+    private static final String MMAP_PARSER = "mmap";
 
     private StorageReaderUtil()
     {
@@ -100,19 +92,20 @@ public class StorageReaderUtil
                 reader = new BufferedReader(new InputStreamReader(inputStream, encoding), bufferSize);
             }
             else {
+                InputStream input;
                 if ("zip".equalsIgnoreCase(compress)) {
-                    ZipCycleInputStream zipCycleInputStream = new ZipCycleInputStream(inputStream);
-                    reader = new BufferedReader(new InputStreamReader(zipCycleInputStream, encoding), bufferSize);
+                    input = new ZipCycleInputStream(inputStream);
                 }
                 else if ("lzo".equalsIgnoreCase(compress)) {
-                    ExpandLzopInputStream expandLzopInputStream = new ExpandLzopInputStream(inputStream);
-                    reader = new BufferedReader(new InputStreamReader(expandLzopInputStream, encoding), bufferSize);
+                    input = new ExpandLzopInputStream(inputStream);
                 }
                 else {
                     // common-compress supports almost compress alg
-                    CompressorInputStream input = new CompressorStreamFactory().createCompressorInputStream(compress.toUpperCase(), inputStream, true);
-                    reader = new BufferedReader(new InputStreamReader(input, encoding), bufferSize);
+                    // concatenated streams are decompressed as a whole, such as the output of parallel compression
+                    input = new CompressorStreamFactory().createCompressorInputStream(compress.toUpperCase(), inputStream, true);
                 }
+                // decompress in a background thread while the current thread parses
+                reader = new BufferedReader(new InputStreamReader(new ReadAheadInputStream(input, fileName), encoding), bufferSize);
             }
             StorageReaderUtil.doReadFromStream(reader, fileName, readerSliceConfig, recordSender, taskPluginCollector);
         }
@@ -140,6 +133,124 @@ public class StorageReaderUtil
         }
     }
 
+    /**
+     * 读取文件中 [start, end) 字节区间内的行, 行的归属规则见 {@link LineRangeInputStream}.
+     * 只有从文件开头读取的区间才跳过表头
+     *
+     * @param inputStream 已经定位到 start 的未压缩文件的输入流
+     * @param fileName 文件名
+     * @param start 区间的开始位置
+     * @param end 区间的结束位置(不包含)
+     * @param readerSliceConfig 任务配置
+     * @param recordSender record sender
+     * @param taskPluginCollector task plugin collector
+     */
+    public static void readFromStream(InputStream inputStream, String fileName, long start, long end,
+            Configuration readerSliceConfig, RecordSender recordSender,
+            TaskPluginCollector taskPluginCollector)
+    {
+        Configuration rangeConfig = readerSliceConfig;
+        if (start > 0) {
+            rangeConfig = readerSliceConfig.clone();
+            rangeConfig.set(Key.SKIP_HEADER, false);
+        }
+        InputStream rangeStream;
+        try {
+            rangeStream = new LineRangeInputStream(inputStream, start, end);
+        }
+        catch (IOException e) {
+            IOUtils.closeQuietly(inputStream, null);
+            throw AddaxException.asAddaxException(
+                    StorageReaderErrorCode.READ_FILE_IO_ERROR, String.format("Read stream %s failure ", fileName), e);
+        }
+        readFromStream(rangeStream, fileName, rangeConfig, recordSender, taskPluginCollector);
+    }
+
+    /**
+     * 获取大文件按字节区间切分的大小, 压缩文件无法从中间开始读取, 此时返回 0
+     *
+     * @param readerConfig 读取配置
+     * @return 切分的字节数, 0 表示不切分
+     */
+    public static long getSplitSize(Configuration readerConfig)
+    {
+        long splitSize = readerConfig.getLong(Key.SPLIT_SIZE, 0L);
+        String compress = readerConfig.getString(Key.COMPRESS, "");
+        if (splitSize > 0 && StringUtils.isNotBlank(compress) && !"none".equalsIgnoreCase(compress)) {
+            LOG.warn("The compressed files can not be split, the {} is ignored", Key.SPLIT_SIZE);
+            return 0;
+        }
+        return Math.max(splitSize, 0);
+    }
+
+    /**
+     * 是否使用 {@link MappedFileParser} 读取本地文件, 只支持未压缩的 UTF-8 文件, 不满足时使用 commons-csv 读取
+     *
+     * @param readerConfig 读取配置
+     * @return true 表示使用 mmap 方式读取
+     */
+    public static boolean useMappedParser(Configuration readerConfig)
+    {
+        String parser = readerConfig.getString(Key.PARSER, CSV_PARSER);
+        if (CSV_PARSER.equalsIgnoreCase(parser)) {
+            return false;
+        }
+        if (!MMAP_PARSER.equalsIgnoreCase(parser)) {
+            throw AddaxException.asAddaxException(StorageReaderErrorCode.ILLEGAL_VALUE,
+                    String.format("The parser '%s' is unsupported, only %s and %s are supported", parser, CSV_PARSER, MMAP_PARSER));
+        }
+        String compress = readerConfig.getString(Key.COMPRESS, "");
+        String encoding = readerConfig.getString(Key.ENCODING, Constant.DEFAULT_ENCODING);
+        if (StringUtils.isNotBlank(compress) && !"none".equalsIgnoreCase(compress)) {
+            LOG.warn("The {} parser can not read compressed files, uses {} instead", MMAP_PARSER, CSV_PARSER);
+            return false;
+        }
+        if (!"UTF-8".equalsIgnoreCase(encoding) && !"UTF8".equalsIgnoreCase(encoding)) {
+            LOG.warn("The {} parser only supports UTF-8 encoding, uses {} instead", MMAP_PARSER, CSV_PARSER);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 通过 {@link MappedFileParser} 读取本地文件中 [start, end) 字节区间内的记录
+     *
+     * @param fileName 本地文件名
+     * @param start 区间的开始位置, 读取整个文件时为 0
+     * @param end 区间的结束位置(不包含), 读取整个文件时为 -1
+     * @param readerSliceConfig 任务配置
+     * @param recordSender record sender
+     * @param taskPluginCollector task plugin collector
+     */
+    public static void readFromMappedFile(String fileName, long start, long end,
+            Configuration readerSliceConfig, RecordSender recordSender,
+            TaskPluginCollector taskPluginCollector)
+    {
+        String delimiterInStr = readerSliceConfig.getString(Key.FIELD_DELIMITER);
+        if (null != delimiterInStr && 1 != delimiterInStr.length()) {
+            throw AddaxException.asAddaxException(
+                    StorageReaderErrorCode.ILLEGAL_VALUE,
+                    String.format("The delimiter ONLY has one char, '%s' is illegal", delimiterInStr));
+        }
+        char fieldDelimiter = readerSliceConfig.getChar(Key.FIELD_DELIMITER, Constant.DEFAULT_FIELD_DELIMITER);
+        String nullFormat = readerSliceConfig.getString(Key.NULL_FORMAT);
+        boolean skipHeader = readerSliceConfig.getBool(Key.SKIP_HEADER, Constant.DEFAULT_SKIP_HEADER);
+        List<Configuration> column = readerSliceConfig.getListConfiguration(Key.COLUMN);
+        // handle ["*"] -> [], null
+        if (null != column && 1 == column.size() && "\"*\"".equals(column.get(0).toString())) {
+            readerSliceConfig.set(Key.COLUMN, null);
+        }
+        RecordConverter converter = new RecordConverter(StorageReaderUtil.getListColumnEntry(readerSliceConfig, Key.COLUMN), nullFormat);
+
+        try (MappedFileParser parser = new MappedFileParser(fileName, fieldDelimiter, nullFormat)) {
+            parser.read(start, end < 0 ? parser.getFileSize() : end, skipHeader, converter, recordSender, taskPluginCollector);
+        }
+        catch (IOException e) {
+            throw AddaxException.asAddaxException(
+                    StorageReaderErrorCode.READ_FILE_IO_ERROR, String.format("Read file '%s' failure ", fileName), e);
+        }
+    }
+
     public static void doReadFromStream(BufferedReader reader, String fileName,
             Configuration readerSliceConfig, RecordSender recordSender,
             TaskPluginCollector taskPluginCollector)
@@ -167,13 +278,17 @@ public class StorageReaderUtil
         Boolean skipHeader = readerSliceConfig.getBool(Key.SKIP_HEADER, Constant.DEFAULT_SKIP_HEADER);
         csvFormatBuilder.setSkipHeaderRecord(skipHeader);
         List<ColumnEntry> column = StorageReaderUtil.getListColumnEntry(readerSliceConfig, Key.COLUMN);
+        RecordConverter converter = new RecordConverter(column, nullFormat);
 
         // every line logic
         try {
             CSVParser csvParser = new CSVParser(reader, csvFormatBuilder.build());
-            csvParser.stream().filter(Objects::nonNull).forEach(csvRecord ->
-                    StorageReaderUtil.transportOneRecord(recordSender, column, csvRecord.toList().toArray(new String[0]), nullFormat, taskPluginCollector)
-            );
+            for (CSVRecord csvRecord : csvParser) {
+                converter.transport(recordSender, csvRecord, taskPluginCollector);
+            }
+        }
+        catch (AddaxException e) {
+            throw e;
         }
         catch (UnsupportedEncodingException uee) {
             throw AddaxException.asAddaxException(
@@ -198,6 +313,16 @@ public class StorageReaderUtil
         }
     }
 
+    /**
+     * Convert one delimited line to record.
+     * The column configuration is parsed on every call, callers which convert many lines
+     * should build a {@link RecordConverter} once instead.
+     *
+     * @param recordSender record sender
+     * @param configuration reader configuration
+     * @param taskPluginCollector dirty record collector
+     * @param line the line to be split by field delimiter
+     */
     public static void transportOneRecord(RecordSender recordSender, Configuration configuration,
             TaskPluginCollector taskPluginCollector, String line)
     {
@@ -214,113 +339,21 @@ public class StorageReaderUtil
         transportOneRecord(recordSender, column, sourceLine, nullFormat, taskPluginCollector);
     }
 
+    /**
+     * Convert one line to record.
+     * The column configuration is compiled on every call, callers which convert many lines
+     * should build a {@link RecordConverter} once instead.
+     *
+     * @param recordSender record sender
+     * @param columnConfigs column configuration
+     * @param sourceLine fields of the line
+     * @param nullFormat null format
+     * @param taskPluginCollector dirty record collector
+     */
     public static void transportOneRecord(RecordSender recordSender, List<ColumnEntry> columnConfigs, String[] sourceLine,
             String nullFormat, TaskPluginCollector taskPluginCollector)
     {
-        Record record = recordSender.createRecord();
-        Column columnGenerated;
-
-        // 创建都为String类型column的record
-        if (null == columnConfigs || columnConfigs.isEmpty()) {
-            for (String columnValue : sourceLine) {
-                // not equalsIgnoreCase, it's all ok if nullFormat is null
-                if (columnValue.equals(nullFormat)) {
-                    columnGenerated = new StringColumn(null);
-                }
-                else {
-                    columnGenerated = new StringColumn(columnValue);
-                }
-                record.addColumn(columnGenerated);
-            }
-            recordSender.sendToWriter(record);
-        }
-        else {
-            try {
-                for (ColumnEntry columnConfig : columnConfigs) {
-                    String columnType = columnConfig.getType();
-                    Integer columnIndex = columnConfig.getIndex();
-                    String columnConst = columnConfig.getValue();
-
-                    String columnValue;
-
-                    if (null == columnIndex && null == columnConst) {
-                        throw AddaxException.asAddaxException(
-                                StorageReaderErrorCode.NO_INDEX_VALUE, "The index or type is required when type is present.");
-                    }
-
-                    if (null != columnIndex && null != columnConst) {
-                        throw AddaxException.asAddaxException(
-                                StorageReaderErrorCode.MIXED_INDEX_VALUE, "The index and value are both present, choose one of them");
-                    }
-
-                    if (null != columnIndex) {
-                        if (columnIndex >= sourceLine.length) {
-                            throw new IndexOutOfBoundsException(String.format("The column index %s you try to read is out of range(%s): [%s]",
-                                    columnIndex + 1, sourceLine.length, StringUtils.join(sourceLine, ",")));
-                        }
-                        columnValue = sourceLine[columnIndex];
-                    }
-                    else {
-                        columnValue = columnConst;
-                    }
-                    Type type = Type.valueOf(columnType.toUpperCase());
-                    // it's all ok if nullFormat is null
-                    if (columnValue == null || columnValue.equals(nullFormat)) {
-                        record.addColumn(new StringColumn());
-                        continue;
-                    }
-                    try {
-                        switch (type) {
-                            case STRING:
-                                columnGenerated = new StringColumn(columnValue);
-                                break;
-                            case LONG:
-                                columnGenerated = new LongColumn(columnValue);
-                                break;
-                            case DOUBLE:
-                                columnGenerated = new DoubleColumn(columnValue);
-                                break;
-                            case BOOLEAN:
-                                columnGenerated = new BoolColumn(columnValue);
-                                break;
-                            case DATE:
-                                String formatString = columnConfig.getFormat();
-                                if (StringUtils.isNotBlank(formatString)) {
-                                    // 用户自己配置的格式转换, 脏数据行为出现变化
-                                    DateFormat format = columnConfig.getDateFormat();
-                                    columnGenerated = new DateColumn(format.parse(columnValue));
-                                }
-                                else {
-                                    // 框架尝试转换
-                                    columnGenerated = new DateColumn(new StringColumn(columnValue).asDate());
-                                }
-                                break;
-                            default:
-                                String errorMessage = String.format("The column type '%s' is unsupported", columnType);
-                                LOG.error(errorMessage);
-                                throw AddaxException.asAddaxException(StorageReaderErrorCode.NOT_SUPPORT_TYPE, errorMessage);
-                        }
-                    }
-                    catch (Exception e) {
-                        throw new IllegalArgumentException(String.format("Cast value '%s' to type '%s' failure", columnValue, type.name()));
-                    }
-
-                    record.addColumn(columnGenerated);
-                }
-                recordSender.sendToWriter(record);
-            }
-            catch (IllegalArgumentException | IndexOutOfBoundsException iae) {
-                LOG.error(iae.getMessage());
-                taskPluginCollector.collectDirtyRecord(record, iae.getMessage());
-            }
-            catch (Exception e) {
-                if (e instanceof AddaxException) {
-                    throw (AddaxException) e;
-                }
-                // 每一种转换失败都是脏数据处理,包括数字格式 & 日期格式
-                taskPluginCollector.collectDirtyRecord(record, e.getMessage());
-            }
-        }
+        new RecordConverter(columnConfigs, nullFormat).transport(recordSender, sourceLine, taskPluginCollector);
     }
 
     public static List<ColumnEntry> getListColumnEntry(Configuration configuration, final String path)
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.storage.util;
+
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.util.Configuration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 按文件大小规划切分.
+ * 文件(或文件的字节区间)按大小从大到小依次分配给当前总大小最小的任务, 使各个任务读取的数据量接近;
+ * splitSize 大于 0 时, 大于 splitSize 的文件按 splitSize 切成多个字节区间, 可以由多个任务同时读取.
+ * 字节区间的边界不要求落在行首, 由 {@link com.wgzhao.addax.storage.reader.LineRangeInputStream} 在读取时对齐到行
+ */
+public final class FileSplitPlanner
+{
+    private FileSplitPlanner()
+    {
+    }
+
+    /**
+     * 把文件切分为最多 adviceNumber 组
+     *
+     * @param fileSizes 文件及其大小(字节), 遍历顺序决定大小相同的文件的分配顺序
+     * @param adviceNumber 建议的任务数
+     * @param splitSize 大文件切分的字节数, 小于等于 0 时不切分文件
+     * @return 每个任务需要读取的文件或字节区间
+     */
+    public static List<List<FileRange>> plan(Map<String, Long> fileSizes, int adviceNumber, long splitSize)
+    {
+        List<FileRange> ranges = new ArrayList<>();
+        Map<FileRange, Long> sizes = new HashMap<>();
+        for (Map.Entry<String, Long> entry : fileSizes.entrySet()) {
+            long size = entry.getValue();
+            if (splitSize > 0 && size > splitSize) {
+                for (long start = 0; start < size; start += splitSize) {
+                    FileRange range = new FileRange(entry.getKey(), start, Math.min(start + splitSize, size));
+                    ranges.add(range);
+                    sizes.put(range, range.getEnd() - start);
+                }
+            }
+            else {
+                FileRange range = new FileRange(entry.getKey());
+                ranges.add(range);
+                sizes.put(range, size);
+            }
+        }
+        return binPack(ranges, sizes, adviceNumber);
+    }
+
+    /**
+     * 按大小把元素分为最多 adviceNumber 组, 每个元素依次(从大到小)分给当前总大小最小的组
+     *
+     * @param items 需要分组的元素
+     * @param sizes 元素的大小
+     * @param adviceNumber 建议的分组数
+     * @param <T> 元素类型
+     * @return 分组结果, 不包含空的分组
+     */
+    public static <T> List<List<T>> binPack(List<T> items, Map<T, Long> sizes, int adviceNumber)
+    {
+        int binNumber = Math.max(1, Math.min(adviceNumber, items.size()));
+        List<T> sorted = new ArrayList<>(items);
+        // 排序是稳定的, 大小相同的元素保持原来的顺序
+        sorted.sort(Comparator.comparingLong((T item) -> sizes.get(item)).reversed());
+
+        List<List<T>> bins = new ArrayList<>(binNumber);
+        long[] loads = new long[binNumber];
+        PriorityQueue<Integer> queue = new PriorityQueue<>(binNumber,
+                Comparator.<Integer>comparingLong(i -> loads[i]).thenComparingInt(i -> i));
+        for (int i = 0; i < binNumber; i++) {
+            bins.add(new ArrayList<>());
+            queue.add(i);
+        }
+        for (T item : sorted) {
+            int bin = queue.poll();
+            bins.get(bin).add(item);
+            loads[bin] += sizes.get(item);
+            queue.add(bin);
+        }
+        bins.removeIf(List::isEmpty);
+        return bins;
+    }
+
+    /**
+     * 把一个任务需要读取的文件写入任务配置, 整个文件放在 sourceFiles 中, 字节区间放在 sourceRanges 中
+     *
+     * @param taskConfig 任务配置
+     * @param ranges 任务需要读取的文件或字节区间
+     */
+    public static void setTaskRanges(Configuration taskConfig, List<FileRange> ranges)
+    {
+        List<String> files = new ArrayList<>();
+        List<Map<String, Object>> partials = new ArrayList<>();
+        for (FileRange range : ranges) {
+            if (range.isWholeFile()) {
+                files.add(range.getPath());
+            }
+            else {
+                Map<String, Object> partial = new HashMap<>();
+                partial.put(Key.PATH, range.getPath());
+                partial.put(FileRange.START, range.getStart());
+                partial.put(FileRange.END, range.getEnd());
+                partials.add(partial);
+            }
+        }
+        taskConfig.set(Key.SOURCE_FILES, files);
+        taskConfig.set(Key.SOURCE_RANGES, partials);
+    }
+
+    /**
+     * @param taskConfig 任务配置
+     * @return 任务需要读取的文件或字节区间, 没有 sourceRanges 时只包含 sourceFiles 中的文件
+     */
+    public static List<FileRange> getTaskRanges(Configuration taskConfig)
+    {
+        List<FileRange> ranges = new ArrayList<>();
+        for (String file : taskConfig.getList(Key.SOURCE_FILES, String.class)) {
+            ranges.add(new FileRange(file));
+        }
+        for (Configuration partial : taskConfig.getListConfiguration(Key.SOURCE_RANGES)) {
+            ranges.add(new FileRange(partial.getString(Key.PATH), partial.getLong(FileRange.START), partial.getLong(FileRange.END)));
+        }
+        return ranges;
+    }
+
+    /**
+     * 一个完整的文件, 或文件中 [start, end) 之间的字节
+     */
+    public static class FileRange
+    {
+        static final String START = "start";
+        static final String END = "end";
+
+        private final String path;
+        private final long start;
+        private final long end;
+
+        public FileRange(String path)
+        {
+            this(path, 0, -1);
+        }
+
+        public FileRange(String path, long start, long end)
+        {
+            this.path = path;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        public long getStart()
+        {
+            return start;
+        }
+
+        /**
+         * @return 区间的结束位置(不包含), 整个文件时为 -1
+         */
+        public long getEnd()
+        {
+            return end;
+        }
+
+        public boolean isWholeFile()
+        {
+            return end < 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return isWholeFile() ? path : path + "[" + start + ", " + end + ")";
+        }
+    }
+}
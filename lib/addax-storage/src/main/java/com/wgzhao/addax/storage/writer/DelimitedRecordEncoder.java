@@ -0,0 +1,430 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.storage.writer;
+
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.DateColumn;
+import com.wgzhao.addax.common.element.LongColumn;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 把记录直接编码为分隔符文本的字节, 替代 recordToList + CSVPrinter 的写法.
+ * <p>
+ * 所有行写入同一个可复用的字节数组: 整数列直接写出各位数字, 不生成字符串; 日期列使用当前任务独占的 {@link SimpleDateFormat},
+ * 并缓存上一个日期的格式化结果; 是否需要加引号由预先计算好的字符表判断. 加引号的规则与 commons-csv 默认格式(QuoteMode.MINIMAL)一致,
+ * 因此输出与 CSVPrinter 相同. 编码为 UTF-8 时直接写出字节, 其他编码先拼接为字符再通过 {@link CharsetEncoder} 编码.
+ * <p>
+ * 实例不是线程安全的, 每个任务使用自己的实例
+ */
+public class DelimitedRecordEncoder
+{
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final char QUOTE = '"';
+    private static final char COMMENT = '#';
+    private static final char SP = ' ';
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private final char delimiter;
+    private final String nullFormat;
+    private final boolean quoted;
+    private final boolean utf8;
+    private final CharsetEncoder charsetEncoder;
+    // 值中包含这些 ASCII 字符时需要加引号
+    private final boolean[] quoteTable = new boolean[128];
+    // 分隔符是数字或负号时, 整数也可能需要加引号
+    private final boolean plainNumbers;
+    private final DateFormat dateFormat;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+    // 编码不是 UTF-8 时, 当前行的字符
+    private final StringBuilder chars = new StringBuilder();
+
+    // 上一个日期列的缓存
+    private long lastMillis;
+    private DateColumn.DateType lastSubType;
+    private String lastFormatted;
+
+    /**
+     * @param charset 输出的编码
+     * @param delimiter 字段分隔符
+     * @param nullFormat 空值写出的内容, 为 null 时写出空字符串
+     * @param dateFormat 日期列的格式, 为空时使用日期列的默认格式
+     * @param quoted 是否按 CSV 的规则给值加引号, 为 false 时值原样写出
+     */
+    public DelimitedRecordEncoder(Charset charset, char delimiter, String nullFormat, String dateFormat, boolean quoted)
+    {
+        this.delimiter = delimiter;
+        this.nullFormat = nullFormat;
+        this.quoted = quoted;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        this.charsetEncoder = utf8 ? null : charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.dateFormat = dateFormat == null || dateFormat.trim().isEmpty() ? null : new SimpleDateFormat(dateFormat);
+        quoteTable['\n'] = true;
+        quoteTable['\r'] = true;
+        quoteTable[QUOTE] = true;
+        if (delimiter < 128) {
+            quoteTable[delimiter] = true;
+        }
+        this.plainNumbers = !quoted || !(delimiter == '-' || (delimiter >= '0' && delimiter <= '9'));
+    }
+
+    /**
+     * 写入表头, 每个列名的处理与字符串列相同
+     *
+     * @param headers 列名
+     */
+    public void encodeHeader(List<String> headers)
+    {
+        encodeValues(headers);
+    }
+
+    /**
+     * 写入一条记录的所有列, 不包含换行符. 转换失败时撤销已经写入的部分, 并把记录作为脏数据收集
+     *
+     * @param record 记录
+     * @param taskPluginCollector 脏数据收集器
+     * @return 记录是否写入成功
+     */
+    public boolean encode(Record record, TaskPluginCollector taskPluginCollector)
+    {
+        int mark = length;
+        try {
+            int columnNumber = record.getColumnNumber();
+            for (int i = 0; i < columnNumber; i++) {
+                if (i > 0) {
+                    appendDelimiter();
+                }
+                appendColumn(record.getColumn(i), i == 0);
+            }
+            commitChars();
+            return true;
+        }
+        catch (Exception e) {
+            length = mark;
+            chars.setLength(0);
+            taskPluginCollector.collectDirtyRecord(record, e);
+            return false;
+        }
+    }
+
+    /**
+     * 写入一组已经转换好的值, 不包含换行符. null 写出为 nullFormat, 其他值写出 toString() 的结果
+     *
+     * @param values 值
+     */
+    public void encodeValues(List<?> values)
+    {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                appendDelimiter();
+            }
+            Object value = values.get(i);
+            if (value == null) {
+                appendNull(i == 0);
+            }
+            else if (plainNumbers && (value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte)) {
+                appendLong(((Number) value).longValue());
+            }
+            else {
+                appendValue(value.toString(), i == 0);
+            }
+        }
+        commitChars();
+    }
+
+    /**
+     * 写入换行符
+     */
+    public void newLine()
+    {
+        if (utf8) {
+            ensureCapacity(1);
+            buffer[length++] = '\n';
+        }
+        else {
+            chars.append('\n');
+            commitChars();
+        }
+    }
+
+    public byte[] getBuffer()
+    {
+        return buffer;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    public void reset()
+    {
+        length = 0;
+    }
+
+    /**
+     * 把已经编码的字节写入输出流, 并清空
+     *
+     * @param out 输出流
+     * @throws IOException 写入失败
+     */
+    public void writeTo(OutputStream out)
+            throws IOException
+    {
+        out.write(buffer, 0, length);
+        length = 0;
+    }
+
+    private void appendColumn(Column column, boolean first)
+    {
+        if (null == column || null == column.getRawData()) {
+            appendNull(first);
+            return;
+        }
+        if (column instanceof LongColumn && plainNumbers) {
+            BigInteger value = (BigInteger) column.getRawData();
+            // 等于 nullFormat 时写出的内容与数字本身相同, 不需要比较
+            if (value.bitLength() < 64) {
+                appendLong(value.longValue());
+                return;
+            }
+        }
+        if (column instanceof DateColumn) {
+            appendDate((DateColumn) column, first);
+            return;
+        }
+        appendValue(column.asString(), first);
+    }
+
+    private void appendDate(DateColumn column, boolean first)
+    {
+        long millis = (Long) column.getRawData();
+        if (lastFormatted == null || millis != lastMillis || column.getSubType() != lastSubType) {
+            String value = column.asString();
+            // 默认格式的字符串等于 nullFormat 时写出 nullFormat, 与 recordToList 一致
+            lastFormatted = value.equals(nullFormat) || dateFormat == null ? value : dateFormat.format(new Date(millis));
+            lastMillis = millis;
+            lastSubType = column.getSubType();
+        }
+        appendValue(lastFormatted, first);
+    }
+
+    private void appendNull(boolean first)
+    {
+        // 与 CSVPrinter 一致, nullFormat 为 null 时写出空字符串且不加引号
+        if (nullFormat != null) {
+            appendValue(nullFormat, first);
+        }
+    }
+
+    private void appendValue(String value, boolean first)
+    {
+        if (quoted && needQuote(value, first)) {
+            appendQuoted(value);
+        }
+        else {
+            appendChars(value, 0, value.length());
+        }
+    }
+
+    /*
+     * the rules of CSVFormat.printWithQuotes with QuoteMode.MINIMAL
+     */
+    private boolean needQuote(String value, boolean first)
+    {
+        int len = value.length();
+        if (len == 0) {
+            // 行首的空值需要加引号, 否则只有一列时会成为空行
+            return first;
+        }
+        if (value.charAt(0) <= COMMENT) {
+            return true;
+        }
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c < 128 ? quoteTable[c] : c == delimiter) {
+                return true;
+            }
+        }
+        return value.charAt(len - 1) <= SP;
+    }
+
+    private void appendQuoted(String value)
+    {
+        appendAscii(QUOTE);
+        int start = 0;
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            if (value.charAt(i) == QUOTE) {
+                // 引号写两次
+                appendChars(value, start, i + 1);
+                start = i;
+            }
+        }
+        appendChars(value, start, len);
+        appendAscii(QUOTE);
+    }
+
+    private void appendDelimiter()
+    {
+        if (delimiter < 128 || !utf8) {
+            appendAscii(delimiter);
+        }
+        else {
+            appendChars(String.valueOf(delimiter), 0, 1);
+        }
+    }
+
+    private void appendAscii(char c)
+    {
+        if (utf8) {
+            ensureCapacity(1);
+            buffer[length++] = (byte) c;
+        }
+        else {
+            chars.append(c);
+        }
+    }
+
+    private void appendLong(long value)
+    {
+        if (!utf8) {
+            chars.append(value);
+            return;
+        }
+        if (value == Long.MIN_VALUE) {
+            ensureCapacity(MIN_LONG.length);
+            System.arraycopy(MIN_LONG, 0, buffer, length, MIN_LONG.length);
+            length += MIN_LONG.length;
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int p = length + digits;
+        do {
+            buffer[--p] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        while (value != 0);
+        length += digits;
+    }
+
+    private void appendChars(String value, int start, int end)
+    {
+        if (!utf8) {
+            chars.append(value, start, end);
+            return;
+        }
+        // 每个字符最多 3 个字节, 代理对 2 个字符 4 个字节
+        ensureCapacity((end - start) * 3);
+        byte[] buf = buffer;
+        int p = length;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buf[p++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                buf[p++] = (byte) (0xc0 | (c >> 6));
+                buf[p++] = (byte) (0x80 | (c & 0x3f));
+            }
+            else if (Character.isSurrogate(c)) {
+                char low;
+                if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(low = value.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, low);
+                    buf[p++] = (byte) (0xf0 | (cp >> 18));
+                    buf[p++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buf[p++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buf[p++] = (byte) (0x80 | (cp & 0x3f));
+                    i++;
+                }
+                else {
+                    // 不成对的代理字符, 与 OutputStreamWriter 一样替换为 ?
+                    buf[p++] = '?';
+                }
+            }
+            else {
+                buf[p++] = (byte) (0xe0 | (c >> 12));
+                buf[p++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[p++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        length = p;
+    }
+
+    /*
+     * encodes the pending chars when the charset is not UTF-8
+     */
+    private void commitChars()
+    {
+        if (utf8 || chars.length() == 0) {
+            return;
+        }
+        CharBuffer in = CharBuffer.wrap(chars);
+        ensureCapacity((int) (chars.length() * charsetEncoder.maxBytesPerChar()) + 16);
+        while (true) {
+            ByteBuffer out = ByteBuffer.wrap(buffer, length, buffer.length - length);
+            CoderResult result = charsetEncoder.encode(in, out, false);
+            length = out.position();
+            if (result.isOverflow()) {
+                ensureCapacity(buffer.length);
+                continue;
+            }
+            break;
+        }
+        // 末尾不成对的代理字符留到下一次编码
+        chars.delete(0, in.position());
+    }
+
+    private void ensureCapacity(int extra)
+    {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.storage.writer;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多线程分块压缩的输出流.
+ * <p>
+ * 写入的数据按 {@link #BLOCK_SIZE} 切成块, 每一块在线程池中独立压缩为一个完整的 gzip member / bzip2 stream / zstd frame /
+ * lz4 frame / xz stream, 再按原来的顺序写出. 这些格式都允许多个压缩流首尾相接, 结果可以被 gzip -d, zstd -d 以及
+ * commons-compress(decompressConcatenated 为 true)等标准工具正常解压, 与 pigz 的输出类似.
+ * 由于每块独立压缩, 压缩率比单线程压缩略低.
+ * <p>
+ * 同时在压缩中的块最多为线程数的两倍, 写出线程在等待最早的块压缩完成时不再接收新的数据
+ */
+public class ParallelCompressorOutputStream
+        extends OutputStream
+{
+    public static final int BLOCK_SIZE = 1024 * 1024;
+    private static final Set<String> SUPPORTED_COMPRESS = new HashSet<>(Arrays.asList("gz", "bzip2", "zstd", "lz4-framed", "xz"));
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final OutputStream out;
+    private final String compress;
+    private final int level;
+    private final int maxPending;
+    private final ExecutorService executor;
+    private final Deque<Future<ByteArrayOutputStream>> pending = new ArrayDeque<>();
+    // 压缩完成后可以复用的块
+    private final Deque<byte[]> freeBlocks = new ArrayDeque<>();
+
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int count;
+    private boolean written;
+    private boolean closed;
+
+    /**
+     * @param out 输出流
+     * @param compress 压缩算法, 取值为 gz, bzip2, zstd, lz4-framed, xz
+     * @param level 压缩级别, 小于 0 时使用算法的默认级别
+     * @param threads 压缩线程数
+     */
+    public ParallelCompressorOutputStream(OutputStream out, String compress, int level, int threads)
+    {
+        if (!isSupported(compress)) {
+            throw AddaxException.asAddaxException(StorageWriterErrorCode.ILLEGAL_VALUE,
+                    String.format("The compress algorithm '%s' can not be compressed in parallel, supported: %s", compress, SUPPORTED_COMPRESS));
+        }
+        this.out = out;
+        this.compress = compress;
+        this.level = level;
+        this.maxPending = threads * 2;
+        String prefix = "compress-" + POOL_NUMBER.incrementAndGet() + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param compress 压缩算法
+     * @return 是否支持并行压缩
+     */
+    public static boolean isSupported(String compress)
+    {
+        return compress != null && SUPPORTED_COMPRESS.contains(compress.toLowerCase());
+    }
+
+    /**
+     * 创建指定压缩级别的单线程压缩流
+     *
+     * @param compress 压缩算法, 取值为 gz, bzip2, zstd, lz4-framed, xz
+     * @param level 压缩级别, 小于 0 时使用算法的默认级别, lz4-framed 不支持压缩级别
+     * @param out 输出流
+     * @return 压缩流
+     * @throws IOException 创建失败
+     */
+    public static OutputStream createCompressor(String compress, int level, OutputStream out)
+            throws IOException
+    {
+        switch (compress.toLowerCase()) {
+            case "gz":
+                GzipParameters parameters = new GzipParameters();
+                if (level >= 0) {
+                    parameters.setCompressionLevel(level);
+                }
+                return new GzipCompressorOutputStream(out, parameters);
+            case "bzip2":
+                // bzip2 的级别即块大小(100k 的倍数)
+                return level > 0 ? new BZip2CompressorOutputStream(out, level) : new BZip2CompressorOutputStream(out);
+            case "zstd":
+                return level > 0 ? new ZstdCompressorOutputStream(out, level) : new ZstdCompressorOutputStream(out);
+            case "lz4-framed":
+                return new FramedLZ4CompressorOutputStream(out);
+            case "xz":
+                return level >= 0 ? new XZCompressorOutputStream(out, level) : new XZCompressorOutputStream(out);
+            default:
+                throw AddaxException.asAddaxException(StorageWriterErrorCode.ILLEGAL_VALUE,
+                        String.format("The compress algorithm '%s' does not support compression level", compress));
+        }
+    }
+
+    @Override
+    public void write(int b)
+            throws IOException
+    {
+        if (count == block.length) {
+            submit();
+        }
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len)
+            throws IOException
+    {
+        while (len > 0) {
+            if (count == block.length) {
+                submit();
+            }
+            int n = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 已经压缩完成的块会写出, 未满的块仍然保留, 以免产生过小的块
+     */
+    @Override
+    public void flush()
+            throws IOException
+    {
+        while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+            writeFirst();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // 没有任何数据时也写出一个空的压缩流, 与单线程压缩的结果一致
+            if (count > 0 || !written) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                writeFirst();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    private void submit()
+            throws IOException
+    {
+        if (pending.size() >= maxPending) {
+            writeFirst();
+        }
+        final byte[] data = block;
+        final int length = count;
+        pending.addLast(executor.submit(() -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(length / 2, 64));
+            try (OutputStream compressor = createCompressor(compress, level, compressed)) {
+                compressor.write(data, 0, length);
+            }
+            synchronized (freeBlocks) {
+                freeBlocks.addLast(data);
+            }
+            return compressed;
+        }));
+        written = true;
+        synchronized (freeBlocks) {
+            block = freeBlocks.isEmpty() ? new byte[BLOCK_SIZE] : freeBlocks.pollFirst();
+        }
+        count = 0;
+    }
+
+    private void writeFirst()
+            throws IOException
+    {
+        Future<ByteArrayOutputStream> future = pending.pollFirst();
+        try {
+            future.get().writeTo(out);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the compression of a block");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to compress a block", cause);
+        }
+    }
+}
@@ -34,23 +34,19 @@ import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.storage.reader.StorageReaderErrorCode;
 import com.wgzhao.addax.storage.util.FileHelper;
 import org.apache.commons.compress.compressors.CompressorException;
-import org.apache.commons.compress.compressors.CompressorOutputStream;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.io.Charsets;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
 import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -61,6 +57,8 @@ import java.util.Set;
 public class StorageWriterUtil
 {
     private static final Logger LOG = LoggerFactory.getLogger(StorageWriterUtil.class);
+    // 编码后的字节达到该大小时写入输出流
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
     private static final Set<String> supportedWriteModes = new HashSet<>(Arrays.asList("truncate", "append", "nonConflict", "overwrite"));
 
     private StorageWriterUtil()
@@ -112,6 +110,14 @@ public class StorageWriterUtil
             writerConfiguration.set(Key.COMPRESS, null);
         }
 
+        // compressThreads check
+        int compressThreads = writerConfiguration.getInt(Key.COMPRESS_THREADS, 1);
+        if (compressThreads < 1) {
+            throw AddaxException.asAddaxException(
+                    StorageWriterErrorCode.ILLEGAL_VALUE,
+                    String.format("The %s must be greater than 0, but got %d", Key.COMPRESS_THREADS, compressThreads));
+        }
+
         // fieldDelimiter check
         String delimiterInStr = writerConfiguration.getString(Key.FIELD_DELIMITER);
         // warn: if it has, length must be one
@@ -199,11 +205,12 @@ public class StorageWriterUtil
         }
         String compress = config.getString(Key.COMPRESS);
 
-        BufferedWriter writer = null;
+        OutputStream out = null;
         // compress logic
         try {
+            Charset charset = Charset.forName(encoding);
             if (null == compress) {
-                writer = new BufferedWriter(new OutputStreamWriter(outputStream, encoding));
+                out = outputStream;
             }
             else {
                 //normalize compress name
@@ -214,19 +221,30 @@ public class StorageWriterUtil
                     compress = "bzip2";
                 }
 
+                int compressLevel = config.getInt(Key.COMPRESS_LEVEL, -1);
+                int compressThreads = config.getInt(Key.COMPRESS_THREADS, 1);
+                boolean customizable = ParallelCompressorOutputStream.isSupported(compress);
+                if (!customizable && (compressThreads > 1 || compressLevel >= 0)) {
+                    LOG.warn("The compress algorithm '{}' does not support {} and {}, they are ignored",
+                            compress, Key.COMPRESS_THREADS, Key.COMPRESS_LEVEL);
+                }
+
                 if ("zip".equals(compress)) {
-                    ZipCycleOutputStream zis = new ZipCycleOutputStream(outputStream, fileName);
-                    writer = new BufferedWriter(new OutputStreamWriter(zis, encoding));
+                    out = new ZipCycleOutputStream(outputStream, fileName);
+                }
+                else if (customizable && compressThreads > 1) {
+                    out = new ParallelCompressorOutputStream(outputStream, compress, compressLevel, compressThreads);
+                }
+                else if (customizable && compressLevel >= 0) {
+                    out = ParallelCompressorOutputStream.createCompressor(compress, compressLevel, outputStream);
                 }
                 else {
-                    CompressorOutputStream compressorOutputStream = new CompressorStreamFactory().createCompressorOutputStream(compress,
-                            outputStream);
-                    writer = new BufferedWriter(new OutputStreamWriter(compressorOutputStream, encoding));
+                    out = new CompressorStreamFactory().createCompressorOutputStream(compress, outputStream);
                 }
             }
-            StorageWriterUtil.doWriteToStream(lineReceiver, writer, fileName, config, taskPluginCollector);
+            StorageWriterUtil.doWriteToStream(lineReceiver, out, charset, config, taskPluginCollector);
         }
-        catch (UnsupportedEncodingException uee) {
+        catch (IllegalCharsetNameException | UnsupportedCharsetException uee) {
             throw AddaxException
                     .asAddaxException(
                             StorageWriterErrorCode.WRITE_FILE_WITH_CHARSET_ERROR,
@@ -249,28 +267,18 @@ public class StorageWriterUtil
                     String.format("流写入错误 : [%s]", fileName), e);
         }
         finally {
-            IOUtils.closeQuietly(writer, null);
+            IOUtils.closeQuietly(out, null);
         }
     }
 
     private static void doWriteToStream(RecordReceiver lineReceiver,
-            BufferedWriter writer, String context, Configuration config,
+            OutputStream out, Charset charset, Configuration config,
             TaskPluginCollector taskPluginCollector)
             throws IOException
     {
-        CSVFormat.Builder csvBuilder = CSVFormat.DEFAULT.builder();
-        csvBuilder.setRecordSeparator(IOUtils.LINE_SEPARATOR_UNIX);
         String nullFormat = config.getString(Key.NULL_FORMAT);
-        csvBuilder.setNullString(nullFormat);
         // 兼容format & dataFormat
         String dateFormat = config.getString(Key.DATE_FORMAT);
-        DateFormat dateParse = null; // warn: 可能不兼容
-        if (StringUtils.isNotBlank(dateFormat)) {
-            dateParse = new SimpleDateFormat(dateFormat);
-        }
-
-        // warn: default false
-        String fileFormat = config.getString(Key.FILE_FORMAT, Constant.DEFAULT_FILE_FORMAT);
 
         String delimiterInStr = config.getString(Key.FIELD_DELIMITER);
         if (null != delimiterInStr && 1 != delimiterInStr.length()) {
@@ -285,25 +293,30 @@ public class StorageWriterUtil
 
         // warn: fieldDelimiter could not be '' for no fieldDelimiter
         char fieldDelimiter = config.getChar(Key.FIELD_DELIMITER, Constant.DEFAULT_FIELD_DELIMITER);
-        csvBuilder.setDelimiter(fieldDelimiter);
+
+        // 记录直接编码为字节, 引号规则与 CSVFormat.DEFAULT 相同, 换行符为 \n
+        DelimitedRecordEncoder encoder = new DelimitedRecordEncoder(charset, fieldDelimiter, nullFormat,
+                StringUtils.isNotBlank(dateFormat) ? dateFormat : null, true);
 
         List<String> headers = config.getList(Key.HEADER, String.class);
         if (null != headers && !headers.isEmpty()) {
-//            unstructuredWriter.writeOneRecord(headers);
-            csvBuilder.setHeader(headers.toArray(new String[0]));
+            encoder.encodeHeader(headers);
+            encoder.newLine();
         }
 
         Record record;
-        CSVPrinter csvPrinter = new CSVPrinter(writer, csvBuilder.build());
         while ((record = lineReceiver.getFromReader()) != null) {
-            final List<String> result = recordToList(record, nullFormat, dateParse, taskPluginCollector);
-            if (result != null) {
-                csvPrinter.printRecord(result);
+            if (encoder.encode(record, taskPluginCollector)) {
+                encoder.newLine();
+            }
+            if (encoder.getLength() >= WRITE_BUFFER_SIZE) {
+                encoder.writeTo(out);
             }
         }
+        encoder.writeTo(out);
+        out.flush();
 
         // warn:由调用方控制流的关闭
-        // IOUtils.closeQuietly(unstructuredWriter);
     }
 
     public static List<String> recordToList(Record record, String nullFormat, DateFormat dateParse, TaskPluginCollector taskPluginCollector)
@@ -0,0 +1,59 @@
+#!/bin/bash
+#
+# Compare the commons-csv reader with the mmap parser on a large local file,
+# and the CSVPrinter writer with DelimitedRecordEncoder.
+#
+# usage: storage_bench.sh gen [MB]
+#        storage_bench.sh read csv|mmap [runs]
+#        storage_bench.sh write csv|encoder [rows] [runs]
+#
+#   gen   generate $BENCH_FILE of the given size, default is 4096MB
+#   read  read $BENCH_FILE through commons-csv or MappedFileParser, every run in a new JVM
+#   write write the given rows (default 50000000) to $BENCH_FILE.out through CSVPrinter or
+#         DelimitedRecordEncoder, every run in a new JVM
+#
+# environment:
+#   BENCH_FILE  the data file, default is /tmp/storage_bench.csv
+#   JAVA_OPTS   default is -Xms1g -Xmx1g
+#
+# The test classes are compiled by maven on the first run. Every run prints the elapsed time,
+# the rows and the throughput, drop the page cache between runs to measure a cold read.
+
+MODE=$1
+BENCH_FILE=${BENCH_FILE:-/tmp/storage_bench.csv}
+JAVA_OPTS=${JAVA_OPTS:--Xms1g -Xmx1g}
+MODULE=$(cd "$(dirname "$0")/../../.." && pwd)
+CP_FILE=${MODULE}/target/bench.classpath
+
+if [ "$MODE" != "gen" ] && [ "$MODE" != "read" ] && [ "$MODE" != "write" ]; then
+    sed -n '3,20p' "$0"
+    exit 1
+fi
+
+if [ ! -f "$CP_FILE" ] || [ ! -d "${MODULE}/target/test-classes" ]; then
+    (cd "$MODULE" && mvn -B -q test-compile dependency:build-classpath -Dmdep.outputFile="$CP_FILE") || exit 1
+fi
+CP=${MODULE}/target/classes:${MODULE}/target/test-classes:$(cat "$CP_FILE")
+
+if [ "$MODE" = "gen" ]; then
+    java $JAVA_OPTS -cp "$CP" com.wgzhao.addax.storage.StorageBench gen "$BENCH_FILE" "${2:-4096}"
+    exit $?
+fi
+
+if [ "$MODE" = "write" ]; then
+    for i in $(seq "${4:-3}"); do
+        java $JAVA_OPTS -cp "$CP" com.wgzhao.addax.storage.StorageBench write "$2" "${BENCH_FILE}.out" "${3:-50000000}" || exit 1
+    done
+    rm -f "${BENCH_FILE}.out"
+    exit 0
+fi
+
+PARSER=$2
+RUNS=${3:-3}
+if [ ! -f "$BENCH_FILE" ]; then
+    echo "$BENCH_FILE does not exist, run '$0 gen' first"
+    exit 1
+fi
+for i in $(seq "$RUNS"); do
+    java $JAVA_OPTS -cp "$CP" com.wgzhao.addax.storage.StorageBench read "$PARSER" "$BENCH_FILE" || exit 1
+done
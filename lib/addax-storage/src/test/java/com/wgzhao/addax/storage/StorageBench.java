@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.storage;
+
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.DateColumn;
+import com.wgzhao.addax.common.element.DoubleColumn;
+import com.wgzhao.addax.common.element.LongColumn;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.element.StringColumn;
+import com.wgzhao.addax.common.plugin.RecordReceiver;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.storage.reader.StorageReaderUtil;
+import com.wgzhao.addax.storage.writer.StorageWriterUtil;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 存储类插件读写路径的基准测试, 由 src/test/bench/storage_bench.sh 调用, 不作为单元测试运行.
+ * <pre>
+ * gen  &lt;file&gt; &lt;MB&gt;          生成指定大小的 CSV 文件
+ * read csv|mmap &lt;file&gt;    分别通过 commons-csv 和 MappedFileParser 读取整个文件
+ * write csv|encoder &lt;file&gt; &lt;rows&gt;  分别通过 recordToList + CSVPrinter 和 DelimitedRecordEncoder 写入指定行数
+ * </pre>
+ */
+public class StorageBench
+{
+    private static final String COLUMNS = "[{\"index\":0,\"type\":\"long\"},{\"index\":1,\"type\":\"string\"},"
+            + "{\"index\":2,\"type\":\"double\"},{\"index\":3,\"type\":\"date\",\"format\":\"yyyy-MM-dd HH:mm:ss\"},"
+            + "{\"index\":4,\"type\":\"string\"}]";
+    private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final int RECORD_POOL_SIZE = 10_000;
+
+    private StorageBench()
+    {
+    }
+
+    public static void main(String[] args)
+            throws IOException
+    {
+        if (args.length == 3 && "gen".equals(args[0])) {
+            generate(new File(args[1]), Long.parseLong(args[2]) * 1024 * 1024);
+        }
+        else if (args.length == 3 && "read".equals(args[0])) {
+            read(args[1], args[2]);
+        }
+        else if (args.length == 4 && "write".equals(args[0])) {
+            write(args[1], new File(args[2]), Long.parseLong(args[3]));
+        }
+        else {
+            System.err.println("usage: StorageBench gen <file> <MB> | read csv|mmap <file> | write csv|encoder <file> <rows>");
+            System.exit(1);
+        }
+    }
+
+    /*
+     * 每行 5 个字段: 整数, 字符串, 小数, 日期, 带引号的字符串(约十分之一包含分隔符或换行符)
+     */
+    private static void generate(File file, long size)
+            throws IOException
+    {
+        Random random = new Random(20211019L);
+        long written = 0;
+        long id = 0;
+        StringBuilder line = new StringBuilder(128);
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8),
+                1024 * 1024)) {
+            while (written < size) {
+                line.setLength(0);
+                line.append(id++).append(',')
+                        .append("name_").append(random.nextInt(1_000_000)).append(',')
+                        .append(random.nextInt(1_000_000) / 100.0).append(',')
+                        .append(String.format("20%02d-%02d-%02d %02d:%02d:%02d", random.nextInt(30), 1 + random.nextInt(12),
+                                1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60)))
+                        .append(',');
+                switch (random.nextInt(10)) {
+                    case 0:
+                        line.append("\"a, \"\"quoted\"\" comment\"");
+                        break;
+                    case 1:
+                        line.append("\"multi\nline 中文\"");
+                        break;
+                    default:
+                        line.append("plain comment ").append(random.nextInt(1000));
+                }
+                line.append('\n');
+                writer.append(line);
+                written += line.length();
+            }
+        }
+        System.out.printf("file=%s size=%dMB rows=%d%n", file, file.length() / 1024 / 1024, id);
+    }
+
+    private static void read(String parser, String fileName)
+            throws IOException
+    {
+        Configuration conf = Configuration.from("{\"fieldDelimiter\":\",\",\"encoding\":\"UTF-8\",\"column\":" + COLUMNS + "}");
+        CountingRecordSender sender = new CountingRecordSender();
+        long start = System.nanoTime();
+        if ("mmap".equals(parser)) {
+            StorageReaderUtil.readFromMappedFile(fileName, 0, -1, conf, sender, new FailingPluginCollector());
+        }
+        else if ("csv".equals(parser)) {
+            StorageReaderUtil.readFromStream(new FileInputStream(fileName), fileName, conf, sender, new FailingPluginCollector());
+        }
+        else {
+            throw new IllegalArgumentException("unknown parser " + parser);
+        }
+        report("read", parser, new File(fileName).length(), sender.rows, System.nanoTime() - start);
+    }
+
+    /*
+     * 循环写入一组与 gen 生成的数据形式相同的记录, 两种方式写出的字节相同
+     */
+    private static void write(String path, File file, long rows)
+            throws IOException
+    {
+        List<Record> pool = new ArrayList<>(RECORD_POOL_SIZE);
+        Random random = new Random(20211019L);
+        for (int i = 0; i < RECORD_POOL_SIZE; i++) {
+            ListRecord record = new ListRecord();
+            record.addColumn(new LongColumn(random.nextLong()));
+            record.addColumn(new StringColumn("name_" + random.nextInt(1_000_000)));
+            record.addColumn(new DoubleColumn(random.nextInt(1_000_000) / 100.0));
+            record.addColumn(new DateColumn(new Timestamp(random.nextInt(Integer.MAX_VALUE) * 1000L)));
+            record.addColumn(new StringColumn(random.nextInt(10) == 0 ? "a, \"quoted\" comment" : "plain comment " + random.nextInt(1000)));
+            pool.add(record);
+        }
+        long start = System.nanoTime();
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            if ("encoder".equals(path)) {
+                Configuration conf = Configuration.from("{\"fieldDelimiter\":\",\",\"encoding\":\"UTF-8\",\"dateFormat\":\"" + DATE_FORMAT + "\"}");
+                StorageWriterUtil.writeToStream(new PoolRecordReceiver(pool, rows), out, conf, file.getName(), new FailingPluginCollector());
+            }
+            else if ("csv".equals(path)) {
+                // 改为 DelimitedRecordEncoder 之前的写入方式
+                SimpleDateFormat dateParse = new SimpleDateFormat(DATE_FORMAT);
+                TaskPluginCollector collector = new FailingPluginCollector();
+                CSVFormat format = CSVFormat.DEFAULT.builder().setRecordSeparator("\n").setDelimiter(',').build();
+                try (CSVPrinter printer = new CSVPrinter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), format)) {
+                    for (long i = 0; i < rows; i++) {
+                        printer.printRecord(StorageWriterUtil.recordToList(pool.get((int) (i % RECORD_POOL_SIZE)), null, dateParse, collector));
+                    }
+                }
+            }
+            else {
+                throw new IllegalArgumentException("unknown path " + path);
+            }
+        }
+        report("write", path, file.length(), rows, System.nanoTime() - start);
+    }
+
+    private static void report(String mode, String path, long bytes, long rows, long nanos)
+    {
+        double seconds = nanos / 1e9;
+        System.out.printf("mode=%s path=%s rows=%d elapsed=%.1fs throughput=%.1fMB/s%n",
+                mode, path, rows, seconds, bytes / 1024.0 / 1024.0 / seconds);
+    }
+
+    private static class ListRecord
+            implements Record
+    {
+        private final List<Column> columns = new ArrayList<>();
+
+        @Override
+        public void addColumn(Column column)
+        {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column)
+        {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i)
+        {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize()
+        {
+            return 0;
+        }
+    }
+
+    private static class CountingRecordSender
+            implements RecordSender
+    {
+        private long rows;
+
+        @Override
+        public Record createRecord()
+        {
+            return new ListRecord();
+        }
+
+        @Override
+        public void sendToWriter(Record record)
+        {
+            rows++;
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void terminate() {}
+
+        @Override
+        public void shutdown() {}
+    }
+
+    private static class PoolRecordReceiver
+            implements RecordReceiver
+    {
+        private final List<Record> pool;
+        private final long rows;
+        private long sent;
+
+        PoolRecordReceiver(List<Record> pool, long rows)
+        {
+            this.pool = pool;
+            this.rows = rows;
+        }
+
+        @Override
+        public Record getFromReader()
+        {
+            return sent < rows ? pool.get((int) (sent++ % pool.size())) : null;
+        }
+
+        @Override
+        public void shutdown() {}
+    }
+
+    private static class FailingPluginCollector
+            extends TaskPluginCollector
+    {
+        @Override
+        public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage)
+        {
+            throw new IllegalStateException("unexpected dirty record: " + errorMessage, t);
+        }
+
+        @Override
+        public void collectMessage(String key, String value) {}
+    }
+}
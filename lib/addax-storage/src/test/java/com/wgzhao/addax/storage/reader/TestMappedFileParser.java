@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.storage.reader;
+
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The records read by {@link MappedFileParser} must be the same as the ones read by commons-csv
+ */
+public class TestMappedFileParser
+{
+    private static final int[] WINDOW_SIZES = {3, 7, 16, 64, 1024, 1024 * 1024};
+
+    private File file;
+
+    @BeforeEach
+    public void setUp()
+            throws IOException
+    {
+        file = File.createTempFile("mmap", ".csv");
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void testQuotingAndLineBreaks()
+            throws IOException
+    {
+        String content = "id,name,comment\r\n"
+                + "1,\"a,b\",plain\r\n"
+                + "2,\"say \"\"hi\"\"\",\"\"\n"
+                + "\n"
+                + "3,\"multi\nline\r\nfield\",x\n"
+                + "\r\n"
+                + "4,a\"b,\"中文,逗号\"\n"
+                + ",,\n"
+                + "\"\"\n"
+                + "5,trailing,";
+        write(content);
+        for (int windowSize : WINDOW_SIZES) {
+            assertEquals(commonsCsv(content, ','), mapped(',', windowSize, 0, -1), "window size " + windowSize);
+        }
+    }
+
+    @Test
+    public void testOtherDelimiter()
+            throws IOException
+    {
+        String content = "1\t\"a\tb\"\t,\n2\t\"\"\"\"\t\r\n";
+        write(content);
+        for (int windowSize : WINDOW_SIZES) {
+            assertEquals(commonsCsv(content, '\t'), mapped('\t', windowSize, 0, -1), "window size " + windowSize);
+        }
+    }
+
+    @Test
+    public void testLineLongerThanWindow()
+            throws IOException
+    {
+        StringBuilder content = new StringBuilder("short\n\"");
+        for (int i = 0; i < 500; i++) {
+            content.append("long \"\"quoted\"\" field, ");
+        }
+        content.append("\",tail\r\nlast\n");
+        write(content.toString());
+        for (int windowSize : WINDOW_SIZES) {
+            assertEquals(commonsCsv(content.toString(), ','), mapped(',', windowSize, 0, -1), "window size " + windowSize);
+        }
+    }
+
+    @Test
+    public void testRandomContent()
+            throws IOException
+    {
+        Random random = new Random(20211019L);
+        for (int round = 0; round < 20; round++) {
+            String content = randomCsv(random, 200, true);
+            write(content);
+            List<List<String>> expected = commonsCsv(content, ',');
+            for (int windowSize : WINDOW_SIZES) {
+                assertEquals(expected, mapped(',', windowSize, 0, -1), "round " + round + ", window size " + windowSize);
+            }
+        }
+    }
+
+    @Test
+    public void testSplitRanges()
+            throws IOException
+    {
+        Random random = new Random(42L);
+        // a range boundary can not fall in a quoted line break, see LineRangeInputStream
+        String content = randomCsv(random, 300, false);
+        write(content);
+        List<List<String>> expected = commonsCsv(content, ',');
+        long fileSize = file.length();
+        for (long splitSize : new long[] {1, 2, 5, 17, 100, 1000, fileSize - 1, fileSize, fileSize + 1}) {
+            for (int windowSize : new int[] {16, 1024 * 1024}) {
+                List<List<String>> actual = new ArrayList<>();
+                for (long start = 0; start < fileSize; start += splitSize) {
+                    long end = Math.min(start + splitSize, fileSize);
+                    List<List<String>> range = mapped(',', windowSize, start, end);
+                    assertEquals(lineRange(start, end), range, "range [" + start + ", " + end + ")");
+                    actual.addAll(range);
+                }
+                assertEquals(expected, actual, "split size " + splitSize + ", window size " + windowSize);
+            }
+        }
+    }
+
+    @Test
+    public void testUnclosedQuote()
+            throws IOException
+    {
+        write("1,\"never closed\n2,b\n");
+        for (int windowSize : WINDOW_SIZES) {
+            assertThrows(RuntimeException.class, () -> mapped(',', windowSize, 0, -1));
+        }
+    }
+
+    private void write(String content)
+            throws IOException
+    {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String randomCsv(Random random, int lines, boolean lineBreaks)
+            throws IOException
+    {
+        String alphabet = lineBreaks ? "ab,\" 中\n\r1-" : "ab,\" 中1-";
+        StringWriter out = new StringWriter();
+        try (CSVPrinter lf = new CSVPrinter(out, CSVFormat.DEFAULT.builder().setRecordSeparator("\n").build());
+                CSVPrinter crlf = new CSVPrinter(out, CSVFormat.DEFAULT)) {
+            for (int i = 0; i < lines; i++) {
+                if (random.nextInt(10) == 0) {
+                    out.write(random.nextBoolean() ? "\n" : "\r\n");
+                    continue;
+                }
+                int fields = 1 + random.nextInt(5);
+                List<String> values = new ArrayList<>();
+                for (int j = 0; j < fields; j++) {
+                    StringBuilder value = new StringBuilder();
+                    for (int k = random.nextInt(8); k > 0; k--) {
+                        value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                    }
+                    values.add(value.toString());
+                }
+                if (fields == 1 && values.get(0).isEmpty()) {
+                    // a single empty value is printed as an empty line
+                    values.set(0, "x");
+                }
+                (random.nextBoolean() ? lf : crlf).printRecord(values);
+            }
+        }
+        return out.toString();
+    }
+
+    private static List<List<String>> commonsCsv(String content, char delimiter)
+            throws IOException
+    {
+        return toList(CSVFormat.DEFAULT.builder().setDelimiter(delimiter).build().parse(new StringReader(content)));
+    }
+
+    private List<List<String>> lineRange(long start, long end)
+            throws IOException
+    {
+        try (FileInputStream in = new FileInputStream(file)) {
+            in.getChannel().position(start);
+            return toList(CSVFormat.DEFAULT.parse(new InputStreamReader(new LineRangeInputStream(in, start, end), StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static List<List<String>> toList(CSVParser parser)
+            throws IOException
+    {
+        List<List<String>> records = new ArrayList<>();
+        try (CSVParser p = parser) {
+            for (CSVRecord csvRecord : p) {
+                List<String> values = new ArrayList<>();
+                csvRecord.forEach(values::add);
+                records.add(values);
+            }
+        }
+        return records;
+    }
+
+    private List<List<String>> mapped(char delimiter, int windowSize, long start, long end)
+            throws IOException
+    {
+        CollectingRecordSender sender = new CollectingRecordSender();
+        try (MappedFileParser parser = new MappedFileParser(file.getPath(), delimiter, null)) {
+            parser.setWindowSize(windowSize);
+            parser.read(start, end < 0 ? parser.getFileSize() : end, false, new RecordConverter(null, null), sender, null);
+        }
+        return sender.records;
+    }
+
+    private static class ListRecord
+            implements Record
+    {
+        private final List<Column> columns = new ArrayList<>();
+
+        @Override
+        public void addColumn(Column column)
+        {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column)
+        {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i)
+        {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize()
+        {
+            return 0;
+        }
+    }
+
+    private static class CollectingRecordSender
+            implements RecordSender
+    {
+        private final List<List<String>> records = new ArrayList<>();
+
+        @Override
+        public Record createRecord()
+        {
+            return new ListRecord();
+        }
+
+        @Override
+        public void sendToWriter(Record record)
+        {
+            List<String> values = new ArrayList<>();
+            for (int i = 0; i < record.getColumnNumber(); i++) {
+                values.add(record.getColumn(i).asString());
+            }
+            records.add(values);
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void terminate() {}
+
+        @Override
+        public void shutdown() {}
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.storage.writer;
+
+import com.wgzhao.addax.common.element.BoolColumn;
+import com.wgzhao.addax.common.element.BytesColumn;
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.DateColumn;
+import com.wgzhao.addax.common.element.DoubleColumn;
+import com.wgzhao.addax.common.element.LongColumn;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.element.StringColumn;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The encoder must write exactly the same bytes as the old recordToList + CSVPrinter path
+ * (CSVFormat.DEFAULT, QuoteMode.MINIMAL, \n as the record separator)
+ */
+public class TestDelimitedRecordEncoder
+{
+    private static final String ALPHABET = "ab1-, \t|;\"\n\r#中\u0001";
+    private static final char[] DELIMITERS = {',', '\t', '|', ';', '-', '1', '\u0001', '中'};
+    private static final String[] NULL_FORMATS = {null, "", "\\N", "NULL", "a,b"};
+    private static final String[] DATE_FORMATS = {null, "yyyy-MM-dd HH:mm:ss"};
+    private static final Charset[] CHARSETS = {StandardCharsets.UTF_8, Charset.forName("GBK")};
+
+    @Test
+    public void testSameBytesAsCsvPrinter()
+            throws IOException
+    {
+        Random random = new Random(20211019L);
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            records.add(randomRecord(random));
+        }
+        List<String> headers = Arrays.asList("id", "", "name,1", "#tag", " trailing ", "say \"hi\"");
+        for (Charset charset : CHARSETS) {
+            for (char delimiter : DELIMITERS) {
+                for (String nullFormat : NULL_FORMATS) {
+                    for (String dateFormat : DATE_FORMATS) {
+                        for (List<String> header : Arrays.asList(null, headers)) {
+                            String message = String.format("charset %s, delimiter %s, nullFormat %s, dateFormat %s, header %s",
+                                    charset, (int) delimiter, nullFormat, dateFormat, header != null);
+                            byte[] expected = csvPrinter(records, charset, delimiter, nullFormat, dateFormat, header);
+                            byte[] actual = encoder(records, charset, delimiter, nullFormat, dateFormat, header);
+                            if (!Arrays.equals(expected, actual)) {
+                                assertEquals(new String(expected, charset), new String(actual, charset), message);
+                            }
+                            assertArrayEquals(expected, actual, message);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEdgeValues()
+            throws IOException
+    {
+        List<Record> records = new ArrayList<>();
+        for (String value : Arrays.asList("", " ", "#", "!", "a ", " a", "\"", "\"\"", "a\rb", "a\r\nb", "😀", "\ud83d", "x\ude00")) {
+            records.add(record(new StringColumn(value)));
+            records.add(record(new StringColumn(value), new StringColumn(value)));
+        }
+        records.add(record(new StringColumn()));
+        records.add(record((Column) null));
+        records.add(record(new LongColumn(Long.MIN_VALUE), new LongColumn(Long.MAX_VALUE), new LongColumn(0L), new LongColumn(-1L)));
+        records.add(record(new LongColumn(new BigInteger("123456789012345678901234567890")), new LongColumn(new BigInteger("-9223372036854775809"))));
+        records.add(record(new LongColumn(-5L), new LongColumn(15L)));
+        records.add(record(new StringColumn("NULL"), new StringColumn("\\N"), new StringColumn("a,b")));
+        for (char delimiter : DELIMITERS) {
+            for (String nullFormat : NULL_FORMATS) {
+                for (Charset charset : CHARSETS) {
+                    assertArrayEquals(csvPrinter(records, charset, delimiter, nullFormat, null, null),
+                            encoder(records, charset, delimiter, nullFormat, null, null),
+                            "delimiter " + (int) delimiter + ", nullFormat " + nullFormat + ", charset " + charset);
+                }
+            }
+        }
+    }
+
+    /*
+     * the old StorageWriterUtil.doWriteToStream
+     */
+    private static byte[] csvPrinter(List<Record> records, Charset charset, char delimiter, String nullFormat, String dateFormat,
+            List<String> headers)
+            throws IOException
+    {
+        CSVFormat.Builder csvBuilder = CSVFormat.DEFAULT.builder();
+        csvBuilder.setRecordSeparator("\n");
+        csvBuilder.setNullString(nullFormat);
+        csvBuilder.setDelimiter(delimiter);
+        if (headers != null) {
+            csvBuilder.setHeader(headers.toArray(new String[0]));
+        }
+        SimpleDateFormat dateParse = dateFormat == null ? null : new SimpleDateFormat(dateFormat);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, charset));
+                CSVPrinter csvPrinter = new CSVPrinter(writer, csvBuilder.build())) {
+            for (Record record : records) {
+                List<String> result = StorageWriterUtil.recordToList(record, nullFormat, dateParse, new NoopPluginCollector());
+                if (result != null) {
+                    csvPrinter.printRecord(result);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /*
+     * the same calls as StorageWriterUtil.doWriteToStream
+     */
+    private static byte[] encoder(List<Record> records, Charset charset, char delimiter, String nullFormat, String dateFormat,
+            List<String> headers)
+            throws IOException
+    {
+        DelimitedRecordEncoder encoder = new DelimitedRecordEncoder(charset, delimiter, nullFormat, dateFormat, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (headers != null) {
+            encoder.encodeHeader(headers);
+            encoder.newLine();
+        }
+        for (Record record : records) {
+            if (encoder.encode(record, new NoopPluginCollector())) {
+                encoder.newLine();
+            }
+            // flush now and then, as the writer does with a full buffer
+            if (encoder.getLength() >= 4096) {
+                encoder.writeTo(out);
+            }
+        }
+        encoder.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static Record randomRecord(Random random)
+    {
+        ListRecord record = new ListRecord();
+        for (int i = random.nextInt(6); i >= 0; i--) {
+            record.addColumn(randomColumn(random));
+        }
+        return record;
+    }
+
+    private static Column randomColumn(Random random)
+    {
+        switch (random.nextInt(12)) {
+            case 0:
+                return new StringColumn();
+            case 1:
+                return new LongColumn(random.nextLong());
+            case 2:
+                return new LongColumn((long) random.nextInt(200) - 100);
+            case 3:
+                return new LongColumn(BigInteger.valueOf(random.nextLong()).multiply(BigInteger.valueOf(random.nextLong())));
+            case 4:
+                return new DoubleColumn(random.nextDouble() * 1000 - 500);
+            case 5:
+                return new BoolColumn(random.nextBoolean());
+            case 6:
+                return new DateColumn(new Timestamp(random.nextInt(Integer.MAX_VALUE) * 1000L + random.nextInt(1000)));
+            case 7:
+                return new DateColumn(new java.sql.Date(random.nextInt(Integer.MAX_VALUE) * 1000L));
+            case 8:
+                return new DateColumn(new Time(random.nextInt(86400) * 1000L));
+            case 9:
+                return new BytesColumn(randomString(random).getBytes(StandardCharsets.UTF_8));
+            case 10:
+                return new LongColumn();
+            default:
+                return new StringColumn(randomString(random));
+        }
+    }
+
+    private static String randomString(Random random)
+    {
+        StringBuilder value = new StringBuilder();
+        for (int i = random.nextInt(8); i > 0; i--) {
+            value.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return value.toString();
+    }
+
+    private static Record record(Column... columns)
+    {
+        ListRecord record = new ListRecord();
+        for (Column column : columns) {
+            record.addColumn(column);
+        }
+        return record;
+    }
+
+    private static class ListRecord
+            implements Record
+    {
+        private final List<Column> columns = new ArrayList<>();
+
+        @Override
+        public void addColumn(Column column)
+        {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column)
+        {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i)
+        {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize()
+        {
+            return 0;
+        }
+    }
+
+    private static class NoopPluginCollector
+            extends TaskPluginCollector
+    {
+        @Override
+        public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage)
+        {
+            throw new AssertionError("unexpected dirty record", t);
+        }
+
+        @Override
+        public void collectMessage(String key, String value) {}
+    }
+}
@@ -28,17 +28,23 @@ import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.RecordSender;
 import com.wgzhao.addax.common.spi.Reader;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.storage.reader.RecordConverter;
 import com.wgzhao.addax.storage.reader.StorageReaderUtil;
 import com.wgzhao.addax.storage.util.FileHelper;
+import com.wgzhao.addax.storage.util.FileSplitPlanner;
+import com.wgzhao.addax.storage.util.FileSplitPlanner.FileRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by zhongtian.hu on 19-8-8.
@@ -128,18 +134,20 @@ public class DbfReader
             LOG.debug("split() begin...");
             List<Configuration> readerSplitConfigs = new ArrayList<>();
 
-            // warn:每个slice拖且仅拖一个文件,
-            int splitNumber = this.sourceFiles.size();
-            if (0 == splitNumber) {
+            if (this.sourceFiles.isEmpty()) {
                 throw AddaxException.asAddaxException(
                         DbfReaderErrorCode.EMPTY_DIR_EXCEPTION,
                         String.format("未能找到待读取的文件,请确认您的配置项path: %s", this.originConfig.getString(Key.PATH)));
             }
 
-            List<List<String>> splitSourceFiles = FileHelper.splitSourceFiles(this.sourceFiles, splitNumber);
-            for (List<String> files : splitSourceFiles) {
+            // dbf 文件不能从中间读取, 只按文件大小分配给各个任务
+            Map<String, Long> fileSizes = new LinkedHashMap<>();
+            for (String file : this.sourceFiles) {
+                fileSizes.put(file, new File(file).length());
+            }
+            for (List<FileRange> ranges : FileSplitPlanner.plan(fileSizes, adviceNumber, 0)) {
                 Configuration splitConfig = this.originConfig.clone();
-                splitConfig.set(Key.SOURCE_FILES, files);
+                FileSplitPlanner.setTaskRanges(splitConfig, ranges);
                 readerSplitConfigs.add(splitConfig);
             }
             LOG.debug("split() ok and end...");
@@ -198,6 +206,9 @@ public class DbfReader
                 );
             }
             int colNum = column.size();
+            RecordConverter converter = new RecordConverter(column, nullFormat);
+            // DBase's date type does not include time part
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
             DBFRow row;
             for (String fileName : this.sourceFiles) {
                 LOG.info("begin reading file : [{}]", fileName);
@@ -210,14 +221,13 @@ public class DbfReader
                                 sourceLine[i] = column.get(i).getValue();
                             }
                             else if (row.getString(i) != null && "date".equalsIgnoreCase(column.get(i).getType())) {
-                                // DBase's date type does not include time part
-                                sourceLine[i] = new SimpleDateFormat("yyyy-MM-dd").format(row.getDate(i));
+                                sourceLine[i] = dateFormat.format(row.getDate(i));
                             }
                             else {
                                 sourceLine[i] = row.getString(i);
                             }
                         }
-                        StorageReaderUtil.transportOneRecord(recordSender, column, sourceLine, nullFormat, this.getTaskPluginCollector());
+                        converter.transport(recordSender, sourceLine, this.getTaskPluginCollector());
                     }
                 }
                 catch (FileNotFoundException e) {
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.dirtyreader;
+
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.spi.Reader;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.common.util.DirtyRecordCodec;
+import com.wgzhao.addax.storage.util.FileHelper;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 重放 FilePluginCollector 保存的脏数据文件, 每条脏数据按保存时的列类型和原始值还原为一条记录
+ */
+public class DirtyReader
+        extends Reader
+{
+    public static class Job
+            extends Reader.Job
+    {
+        private static final Logger LOG = LoggerFactory.getLogger(Job.class);
+
+        private Configuration originConfig = null;
+        private List<String> sourceFiles;
+
+        @Override
+        public void init()
+        {
+            this.originConfig = this.getPluginJobConf();
+            this.originConfig.getNecessaryValue(Key.PATH, DirtyReaderErrorCode.REQUIRED_VALUE);
+            String type = this.originConfig.getString(Key.TYPE);
+            if (StringUtils.isNotBlank(type) && !"READER".equalsIgnoreCase(type) && !"WRITER".equalsIgnoreCase(type)) {
+                throw AddaxException.asAddaxException(DirtyReaderErrorCode.ILLEGAL_VALUE,
+                        String.format("The type [%s] is invalid, it should be READER or WRITER.", type));
+            }
+        }
+
+        @Override
+        public void prepare()
+        {
+            List<String> path;
+            String pathInString = this.originConfig.getString(Key.PATH);
+            if (pathInString.startsWith("[") && pathInString.endsWith("]")) {
+                path = this.originConfig.getList(Key.PATH, String.class);
+            }
+            else {
+                path = Collections.singletonList(pathInString);
+            }
+            this.sourceFiles = FileHelper.buildSourceTargets(path);
+            LOG.info("The number of dirty record files you will replay: [{}]", this.sourceFiles.size());
+        }
+
+        @Override
+        public List<Configuration> split(int adviceNumber)
+        {
+            if (this.sourceFiles.isEmpty()) {
+                throw AddaxException.asAddaxException(DirtyReaderErrorCode.EMPTY_DIR_EXCEPTION,
+                        String.format("Can not find any file in the path: %s", originConfig.getString(Key.PATH)));
+            }
+            List<Configuration> readerSplitConfigs = new ArrayList<>();
+            for (List<String> files : FileHelper.splitSourceFiles(sourceFiles, Math.min(adviceNumber, sourceFiles.size()))) {
+                Configuration splitConfig = this.originConfig.clone();
+                splitConfig.set(Key.SOURCE_FILES, files);
+                readerSplitConfigs.add(splitConfig);
+            }
+            return readerSplitConfigs;
+        }
+
+        @Override
+        public void destroy()
+        {
+            //
+        }
+    }
+
+    public static class Task
+            extends Reader.Task
+    {
+        private static final Logger LOG = LoggerFactory.getLogger(Task.class);
+
+        private List<String> sourceFiles;
+        private String type;
+
+        @Override
+        public void init()
+        {
+            Configuration readerSliceConfig = this.getPluginJobConf();
+            this.sourceFiles = readerSliceConfig.getList(Key.SOURCE_FILES, String.class);
+            this.type = readerSliceConfig.getString(Key.TYPE);
+        }
+
+        @Override
+        public void startRead(RecordSender recordSender)
+        {
+            for (String file : this.sourceFiles) {
+                LOG.info("Begin to replay the dirty record file [{}].", file);
+                try (BufferedReader reader = open(file)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isEmpty()) {
+                            replay(recordSender, line);
+                        }
+                    }
+                }
+                catch (EOFException e) {
+                    // 作业被强制终止时 gzip 文件可能不完整, 已读出的部分仍然有效
+                    LOG.warn("The file [{}] is truncated, the records after the truncation point are lost.", file);
+                }
+                catch (IOException e) {
+                    throw AddaxException.asAddaxException(DirtyReaderErrorCode.READ_FILE_ERROR,
+                            String.format("Failed to read the file [%s]", file), e);
+                }
+                recordSender.flush();
+            }
+        }
+
+        private void replay(RecordSender recordSender, String line)
+        {
+            Record record = recordSender.createRecord();
+            try {
+                JSONObject entry = DirtyRecordCodec.parse(line);
+                if (type != null && !type.equalsIgnoreCase(entry.getString(DirtyRecordCodec.KEY_TYPE))) {
+                    return;
+                }
+                DirtyRecordCodec.decodeColumns(entry, record);
+            }
+            catch (JSONException | IllegalArgumentException e) {
+                // 文件不完整(例如作业被强制终止)时最后一行可能被截断
+                getTaskPluginCollector().collectDirtyRecord(record, e, line);
+                return;
+            }
+            recordSender.sendToWriter(record);
+        }
+
+        private static BufferedReader open(String file)
+                throws IOException
+        {
+            InputStream in = new FileInputStream(file);
+            if (file.endsWith(".gz")) {
+                in = new GZIPInputStream(in, 64 * 1024);
+            }
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void destroy()
+        {
+            //
+        }
+    }
+}
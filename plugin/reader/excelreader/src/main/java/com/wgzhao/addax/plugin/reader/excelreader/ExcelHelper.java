@@ -22,132 +22,369 @@
 package com.wgzhao.addax.plugin.reader.excelreader;
 
 import com.wgzhao.addax.common.element.BoolColumn;
+import com.wgzhao.addax.common.element.Column;
 import com.wgzhao.addax.common.element.DateColumn;
 import com.wgzhao.addax.common.element.DoubleColumn;
 import com.wgzhao.addax.common.element.LongColumn;
 import com.wgzhao.addax.common.element.Record;
 import com.wgzhao.addax.common.element.StringColumn;
 import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.EOFRecord;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
+/**
+ * 读取 Excel 文件.
+ * xlsx 文件通过 XSSF 的事件模型(SAX)逐行解析 sheet 的 XML, 内存中只保留当前行, 不会构建整个工作簿的对象;
+ * xls 文件单个 sheet 最多 65536 行, 仍然使用 HSSFWorkbook 读取
+ */
 public class ExcelHelper
 {
     public boolean header;
     public int skipRows;
-    FileInputStream file;
-    Workbook workbook;
-    private FormulaEvaluator evaluator;
-    private Iterator<Row> rowIterator;
 
     public ExcelHelper(boolean header, int skipRows) {
         this.header = header;
         this.skipRows = skipRows;
     }
-    public void open(String filePath)
+
+    public static boolean isXlsx(String filePath)
     {
+        return filePath.toLowerCase().endsWith(".xlsx");
+    }
+
+    /**
+     * 按顺序获取文件中所有 sheet 的名称, 只读取工作簿的目录信息, 不解析 sheet 的内容
+     *
+     * @param filePath Excel 文件
+     * @return sheet 名称
+     */
+    public static List<String> getSheetNames(String filePath)
+    {
+        List<String> names = new ArrayList<>();
         try {
-            this.file = new FileInputStream(filePath);
-            if (filePath.endsWith(".xlsx")) {
-                this.workbook = new XSSFWorkbook(file);
-            } else {
-                this.workbook = new HSSFWorkbook(file);
-            }
-            // ONLY reader the first sheet
-            Sheet sheet = workbook.getSheetAt(0);
-            this.evaluator =  workbook.getCreationHelper().createFormulaEvaluator();
-            this.rowIterator = sheet.iterator();
-            if (this.header && this.rowIterator.hasNext()) {
-                // skip header
-                this.rowIterator.next();
+            if (isXlsx(filePath)) {
+                try (OPCPackage pkg = OPCPackage.open(new File(filePath), PackageAccess.READ)) {
+                    XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+                    while (sheets.hasNext()) {
+                        sheets.next().close();
+                        names.add(sheets.getSheetName());
+                    }
+                }
             }
-            if (this.skipRows > 0) {
-                int i =0;
-                while (this.rowIterator.hasNext() && i < this.skipRows) {
-                    this.rowIterator.next();
-                    i++;
+            else {
+                // sheet 的名称都在工作簿开头的全局记录中, 读到第一个 EOF 记录即可停止
+                try (POIFSFileSystem fs = new POIFSFileSystem(new File(filePath), true)) {
+                    HSSFRequest request = new HSSFRequest();
+                    request.addListenerForAllRecords(new AbortableHSSFListener()
+                    {
+                        @Override
+                        public short abortableProcessRecord(org.apache.poi.hssf.record.Record record)
+                        {
+                            if (record instanceof BoundSheetRecord) {
+                                names.add(((BoundSheetRecord) record).getSheetname());
+                            }
+                            return record.getSid() == EOFRecord.sid ? (short) 1 : 0;
+                        }
+                    });
+                    new HSSFEventFactory().abortableProcessWorkbookEvents(request, fs);
                 }
             }
         }
-        catch (FileNotFoundException e) {
-            throw AddaxException.asAddaxException(ExcelReaderErrorCode.OPEN_FILE_ERROR, e);
-        }
-        catch (IOException e) {
+        catch (Exception e) {
             throw AddaxException.asAddaxException(ExcelReaderErrorCode.OPEN_FILE_ERROR,
-                    "IOException occurred when open '" + filePath + "':" + e.getMessage());
+                    "Failed to read the sheets of '" + filePath + "': " + e.getMessage());
         }
+        return names;
     }
 
-    public void close()
+    /**
+     * 读取文件中指定的 sheet, 每一行作为一条记录发送
+     *
+     * @param filePath Excel 文件
+     * @param sheetIndexes 要读取的 sheet 的下标, 从 0 开始
+     * @param recordSender 记录发送器
+     * @return 读取的记录数
+     */
+    public long read(String filePath, List<Integer> sheetIndexes, RecordSender recordSender)
     {
         try {
-            this.workbook.close();
-            this.file.close();
+            if (isXlsx(filePath)) {
+                return readXlsx(filePath, sheetIndexes, recordSender);
+            }
+            return readXls(filePath, sheetIndexes, recordSender);
+        }
+        catch (IOException e) {
+            throw AddaxException.asAddaxException(ExcelReaderErrorCode.READ_FILE_IO_ERROR,
+                    "IOException occurred when read '" + filePath + "':" + e.getMessage());
+        }
+        catch (AddaxException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw AddaxException.asAddaxException(ExcelReaderErrorCode.OPEN_FILE_ERROR,
+                    "Failed to read '" + filePath + "': " + e.getMessage());
         }
-        catch (IOException ignored) {
+    }
 
+    private long readXlsx(String filePath, List<Integer> sheetIndexes, RecordSender recordSender)
+            throws Exception
+    {
+        long count = 0;
+        try (OPCPackage pkg = OPCPackage.open(new File(filePath), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            int index = 0;
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    if (sheetIndexes.contains(index)) {
+                        SheetHandler handler = new SheetHandler(sharedStrings, styles, recordSender);
+                        XMLReader parser = XMLHelper.newXMLReader();
+                        parser.setContentHandler(handler);
+                        parser.parse(new InputSource(sheet));
+                        count += handler.count;
+                    }
+                }
+                index++;
+            }
         }
+        return count;
     }
 
-    public Record readLine(Record record)
+    private long readXls(String filePath, List<Integer> sheetIndexes, RecordSender recordSender)
+            throws IOException
     {
-        if (rowIterator.hasNext()) {
-            Row row = rowIterator.next();
-            //For each row, iterate through all the columns
-            Iterator<Cell> cellIterator = row.cellIterator();
-            while (cellIterator.hasNext()) {
-                Cell cell = cellIterator.next();
-                //Check the cell type after evaluating formulae
-                //If it is formula cell, it will be evaluated otherwise no change will happen
-                switch (evaluator.evaluateInCell(cell).getCellType()) {
-                    case NUMERIC:
-                        // numeric include whole numbers, fractional numbers, dates
-                        if (DateUtil.isCellDateFormatted(cell)) {
-                            record.addColumn(new DateColumn(cell.getDateCellValue()));
-                        } else {
-                            // integer or long ?
-                            double a = cell.getNumericCellValue();
-                            if ((long) a == a) {
-                                record.addColumn(new LongColumn((long) a));
-                            } else {
-                                record.addColumn(new DoubleColumn(a));
-                            }
+        long count = 0;
+        try (FileInputStream file = new FileInputStream(filePath);
+                HSSFWorkbook workbook = new HSSFWorkbook(file)) {
+            FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+            for (int index : sheetIndexes) {
+                Sheet sheet = workbook.getSheetAt(index);
+                int skip = (header ? 1 : 0) + skipRows;
+                for (Row row : sheet) {
+                    if (skip > 0) {
+                        skip--;
+                        continue;
+                    }
+                    Record record = recordSender.createRecord();
+                    //For each row, iterate through all the columns
+                    Iterator<Cell> cellIterator = row.cellIterator();
+                    while (cellIterator.hasNext()) {
+                        Column column = toColumn(evaluator, cellIterator.next());
+                        if (column != null) {
+                            record.addColumn(column);
                         }
-                        break;
-                    case STRING:
-                        record.addColumn(new StringColumn(cell.getStringCellValue().trim()));
-                        break;
-                    case BOOLEAN:
-                        record.addColumn(new BoolColumn(cell.getBooleanCellValue()));
-                        break;
-                    case FORMULA:
-                    case _NONE:
-                        break;
-                    case ERROR:
-                        // #VALUE!
-                        record.addColumn(new StringColumn());
-                        break;
-                    case BLANK:
-                        // empty cell
-                        record.addColumn(new StringColumn(""));
-                        break;
+                    }
+                    recordSender.sendToWriter(record);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static Column toColumn(FormulaEvaluator evaluator, Cell cell)
+    {
+        //Check the cell type after evaluating formulae
+        //If it is formula cell, it will be evaluated otherwise no change will happen
+        switch (evaluator.evaluateInCell(cell).getCellType()) {
+            case NUMERIC:
+                // numeric include whole numbers, fractional numbers, dates
+                if (DateUtil.isCellDateFormatted(cell)) {
+                    return new DateColumn(cell.getDateCellValue());
                 }
+                return toNumberColumn(cell.getNumericCellValue());
+            case STRING:
+                return new StringColumn(cell.getStringCellValue().trim());
+            case BOOLEAN:
+                return new BoolColumn(cell.getBooleanCellValue());
+            case ERROR:
+                // #VALUE!
+                return new StringColumn();
+            case BLANK:
+                // empty cell
+                return new StringColumn("");
+            default:
+                // FORMULA, _NONE
+                return null;
+        }
+    }
+
+    private static Column toNumberColumn(double a)
+    {
+        // integer or long ?
+        if ((long) a == a) {
+            return new LongColumn((long) a);
+        }
+        return new DoubleColumn(a);
+    }
+
+    /*
+     * 解析 sheet 的 XML:
+     * <row r="1"><c r="A1" s="1" t="s"><v>0</v></c><c r="B1" t="inlineStr"><is><t>text</t></is></c></row>
+     * t 为单元格类型: s 共享字符串, inlineStr 内联字符串, str 公式的字符串结果, b 布尔, e 错误, n 或者缺省为数值;
+     * s 为样式的下标, 用于判断数值是否为日期. 公式单元格使用文件中保存的计算结果
+     */
+    private class SheetHandler
+            extends DefaultHandler
+    {
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final StylesTable styles;
+        private final RecordSender recordSender;
+        private final StringBuilder value = new StringBuilder();
+
+        private int skip = (header ? 1 : 0) + skipRows;
+        private long count = 0;
+        private Record record;
+        private int nextColumn;
+        private String cellType;
+        private String cellStyle;
+        private boolean inValue;
+
+        SheetHandler(ReadOnlySharedStringsTable sharedStrings, StylesTable styles, RecordSender recordSender)
+        {
+            this.sharedStrings = sharedStrings;
+            this.styles = styles;
+            this.recordSender = recordSender;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+        {
+            switch (localName.isEmpty() ? qName : localName) {
+                case "row":
+                    record = skip > 0 ? null : recordSender.createRecord();
+                    nextColumn = 0;
+                    break;
+                case "c":
+                    cellType = attributes.getValue("t");
+                    cellStyle = attributes.getValue("s");
+                    value.setLength(0);
+                    if (record != null) {
+                        // 没有内容的单元格不会出现在 XML 中, 用空字符串补齐, 保证列的位置不变
+                        String ref = attributes.getValue("r");
+                        int column = ref == null ? nextColumn : new CellReference(ref).getCol();
+                        while (nextColumn < column) {
+                            record.addColumn(new StringColumn(""));
+                            nextColumn++;
+                        }
+                    }
+                    break;
+                case "v":
+                case "t":
+                    inValue = true;
+                    break;
+                default:
+                    break;
             }
-            return record;
         }
-        else {
-            return null;
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+        {
+            if (inValue) {
+                value.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+        {
+            switch (localName.isEmpty() ? qName : localName) {
+                case "v":
+                case "t":
+                    inValue = false;
+                    break;
+                case "c":
+                    if (record != null) {
+                        record.addColumn(toColumn());
+                        nextColumn++;
+                    }
+                    break;
+                case "row":
+                    if (record != null) {
+                        recordSender.sendToWriter(record);
+                        count++;
+                    }
+                    else {
+                        skip--;
+                    }
+                    record = null;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private Column toColumn()
+        {
+            String v = value.toString();
+            if (cellType == null || "n".equals(cellType)) {
+                if (v.isEmpty()) {
+                    // empty cell
+                    return new StringColumn("");
+                }
+                double d = Double.parseDouble(v);
+                if (cellStyle != null) {
+                    XSSFCellStyle style = styles.getStyleAt(Integer.parseInt(cellStyle));
+                    int formatIndex = style.getDataFormat();
+                    String format = style.getDataFormatString();
+                    if (format == null) {
+                        format = BuiltinFormats.getBuiltinFormat(formatIndex);
+                    }
+                    if (DateUtil.isADateFormat(formatIndex, format) && DateUtil.isValidExcelDate(d)) {
+                        return new DateColumn(DateUtil.getJavaDate(d));
+                    }
+                }
+                return toNumberColumn(d);
+            }
+            switch (cellType) {
+                case "s":
+                    return new StringColumn(sharedStrings.getItemAt(Integer.parseInt(v)).getString().trim());
+                case "inlineStr":
+                case "str":
+                    return new StringColumn(v.trim());
+                case "b":
+                    return new BoolColumn("1".equals(v));
+                case "e":
+                    // #VALUE!
+                    return new StringColumn();
+                default:
+                    return new StringColumn(v);
+            }
         }
     }
 }
@@ -22,7 +22,6 @@
 package com.wgzhao.addax.plugin.reader.excelreader;
 
 import com.wgzhao.addax.common.base.Key;
-import com.wgzhao.addax.common.element.Record;
 import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.RecordSender;
 import com.wgzhao.addax.common.spi.Reader;
@@ -33,14 +32,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Pattern;
 
 public class ExcelReader
         extends Reader
 {
+    private static final String SHEET = "sheet";
+    // 切分后每个 task 读取的 sheet 下标
+    private static final String SHEET_INDEXES = "sheetIndexes";
+
     public static class Job
             extends Reader.Job
     {
@@ -50,8 +51,7 @@ public class ExcelReader
         private Configuration originConfig = null;
         private List<String> path = null;
         private List<String> sourceFiles;
-        private final Map<String, Pattern> pattern = new HashMap<>();
-        private final Map<String, Boolean> isRegexPath = new HashMap<>();
+        private List<String> sheets = null;
 
         @Override
         public void init()
@@ -73,6 +73,14 @@ public class ExcelReader
                 }
             }
 
+            Object sheet = this.originConfig.get(SHEET);
+            if (sheet instanceof String) {
+                this.sheets = Collections.singletonList((String) sheet);
+            }
+            else if (sheet != null) {
+                this.sheets = this.originConfig.getList(SHEET, String.class);
+            }
+
 //            this.sourceFiles = this.buildSourceTargets();
             this.sourceFiles = FileHelper.buildSourceTargets(path);
             LOG.info("The number of files to read is: [{}]", this.sourceFiles.size());
@@ -90,24 +98,69 @@ public class ExcelReader
             LOG.debug("Begin to split...");
             List<Configuration> readerSplitConfigs = new ArrayList<>();
 
-            // warn:每个slice拖且仅拖一个文件,
-            // int splitNumber = adviceNumber
-            int splitNumber = this.sourceFiles.size();
-            if (0 == splitNumber) {
+            if (this.sourceFiles.isEmpty()) {
                 throw AddaxException.asAddaxException(
                         ExcelReaderErrorCode.EMPTY_DIR_EXCEPTION,
                         "Nothing found in the directory " + this.originConfig.getString(Key.PATH) + ". Please check it");
             }
 
-            List<List<String>> splitSourceFiles = FileHelper.splitSourceFiles(this.sourceFiles, splitNumber);
-            for (List<String> files : splitSourceFiles) {
-                Configuration splitConfig = this.originConfig.clone();
-                splitConfig.set(Key.SOURCE_FILES, files);
-                readerSplitConfigs.add(splitConfig);
+            // xlsx 文件的每个 sheet 为一个切分; xls 文件需要整体加载, 每个文件为一个切分
+            for (String file : this.sourceFiles) {
+                List<Integer> sheetIndexes = selectSheets(file);
+                if (sheetIndexes.isEmpty()) {
+                    LOG.warn("None of the sheets {} is found in the file {}, skip it.", this.sheets, file);
+                    continue;
+                }
+                List<List<Integer>> groups = new ArrayList<>();
+                if (ExcelHelper.isXlsx(file)) {
+                    for (Integer index : sheetIndexes) {
+                        groups.add(Collections.singletonList(index));
+                    }
+                }
+                else {
+                    groups.add(sheetIndexes);
+                }
+                for (List<Integer> group : groups) {
+                    Configuration splitConfig = this.originConfig.clone();
+                    splitConfig.set(Key.SOURCE_FILES, Collections.singletonList(file));
+                    splitConfig.set(SHEET_INDEXES, group);
+                    readerSplitConfigs.add(splitConfig);
+                }
             }
-            LOG.debug("Split finished...");
+            LOG.info("Split {} file(s) into {} task(s).", this.sourceFiles.size(), readerSplitConfigs.size());
             return readerSplitConfigs;
         }
+
+        /*
+         * 没有配置 sheet 时只读取第一个 sheet, 配置为 * 时读取所有的 sheet
+         */
+        private List<Integer> selectSheets(String file)
+        {
+            List<String> names = ExcelHelper.getSheetNames(file);
+            List<Integer> indexes = new ArrayList<>();
+            if (this.sheets == null || this.sheets.isEmpty()) {
+                if (!names.isEmpty()) {
+                    indexes.add(0);
+                }
+            }
+            else if (this.sheets.contains("*")) {
+                for (int i = 0; i < names.size(); i++) {
+                    indexes.add(i);
+                }
+            }
+            else {
+                for (String sheet : this.sheets) {
+                    int index = names.indexOf(sheet);
+                    if (index == -1) {
+                        LOG.warn("The sheet {} is not found in the file {}.", sheet, file);
+                    }
+                    else if (!indexes.contains(index)) {
+                        indexes.add(index);
+                    }
+                }
+            }
+            return indexes;
+        }
     }
 
     public static class Task
@@ -116,6 +169,7 @@ public class ExcelReader
         private static final Logger LOG = LoggerFactory.getLogger(Task.class);
 
         private List<String> sourceFiles;
+        private List<Integer> sheetIndexes;
         private boolean header = false;
         private int skipRows = 0;
 
@@ -124,6 +178,7 @@ public class ExcelReader
         {
             Configuration readerSliceConfig = this.getPluginJobConf();
             this.sourceFiles = readerSliceConfig.getList(Key.SOURCE_FILES, String.class);
+            this.sheetIndexes = readerSliceConfig.getList(SHEET_INDEXES, Integer.class);
             this.header = readerSliceConfig.getBool("header", false);
             if (this.header) {
                 LOG.info("The first row is skipped as a table header");
@@ -144,15 +199,10 @@ public class ExcelReader
         public void startRead(RecordSender recordSender)
         {
             for (String file : sourceFiles) {
-                LOG.info("begin read file {}", file);
+                LOG.info("begin read the sheet(s) {} of file {}", sheetIndexes, file);
                 ExcelHelper excelHelper = new ExcelHelper(header, skipRows);
-                excelHelper.open(file);
-                Record record = excelHelper.readLine(recordSender.createRecord());
-                while (record != null) {
-                    recordSender.sendToWriter(record);
-                    record = excelHelper.readLine(recordSender.createRecord());
-                }
-                excelHelper.close();
+                long count = excelHelper.read(file, sheetIndexes, recordSender);
+                LOG.info("finished reading {} row(s) from file {}", count, file);
             }
         }
     }
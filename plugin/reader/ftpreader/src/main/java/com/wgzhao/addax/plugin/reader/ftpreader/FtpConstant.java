@@ -30,5 +30,6 @@ public class FtpConstant extends Constant
     public static final int DEFAULT_SFTP_PORT = 22;
     public static final int DEFAULT_TIMEOUT = 60000;
     public static final int DEFAULT_MAX_TRAVERSAL_LEVEL = 100;
+    public static final int DEFAULT_MAX_SESSIONS = 16;
     public static final String DEFAULT_FTP_CONNECT_PATTERN = "PASV";
 }
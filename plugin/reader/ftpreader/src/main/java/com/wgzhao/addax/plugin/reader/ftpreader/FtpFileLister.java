@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.ftpreader;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.storage.reader.StorageReaderUtil;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 递归获取指定路径下符合条件的所有文件.
+ * <p>
+ * 每个目录的列表是一个独立的任务, 多个目录通过连接池中的多个连接同时列出, 列表命令返回的类型和大小直接使用, 不再逐个文件查询.
+ * 列出一个目录期间占用一个连接, 列出后立即归还, 再处理子目录
+ */
+public class FtpFileLister
+{
+    private static final Logger LOG = LoggerFactory.getLogger(FtpFileLister.class);
+
+    private final FtpSessionPool sessionPool;
+    private final int maxTraversalLevel;
+    private final Set<String> sourceFiles = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> fileSizes = new ConcurrentHashMap<>();
+
+    public FtpFileLister(FtpSessionPool sessionPool, int maxTraversalLevel)
+    {
+        this.sessionPool = sessionPool;
+        this.maxTraversalLevel = maxTraversalLevel;
+    }
+
+    /**
+     * 获取指定路径列表下符合条件的所有文件的绝对路径
+     *
+     * @param srcPaths 路径列表
+     * @return 文件的绝对路径
+     */
+    public Set<String> getAllFiles(List<String> srcPaths)
+    {
+        List<ListAction> actions = new ArrayList<>();
+        for (String eachPath : srcPaths) {
+            ListAction action = resolve(eachPath);
+            if (action != null) {
+                actions.add(action);
+            }
+        }
+        if (!actions.isEmpty()) {
+            int parallelism = sessionPool.getMaxSessions();
+            LOG.debug("list the directories with {} connections", parallelism);
+            ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+            try {
+                forkJoinPool.invoke(new RecursiveAction()
+                {
+                    @Override
+                    protected void compute()
+                    {
+                        invokeAll(actions);
+                    }
+                });
+            }
+            finally {
+                forkJoinPool.shutdownNow();
+            }
+        }
+        return sourceFiles;
+    }
+
+    /**
+     * 获取文件大小, 列出目录时已经获取过的直接返回
+     *
+     * @param filePath 文件路径
+     * @return 文件的字节数
+     */
+    public long getFileSize(String filePath)
+    {
+        Long size = fileSizes.get(filePath);
+        if (size != null) {
+            return size;
+        }
+        FtpHelper helper = sessionPool.borrow();
+        boolean success = false;
+        try {
+            size = helper.getFileSize(filePath);
+            success = true;
+            return size;
+        }
+        finally {
+            giveBack(helper, success);
+        }
+    }
+
+    /*
+     * 判断配置的路径是目录, 通配符还是文件, 文件直接加入结果, 目录返回待列出的任务
+     */
+    private ListAction resolve(String directoryPath)
+    {
+        if (maxTraversalLevel <= 0) {
+            throw outOfMaxLevel(directoryPath);
+        }
+        FtpHelper helper = sessionPool.borrow();
+        boolean success = false;
+        try {
+            ListAction action;
+            if (directoryPath.contains("*") || directoryPath.contains("?")) {
+                // path是正则表达式
+                String subPath = StorageReaderUtil.getRegexPathParentPath(directoryPath);
+                if (!helper.isDirExist(subPath)) {
+                    String message = String.format("不能进入目录：[%s]," + "请确认您的配置项path:[%s]存在，且配置的用户有权限进入", subPath,
+                            directoryPath);
+                    LOG.error(message);
+                    throw AddaxException.asAddaxException(FtpReaderErrorCode.FILE_NOT_EXISTS, message);
+                }
+                action = new ListAction(directoryPath, subPath, 0);
+            }
+            else if (helper.isDirExist(directoryPath)) {
+                // path是目录
+                if (directoryPath.charAt(directoryPath.length() - 1) == IOUtils.DIR_SEPARATOR) {
+                    action = new ListAction(directoryPath, directoryPath, 0);
+                }
+                else {
+                    action = new ListAction(directoryPath, directoryPath + IOUtils.DIR_SEPARATOR, 0);
+                }
+            }
+            else if (helper.isSymbolicLink(directoryPath)) {
+                //path是链接文件
+                throw linkFile(directoryPath);
+            }
+            else if (helper.isFileExist(directoryPath)) {
+                // path指向具体文件
+                sourceFiles.add(directoryPath);
+                action = null;
+            }
+            else {
+                String message = String.format("请确认您的配置项path:[%s]存在，且配置的用户有权限读取", directoryPath);
+                LOG.error(message);
+                throw AddaxException.asAddaxException(FtpReaderErrorCode.FILE_NOT_EXISTS, message);
+            }
+            success = true;
+            return action;
+        }
+        finally {
+            giveBack(helper, success);
+        }
+    }
+
+    private void giveBack(FtpHelper helper, boolean success)
+    {
+        if (success) {
+            sessionPool.release(helper);
+        }
+        else {
+            sessionPool.invalidate(helper);
+        }
+    }
+
+    private static AddaxException linkFile(String filePath)
+    {
+        String message = String.format("文件:[%s]是链接文件，当前不支持链接文件的读取", filePath);
+        LOG.error(message);
+        return AddaxException.asAddaxException(FtpReaderErrorCode.LINK_FILE, message);
+    }
+
+    private static AddaxException outOfMaxLevel(String directoryPath)
+    {
+        //超出最大递归层数
+        String message = String.format("获取path：[%s] 下文件列表时超出最大层数,请确认路径[%s]下不存在软连接文件", directoryPath, directoryPath);
+        LOG.error(message);
+        return AddaxException.asAddaxException(FtpReaderErrorCode.OUT_MAX_DIRECTORY_LEVEL, message);
+    }
+
+    private class ListAction
+            extends RecursiveAction
+    {
+        private final String directoryPath;
+        // 父级目录,以'/'结尾
+        private final String parentPath;
+        private final int level;
+
+        ListAction(String directoryPath, String parentPath, int level)
+        {
+            this.directoryPath = directoryPath;
+            this.parentPath = parentPath;
+            this.level = level;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (level >= maxTraversalLevel) {
+                throw outOfMaxLevel(directoryPath);
+            }
+            List<FtpHelper.Entry> entries;
+            FtpHelper helper = sessionPool.borrow();
+            boolean success = false;
+            try {
+                entries = helper.listEntries(directoryPath);
+                success = true;
+            }
+            finally {
+                giveBack(helper, success);
+            }
+
+            List<ListAction> subDirs = new ArrayList<>();
+            for (FtpHelper.Entry entry : entries) {
+                String strName = entry.getName();
+                String filePath = parentPath + strName;
+                if (entry.isDirectory()) {
+                    if (!(strName.equals(".") || strName.equals(".."))) {
+                        subDirs.add(new ListAction(filePath, filePath + IOUtils.DIR_SEPARATOR, level + 1));
+                    }
+                }
+                else if (entry.isFile()) {
+                    sourceFiles.add(filePath);
+                    fileSizes.put(filePath, entry.getSize());
+                }
+                else if (entry.isSymbolicLink()) {
+                    throw linkFile(filePath);
+                }
+                else {
+                    String message = String.format("请确认path:[%s]存在，且配置的用户有权限读取", filePath);
+                    LOG.error(message);
+                    throw AddaxException.asAddaxException(FtpReaderErrorCode.FILE_NOT_EXISTS, message);
+                }
+            }
+            invokeAll(subDirs);
+        }
+    }
+}
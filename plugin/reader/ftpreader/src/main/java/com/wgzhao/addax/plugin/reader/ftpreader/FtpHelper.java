@@ -20,10 +20,11 @@
 package com.wgzhao.addax.plugin.reader.ftpreader;
 
 import java.io.InputStream;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
+/**
+ * 一个 FtpHelper 实例对应与服务器的一个连接(会话), 同一时刻只能执行一个命令或传输一个文件, 多个连接通过 {@link FtpSessionPool} 管理
+ */
 public abstract class FtpHelper
 {
     /**
@@ -43,6 +44,13 @@ public abstract class FtpHelper
      */
     public abstract void logoutFtpServer();
 
+    /**
+     * 连接是否仍然可用, 从连接池中取出空闲连接时检查
+     *
+     * @return boolean
+     */
+    public abstract boolean isAlive();
+
     /**
      * 判断指定路径是否是目录
      *
@@ -68,14 +76,12 @@ public abstract class FtpHelper
     public abstract boolean isSymbolicLink(String filePath);
 
     /**
-     * 递归获取指定路径下符合条件的所有文件绝对路径
+     * 列出目录下的文件和子目录, 不递归. 路径中可以包含通配符 * 和 ?
      *
-     * @param directoryPath 根目录
-     * @param parentLevel 父目录的递归层数（首次为0）
-     * @param maxTraversalLevel 允许的最大递归层数
-     * @return HashSet of String
+     * @param directoryPath 目录或者包含通配符的路径
+     * @return 目录项列表, 文件的大小和类型取自列表结果, 不再逐个查询
      */
-    public abstract Set<String> getListFiles(String directoryPath, int parentLevel, int maxTraversalLevel);
+    public abstract List<Entry> listEntries(String directoryPath);
 
     /**
      * 获取指定路径的输入流
@@ -83,24 +89,79 @@ public abstract class FtpHelper
      * @param filePath 需要获取的文件目录
      * @return InputStream
      */
-    public abstract InputStream getInputStream(String filePath);
+    public InputStream getInputStream(String filePath)
+    {
+        return getInputStream(filePath, 0);
+    }
 
     /**
-     * 获取指定路径列表下符合条件的所有文件的绝对路径
+     * 获取指定路径从 offset 开始的输入流
      *
-     * @param srcPaths 路径列表
-     * @param parentLevel 父目录的递归层数（首次为0）
-     * @param maxTraversalLevel 允许的最大递归层数
-     * @return HashSet of String
+     * @param filePath 需要获取的文件目录
+     * @param offset 开始读取的位置
+     * @return InputStream
+     */
+    public abstract InputStream getInputStream(String filePath, long offset);
+
+    /**
+     * 关闭输入流之后调用, 完成本次文件传输, 以便继续读取下一个文件
      */
-    public Set<String> getAllFiles(List<String> srcPaths, int parentLevel, int maxTraversalLevel)
+    public void completePendingCommand()
     {
-        HashSet<String> sourceAllFiles = new HashSet<>();
-        if (!srcPaths.isEmpty()) {
-            for (String eachPath : srcPaths) {
-                sourceAllFiles.addAll(getListFiles(eachPath, parentLevel, maxTraversalLevel));
-            }
+        //
+    }
+
+    /**
+     * 获取文件大小
+     *
+     * @param filePath 文件路径
+     * @return 文件的字节数
+     */
+    public abstract long getFileSize(String filePath);
+
+    /**
+     * 目录项
+     */
+    public static class Entry
+    {
+        private final String name;
+        private final boolean directory;
+        private final boolean file;
+        private final boolean symbolicLink;
+        private final long size;
+
+        public Entry(String name, boolean directory, boolean file, boolean symbolicLink, long size)
+        {
+            this.name = name;
+            this.directory = directory;
+            this.file = file;
+            this.symbolicLink = symbolicLink;
+            this.size = size;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public boolean isDirectory()
+        {
+            return directory;
+        }
+
+        public boolean isFile()
+        {
+            return file;
+        }
+
+        public boolean isSymbolicLink()
+        {
+            return symbolicLink;
+        }
+
+        public long getSize()
+        {
+            return size;
         }
-        return sourceAllFiles;
     }
 }
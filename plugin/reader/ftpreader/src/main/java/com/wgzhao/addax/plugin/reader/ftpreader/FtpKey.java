@@ -33,4 +33,5 @@ public class FtpKey extends Key
     public static final String TIME_OUT = "timeout";
     public static final String CONNECT_PATTERN = "connectPattern";
     public static final String MAX_TRAVERSAL_LEVEL = "maxTraversalLevel";
+    public static final String MAX_SESSIONS = "maxSessions";
 }
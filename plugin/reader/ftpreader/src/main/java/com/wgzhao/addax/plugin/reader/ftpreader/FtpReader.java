@@ -24,14 +24,21 @@ import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.RecordSender;
 import com.wgzhao.addax.common.spi.Reader;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.storage.reader.ReadAheadInputStream;
 import com.wgzhao.addax.storage.reader.StorageReaderUtil;
+import com.wgzhao.addax.storage.util.FileSplitPlanner;
+import com.wgzhao.addax.storage.util.FileSplitPlanner.FileRange;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class FtpReader
         extends Reader
@@ -45,19 +52,15 @@ public class FtpReader
 
         private List<String> path = null;
 
-        private HashSet<String> sourceFiles;
+        private Set<String> sourceFiles;
 
         // ftp链接参数
         private String protocol;
-        private String host;
-        private int port;
-        private String username;
-        private String password;
-        private int timeout;
         private String connectPattern;
         private int maxTraversalLevel;
 
-        private FtpHelper ftpHelper = null;
+        private FtpSessionPool sessionPool = null;
+        private FtpFileLister fileLister = null;
 
         @Override
         public void init()
@@ -68,17 +71,10 @@ public class FtpReader
             this.validateParameter();
             StorageReaderUtil.validateParameter(this.originConfig);
 
-            if ("sftp".equals(protocol)) {
-                //sftp协议
-                this.port = originConfig.getInt(FtpKey.PORT, FtpConstant.DEFAULT_SFTP_PORT);
-                this.ftpHelper = new SftpHelper();
-            }
-            else if ("ftp".equals(protocol)) {
-                // ftp 协议
-                this.port = originConfig.getInt(FtpKey.PORT, FtpConstant.DEFAULT_FTP_PORT);
-                this.ftpHelper = new StandardFtpHelper();
-            }
-            ftpHelper.loginFtpServer(host, username, password, port, timeout, connectPattern);
+            this.sessionPool = FtpSessionPool.acquire(this.originConfig);
+            // 先登录一次, 尽早发现连接问题, 连接放回池中继续用于列出文件
+            this.sessionPool.release(this.sessionPool.borrow());
+            this.fileLister = new FtpFileLister(this.sessionPool, maxTraversalLevel);
         }
 
         private void validateParameter()
@@ -89,11 +85,15 @@ public class FtpReader
                 throw AddaxException.asAddaxException(FtpReaderErrorCode.ILLEGAL_VALUE,
                         String.format("仅支持 ftp和sftp 传输协议 , 不支持您配置的传输协议: [%s]", protocol));
             }
-            this.host = this.originConfig.getNecessaryValue(FtpKey.HOST, FtpReaderErrorCode.REQUIRED_VALUE);
-            this.username = this.originConfig.getNecessaryValue(FtpKey.USERNAME, FtpReaderErrorCode.REQUIRED_VALUE);
-            this.password = this.originConfig.getNecessaryValue(FtpKey.PASSWORD, FtpReaderErrorCode.REQUIRED_VALUE);
-            this.timeout = originConfig.getInt(FtpKey.TIME_OUT, FtpConstant.DEFAULT_TIMEOUT);
+            this.originConfig.getNecessaryValue(FtpKey.HOST, FtpReaderErrorCode.REQUIRED_VALUE);
+            this.originConfig.getNecessaryValue(FtpKey.USERNAME, FtpReaderErrorCode.REQUIRED_VALUE);
+            this.originConfig.getNecessaryValue(FtpKey.PASSWORD, FtpReaderErrorCode.REQUIRED_VALUE);
             this.maxTraversalLevel = originConfig.getInt(FtpKey.MAX_TRAVERSAL_LEVEL, FtpConstant.DEFAULT_MAX_TRAVERSAL_LEVEL);
+            int maxSessions = originConfig.getInt(FtpKey.MAX_SESSIONS, FtpConstant.DEFAULT_MAX_SESSIONS);
+            if (maxSessions < 1) {
+                throw AddaxException.asAddaxException(FtpReaderErrorCode.ILLEGAL_VALUE,
+                        String.format("maxSessions 必须大于 0, 您配置的值为: [%s]", maxSessions));
+            }
 
             // only support connect pattern
             this.connectPattern = this.originConfig.getUnnecessaryValue(FtpKey.CONNECT_PATTERN, FtpConstant.DEFAULT_FTP_CONNECT_PATTERN);
@@ -132,7 +132,7 @@ public class FtpReader
         {
             LOG.debug("prepare() begin...");
 
-            this.sourceFiles = (HashSet<String>) ftpHelper.getAllFiles(path, 0, maxTraversalLevel);
+            this.sourceFiles = fileLister.getAllFiles(path);
 
             LOG.info("您即将读取的文件数为: [{}]", this.sourceFiles.size());
         }
@@ -146,14 +146,8 @@ public class FtpReader
         @Override
         public void destroy()
         {
-            try {
-                this.ftpHelper.logoutFtpServer();
-            }
-            catch (Exception e) {
-                String message = String.format(
-                        "关闭与ftp服务器连接失败: [%s] host=%s, username=%s, port=%s",
-                        e.getMessage(), host, username, port);
-                LOG.error(message, e);
+            if (this.sessionPool != null) {
+                this.sessionPool.close();
             }
         }
 
@@ -164,39 +158,25 @@ public class FtpReader
             LOG.debug("split() begin...");
             List<Configuration> readerSplitConfigs = new ArrayList<>();
 
-            // warn:每个slice拖且仅拖一个文件,
-            // int splitNumber = adviceNumber;
-            int splitNumber = this.sourceFiles.size();
-            if (0 == splitNumber) {
+            if (this.sourceFiles.isEmpty()) {
                 throw AddaxException.asAddaxException(FtpReaderErrorCode.EMPTY_DIR_EXCEPTION,
                         String.format("未能找到待读取的文件,请确认您的配置项path: %s", this.originConfig.getString(Key.PATH)));
             }
 
-            List<List<String>> splitedSourceFiles = this.splitSourceFiles(new ArrayList(this.sourceFiles), splitNumber);
-            for (List<String> files : splitedSourceFiles) {
-                Configuration splitedConfig = this.originConfig.clone();
-                splitedConfig.set(FtpKey.SOURCE_FILES, files);
-                readerSplitConfigs.add(splitedConfig);
+            // 按文件大小分配给各个任务, 配置了 splitSize 时大文件切分为多个字节区间, 任务通过 REST 命令(sftp 为 skip)从区间开始的位置读取
+            Map<String, Long> fileSizes = new LinkedHashMap<>();
+            for (String file : this.sourceFiles) {
+                fileSizes.put(file, this.fileLister.getFileSize(file));
+            }
+            long splitSize = StorageReaderUtil.getSplitSize(this.originConfig);
+            for (List<FileRange> ranges : FileSplitPlanner.plan(fileSizes, adviceNumber, splitSize)) {
+                Configuration splitConfig = this.originConfig.clone();
+                FileSplitPlanner.setTaskRanges(splitConfig, ranges);
+                readerSplitConfigs.add(splitConfig);
             }
             LOG.debug("split() ok and end...");
             return readerSplitConfigs;
         }
-
-        private <T> List<List<T>> splitSourceFiles(final List<T> sourceList, int adviceNumber)
-        {
-            List<List<T>> splitedList = new ArrayList<>();
-            int averageLength = sourceList.size() / adviceNumber;
-            averageLength = averageLength == 0 ? 1 : averageLength;
-
-            for (int begin = 0, end; begin < sourceList.size(); begin = end) {
-                end = begin + averageLength;
-                if (end > sourceList.size()) {
-                    end = sourceList.size();
-                }
-                splitedList.add(sourceList.subList(begin, end));
-            }
-            return splitedList;
-        }
     }
 
     public static class Task
@@ -204,41 +184,17 @@ public class FtpReader
     {
         private static final Logger LOG = LoggerFactory.getLogger(Task.class);
 
-        private String host;
-        private int port;
-        private String username;
-        private String connectPattern;
-
         private Configuration readerSliceConfig;
-        private List<String> sourceFiles;
+        private List<FileRange> sourceRanges;
 
-        private FtpHelper ftpHelper = null;
+        private FtpSessionPool sessionPool = null;
 
         @Override
         public void init()
-        {//连接重试
-            /* for ftp connection */
+        {
             this.readerSliceConfig = this.getPluginJobConf();
-            this.host = readerSliceConfig.getString(FtpKey.HOST);
-            String protocol = readerSliceConfig.getString(FtpKey.PROTOCOL);
-            this.username = readerSliceConfig.getString(FtpKey.USERNAME);
-            String password = readerSliceConfig.getString(FtpKey.PASSWORD);
-            int timeout = readerSliceConfig.getInt(FtpKey.TIME_OUT, FtpConstant.DEFAULT_TIMEOUT);
-
-            this.sourceFiles = this.readerSliceConfig.getList(FtpKey.SOURCE_FILES, String.class);
-
-            if ("sftp".equals(protocol)) {
-                //sftp协议
-                this.port = readerSliceConfig.getInt(FtpKey.PORT, FtpConstant.DEFAULT_SFTP_PORT);
-                this.ftpHelper = new SftpHelper();
-            }
-            else if ("ftp".equals(protocol)) {
-                // ftp 协议
-                this.port = readerSliceConfig.getInt(FtpKey.PORT, FtpConstant.DEFAULT_FTP_PORT);
-                this.connectPattern = readerSliceConfig.getString(FtpKey.CONNECT_PATTERN, FtpConstant.DEFAULT_FTP_CONNECT_PATTERN);// 默认为被动模式
-                this.ftpHelper = new StandardFtpHelper();
-            }
-            ftpHelper.loginFtpServer(host, username, password, port, timeout, connectPattern);
+            this.sourceRanges = FileSplitPlanner.getTaskRanges(this.readerSliceConfig);
+            this.sessionPool = FtpSessionPool.acquire(this.readerSliceConfig);
         }
 
         @Override
@@ -256,33 +212,114 @@ public class FtpReader
         @Override
         public void destroy()
         {
-            try {
-                this.ftpHelper.logoutFtpServer();
-            }
-            catch (Exception e) {
-                String message = String.format(
-                        "关闭与ftp服务器连接失败: [%s] host=%s, username=%s, port=%s",
-                        e.getMessage(), host, username, port);
-                LOG.error(message, e);
+            if (this.sessionPool != null) {
+                this.sessionPool.close();
             }
         }
 
+        /*
+         * 每个文件从连接池中取一个连接读取, 读完后归还.
+         * 解析当前文件的同时, 如果池中还有空闲的连接, 就用它打开下一个文件并在后台预先下载, 下载和解析同时进行
+         */
         @Override
         public void startRead(RecordSender recordSender)
         {
             LOG.debug("start read source files...");
-            for (String fileName : this.sourceFiles) {
-                LOG.info(String.format("reading file : [%s]", fileName));
-                InputStream inputStream;
+            OpenedFile next = null;
+            try {
+                for (int i = 0; i < this.sourceRanges.size(); i++) {
+                    OpenedFile current = next != null ? next : open(this.sourceRanges.get(i), sessionPool.borrow(), false);
+                    next = null;
+                    if (i + 1 < this.sourceRanges.size()) {
+                        FtpHelper helper = sessionPool.tryBorrow();
+                        if (helper != null) {
+                            next = open(this.sourceRanges.get(i + 1), helper, true);
+                        }
+                    }
+                    read(current, recordSender);
+                }
+            }
+            finally {
+                if (next != null) {
+                    IOUtils.closeQuietly(next.inputStream, null);
+                    sessionPool.invalidate(next.helper);
+                }
+            }
+            LOG.debug("end read source files...");
+        }
 
-                inputStream = ftpHelper.getInputStream(fileName);
+        /*
+         * 预先下载的文件打开失败时返回 null, 轮到它时再重新打开并报告错误
+         */
+        private OpenedFile open(FileRange range, FtpHelper helper, boolean readAhead)
+        {
+            InputStream inputStream;
+            try {
+                inputStream = helper.getInputStream(range.getPath(), range.getStart());
+            }
+            catch (RuntimeException e) {
+                sessionPool.invalidate(helper);
+                if (readAhead) {
+                    return null;
+                }
+                throw e;
+            }
+            if (inputStream == null) {
+                sessionPool.release(helper);
+                if (readAhead) {
+                    return null;
+                }
+                throw AddaxException.asAddaxException(FtpReaderErrorCode.OPEN_FILE_ERROR,
+                        String.format("读取文件 : [%s] 时出错,请确认文件存在且配置的用户有权限读取", range.getPath()));
+            }
+            if (readAhead) {
+                inputStream = new ReadAheadInputStream(inputStream, range.getPath());
+            }
+            return new OpenedFile(range, helper, inputStream);
+        }
 
-                StorageReaderUtil.readFromStream(inputStream, fileName, this.readerSliceConfig,
-                        recordSender, this.getTaskPluginCollector());
-                recordSender.flush();
+        private void read(OpenedFile file, RecordSender recordSender)
+        {
+            FileRange range = file.range;
+            String fileName = range.getPath();
+            LOG.info("reading file : [{}]", range);
+            boolean success = false;
+            try {
+                if (range.isWholeFile()) {
+                    StorageReaderUtil.readFromStream(file.inputStream, fileName, this.readerSliceConfig,
+                            recordSender, this.getTaskPluginCollector());
+                }
+                else {
+                    StorageReaderUtil.readFromStream(file.inputStream, fileName, range.getStart(), range.getEnd(),
+                            this.readerSliceConfig, recordSender, this.getTaskPluginCollector());
+                }
+                file.helper.completePendingCommand();
+                success = true;
+            }
+            finally {
+                if (success) {
+                    sessionPool.release(file.helper);
+                }
+                else {
+                    IOUtils.closeQuietly(file.inputStream, null);
+                    sessionPool.invalidate(file.helper);
+                }
             }
+            recordSender.flush();
+        }
+    }
 
-            LOG.debug("end read source files...");
+    private static class OpenedFile
+    {
+        final FileRange range;
+        final FtpHelper helper;
+        final InputStream inputStream;
+
+        OpenedFile(FileRange range, FtpHelper helper, InputStream inputStream)
+        {
+            this.range = range;
+            this.helper = helper;
+            this.inputStream = inputStream;
         }
     }
 }
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.ftpreader;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.util.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * 同一个服务器(协议, 主机, 端口, 用户)的连接池.
+ * <p>
+ * 同一进程中的 Job 和所有 Task 共享一个连接池, 连接用完后放回池中供其他文件继续使用, 同时打开的连接数不超过 maxSessions.
+ * 每次 {@link #acquire(Configuration)} 都要对应一次 {@link #close()}, 最后一个使用者关闭时断开所有空闲连接
+ */
+public class FtpSessionPool
+{
+    private static final Logger LOG = LoggerFactory.getLogger(FtpSessionPool.class);
+    private static final Map<String, FtpSessionPool> POOLS = new HashMap<>();
+
+    private final String key;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final int timeout;
+    private final String connectPattern;
+    private final int maxSessions;
+    private final Semaphore permits;
+    private final Supplier<FtpHelper> helperFactory;
+    private final Deque<FtpHelper> idle = new ArrayDeque<>();
+    private int references;
+
+    private FtpSessionPool(String key, Configuration config, Supplier<FtpHelper> helperFactory)
+    {
+        this.key = key;
+        this.helperFactory = helperFactory;
+        this.host = config.getString(FtpKey.HOST);
+        this.port = getPort(config);
+        this.username = config.getString(FtpKey.USERNAME);
+        this.password = config.getString(FtpKey.PASSWORD);
+        this.timeout = config.getInt(FtpKey.TIME_OUT, FtpConstant.DEFAULT_TIMEOUT);
+        this.connectPattern = config.getString(FtpKey.CONNECT_PATTERN, FtpConstant.DEFAULT_FTP_CONNECT_PATTERN);
+        this.maxSessions = config.getInt(FtpKey.MAX_SESSIONS, FtpConstant.DEFAULT_MAX_SESSIONS);
+        this.permits = new Semaphore(maxSessions, true);
+    }
+
+    /**
+     * 获取配置对应服务器的连接池, 不存在时创建
+     *
+     * @param config 读取配置
+     * @return 连接池
+     */
+    public static FtpSessionPool acquire(Configuration config)
+    {
+        boolean sftp = "sftp".equals(config.getString(FtpKey.PROTOCOL));
+        return acquire(config, () -> sftp ? new SftpHelper() : new StandardFtpHelper());
+    }
+
+    /*
+     * helperFactory 创建未登录的连接, 只在创建连接池时使用; 测试通过它替换真实的连接
+     */
+    static synchronized FtpSessionPool acquire(Configuration config, Supplier<FtpHelper> helperFactory)
+    {
+        String key = String.format("%s://%s@%s:%d", config.getString(FtpKey.PROTOCOL), config.getString(FtpKey.USERNAME),
+                config.getString(FtpKey.HOST), getPort(config));
+        FtpSessionPool pool = POOLS.computeIfAbsent(key, k -> new FtpSessionPool(k, config, helperFactory));
+        pool.references++;
+        return pool;
+    }
+
+    private static int getPort(Configuration config)
+    {
+        int defaultPort = "sftp".equals(config.getString(FtpKey.PROTOCOL)) ? FtpConstant.DEFAULT_SFTP_PORT : FtpConstant.DEFAULT_FTP_PORT;
+        return config.getInt(FtpKey.PORT, defaultPort);
+    }
+
+    public int getMaxSessions()
+    {
+        return maxSessions;
+    }
+
+    public String getHost()
+    {
+        return host;
+    }
+
+    public int getPort()
+    {
+        return port;
+    }
+
+    public String getUsername()
+    {
+        return username;
+    }
+
+    /**
+     * 取出一个连接, 连接数已达上限时等待其他连接归还
+     *
+     * @return 已登录的连接
+     */
+    public FtpHelper borrow()
+    {
+        try {
+            permits.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AddaxException.asAddaxException(FtpReaderErrorCode.COMMAND_FTP_IO_EXCEPTION, "等待ftp连接时被中断", e);
+        }
+        return take();
+    }
+
+    /**
+     * 取出一个连接, 不等待
+     *
+     * @return 已登录的连接, 连接数已达上限时返回 null
+     */
+    public FtpHelper tryBorrow()
+    {
+        if (!permits.tryAcquire()) {
+            return null;
+        }
+        return take();
+    }
+
+    /**
+     * 归还连接, 连接上不能有未完成的传输
+     *
+     * @param helper 连接
+     */
+    public void release(FtpHelper helper)
+    {
+        synchronized (idle) {
+            idle.addLast(helper);
+        }
+        permits.release();
+    }
+
+    /**
+     * 出错的连接不再放回池中, 直接断开
+     *
+     * @param helper 连接
+     */
+    public void invalidate(FtpHelper helper)
+    {
+        try {
+            logout(helper);
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 使用者不再需要连接池, 最后一个使用者关闭时断开所有空闲连接
+     */
+    public void close()
+    {
+        synchronized (FtpSessionPool.class) {
+            if (--references > 0) {
+                return;
+            }
+            POOLS.remove(key);
+        }
+        synchronized (idle) {
+            while (!idle.isEmpty()) {
+                logout(idle.pollFirst());
+            }
+        }
+    }
+
+    private FtpHelper take()
+    {
+        try {
+            while (true) {
+                FtpHelper helper;
+                synchronized (idle) {
+                    helper = idle.pollLast();
+                }
+                if (helper == null) {
+                    return create();
+                }
+                if (helper.isAlive()) {
+                    return helper;
+                }
+                LOG.info("The idle connection to {}:{} is closed, discard it", host, port);
+                logout(helper);
+            }
+        }
+        catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private FtpHelper create()
+    {
+        FtpHelper helper = helperFactory.get();
+        helper.loginFtpServer(host, username, password, port, timeout, connectPattern);
+        return helper;
+    }
+
+    private void logout(FtpHelper helper)
+    {
+        try {
+            helper.logoutFtpServer();
+        }
+        catch (Exception e) {
+            String message = String.format("关闭与ftp服务器连接失败: [%s] host=%s, username=%s, port=%s",
+                    e.getMessage(), host, username, port);
+            LOG.error(message, e);
+        }
+    }
+}
@@ -20,7 +20,6 @@
 package com.wgzhao.addax.plugin.reader.ftpreader;
 
 import com.wgzhao.addax.common.exception.AddaxException;
-import com.wgzhao.addax.storage.reader.StorageReaderUtil;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.ChannelSftp.LsEntry;
 import com.jcraft.jsch.JSch;
@@ -28,13 +27,12 @@ import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 
 public class SftpHelper
@@ -44,7 +42,6 @@ public class SftpHelper
 
     Session session = null;
     ChannelSftp channelSftp = null;
-    HashSet<String> sourceFiles = new HashSet<>();
 
     @Override
     public void loginFtpServer(String host, String username, String password, int port, int timeout,
@@ -119,6 +116,12 @@ public class SftpHelper
         }
     }
 
+    @Override
+    public boolean isAlive()
+    {
+        return session != null && session.isConnected() && channelSftp != null && channelSftp.isConnected();
+    }
+
     @Override
     public boolean isDirExist(String directoryPath)
     {
@@ -185,102 +188,33 @@ public class SftpHelper
     }
 
     @Override
-    public HashSet<String> getListFiles(String directoryPath, int parentLevel, int maxTraversalLevel)
+    public List<Entry> listEntries(String directoryPath)
     {
-        if (parentLevel < maxTraversalLevel) {
-            String parentPath;// 父级目录,以'/'结尾
-            int pathLen = directoryPath.length();
-            if (directoryPath.contains("*") || directoryPath.contains("?")) {//*和？的限制
-                // path是正则表达式
-                String subPath = StorageReaderUtil.getRegexPathParentPath(directoryPath);
-                if (isDirExist(subPath)) {
-                    parentPath = subPath;
-                }
-                else {
-                    String message = String.format("不能进入目录：[%s]," + "请确认您的配置项path:[%s]存在，且配置的用户有权限进入", subPath,
-                            directoryPath);
-                    LOG.error(message);
-                    throw AddaxException.asAddaxException(FtpReaderErrorCode.FILE_NOT_EXISTS, message);
-                }
-            }
-            else if (isDirExist(directoryPath)) {
-                // path是目录
-                if (directoryPath.charAt(pathLen - 1) == IOUtils.DIR_SEPARATOR) {
-                    parentPath = directoryPath;
-                }
-                else {
-                    parentPath = directoryPath + IOUtils.DIR_SEPARATOR;
-                }
-            }
-            else if (isSymbolicLink(directoryPath)) {
-                //path是链接文件
-                String message = String.format("文件:[%s]是链接文件，当前不支持链接文件的读取", directoryPath);
-                LOG.error(message);
-                throw AddaxException.asAddaxException(FtpReaderErrorCode.LINK_FILE, message);
-            }
-            else if (isFileExist(directoryPath)) {
-                // path指向具体文件
-                sourceFiles.add(directoryPath);
-                return sourceFiles;
-            }
-            else {
-                String message = String.format("请确认您的配置项path:[%s]存在，且配置的用户有权限读取", directoryPath);
-                LOG.error(message);
-                throw AddaxException.asAddaxException(FtpReaderErrorCode.FILE_NOT_EXISTS, message);
-            }
-
-            try {
-                ArrayList<Object> vector = new ArrayList<>(channelSftp.ls(directoryPath));
-                for (Object o : vector) {
-                    LsEntry le = (LsEntry) o;
-                    String strName = le.getFilename();
-                    String filePath = parentPath + strName;
-
-                    if (isDirExist(filePath)) {
-                        // 是子目录
-                        if (!(strName.equals(".") || strName.equals(".."))) {
-                            //递归处理
-                            getListFiles(filePath, parentLevel + 1, maxTraversalLevel);
-                        }
-                    }
-                    else if (isSymbolicLink(filePath)) {
-                        //是链接文件
-                        String message = String.format("文件:[%s]是链接文件，当前不支持链接文件的读取", filePath);
-                        LOG.error(message);
-                        throw AddaxException.asAddaxException(FtpReaderErrorCode.LINK_FILE, message);
-                    }
-                    else if (isFileExist(filePath)) {
-                        // 是文件
-                        sourceFiles.add(filePath);
-                    }
-                    else {
-                        String message = String.format("请确认path:[%s]存在，且配置的用户有权限读取", filePath);
-                        LOG.error(message);
-                        throw AddaxException.asAddaxException(FtpReaderErrorCode.FILE_NOT_EXISTS, message);
-                    }
-                } // end for vector
-            }
-            catch (SftpException e) {
-                String message = String.format("获取path：[%s] 下文件列表时发生I/O异常,请确认与ftp服务器的连接正常", directoryPath);
-                LOG.error(message);
-                throw AddaxException.asAddaxException(FtpReaderErrorCode.COMMAND_FTP_IO_EXCEPTION, message, e);
-            }
-
-            return sourceFiles;
+        try {
+            List<?> files = channelSftp.ls(directoryPath);
+            List<Entry> entries = new ArrayList<>(files.size());
+            for (Object o : files) {
+                // ls 返回的属性与 lstat 相同, 不需要再逐个文件查询类型
+                LsEntry le = (LsEntry) o;
+                SftpATTRS attrs = le.getAttrs();
+                boolean isDir = attrs.isDir();
+                boolean isLink = attrs.isLink();
+                entries.add(new Entry(le.getFilename(), isDir, !isDir && !isLink && attrs.getSize() >= 0, isLink, attrs.getSize()));
+            }
+            return entries;
         }
-        else {
-            //超出最大递归层数
-            String message = String.format("获取path：[%s] 下文件列表时超出最大层数,请确认路径[%s]下不存在软连接文件", directoryPath, directoryPath);
+        catch (SftpException e) {
+            String message = String.format("获取path：[%s] 下文件列表时发生I/O异常,请确认与ftp服务器的连接正常", directoryPath);
             LOG.error(message);
-            throw AddaxException.asAddaxException(FtpReaderErrorCode.OUT_MAX_DIRECTORY_LEVEL, message);
+            throw AddaxException.asAddaxException(FtpReaderErrorCode.COMMAND_FTP_IO_EXCEPTION, message, e);
         }
     }
 
     @Override
-    public InputStream getInputStream(String filePath)
+    public InputStream getInputStream(String filePath, long offset)
     {
         try {
-            return channelSftp.get(filePath);
+            return channelSftp.get(filePath, null, offset);
         }
         catch (SftpException e) {
             String message = String.format("读取文件 : [%s] 时出错,请确认文件：[%s]存在且配置的用户有权限读取", filePath, filePath);
@@ -288,4 +222,17 @@ public class SftpHelper
             throw AddaxException.asAddaxException(FtpReaderErrorCode.OPEN_FILE_ERROR, message);
         }
     }
+
+    @Override
+    public long getFileSize(String filePath)
+    {
+        try {
+            return channelSftp.stat(filePath).getSize();
+        }
+        catch (SftpException e) {
+            String message = String.format("获取文件：[%s] 属性时发生I/O异常,请确认与ftp服务器的连接正常", filePath);
+            LOG.error(message);
+            throw AddaxException.asAddaxException(FtpReaderErrorCode.COMMAND_FTP_IO_EXCEPTION, message, e);
+        }
+    }
 }
@@ -20,8 +20,6 @@
 package com.wgzhao.addax.plugin.reader.ftpreader;
 
 import com.wgzhao.addax.common.exception.AddaxException;
-import com.wgzhao.addax.storage.reader.StorageReaderUtil;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
 import org.apache.commons.net.ftp.FTPReply;
@@ -32,7 +30,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.apache.commons.net.ftp.FTP.BINARY_FILE_TYPE;
 
@@ -41,7 +40,6 @@ public class StandardFtpHelper
 {
     private static final Logger LOG = LoggerFactory.getLogger(StandardFtpHelper.class);
     FTPClient ftpClient = null;
-    HashSet<String> sourceFiles = new HashSet<>();
 
     @Override
     public void loginFtpServer(String host, String username, String password, int port, int timeout,
@@ -104,6 +102,7 @@ public class StandardFtpHelper
             try {
                 // ftpClient.completePendingCommand();//打开流操作之后必须，原因还需要深究
                 ftpClient.logout();
+                ftpClient.disconnect();
             }
             catch (IOException e) {
                 String message = "与ftp服务器断开连接失败";
@@ -113,6 +112,18 @@ public class StandardFtpHelper
         }
     }
 
+    @Override
+    public boolean isAlive()
+    {
+        try {
+            return ftpClient.isConnected() && ftpClient.sendNoOp();
+        }
+        catch (IOException e) {
+            LOG.debug("The ftp connection is broken: {}", e.getMessage());
+            return false;
+        }
+    }
+
     @Override
     public boolean isDirExist(String directoryPath)
     {
@@ -163,97 +174,29 @@ public class StandardFtpHelper
     }
 
     @Override
-    public HashSet<String> getListFiles(String directoryPath, int parentLevel, int maxTraversalLevel)
+    public List<Entry> listEntries(String directoryPath)
     {
-        if (parentLevel < maxTraversalLevel) {
-            String parentPath;// 父级目录,以'/'结尾
-            int pathLen = directoryPath.length();
-            if (directoryPath.contains("*") || directoryPath.contains("?")) {
-                // path是正则表达式				
-                String subPath = StorageReaderUtil.getRegexPathParentPath(directoryPath);
-                if (isDirExist(subPath)) {
-                    parentPath = subPath;
-                }
-                else {
-                    String message = String.format("不能进入目录：[%s]," + "请确认您的配置项path:[%s]存在，且配置的用户有权限进入", subPath,
-                            directoryPath);
-                    LOG.error(message);
-                    throw AddaxException.asAddaxException(FtpReaderErrorCode.FILE_NOT_EXISTS, message);
-                }
-            }
-            else if (isDirExist(directoryPath)) {
-                // path是目录
-                if (directoryPath.charAt(pathLen - 1) == IOUtils.DIR_SEPARATOR) {
-                    parentPath = directoryPath;
-                }
-                else {
-                    parentPath = directoryPath + IOUtils.DIR_SEPARATOR;
-                }
-            }
-            else if (isFileExist(directoryPath)) {
-                // path指向具体文件
-                sourceFiles.add(directoryPath);
-                return sourceFiles;
-            }
-            else if (isSymbolicLink(directoryPath)) {
-                //path是链接文件
-                String message = String.format("文件:[%s]是链接文件，当前不支持链接文件的读取", directoryPath);
-                LOG.error(message);
-                throw AddaxException.asAddaxException(FtpReaderErrorCode.LINK_FILE, message);
-            }
-            else {
-                String message = String.format("请确认您的配置项path:[%s]存在，且配置的用户有权限读取", directoryPath);
-                LOG.error(message);
-                throw AddaxException.asAddaxException(FtpReaderErrorCode.FILE_NOT_EXISTS, message);
-            }
-
-            try {
-                FTPFile[] fs = ftpClient.listFiles(new String(directoryPath.getBytes(), StandardCharsets.ISO_8859_1));
-                for (FTPFile ff : fs) {
-                    String strName = ff.getName();
-                    String filePath = parentPath + strName;
-                    if (ff.isDirectory()) {
-                        if (!(strName.equals(".") || strName.equals(".."))) {
-                            //递归处理
-                            getListFiles(filePath, parentLevel + 1, maxTraversalLevel);
-                        }
-                    }
-                    else if (ff.isFile()) {
-                        // 是文件
-                        sourceFiles.add(filePath);
-                    }
-                    else if (ff.isSymbolicLink()) {
-                        //是链接文件
-                        String message = String.format("文件:[%s]是链接文件，当前不支持链接文件的读取", filePath);
-                        LOG.error(message);
-                        throw AddaxException.asAddaxException(FtpReaderErrorCode.LINK_FILE, message);
-                    }
-                    else {
-                        String message = String.format("请确认path:[%s]存在，且配置的用户有权限读取", filePath);
-                        LOG.error(message);
-                        throw AddaxException.asAddaxException(FtpReaderErrorCode.FILE_NOT_EXISTS, message);
-                    }
-                } // end for FTPFile
-            }
-            catch (IOException e) {
-                String message = String.format("获取path：[%s] 下文件列表时发生I/O异常,请确认与ftp服务器的连接正常", directoryPath);
-                LOG.error(message);
-                throw AddaxException.asAddaxException(FtpReaderErrorCode.COMMAND_FTP_IO_EXCEPTION, message, e);
+        try {
+            FTPFile[] fs = ftpClient.listFiles(new String(directoryPath.getBytes(), StandardCharsets.ISO_8859_1));
+            List<Entry> entries = new ArrayList<>(fs.length);
+            for (FTPFile ff : fs) {
+                entries.add(new Entry(ff.getName(), ff.isDirectory(), ff.isFile(), ff.isSymbolicLink(), ff.getSize()));
             }
-            return sourceFiles;
+            return entries;
         }
-        else {
-            //超出最大递归层数
-            String message = String.format("获取path：[%s] 下文件列表时超出最大层数,请确认路径[%s]下不存在软连接文件", directoryPath, directoryPath);
+        catch (IOException e) {
+            String message = String.format("获取path：[%s] 下文件列表时发生I/O异常,请确认与ftp服务器的连接正常", directoryPath);
             LOG.error(message);
-            throw AddaxException.asAddaxException(FtpReaderErrorCode.OUT_MAX_DIRECTORY_LEVEL, message);
+            throw AddaxException.asAddaxException(FtpReaderErrorCode.COMMAND_FTP_IO_EXCEPTION, message, e);
         }
     }
 
     @Override
-    public InputStream getInputStream(String filePath)
+    public InputStream getInputStream(String filePath, long offset)
     {
         try {
+            // offset 大于 0 时在 RETR 之前发送 REST 命令
+            ftpClient.setRestartOffset(offset);
             return ftpClient.retrieveFileStream(new String(filePath.getBytes(), StandardCharsets.ISO_8859_1));
         }
         catch (IOException e) {
@@ -262,4 +205,34 @@ public class StandardFtpHelper
             throw AddaxException.asAddaxException(FtpReaderErrorCode.OPEN_FILE_ERROR, message);
         }
     }
+
+    @Override
+    public void completePendingCommand()
+    {
+        try {
+            if (!ftpClient.completePendingCommand()) {
+                // 按区间读取时没有读到文件末尾就关闭了数据连接, 服务器会返回传输中断, 不影响已经读取的数据
+                LOG.debug("The transfer is not completed: {}", ftpClient.getReplyString());
+            }
+        }
+        catch (IOException e) {
+            String message = "完成文件传输时发生I/O异常,请确认与ftp服务器的连接正常";
+            LOG.error(message);
+            throw AddaxException.asAddaxException(FtpReaderErrorCode.COMMAND_FTP_IO_EXCEPTION, message, e);
+        }
+    }
+
+    @Override
+    public long getFileSize(String filePath)
+    {
+        try {
+            FTPFile[] ftpFiles = ftpClient.listFiles(new String(filePath.getBytes(), StandardCharsets.ISO_8859_1));
+            return ftpFiles.length == 1 ? ftpFiles[0].getSize() : 0;
+        }
+        catch (IOException e) {
+            String message = String.format("获取文件：[%s] 属性时发生I/O异常,请确认与ftp服务器的连接正常", filePath);
+            LOG.error(message);
+            throw AddaxException.asAddaxException(FtpReaderErrorCode.COMMAND_FTP_IO_EXCEPTION, message, e);
+        }
+    }
 }
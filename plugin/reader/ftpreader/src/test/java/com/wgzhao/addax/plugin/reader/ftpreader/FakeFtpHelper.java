@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.ftpreader;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不连接服务器的 FtpHelper, 目录结构由测试给出, 并记录同时执行命令的连接数
+ */
+class FakeFtpHelper
+        extends FtpHelper
+{
+    // 目录(不以 / 结尾)下的目录项
+    private final Map<String, List<Entry>> tree;
+    private final AtomicInteger running;
+    private final AtomicInteger maxRunning;
+    private final boolean failLogin;
+    volatile boolean alive = true;
+    volatile boolean loggedIn;
+    volatile boolean loggedOut;
+
+    FakeFtpHelper(Map<String, List<Entry>> tree, AtomicInteger running, AtomicInteger maxRunning, boolean failLogin)
+    {
+        this.tree = tree;
+        this.running = running;
+        this.maxRunning = maxRunning;
+        this.failLogin = failLogin;
+    }
+
+    @Override
+    public void loginFtpServer(String host, String username, String password, int port, int timeout, String connectMode)
+    {
+        if (failLogin) {
+            throw new IllegalStateException("login failed: " + host);
+        }
+        loggedIn = true;
+    }
+
+    @Override
+    public void logoutFtpServer()
+    {
+        loggedOut = true;
+    }
+
+    @Override
+    public boolean isAlive()
+    {
+        return alive;
+    }
+
+    @Override
+    public boolean isDirExist(String directoryPath)
+    {
+        return tree.containsKey(strip(directoryPath));
+    }
+
+    @Override
+    public boolean isFileExist(String filePath)
+    {
+        return !isDirExist(filePath);
+    }
+
+    @Override
+    public boolean isSymbolicLink(String filePath)
+    {
+        return false;
+    }
+
+    @Override
+    public List<Entry> listEntries(String directoryPath)
+    {
+        int now = running.incrementAndGet();
+        maxRunning.accumulateAndGet(now, Math::max);
+        try {
+            // 让多个目录的列表有机会重叠
+            Thread.sleep(2);
+            return tree.getOrDefault(strip(directoryPath), Collections.emptyList());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        finally {
+            running.decrementAndGet();
+        }
+    }
+
+    @Override
+    public InputStream getInputStream(String filePath, long offset)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getFileSize(String filePath)
+    {
+        return 0;
+    }
+
+    private static String strip(String path)
+    {
+        return path.endsWith("/") && path.length() > 1 ? path.substring(0, path.length() - 1) : path;
+    }
+}
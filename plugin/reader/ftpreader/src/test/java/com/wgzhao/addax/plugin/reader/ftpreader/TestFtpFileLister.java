@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.ftpreader;
+
+import com.wgzhao.addax.common.util.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestFtpFileLister
+{
+    private static final AtomicInteger HOSTS = new AtomicInteger();
+
+    private final Map<String, List<FtpHelper.Entry>> tree = new HashMap<>();
+    private final Set<String> expected = new HashSet<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @Test
+    public void testOneSessionDoesNotDeadlock()
+    {
+        buildTree("/data", 4, 3);
+        FtpSessionPool pool = FtpSessionPool.acquire(config(1), this::newHelper);
+        try {
+            Set<String> files = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                    () -> new FtpFileLister(pool, 10).getAllFiles(Collections.singletonList("/data")));
+            assertEquals(expected, files);
+            assertEquals(1, maxRunning.get());
+            // 连接已经归还
+            FtpHelper helper = pool.tryBorrow();
+            assertNotNull(helper);
+            pool.release(helper);
+        }
+        finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testSessionsAreBounded()
+    {
+        buildTree("/data", 3, 4);
+        buildTree("/other", 2, 5);
+        FtpSessionPool pool = FtpSessionPool.acquire(config(3), this::newHelper);
+        try {
+            Set<String> files = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                    () -> new FtpFileLister(pool, 10).getAllFiles(Arrays.asList("/data/", "/other", "/other/f0.txt")));
+            assertEquals(expected, files);
+            assertTrue(maxRunning.get() <= 3, "at most 3 sessions, but got " + maxRunning.get());
+            List<FtpHelper> borrowed = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                FtpHelper helper = pool.tryBorrow();
+                assertNotNull(helper, "permit " + i + " is not returned");
+                borrowed.add(helper);
+            }
+            borrowed.forEach(pool::release);
+        }
+        finally {
+            pool.close();
+        }
+    }
+
+    /*
+     * 每个目录下有 width 个文件和 width 个子目录, 共 depth 层
+     */
+    private void buildTree(String path, int depth, int width)
+    {
+        List<FtpHelper.Entry> entries = new ArrayList<>();
+        entries.add(new FtpHelper.Entry(".", true, false, false, 0));
+        entries.add(new FtpHelper.Entry("..", true, false, false, 0));
+        for (int i = 0; i < width; i++) {
+            String file = "f" + i + ".txt";
+            entries.add(new FtpHelper.Entry(file, false, true, false, i));
+            expected.add(path + "/" + file);
+            if (depth > 1) {
+                String dir = "d" + i;
+                entries.add(new FtpHelper.Entry(dir, true, false, false, 0));
+                buildTree(path + "/" + dir, depth - 1, width);
+            }
+        }
+        tree.put(path, entries);
+    }
+
+    private FtpHelper newHelper()
+    {
+        return new FakeFtpHelper(tree, running, maxRunning, false);
+    }
+
+    private static Configuration config(int maxSessions)
+    {
+        Configuration config = Configuration.newDefault();
+        config.set(FtpKey.PROTOCOL, "sftp");
+        config.set(FtpKey.HOST, "lister-test-" + HOSTS.incrementAndGet());
+        config.set(FtpKey.USERNAME, "user");
+        config.set(FtpKey.MAX_SESSIONS, maxSessions);
+        return config;
+    }
+}
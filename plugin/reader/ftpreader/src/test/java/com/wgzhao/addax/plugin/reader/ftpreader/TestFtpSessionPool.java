@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.ftpreader;
+
+import com.wgzhao.addax.common.util.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestFtpSessionPool
+{
+    private static final AtomicInteger HOSTS = new AtomicInteger();
+
+    private final List<FakeFtpHelper> created = Collections.synchronizedList(new ArrayList<>());
+    private final List<FtpSessionPool> pools = new ArrayList<>();
+    private volatile boolean failLogin;
+
+    @AfterEach
+    public void tearDown()
+    {
+        for (FtpSessionPool pool : pools) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testBorrowAndRelease()
+    {
+        FtpSessionPool pool = newPool(2);
+        FtpHelper first = pool.borrow();
+        FtpHelper second = pool.tryBorrow();
+        assertNotNull(second);
+        assertNotSame(first, second);
+        // 两个连接都在使用中
+        assertNull(pool.tryBorrow());
+
+        pool.release(second);
+        assertSame(second, pool.tryBorrow());
+        assertNull(pool.tryBorrow());
+        pool.release(first);
+        pool.release(second);
+        assertEquals(2, created.size());
+
+        // 归还的连接被复用, 不再创建新的连接
+        for (int i = 0; i < 10; i++) {
+            pool.release(pool.borrow());
+        }
+        assertEquals(2, created.size());
+        for (FakeFtpHelper helper : created) {
+            assertFalse(helper.loggedOut);
+        }
+    }
+
+    @Test
+    public void testInvalidate()
+    {
+        FtpSessionPool pool = newPool(1);
+        FtpHelper helper = pool.borrow();
+        pool.invalidate(helper);
+        assertTrue(created.get(0).loggedOut);
+
+        // 许可已经归还, 出错的连接不会被再次取出
+        FtpHelper next = pool.tryBorrow();
+        assertNotNull(next);
+        assertNotSame(helper, next);
+        assertEquals(2, created.size());
+        pool.release(next);
+    }
+
+    @Test
+    public void testFailedCreateReleasesPermit()
+    {
+        FtpSessionPool pool = newPool(1);
+        failLogin = true;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalStateException.class, pool::borrow);
+            assertThrows(IllegalStateException.class, pool::tryBorrow);
+        }
+        failLogin = false;
+        FtpHelper helper = assertTimeoutPreemptively(Duration.ofSeconds(5), pool::borrow);
+        assertNotNull(helper);
+        assertNull(pool.tryBorrow());
+        pool.release(helper);
+    }
+
+    @Test
+    public void testDeadIdleConnectionIsReplaced()
+    {
+        FtpSessionPool pool = newPool(1);
+        FtpHelper helper = pool.borrow();
+        pool.release(helper);
+        created.get(0).alive = false;
+
+        FtpHelper next = pool.borrow();
+        assertNotSame(helper, next);
+        assertTrue(created.get(0).loggedOut);
+        assertNull(pool.tryBorrow());
+        pool.release(next);
+    }
+
+    @Test
+    public void testBorrowWaitsForRelease()
+            throws InterruptedException
+    {
+        FtpSessionPool pool = newPool(1);
+        FtpHelper helper = pool.borrow();
+        AtomicReference<FtpHelper> borrowed = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            borrowed.set(pool.borrow());
+            done.countDown();
+        });
+        thread.start();
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+
+        pool.release(helper);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertSame(helper, borrowed.get());
+        pool.release(borrowed.get());
+    }
+
+    @Test
+    public void testLastReferenceCloses()
+    {
+        Configuration config = config(2);
+        FtpSessionPool pool = FtpSessionPool.acquire(config, this::newHelper);
+        FtpSessionPool same = FtpSessionPool.acquire(config, this::newHelper);
+        assertSame(pool, same);
+
+        FtpHelper first = pool.borrow();
+        FtpHelper second = same.borrow();
+        pool.release(first);
+        same.release(second);
+
+        same.close();
+        for (FakeFtpHelper helper : created) {
+            assertFalse(helper.loggedOut);
+        }
+        // 仍然可以使用
+        pool.release(pool.borrow());
+
+        pool.close();
+        assertEquals(2, created.size());
+        for (FakeFtpHelper helper : created) {
+            assertTrue(helper.loggedOut);
+        }
+
+        // 关闭后重新获取的是新的连接池
+        FtpSessionPool another = FtpSessionPool.acquire(config, this::newHelper);
+        pools.add(another);
+        assertNotSame(pool, another);
+    }
+
+    private FtpSessionPool newPool(int maxSessions)
+    {
+        FtpSessionPool pool = FtpSessionPool.acquire(config(maxSessions), this::newHelper);
+        pools.add(pool);
+        return pool;
+    }
+
+    private FakeFtpHelper newHelper()
+    {
+        FakeFtpHelper helper = new FakeFtpHelper(Collections.emptyMap(), new AtomicInteger(), new AtomicInteger(), failLogin);
+        created.add(helper);
+        return helper;
+    }
+
+    private static Configuration config(int maxSessions)
+    {
+        Configuration config = Configuration.newDefault();
+        config.set(FtpKey.PROTOCOL, "ftp");
+        config.set(FtpKey.HOST, "pool-test-" + HOSTS.incrementAndGet());
+        config.set(FtpKey.USERNAME, "user");
+        config.set(FtpKey.MAX_SESSIONS, maxSessions);
+        return config;
+    }
+}
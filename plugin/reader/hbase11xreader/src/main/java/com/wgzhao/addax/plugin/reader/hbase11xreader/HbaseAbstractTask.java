@@ -55,6 +55,9 @@ public abstract class HbaseAbstractTask
     protected String encoding;
     protected int scanCacheSize;
     protected int scanBatchSize;
+    protected long scanMaxResultSize;
+
+    private final String regionServer;
 
     protected Result lastResult = null;
     protected Scan scan;
@@ -70,6 +73,8 @@ public abstract class HbaseAbstractTask
         this.endKey = Hbase11xHelper.convertInnerEndRowkey(configuration);
         this.scanCacheSize = configuration.getInt(HBaseKey.SCAN_CACHE_SIZE, HBaseConstant.DEFAULT_SCAN_CACHE_SIZE);
         this.scanBatchSize = configuration.getInt(HBaseKey.SCAN_BATCH_SIZE, HBaseConstant.DEFAULT_SCAN_BATCH_SIZE);
+        this.scanMaxResultSize = configuration.getLong(HBaseKey.SCAN_MAX_RESULT_SIZE, HBaseConstant.DEFAULT_SCAN_MAX_RESULT_SIZE);
+        this.regionServer = configuration.getString(HBaseKey.REGION_SERVER);
     }
 
     public abstract boolean fetchLine(Record record)
@@ -85,11 +90,16 @@ public abstract class HbaseAbstractTask
         this.scan.setSmall(false);
         this.scan.withStartRow(startKey);
         this.scan.withStopRow(endKey);
-        LOG.info("The task set startRowkey=[{}], endRowkey=[{}].", Bytes.toStringBinary(this.startKey), Bytes.toStringBinary(this.endKey));
+        LOG.info("The task set startRowkey=[{}], endRowkey=[{}], regionServer=[{}].", Bytes.toStringBinary(this.startKey),
+                Bytes.toStringBinary(this.endKey), this.regionServer);
         //scan的Caching Batch全部留在hConfig中每次从服务器端读取的行数，设置默认值未256
         this.scan.setCaching(this.scanCacheSize);
         //设置获取记录的列个数，hbase默认无限制，也就是返回所有的列,这里默认是100
         this.scan.setBatch(this.scanBatchSize);
+        //每次 rpc 返回的最大字节数，避免宽行或大 cell 撑爆 client 内存，默认不限制
+        if (this.scanMaxResultSize > 0) {
+            this.scan.setMaxResultSize(this.scanMaxResultSize);
+        }
         //为是否缓存块，hbase默认缓存,同步全部数据时非热点数据，因此不需要缓存
         this.scan.setCacheBlocks(false);
         initScan(this.scan);
@@ -26,6 +26,9 @@ import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.common.element.Record;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import java.util.List;
@@ -52,13 +55,19 @@ public class NormalTask
     {
         boolean isConstant;
         boolean isRowkeyColumn;
+        boolean hasCellColumn = false;
         for (HbaseColumnCell cell : this.hbaseColumnCells) {
             isConstant = cell.isConstant();
             isRowkeyColumn = Hbase11xHelper.isRowkeyColumn(cell.getColumnName());
             if (!isConstant && !isRowkeyColumn) {
                 this.scan.addColumn(cell.getColumnFamily(), cell.getQualifier());
+                hasCellColumn = true;
             }
         }
+        // 只读取 rowkey 或常量列时，每行只需要返回第一个 cell 的 key 即可
+        if (!hasCellColumn) {
+            this.scan.setFilter(new FilterList(new FirstKeyOnlyFilter(), new KeyOnlyFilter()));
+        }
     }
 
     @Override
@@ -29,6 +29,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionMetrics;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.Size;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.Connection;
@@ -37,7 +41,6 @@ import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.util.Bytes;
-import org.apache.hadoop.hbase.util.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +48,7 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -362,12 +366,13 @@ public class Hbase20xHelper
         RegionLocator regionLocator = Hbase20xHelper.getRegionLocator(configuration);
         List<Configuration> resultConfigurations;
         try {
-            Pair<byte[][], byte[][]> regionRanges = regionLocator.getStartEndKeys();
-            if (null == regionRanges) {
+            List<HRegionLocation> regionLocations = regionLocator.getAllRegionLocations();
+            if (null == regionLocations || regionLocations.isEmpty()) {
                 throw AddaxException.asAddaxException(Hbase20xReaderErrorCode.SPLIT_ERROR, "获取源头 Hbase 表的 rowkey 范围失败.");
             }
+            Map<String, Long> regionSizes = Hbase20xHelper.getRegionSizes(configuration);
             resultConfigurations = Hbase20xHelper.doSplit(configuration, startRowkeyByte, endRowkeyByte,
-                    regionRanges);
+                    regionLocations, regionSizes);
 
             LOG.info("HBaseReader split job into {} tasks.", resultConfigurations.size());
             return resultConfigurations;
@@ -380,16 +385,57 @@ public class Hbase20xHelper
         }
     }
 
+    /**
+     * 获取每个 region 的 store file 大小(字节)，key 为 region name，仅在配置了 minSplitSize 时才需要
+     * 获取失败时返回空 map，此时不做小 region 合并
+     *
+     * @param configuration configuration
+     * @return map of region name and store file size
+     */
+    private static Map<String, Long> getRegionSizes(Configuration configuration)
+    {
+        Map<String, Long> regionSizes = new HashMap<>();
+        if (configuration.getLong(HBaseKey.MIN_SPLIT_SIZE, HBaseConstant.DEFAULT_MIN_SPLIT_SIZE) <= 0) {
+            return regionSizes;
+        }
+        Admin admin = null;
+        try {
+            admin = Hbase20xHelper.getHbaseConnection(configuration.getString(HBaseKey.HBASE_CONFIG)).getAdmin();
+            TableName tableName = TableName.valueOf(configuration.getString(HBaseKey.TABLE));
+            for (ServerName serverName : admin.getRegionServers()) {
+                for (RegionMetrics regionMetrics : admin.getRegionMetrics(serverName, tableName)) {
+                    regionSizes.put(Bytes.toStringBinary(regionMetrics.getRegionName()), (long) regionMetrics.getStoreFileSize().get(Size.Unit.BYTE));
+                }
+            }
+        }
+        catch (IOException e) {
+            LOG.warn("Failed to get the region size, small regions will not be merged: {}", e.getMessage());
+        }
+        finally {
+            Hbase20xHelper.closeAdmin(admin);
+        }
+        return regionSizes;
+    }
+
     private static List<Configuration> doSplit(Configuration config, byte[] startRowkeyByte,
-            byte[] endRowkeyByte, Pair<byte[][], byte[][]> regionRanges)
+            byte[] endRowkeyByte, List<HRegionLocation> regionLocations, Map<String, Long> regionSizes)
     {
+        long minSplitSize = config.getLong(HBaseKey.MIN_SPLIT_SIZE, HBaseConstant.DEFAULT_MIN_SPLIT_SIZE);
+        // 按 region server 分组，保证相邻的 task 落在不同的 region server 上
+        Map<String, List<Configuration>> serverConfigurations = new LinkedHashMap<>();
+
+        List<HRegionLocation> sortedLocations = new ArrayList<>(regionLocations);
+        sortedLocations.sort((a, b) -> Bytes.compareTo(a.getRegion().getStartKey(), b.getRegion().getStartKey()));
 
-        List<Configuration> configurations = new ArrayList<Configuration>();
+        byte[] groupStartKey = null;
+        byte[] groupEndKey = null;
+        String groupServer = null;
+        long groupSize = 0;
 
-        for (int i = 0; i < regionRanges.getFirst().length; i++) {
+        for (HRegionLocation location : sortedLocations) {
 
-            byte[] regionStartKey = regionRanges.getFirst()[i];
-            byte[] regionEndKey = regionRanges.getSecond()[i];
+            byte[] regionStartKey = location.getRegion().getStartKey();
+            byte[] regionEndKey = location.getRegion().getEndKey();
 
             // 当前的region为最后一个region
             // 如果最后一个region的start Key大于用户指定的userEndKey,则最后一个region，应该不包含在内
@@ -401,36 +447,77 @@ public class Hbase20xHelper
             }
 
             // 如果当前的region不是最后一个region，
-            // 用户配置的userStartKey大于等于region的endkey,则这个region不应该含在内
+            // 用户配置的userStartKey大于等于region的end key,则这个region不应该含在内
             if ((Bytes.compareTo(regionEndKey, HConstants.EMPTY_BYTE_ARRAY) != 0)
                     && (Bytes.compareTo(startRowkeyByte, regionEndKey) >= 0)) {
                 continue;
             }
 
-            // 如果用户配置的userEndKey小于等于 region的startkey,则这个region不应该含在内
+            // 如果用户配置的userEndKey小于等于 region的start key,则这个region不应该含在内
             // 注意如果用户指定的userEndKey为"",则次判断应该不成立。userEndKey为""表示取得最大的region
             if (endRowkeyByte.length != 0
                     && (Bytes.compareTo(endRowkeyByte, regionStartKey) <= 0)) {
                 continue;
             }
 
-            Configuration p = config.clone();
+            // 未知大小的 region 不参与合并
+            Long regionSize = regionSizes.get(Bytes.toStringBinary(location.getRegion().getRegionName()));
+            long thisSize = regionSize == null ? Long.MAX_VALUE : regionSize;
 
-            String thisStartKey = getStartKey(startRowkeyByte, regionStartKey);
-
-            String thisEndKey = getEndKey(endRowkeyByte, regionEndKey);
+            if (groupStartKey != null && minSplitSize > 0 && thisSize <= minSplitSize - groupSize) {
+                // 与前面的 region 合并为同一个 task
+                groupEndKey = regionEndKey;
+                groupSize += thisSize;
+                continue;
+            }
 
-            p.set(HBaseKey.START_ROW_KEY, thisStartKey);
-            p.set(HBaseKey.END_ROW_KEY, thisEndKey);
+            if (groupStartKey != null) {
+                addSplit(serverConfigurations, config, startRowkeyByte, endRowkeyByte, groupStartKey, groupEndKey, groupServer);
+            }
+            groupStartKey = regionStartKey;
+            groupEndKey = regionEndKey;
+            groupServer = location.getHostname();
+            groupSize = thisSize;
+        }
 
-            LOG.debug("startRowkey:[{}], endRowkey:[{}] .", thisStartKey, thisEndKey);
+        if (groupStartKey != null) {
+            addSplit(serverConfigurations, config, startRowkeyByte, endRowkeyByte, groupStartKey, groupEndKey, groupServer);
+        }
 
-            configurations.add(p);
+        // 轮流从每个 region server 上取 task，避免同时运行的 task 集中在少数几个 region server 上
+        List<Configuration> configurations = new ArrayList<>();
+        boolean hasMore = true;
+        for (int i = 0; hasMore; i++) {
+            hasMore = false;
+            for (List<Configuration> serverSplits : serverConfigurations.values()) {
+                if (i < serverSplits.size()) {
+                    configurations.add(serverSplits.get(i));
+                    hasMore = true;
+                }
+            }
         }
 
         return configurations;
     }
 
+    private static void addSplit(Map<String, List<Configuration>> serverConfigurations, Configuration config,
+            byte[] startRowkeyByte, byte[] endRowkeyByte, byte[] regionStartKey, byte[] regionEndKey, String regionServer)
+    {
+        Configuration p = config.clone();
+
+        String thisStartKey = getStartKey(startRowkeyByte, regionStartKey);
+
+        String thisEndKey = getEndKey(endRowkeyByte, regionEndKey);
+
+        p.set(HBaseKey.START_ROW_KEY, thisStartKey);
+        p.set(HBaseKey.END_ROW_KEY, thisEndKey);
+        p.set(HBaseKey.REGION_SERVER, regionServer);
+
+        LOG.debug("startRowkey:[{}], endRowkey:[{}], regionServer:[{}] .", thisStartKey, thisEndKey, regionServer);
+
+        serverConfigurations.computeIfAbsent(String.valueOf(regionServer), k -> new ArrayList<>()).add(p);
+    }
+
     private static String getEndKey(byte[] endRowkeyByte, byte[] regionEndKey)
     {
         if (endRowkeyByte == null) {// 由于之前处理过，所以传入的userStartKey不可能为null
@@ -511,6 +598,12 @@ public class Hbase20xHelper
 
         int scanBatchSize = originalConfig.getInt(HBaseKey.SCAN_BATCH_SIZE, HBaseConstant.DEFAULT_SCAN_BATCH_SIZE);
         originalConfig.set(HBaseKey.SCAN_BATCH_SIZE, scanBatchSize);
+
+        long scanMaxResultSize = originalConfig.getLong(HBaseKey.SCAN_MAX_RESULT_SIZE, HBaseConstant.DEFAULT_SCAN_MAX_RESULT_SIZE);
+        originalConfig.set(HBaseKey.SCAN_MAX_RESULT_SIZE, scanMaxResultSize);
+
+        long minSplitSize = originalConfig.getLong(HBaseKey.MIN_SPLIT_SIZE, HBaseConstant.DEFAULT_MIN_SPLIT_SIZE);
+        originalConfig.set(HBaseKey.MIN_SPLIT_SIZE, minSplitSize);
     }
 
     private static void validateMode(Configuration originalConfig)
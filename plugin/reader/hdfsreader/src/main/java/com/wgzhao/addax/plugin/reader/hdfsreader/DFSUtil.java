@@ -37,6 +37,7 @@ import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.RecordSender;
 import com.wgzhao.addax.common.plugin.TaskPluginCollector;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.storage.reader.RecordConverter;
 import com.wgzhao.addax.storage.reader.StorageReaderErrorCode;
 import com.wgzhao.addax.storage.reader.StorageReaderUtil;
 import org.apache.avro.Conversions;
@@ -92,7 +93,9 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import static com.wgzhao.addax.common.base.Constant.DEFAULT_FIELD_DELIMITER;
 import static com.wgzhao.addax.common.base.Key.COLUMN;
+import static com.wgzhao.addax.common.base.Key.FIELD_DELIMITER;
 import static com.wgzhao.addax.common.base.Key.NULL_FORMAT;
 
 /**
@@ -270,6 +273,38 @@ public class DFSUtil
         }
     }
 
+    public long getFileSize(String filepath)
+    {
+        try {
+            FileSystem fs = FileSystem.get(hadoopConf);
+            return fs.getFileStatus(new Path(filepath)).getLen();
+        }
+        catch (IOException e) {
+            String message = String.format("获取文件 : [%s] 的大小时出错,请确认文件：[%s]存在且配置的用户有权限读取", filepath, filepath);
+            throw AddaxException.asAddaxException(HdfsReaderErrorCode.READ_FILE_ERROR, message, e);
+        }
+    }
+
+    /**
+     * 打开文件并定位到 offset, 用于按字节区间读取文本文件
+     *
+     * @param filepath 文件路径
+     * @param offset 开始读取的位置
+     * @return 输入流
+     */
+    public InputStream getInputStream(String filepath, long offset)
+    {
+        InputStream inputStream = getInputStream(filepath);
+        try {
+            ((FSDataInputStream) inputStream).seek(offset);
+            return inputStream;
+        }
+        catch (IOException e) {
+            String message = String.format("读取文件 : [%s] 时出错, 无法定位到 %d", filepath, offset);
+            throw AddaxException.asAddaxException(HdfsReaderErrorCode.READ_FILE_ERROR, message, e);
+        }
+    }
+
     public InputStream getInputStream(String filepath)
     {
         InputStream inputStream;
@@ -292,6 +327,9 @@ public class DFSUtil
     {
         LOG.info("Start Read sequence file [{}].", sourceSequenceFilePath);
 
+        RecordConverter converter = new RecordConverter(
+                StorageReaderUtil.getListColumnEntry(readerSliceConfig, COLUMN), readerSliceConfig.getString(NULL_FORMAT));
+        Character fieldDelimiter = readerSliceConfig.getChar(FIELD_DELIMITER, DEFAULT_FIELD_DELIMITER);
         Path seqFilePath = new Path(sourceSequenceFilePath);
         try (SequenceFile.Reader reader = new SequenceFile.Reader(this.hadoopConf,
                 SequenceFile.Reader.file(seqFilePath))) {
@@ -301,7 +339,7 @@ public class DFSUtil
             Text value = new Text();
             while (reader.next(key, value)) {
                 if (StringUtils.isNotBlank(value.toString())) {
-                    StorageReaderUtil.transportOneRecord(recordSender, readerSliceConfig, taskPluginCollector, value.toString());
+                    converter.transport(recordSender, StringUtils.split(value.toString(), fieldDelimiter), taskPluginCollector);
                 }
             }
         }
@@ -320,6 +358,7 @@ public class DFSUtil
                 .getListColumnEntry(readerSliceConfig, COLUMN);
         // warn: no default value '\N'
         String nullFormat = readerSliceConfig.getString(NULL_FORMAT);
+        RecordConverter converter = new RecordConverter(column, nullFormat);
 
         Path rcFilePath = new Path(sourceRcFilePath);
         RCFileRecordReader recordReader = null;
@@ -338,8 +377,7 @@ public class DFSUtil
                     txt.set(v.getData(), v.getStart(), v.getLength());
                     sourceLine[i] = txt.toString();
                 }
-                StorageReaderUtil.transportOneRecord(recordSender,
-                        column, sourceLine, nullFormat, taskPluginCollector);
+                converter.transport(recordSender, sourceLine, taskPluginCollector);
             }
         }
         catch (IOException e) {
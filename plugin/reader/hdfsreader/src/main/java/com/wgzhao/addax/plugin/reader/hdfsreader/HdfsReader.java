@@ -25,7 +25,8 @@ import com.wgzhao.addax.common.plugin.RecordSender;
 import com.wgzhao.addax.common.spi.Reader;
 import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.storage.reader.StorageReaderUtil;
-import com.wgzhao.addax.storage.util.FileHelper;
+import com.wgzhao.addax.storage.util.FileSplitPlanner;
+import com.wgzhao.addax.storage.util.FileSplitPlanner.FileRange;
 import org.apache.commons.io.Charsets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +36,9 @@ import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.wgzhao.addax.common.base.Key.COLUMN;
 import static com.wgzhao.addax.common.base.Key.ENCODING;
@@ -192,17 +195,23 @@ public class HdfsReader
 
             LOG.info("split() begin...");
             List<Configuration> readerSplitConfigs = new ArrayList<>();
-            // warn:每个slice拖且仅拖一个文件,
-            int splitNumber = sourceFiles.size();
-            if (0 == splitNumber) {
+            if (sourceFiles.isEmpty()) {
                 throw AddaxException.asAddaxException(HdfsReaderErrorCode.EMPTY_DIR_EXCEPTION,
                         String.format("未能找到待读取的文件,请确认您的配置项path: %s", readerOriginConfig.getString(Key.PATH)));
             }
 
-            List<List<String>> splitSourceFiles = FileHelper.splitSourceFiles(new ArrayList<>(sourceFiles), splitNumber);
-            for (List<String> files : splitSourceFiles) {
+            // 按文件大小分配给各个任务, 只有文本文件可以按 splitSize 切分为多个字节区间, 任务通过 seek 从区间开始的位置读取
+            Map<String, Long> fileSizes = new LinkedHashMap<>();
+            for (String file : sourceFiles) {
+                fileSizes.put(file, dfsUtil.getFileSize(file));
+            }
+            long splitSize = 0;
+            if (HdfsConstant.TEXT.equals(specifiedFileType) || HdfsConstant.CSV.equals(specifiedFileType)) {
+                splitSize = StorageReaderUtil.getSplitSize(readerOriginConfig);
+            }
+            for (List<FileRange> ranges : FileSplitPlanner.plan(fileSizes, adviceNumber, splitSize)) {
                 Configuration splitConfig = readerOriginConfig.clone();
-                splitConfig.set(HdfsConstant.SOURCE_FILES, files);
+                FileSplitPlanner.setTaskRanges(splitConfig, ranges);
                 readerSplitConfigs.add(splitConfig);
             }
 
@@ -228,7 +237,7 @@ public class HdfsReader
 
         private static final Logger LOG = LoggerFactory.getLogger(Task.class);
         private Configuration taskConfig;
-        private List<String> sourceFiles;
+        private List<FileRange> sourceRanges;
         private String specifiedFileType;
         private DFSUtil dfsUtil = null;
 
@@ -237,7 +246,7 @@ public class HdfsReader
         {
 
             this.taskConfig = getPluginJobConf();
-            this.sourceFiles = taskConfig.getList(HdfsConstant.SOURCE_FILES, String.class);
+            this.sourceRanges = FileSplitPlanner.getTaskRanges(taskConfig);
             this.specifiedFileType = taskConfig.getNecessaryValue(Key.FILE_TYPE, HdfsReaderErrorCode.REQUIRED_VALUE);
             this.dfsUtil = new DFSUtil(taskConfig);
         }
@@ -253,12 +262,20 @@ public class HdfsReader
         {
 
             LOG.info("read start");
-            for (String sourceFile : this.sourceFiles) {
-                LOG.info("reading file : [{}]", sourceFile);
+            for (FileRange range : this.sourceRanges) {
+                String sourceFile = range.getPath();
+                LOG.info("reading file : [{}]", range);
 
                 if (specifiedFileType.equalsIgnoreCase(HdfsConstant.TEXT) || specifiedFileType.equalsIgnoreCase(HdfsConstant.CSV)) {
-                    InputStream inputStream = dfsUtil.getInputStream(sourceFile);
-                    StorageReaderUtil.readFromStream(inputStream, sourceFile, taskConfig, recordSender, getTaskPluginCollector());
+                    if (range.isWholeFile()) {
+                        InputStream inputStream = dfsUtil.getInputStream(sourceFile);
+                        StorageReaderUtil.readFromStream(inputStream, sourceFile, taskConfig, recordSender, getTaskPluginCollector());
+                    }
+                    else {
+                        InputStream inputStream = dfsUtil.getInputStream(sourceFile, range.getStart());
+                        StorageReaderUtil.readFromStream(inputStream, sourceFile, range.getStart(), range.getEnd(),
+                                taskConfig, recordSender, getTaskPluginCollector());
+                    }
                 }
                 else if (specifiedFileType.equalsIgnoreCase(HdfsConstant.ORC)) {
 
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.httpreader;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.util.Configuration;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.util.EntityUtils;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 发送 HTTP 请求. 同一个 fetcher 的所有请求共用一个带连接池的 HttpClient, 分页读取时连接保持长连接并复用
+ */
+public class HttpFetcher
+        implements Closeable
+{
+    private final Configuration readerConfig;
+    private final HttpClientContext context = HttpClientContext.create();
+    private final String method;
+    private final Map<String, Object> headers;
+    private final Map<String, Object> requestParams;
+    private final Charset charset;
+    private final URI url;
+    private final CloseableHttpClient httpClient;
+
+    public HttpFetcher(Configuration readerConfig)
+    {
+        this.readerConfig = readerConfig;
+        Configuration conn = readerConfig.getListConfiguration(HttpKey.CONNECTION).get(0);
+        this.url = URI.create(conn.getString(HttpKey.URL));
+        if (conn.getString(HttpKey.PROXY, null) != null) {
+            // set proxy
+            this.context.setAttribute("proxy", URI.create(conn.getConfiguration(HttpKey.PROXY).getString(HttpKey.HOST)));
+        }
+        this.method = readerConfig.getString(HttpKey.METHOD, "get");
+        if (!"get".equalsIgnoreCase(method) && !"post".equalsIgnoreCase(method)) {
+            throw AddaxException.asAddaxException(
+                    HttpReaderErrorCode.ILLEGAL_VALUE, "不支持的请求模式: " + method
+            );
+        }
+        this.headers = readerConfig.getMap(HttpKey.HEADERS, new HashMap<>());
+        this.requestParams = readerConfig.getMap(HttpKey.REQUEST_PARAMETERS, new HashMap<>());
+        String encoding = readerConfig.getString(HttpKey.ENCODING, null);
+        this.charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        this.httpClient = createCloseableHttpClient();
+    }
+
+    public Charset getCharset()
+    {
+        return charset;
+    }
+
+    /**
+     * @return 配置的 url 加上请求参数, 分页参数在此基础上设置
+     */
+    public URIBuilder newUriBuilder()
+    {
+        URIBuilder uriBuilder = new URIBuilder(url);
+        requestParams.forEach((k, v) -> uriBuilder.setParameter(k, v.toString()));
+        return uriBuilder;
+    }
+
+    /**
+     * 发送请求, 状态码不是 200 时抛出异常. 调用方读取完内容后需要关闭返回的 response, 连接才会回到连接池
+     *
+     * @param uri 请求的地址
+     * @return 响应
+     */
+    public CloseableHttpResponse execute(URI uri)
+    {
+        HttpRequestBase request = "get".equalsIgnoreCase(method) ? new HttpGet(uri) : new HttpPost(uri);
+        headers.forEach((k, v) -> request.setHeader(k, v.toString()));
+        try {
+            CloseableHttpResponse response = httpClient.execute(request, this.context);
+            StatusLine statusLine = response.getStatusLine();
+            if (statusLine.getStatusCode() != HttpStatus.SC_OK) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                response.close();
+                throw new IOException(statusLine.getStatusCode() + " " + statusLine.getReasonPhrase() + ": " + uri);
+            }
+            return response;
+        }
+        catch (IOException e) {
+            throw AddaxException.asAddaxException(
+                    HttpReaderErrorCode.COMMAND_FTP_IO_EXCEPTION, e.getMessage()
+            );
+        }
+    }
+
+    public URI build(URIBuilder uriBuilder)
+    {
+        try {
+            return uriBuilder.build();
+        }
+        catch (URISyntaxException e) {
+            throw AddaxException.asAddaxException(
+                    HttpReaderErrorCode.ILLEGAL_VALUE, e.getMessage()
+            );
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        try {
+            httpClient.close();
+        }
+        catch (IOException ignored) {
+            //
+        }
+    }
+
+    private CloseableHttpClient createCloseableHttpClient()
+    {
+        HttpClientBuilder httpClientBuilder = HttpClients.custom();
+        Registry<ConnectionSocketFactory> reg;
+        if (context.getAttribute("proxy") != null) {
+            reg = RegistryBuilder
+                    .<ConnectionSocketFactory>create()
+                    .register("http", new HttpReader.MyConnectionSocketFactory())
+                    .register("https", new HttpReader.MyConnectionSocketFactory())
+                    .build();
+        }
+        else {
+            reg = RegistryBuilder
+                    .<ConnectionSocketFactory>create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", ignoreSSLErrors())
+                    .build();
+        }
+        // 每个 task 顺序发送请求, 连接池主要用于在分页请求之间复用长连接
+        PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(reg);
+        cm.setMaxTotal(4);
+        cm.setDefaultMaxPerRoute(4);
+        httpClientBuilder.setConnectionManager(cm);
+
+        String password = readerConfig.getString(HttpKey.PASSWORD, null);
+        if (password != null) {
+            // setup BasicAuth
+            CredentialsProvider provider = new BasicCredentialsProvider();
+            // Create the authentication scope
+            HttpHost target = new HttpHost(url.getHost(), url.getPort(), url.getScheme());
+            AuthScope scope = new AuthScope(target);
+            // Create credential pair
+            UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(readerConfig.getString(HttpKey.USERNAME, null), password);
+            // Inject the credentials
+            provider.setCredentials(scope, credentials);
+            // Set the default credentials provider
+            httpClientBuilder.setDefaultCredentialsProvider(provider);
+        }
+
+        return httpClientBuilder.build();
+    }
+
+    private static SSLConnectionSocketFactory ignoreSSLErrors()
+    {
+        try {
+            // use the TrustSelfSignedStrategy to allow Self Signed Certificates
+            SSLContext sslContext = SSLContextBuilder
+                    .create()
+                    .loadTrustMaterial(new TrustSelfSignedStrategy())
+                    .build();
+
+            // we can optionally disable hostname verification.
+            // if you don't want to further weaken the security, you don't have to include this.
+            HostnameVerifier allowAllHosts = new NoopHostnameVerifier();
+
+            // create an SSL Socket Factory to use the SSLContext with the trust self-signed certificate strategy
+            // and allow all hosts verifier.
+            return new SSLConnectionSocketFactory(sslContext, allowAllHosts);
+        }
+        catch (NoSuchAlgorithmException | KeyStoreException | KeyManagementException e) {
+            throw AddaxException.asAddaxException(HttpReaderErrorCode.ILLEGAL_VALUE, e);
+        }
+    }
+}
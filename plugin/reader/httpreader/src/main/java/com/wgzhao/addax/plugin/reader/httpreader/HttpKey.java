@@ -49,5 +49,26 @@ public final class HttpKey extends Key
     public static final String TIMEOUT_SEC = "timeout";
     // 请求方法，仅支持get，post两种模式
     public static final String METHOD = "method";
+    // 分页配置, 包含分页方式 type 以及下面的配置项
+    public static final String PAGINATION = "pagination";
+    // 页码或者偏移量的请求参数名
+    public static final String PAGE_PARAM = "pageParam";
+    // 每页记录数的请求参数名
+    public static final String SIZE_PARAM = "sizeParam";
+    // 每页记录数
+    public static final String PAGE_SIZE = "pageSize";
+    // 第一页的页码或者偏移量
+    public static final String START = "start";
+    // 总页数
+    public static final String TOTAL_PAGES = "totalPages";
+    // 返回结果中总记录数的路径
+    public static final String TOTAL_KEY = "totalKey";
+    // 游标的请求参数名
+    public static final String CURSOR_PARAM = "cursorParam";
+    // 返回结果中下一页游标的路径
+    public static final String CURSOR_KEY = "cursorKey";
+    // 切分后 task 读取的页的范围(从 0 开始, 包含两端), 内部使用
+    public static final String PAGE_FROM = "pageFrom";
+    public static final String PAGE_TO = "pageTo";
 
 }
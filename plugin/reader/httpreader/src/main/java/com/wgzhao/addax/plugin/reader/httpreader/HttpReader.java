@@ -20,76 +20,83 @@
 package com.wgzhao.addax.plugin.reader.httpreader;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.JSONPath;
-import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.fastjson.JSONReader;
+import com.alibaba.fastjson.parser.JSONReaderScanner;
+import com.alibaba.fastjson.parser.JSONToken;
 import com.wgzhao.addax.common.element.Record;
 import com.wgzhao.addax.common.element.StringColumn;
 import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.RecordSender;
 import com.wgzhao.addax.common.spi.Reader;
 import com.wgzhao.addax.common.util.Configuration;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
-import org.apache.http.HttpStatus;
-import org.apache.http.StatusLine;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.config.Registry;
-import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.protocol.HttpContext;
-import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.util.EntityUtils;
-
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.SSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class HttpReader
         extends Reader
 {
+    // 分页方式: 页码, 偏移量, 游标, 响应头中的 Link
+    private static final List<String> PAGINATION_TYPES = Arrays.asList("page", "offset", "cursor", "link");
+
     public static class Job
             extends Reader.Job
     {
+        private static final Logger LOG = LoggerFactory.getLogger(Job.class);
+
         private Configuration originConfig = null;
 
         @Override
         public void init()
         {
             this.originConfig = this.getPluginJobConf();
+            List<String> columns = originConfig.getList(HttpKey.COLUMN, String.class);
+            if (columns == null || columns.isEmpty()) {
+                throw AddaxException.asAddaxException(
+                        HttpReaderErrorCode.REQUIRED_VALUE,
+                        "The parameter [" + HttpKey.COLUMN + "] is not set."
+                );
+            }
+            Configuration pagination = originConfig.getConfiguration(HttpKey.PAGINATION);
+            if (pagination != null) {
+                String type = pagination.getNecessaryValue(HttpKey.TYPE, HttpReaderErrorCode.REQUIRED_VALUE).toLowerCase();
+                if (!PAGINATION_TYPES.contains(type)) {
+                    throw AddaxException.asAddaxException(HttpReaderErrorCode.ILLEGAL_VALUE,
+                            "The pagination type only supports " + PAGINATION_TYPES + ", but got " + type);
+                }
+                if ("cursor".equals(type)) {
+                    pagination.getNecessaryValue(HttpKey.CURSOR_KEY, HttpReaderErrorCode.REQUIRED_VALUE);
+                    originConfig.getNecessaryValue(HttpKey.RESULT_KEY, HttpReaderErrorCode.REQUIRED_VALUE);
+                }
+                if (("page".equals(type) || "offset".equals(type)) && pagination.getInt(HttpKey.PAGE_SIZE, 100) <= 0) {
+                    throw AddaxException.asAddaxException(HttpReaderErrorCode.ILLEGAL_VALUE, "The pageSize must be greater than 0");
+                }
+            }
         }
 
         @Override
@@ -98,226 +105,296 @@ public class HttpReader
             //
         }
 
+        /*
+         * 只有按页码或者偏移量分页, 并且能够得到总页数时, 才能按页的范围切分为多个 task 并行读取;
+         * 游标和 Link 分页的下一页地址只能从上一页的结果中得到, 只能由一个 task 顺序读取
+         */
         @Override
         public List<Configuration> split(int adviceNumber)
         {
+            Configuration pagination = originConfig.getConfiguration(HttpKey.PAGINATION);
+            if (pagination == null || adviceNumber <= 1) {
+                return Collections.singletonList(this.originConfig);
+            }
+            String type = pagination.getString(HttpKey.TYPE).toLowerCase();
+            if (!"page".equals(type) && !"offset".equals(type)) {
+                return Collections.singletonList(this.originConfig);
+            }
+            long totalPages = getTotalPages(pagination);
+            if (totalPages <= 0) {
+                LOG.info("The total number of pages is unknown, read the pages sequentially until a short page.");
+                return Collections.singletonList(this.originConfig);
+            }
             List<Configuration> result = new ArrayList<>();
-            result.add(this.originConfig);
+            int splitNumber = (int) Math.min(adviceNumber, totalPages);
+            long from = 0;
+            for (int i = 0; i < splitNumber; i++) {
+                long to = from + (totalPages - from) / (splitNumber - i) - 1;
+                Configuration split = this.originConfig.clone();
+                split.set(HttpKey.PAGE_FROM, from);
+                split.set(HttpKey.PAGE_TO, to);
+                result.add(split);
+                from = to + 1;
+            }
+            LOG.info("Split {} pages into {} tasks.", totalPages, result.size());
             return result;
         }
+
+        /*
+         * 优先使用配置的 totalPages, 否则请求第一页, 从结果中按 totalKey 获取总记录数
+         */
+        private long getTotalPages(Configuration pagination)
+        {
+            long totalPages = pagination.getLong(HttpKey.TOTAL_PAGES, -1L);
+            String totalKey = pagination.getString(HttpKey.TOTAL_KEY, null);
+            if (totalPages > 0 || totalKey == null) {
+                return totalPages;
+            }
+            try (HttpFetcher fetcher = new HttpFetcher(originConfig)) {
+                URI uri = fetcher.build(Task.pageUri(fetcher.newUriBuilder(), pagination, 0));
+                try (CloseableHttpResponse response = fetcher.execute(uri)) {
+                    Object total = JSONPath.eval(JSON.parse(EntityUtils.toString(response.getEntity(), fetcher.getCharset())), totalKey);
+                    if (total == null) {
+                        LOG.warn("The total key {} is not found in the response of {}.", totalKey, uri);
+                        return -1;
+                    }
+                    long pageSize = pagination.getInt(HttpKey.PAGE_SIZE, 100);
+                    LOG.info("The total number of records is {}.", total);
+                    return (Long.parseLong(total.toString()) + pageSize - 1) / pageSize;
+                }
+            }
+            catch (IOException e) {
+                throw AddaxException.asAddaxException(HttpReaderErrorCode.COMMAND_FTP_IO_EXCEPTION, e.getMessage());
+            }
+        }
     }
 
     public static class Task
             extends Reader.Task
     {
+        private static final Logger LOG = LoggerFactory.getLogger(Task.class);
+        private static final Pattern LINK_PATTERN = Pattern.compile("<([^>]*)>([^,]*)");
+        private static final Pattern NEXT_PATTERN = Pattern.compile("rel\\s*=\\s*\"?next\"?", Pattern.CASE_INSENSITIVE);
+
         private Configuration readerSliceConfig = null;
-        private URIBuilder uriBuilder;
-        private final HttpClientContext context = HttpClientContext.create();
-        private String username;
-        private String password;
+        private HttpFetcher fetcher;
+        private String resultKey;
+        private List<String> columns;
 
         @Override
         public void init()
         {
             this.readerSliceConfig = this.getPluginJobConf();
-            this.username = readerSliceConfig.getString(HttpKey.USERNAME, null);
-            this.password = readerSliceConfig.getString(HttpKey.PASSWORD, null);
-            Configuration conn = readerSliceConfig.getListConfiguration(HttpKey.CONNECTION).get(0);
-            uriBuilder = new URIBuilder(URI.create(conn.getString(HttpKey.URL)));
-
-            if (conn.getString(HttpKey.PROXY, null) != null) {
-                // set proxy
-                createProxy(conn.getConfiguration(HttpKey.PROXY));
-            }
-
-            Map<String, Object> requestParams = readerSliceConfig.getMap(HttpKey.REQUEST_PARAMETERS, new HashMap<>());
-            requestParams.forEach((k, v) -> uriBuilder.setParameter(k, v.toString()));
+            this.resultKey = readerSliceConfig.getString(HttpKey.RESULT_KEY, null);
+            this.columns = readerSliceConfig.getList(HttpKey.COLUMN, String.class);
+            this.fetcher = new HttpFetcher(readerSliceConfig);
         }
 
         @Override
         public void destroy()
         {
-            //
+            if (fetcher != null) {
+                fetcher.close();
+            }
         }
 
         @Override
         public void startRead(RecordSender recordSender)
         {
-            String method = readerSliceConfig.getString(HttpKey.METHOD, "get");
-            CloseableHttpResponse response;
-            try {
-                response = createCloseableHttpResponse(method);
-                StatusLine statusLine = response.getStatusLine();
-                if (statusLine.getStatusCode() != HttpStatus.SC_OK) {
-                    response.getEntity().getContent().close();
-                    throw new IOException(statusLine.getReasonPhrase());
+            Configuration pagination = readerSliceConfig.getConfiguration(HttpKey.PAGINATION);
+            if (pagination == null) {
+                fetch(fetcher.build(fetcher.newUriBuilder()), recordSender);
+                return;
+            }
+            String type = pagination.getString(HttpKey.TYPE).toLowerCase();
+            long pages = 0;
+            long records = 0;
+            if ("cursor".equals(type)) {
+                String cursorParam = pagination.getString(HttpKey.CURSOR_PARAM, "cursor");
+                String cursorKey = pagination.getString(HttpKey.CURSOR_KEY);
+                String cursor = pagination.getString(HttpKey.START, null);
+                while (true) {
+                    URIBuilder uriBuilder = fetcher.newUriBuilder();
+                    if (StringUtils.isNotBlank(cursor)) {
+                        uriBuilder.setParameter(cursorParam, cursor);
+                    }
+                    Page page = fetch(fetcher.build(uriBuilder), recordSender);
+                    pages++;
+                    records += page.count;
+                    Object next = JSONPath.eval(page.meta, cursorKey);
+                    if (page.count == 0 || next == null || StringUtils.isBlank(next.toString()) || next.toString().equals(cursor)) {
+                        break;
+                    }
+                    cursor = next.toString();
                 }
-                HttpEntity entity = response.getEntity();
-
-                String encoding = readerSliceConfig.getString(HttpKey.ENCODING, null);
-                Charset charset;
-                if (encoding != null) {
-                    charset = Charset.forName(encoding);
+            }
+            else if ("link".equals(type)) {
+                URI uri = fetcher.build(fetcher.newUriBuilder());
+                while (uri != null) {
+                    Page page = fetch(uri, recordSender);
+                    pages++;
+                    records += page.count;
+                    uri = page.next;
                 }
-                else {
-                    charset = StandardCharsets.UTF_8;
+            }
+            else {
+                // page 或者 offset, 没有总页数时一直读取到记录数小于 pageSize 的那一页
+                int pageSize = pagination.getInt(HttpKey.PAGE_SIZE, 100);
+                long from = readerSliceConfig.getLong(HttpKey.PAGE_FROM, 0L);
+                long to = readerSliceConfig.getLong(HttpKey.PAGE_TO, pagination.getLong(HttpKey.TOTAL_PAGES, 0L) - 1);
+                for (long i = from; to < 0 || i <= to; i++) {
+                    Page page = fetch(fetcher.build(pageUri(fetcher.newUriBuilder(), pagination, i)), recordSender);
+                    pages++;
+                    records += page.count;
+                    if (to < 0 && page.count < pageSize) {
+                        break;
+                    }
                 }
+            }
+            LOG.info("Read {} records from {} pages.", records, pages);
+        }
 
-                String json = EntityUtils.toString(entity, charset);
-                JSONArray jsonArray = null;
-                String key = readerSliceConfig.get(HttpKey.RESULT_KEY, null);
-                Object object;
-                if (key != null) {
-                    object = JSON.parseObject(json).get(key);
-                }
-                else {
-                    object = JSON.parse(json);
-                }
-                // 需要判断返回的结果仅仅是一条记录还是多条记录，如果是一条记录，则是一个map
-                // 否则是一个array
-                if (object instanceof JSONArray) {
-                    // 有空值的情况下, toString会过滤掉，所以不能简单的使用 object.toString()方式
-                    // https://github.com/wgzhao/Addax/issues/171
-                    jsonArray = JSON.parseArray(JSONObject.toJSONString(object, SerializerFeature.WriteMapNullValue));
-                }
-                else if (object instanceof JSONObject) {
-                    jsonArray = new JSONArray();
-                    jsonArray.add(object);
-                }
-                if (jsonArray == null || jsonArray.isEmpty()) {
-                    // empty result
-                    return;
-                }
+        /*
+         * 第 index 页(从 0 开始)的请求地址
+         */
+        static URIBuilder pageUri(URIBuilder uriBuilder, Configuration pagination, long index)
+        {
+            boolean offset = "offset".equalsIgnoreCase(pagination.getString(HttpKey.TYPE));
+            int pageSize = pagination.getInt(HttpKey.PAGE_SIZE, 100);
+            long start = pagination.getLong(HttpKey.START, offset ? 0L : 1L);
+            uriBuilder.setParameter(pagination.getString(HttpKey.PAGE_PARAM, offset ? "offset" : "page"),
+                    String.valueOf(offset ? start + index * pageSize : start + index));
+            uriBuilder.setParameter(pagination.getString(HttpKey.SIZE_PARAM, offset ? "limit" : "pageSize"), String.valueOf(pageSize));
+            return uriBuilder;
+        }
 
-                List<String> columns = readerSliceConfig.getList(HttpKey.COLUMN, String.class);
-                if (columns == null || columns.isEmpty()) {
-                    throw AddaxException.asAddaxException(
-                            HttpReaderErrorCode.REQUIRED_VALUE,
-                            "The parameter [" + HttpKey.COLUMN + "] is not set."
-                    );
+        /*
+         * 请求一页数据, 流式解析返回的 JSON, 数组中的每个元素解析完成后立即转换为记录发送, 不在内存中保留整个响应.
+         * resultKey 之外的顶层字段(比如游标, 总数)保存在 meta 中
+         */
+        private Page fetch(URI uri, RecordSender recordSender)
+        {
+            LOG.debug("Request {}", uri);
+            Page page = new Page();
+            try (CloseableHttpResponse response = fetcher.execute(uri)) {
+                HttpEntity entity = response.getEntity();
+                page.next = nextLink(uri, response.getHeaders("Link"));
+                if (entity == null) {
+                    return page;
                 }
-                Record record;
-                JSONObject jsonObject = jsonArray.getJSONObject(0);
-                if (columns.size() == 1 && "*".equals(columns.get(0))) {
-                    // 没有给定key的情况下，提取JSON的第一层key作为字段处理
-                    columns.remove(0);
-                    for (Object obj : JSONPath.keySet(jsonObject, "/")) {
-                        columns.add(obj.toString());
+                JSONReaderScanner lexer = new JSONReaderScanner(new InputStreamReader(entity.getContent(), fetcher.getCharset()));
+                try (JSONReader reader = new JSONReader(lexer)) {
+                    if (resultKey == null) {
+                        readResult(reader, lexer, recordSender, page);
                     }
-                }
-
-                for (int i = 0; i < jsonArray.size(); i++) {
-                    jsonObject = jsonArray.getJSONObject(i);
-                    record = recordSender.createRecord();
-                    for (String k : columns) {
-                        Object v = JSONPath.eval(jsonObject, k);
-                        if (v == null) {
-                            record.addColumn(new StringColumn());
-                        }
-                        else {
-                            record.addColumn(new StringColumn(v.toString()));
+                    else {
+                        reader.startObject();
+                        while (reader.hasNext()) {
+                            String key = reader.readString();
+                            if (resultKey.equals(key)) {
+                                readResult(reader, lexer, recordSender, page);
+                            }
+                            else {
+                                page.meta.put(key, reader.readObject());
+                            }
                         }
+                        reader.endObject();
                     }
-                    recordSender.sendToWriter(record);
                 }
+                // 读完剩余的内容, 连接才能回到连接池复用
+                EntityUtils.consume(entity);
             }
-
-            catch (URISyntaxException | IOException e) {
+            catch (IOException e) {
                 throw AddaxException.asAddaxException(
-                        HttpReaderErrorCode.ILLEGAL_VALUE, e.getMessage()
+                        HttpReaderErrorCode.COMMAND_FTP_IO_EXCEPTION, e.getMessage()
                 );
             }
+            return page;
         }
 
-        private void createProxy(Configuration proxyConf)
+        // 需要判断返回的结果仅仅是一条记录还是多条记录，如果是一条记录，则是一个map
+        // 否则是一个array
+        private void readResult(JSONReader reader, JSONReaderScanner lexer, RecordSender recordSender, Page page)
         {
-            String host = proxyConf.getString(HttpKey.HOST);
-            URI uri = URI.create(host);
-            this.context.setAttribute("proxy", uri);
+            if (isArray(reader, lexer)) {
+                reader.startArray();
+                while (reader.hasNext()) {
+                    sendRecord(reader.readObject(), recordSender, page);
+                }
+                reader.endArray();
+            }
+            else {
+                sendRecord(reader.readObject(), recordSender, page);
+            }
         }
 
-        private CloseableHttpResponse createCloseableHttpResponse(String method)
-                throws URISyntaxException, IOException
+        /*
+         * 读取对象的 key 之后当前 token 为冒号, peek 无法得到值的类型, 需要跳过空白字符查看下一个字符
+         */
+        private static boolean isArray(JSONReader reader, JSONReaderScanner lexer)
         {
-            Map<String, Object> headers = readerSliceConfig.getMap(HttpKey.HEADERS, new HashMap<>());
-            CloseableHttpClient httpClient;
-            CloseableHttpResponse response;
-
-            if ("get".equalsIgnoreCase(method)) {
-                HttpGet request = new HttpGet(uriBuilder.build());
-                headers.forEach((k, v) -> request.setHeader(k, v.toString()));
-                httpClient = createCloseableHttpClient();
-                response = httpClient.execute(request, this.context);
-            }
-            else if ("post".equalsIgnoreCase(method)) {
-                HttpPost request = new HttpPost(uriBuilder.build());
-                headers.forEach((k, v) -> request.setHeader(k, v.toString()));
-                httpClient = createCloseableHttpClient();
-                response = httpClient.execute(request, this.context);
+            int token = reader.peek();
+            if (token != JSONToken.COLON) {
+                return token == JSONToken.LBRACKET;
             }
-            else {
-                throw AddaxException.asAddaxException(
-                        HttpReaderErrorCode.ILLEGAL_VALUE, "不支持的请求模式: " + method
-                );
+            char ch = lexer.getCurrent();
+            while (Character.isWhitespace(ch)) {
+                ch = lexer.next();
             }
-            return response;
+            return ch == '[';
         }
 
-        private CloseableHttpClient createCloseableHttpClient()
+        private void sendRecord(Object object, RecordSender recordSender, Page page)
         {
-            HttpClientBuilder httpClientBuilder = HttpClients.custom();
-            if (context.getAttribute("proxy") != null) {
-                Registry<ConnectionSocketFactory> reg = RegistryBuilder
-                        .<ConnectionSocketFactory>create()
-                        .register("http", new MyConnectionSocketFactory())
-                        .register("https", new MyConnectionSocketFactory())
-                        .build();
-                PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(reg);
-                httpClientBuilder.setConnectionManager(cm);
-            }
-            if (this.password != null) {
-                // setup BasicAuth
-                CredentialsProvider provider = new BasicCredentialsProvider();
-                // Create the authentication scope
-                HttpHost target = new HttpHost(uriBuilder.getHost(), uriBuilder.getPort(), uriBuilder.getScheme());
-                AuthScope scope = new AuthScope(target);
-                // Create credential pair
-                UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(this.username, this.password);
-                // Inject the credentials
-                provider.setCredentials(scope, credentials);
-                // Set the default credentials provider
-                httpClientBuilder.setDefaultCredentialsProvider(provider);
+            if (!(object instanceof JSONObject)) {
+                return;
             }
-
-            httpClientBuilder.setSSLSocketFactory(ignoreSSLErrors());
-
-            return httpClientBuilder.build();
+            JSONObject jsonObject = (JSONObject) object;
+            if (columns.size() == 1 && "*".equals(columns.get(0))) {
+                // 没有给定key的情况下，提取JSON的第一层key作为字段处理
+                columns = new ArrayList<>();
+                for (Object obj : JSONPath.keySet(jsonObject, "/")) {
+                    columns.add(obj.toString());
+                }
+            }
+            Record record = recordSender.createRecord();
+            for (String k : columns) {
+                Object v = JSONPath.eval(jsonObject, k);
+                if (v == null) {
+                    record.addColumn(new StringColumn());
+                }
+                else {
+                    record.addColumn(new StringColumn(v.toString()));
+                }
+            }
+            recordSender.sendToWriter(record);
+            page.count++;
         }
 
-        private SSLConnectionSocketFactory ignoreSSLErrors()
+        /*
+         * Link: <https://api.example.com/items?page=2>; rel="next", <...>; rel="last"
+         */
+        private static URI nextLink(URI current, Header[] headers)
         {
-            try {
-                // use the TrustSelfSignedStrategy to allow Self Signed Certificates
-                SSLContext sslContext = SSLContextBuilder
-                        .create()
-                        .loadTrustMaterial(new TrustSelfSignedStrategy())
-                        .build();
-
-                // we can optionally disable hostname verification.
-                // if you don't want to further weaken the security, you don't have to include this.
-                HostnameVerifier allowAllHosts = new NoopHostnameVerifier();
-
-                // create an SSL Socket Factory to use the SSLContext with the trust self-signed certificate strategy
-                // and allow all hosts verifier.
-                return new SSLConnectionSocketFactory(sslContext, allowAllHosts);
-            }
-            catch (NoSuchAlgorithmException | KeyStoreException | KeyManagementException e) {
-                e.printStackTrace();
-                return null;
+            for (Header header : headers) {
+                Matcher matcher = LINK_PATTERN.matcher(header.getValue());
+                while (matcher.find()) {
+                    if (NEXT_PATTERN.matcher(matcher.group(2)).find()) {
+                        return current.resolve(matcher.group(1).trim());
+                    }
+                }
             }
+            return null;
         }
     }
 
+    private static class Page
+    {
+        private long count = 0;
+        private final JSONObject meta = new JSONObject();
+        private URI next;
+    }
+
     static class MyConnectionSocketFactory
             implements
             ConnectionSocketFactory
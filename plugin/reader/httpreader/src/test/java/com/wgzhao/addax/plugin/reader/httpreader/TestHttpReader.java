@@ -0,0 +1,428 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.httpreader;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.util.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用本地的 HTTP 服务检查分页的切分和各种分页方式的结束条件
+ */
+public class TestHttpReader
+{
+    private HttpServer server;
+    private String baseUrl;
+    // 每个请求的 query 部分, 按请求顺序
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private int totalRecords;
+
+    @BeforeEach
+    public void setUp()
+            throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/page", this::page);
+        server.createContext("/offset", this::offset);
+        server.createContext("/cursor", this::cursor);
+        server.createContext("/link", this::link);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void testSplitArithmetic()
+    {
+        for (long totalPages = 1; totalPages <= 40; totalPages++) {
+            for (int advice = 2; advice <= 12; advice++) {
+                List<Configuration> splits = split("{\"type\":\"page\",\"totalPages\":" + totalPages + "}", advice);
+                assertEquals(Math.min(advice, totalPages), splits.size(), totalPages + " pages, " + advice + " tasks");
+                long expectedFrom = 0;
+                long min = Long.MAX_VALUE;
+                long max = 0;
+                for (Configuration split : splits) {
+                    long from = split.getLong(HttpKey.PAGE_FROM);
+                    long to = split.getLong(HttpKey.PAGE_TO);
+                    assertEquals(expectedFrom, from);
+                    assertTrue(to >= from);
+                    min = Math.min(min, to - from + 1);
+                    max = Math.max(max, to - from + 1);
+                    expectedFrom = to + 1;
+                }
+                assertEquals(totalPages, expectedFrom);
+                assertTrue(max - min <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void testSplitRanges()
+    {
+        List<Configuration> splits = split("{\"type\":\"page\",\"totalPages\":10}", 3);
+        assertEquals(Arrays.asList("0-2", "3-5", "6-9"), ranges(splits));
+    }
+
+    @Test
+    public void testSplitByTotalKey()
+    {
+        totalRecords = 25;
+        List<Configuration> splits = split("{\"type\":\"page\",\"pageSize\":10,\"totalKey\":\"$.total\"}", 4);
+        assertEquals(Arrays.asList("0-0", "1-1", "2-2"), ranges(splits));
+        assertEquals(Collections.singletonList("page=1&pageSize=10"), requests);
+
+        List<Record> records = new ArrayList<>();
+        requests.clear();
+        for (Configuration split : splits) {
+            records.addAll(read(split));
+        }
+        assertEquals(Arrays.asList("page=1&pageSize=10", "page=2&pageSize=10", "page=3&pageSize=10"), requests);
+        assertEquals(ids(0, 25), ids(records));
+    }
+
+    @Test
+    public void testNoSplit()
+    {
+        assertEquals(1, split("{\"type\":\"page\",\"totalPages\":10}", 1).size());
+        assertEquals(1, split("{\"type\":\"page\"}", 4).size());
+        assertEquals(1, split("{\"type\":\"cursor\",\"cursorKey\":\"$.next\"}", 4).size());
+        assertEquals(1, split("{\"type\":\"link\"}", 4).size());
+        assertTrue(requests.isEmpty());
+    }
+
+    @Test
+    public void testShortPageEndsReading()
+    {
+        totalRecords = 25;
+        List<Record> records = read(config("/page", "{\"type\":\"page\",\"pageSize\":10}"));
+        assertEquals(ids(0, 25), ids(records));
+        assertEquals(Arrays.asList("page=1&pageSize=10", "page=2&pageSize=10", "page=3&pageSize=10"), requests);
+    }
+
+    @Test
+    public void testEmptyPageEndsReading()
+    {
+        totalRecords = 20;
+        List<Record> records = read(config("/page", "{\"type\":\"page\",\"pageSize\":10}"));
+        assertEquals(ids(0, 20), ids(records));
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    public void testOffsetPagination()
+    {
+        totalRecords = 7;
+        List<Record> records = read(config("/offset", "{\"type\":\"offset\",\"pageSize\":3}"));
+        assertEquals(ids(0, 7), ids(records));
+        assertEquals(Arrays.asList("offset=0&limit=3", "offset=3&limit=3", "offset=6&limit=3"), requests);
+    }
+
+    @Test
+    public void testTotalPagesLimitsReading()
+    {
+        totalRecords = 100;
+        List<Record> records = read(config("/page", "{\"type\":\"page\",\"pageSize\":10,\"totalPages\":2}"));
+        assertEquals(ids(0, 20), ids(records));
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void testCursorEndsWithoutNext()
+    {
+        totalRecords = 7;
+        List<Record> records = read(config("/cursor", "{\"type\":\"cursor\",\"cursorKey\":\"$.next\"}"));
+        assertEquals(ids(0, 7), ids(records));
+        assertEquals(Arrays.asList("", "cursor=3", "cursor=6"), requests);
+    }
+
+    @Test
+    public void testCursorEndsWhenRepeated()
+    {
+        // 服务端在最后一页返回当前游标
+        totalRecords = -6;
+        List<Record> records = read(config("/cursor", "{\"type\":\"cursor\",\"cursorKey\":\"$.next\"}"));
+        assertEquals(ids(0, 6), ids(records));
+        assertEquals(Arrays.asList("", "cursor=3"), requests);
+    }
+
+    @Test
+    public void testLinkPagination()
+    {
+        totalRecords = 7;
+        List<Record> records = read(config("/link", "{\"type\":\"link\"}"));
+        assertEquals(ids(0, 7), ids(records));
+        assertEquals(Arrays.asList("", "after=3", "after=6"), requests);
+    }
+
+    private List<Configuration> split(String pagination, int adviceNumber)
+    {
+        HttpReader.Job job = new HttpReader.Job();
+        job.setPluginJobConf(config("/page", pagination));
+        job.init();
+        return job.split(adviceNumber);
+    }
+
+    private Configuration config(String path, String pagination)
+    {
+        Configuration conf = Configuration.from("{\"column\":[\"id\"],\"resultKey\":\"data\"}");
+        conf.set(HttpKey.CONNECTION, Collections.singletonList(Collections.singletonMap(HttpKey.URL, baseUrl + path)));
+        conf.set(HttpKey.PAGINATION, Configuration.from(pagination).getInternal());
+        return conf;
+    }
+
+    private static List<Record> read(Configuration conf)
+    {
+        HttpReader.Task task = new HttpReader.Task();
+        task.setPluginJobConf(conf);
+        task.init();
+        CollectingRecordSender sender = new CollectingRecordSender();
+        try {
+            task.startRead(sender);
+        }
+        finally {
+            task.destroy();
+        }
+        return sender.records;
+    }
+
+    private static List<String> ranges(List<Configuration> splits)
+    {
+        List<String> ranges = new ArrayList<>();
+        for (Configuration split : splits) {
+            ranges.add(split.getLong(HttpKey.PAGE_FROM) + "-" + split.getLong(HttpKey.PAGE_TO));
+        }
+        return ranges;
+    }
+
+    private static List<String> ids(int from, int to)
+    {
+        List<String> ids = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ids.add(String.valueOf(i));
+        }
+        return ids;
+    }
+
+    private static List<String> ids(List<Record> records)
+    {
+        List<String> ids = new ArrayList<>();
+        for (Record record : records) {
+            ids.add(record.getColumn(0).asString());
+        }
+        return ids;
+    }
+
+    private static Map<String, String> query(HttpExchange exchange)
+    {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                String[] kv = pair.split("=", 2);
+                params.put(kv[0], kv.length > 1 ? kv[1] : "");
+            }
+        }
+        return params;
+    }
+
+    private Map<String, String> record(HttpExchange exchange)
+    {
+        String query = exchange.getRequestURI().getRawQuery();
+        requests.add(query == null ? "" : query);
+        return query(exchange);
+    }
+
+    private static JSONObject body(int from, int to)
+    {
+        JSONArray data = new JSONArray();
+        for (int i = from; i < to; i++) {
+            JSONObject item = new JSONObject();
+            item.put("id", i);
+            data.add(item);
+        }
+        JSONObject body = new JSONObject();
+        body.put("data", data);
+        return body;
+    }
+
+    private void page(HttpExchange exchange)
+            throws IOException
+    {
+        Map<String, String> params = record(exchange);
+        int size = Integer.parseInt(params.get("pageSize"));
+        int from = (Integer.parseInt(params.get("page")) - 1) * size;
+        JSONObject body = body(from, Math.min(from + size, totalRecords));
+        body.put("total", totalRecords);
+        send(exchange, body, null);
+    }
+
+    private void offset(HttpExchange exchange)
+            throws IOException
+    {
+        Map<String, String> params = record(exchange);
+        int from = Integer.parseInt(params.get("offset"));
+        send(exchange, body(from, Math.min(from + Integer.parseInt(params.get("limit")), totalRecords)), null);
+    }
+
+    /*
+     * 每页 3 条, next 为下一页的起始位置; totalRecords 为负数时最后一页返回当前游标而不是空值
+     */
+    private void cursor(HttpExchange exchange)
+            throws IOException
+    {
+        Map<String, String> params = record(exchange);
+        int total = Math.abs(totalRecords);
+        int from = params.containsKey("cursor") ? Integer.parseInt(params.get("cursor")) : 0;
+        int to = Math.min(from + 3, total);
+        JSONObject body = body(from, to);
+        if (to < total) {
+            body.put("next", String.valueOf(to));
+        }
+        else if (totalRecords < 0) {
+            body.put("next", String.valueOf(from));
+        }
+        send(exchange, body, null);
+    }
+
+    private void link(HttpExchange exchange)
+            throws IOException
+    {
+        Map<String, String> params = record(exchange);
+        int from = params.containsKey("after") ? Integer.parseInt(params.get("after")) : 0;
+        int to = Math.min(from + 3, totalRecords);
+        String link = "<" + baseUrl + "/link>; rel=\"first\"";
+        if (to < totalRecords) {
+            link = "</link?after=" + to + ">; rel=\"next\", " + link;
+        }
+        send(exchange, body(from, to), link);
+    }
+
+    private static void send(HttpExchange exchange, JSONObject body, String link)
+            throws IOException
+    {
+        byte[] bytes = JSON.toJSONString(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (link != null) {
+            exchange.getResponseHeaders().set("Link", link);
+        }
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static class ListRecord
+            implements Record
+    {
+        private final List<Column> columns = new ArrayList<>();
+
+        @Override
+        public void addColumn(Column column)
+        {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column)
+        {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i)
+        {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize()
+        {
+            return 0;
+        }
+    }
+
+    private static class CollectingRecordSender
+            implements RecordSender
+    {
+        private final List<Record> records = new ArrayList<>();
+
+        @Override
+        public Record createRecord()
+        {
+            return new ListRecord();
+        }
+
+        @Override
+        public void sendToWriter(Record record)
+        {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void terminate() {}
+
+        @Override
+        public void shutdown() {}
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.influxdb2reader;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 解析 Flux range 的时间表达式, 并把时间范围切分为多个首尾相接的时间窗口.
+ * <p>
+ * 支持的时间表达式: {@code now()}, 相对时间(如 {@code -1h}, {@code -7d12h}), RFC3339 时间
+ * (如 {@code 2021-01-01T00:00:00Z}), 日期(如 {@code 2021-01-01}) 以及 Unix 时间戳(秒).
+ * 相对时间以作业开始的时间为基准计算, 所有切分出来的窗口使用同一个基准.
+ */
+public final class FluxTimeRange
+{
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+)(mo|ms|us|µs|ns|y|w|d|h|m|s)");
+    private static final Pattern DURATION = Pattern.compile("-?(\\d+(mo|ms|us|µs|ns|y|w|d|h|m|s))+");
+
+    private FluxTimeRange() {}
+
+    /**
+     * @param expr Flux 时间表达式
+     * @param now 计算相对时间的基准
+     * @return 对应的时间点, 无法解析时返回 null
+     */
+    public static Instant parse(String expr, Instant now)
+    {
+        if (expr == null) {
+            return null;
+        }
+        String value = expr.trim();
+        if ("now()".equals(value)) {
+            return now;
+        }
+        if (DURATION.matcher(value).matches()) {
+            return addDuration(now, value);
+        }
+        if (value.matches("-?\\d+")) {
+            return Instant.ofEpochSecond(Long.parseLong(value));
+        }
+        try {
+            return OffsetDateTime.parse(value).toInstant();
+        }
+        catch (DateTimeParseException ignored) {
+            // try the date only format
+        }
+        try {
+            return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+        catch (DateTimeParseException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * 在时间点上加上 Flux duration, 月和年按 UTC 日历计算
+     *
+     * @param base 时间点
+     * @param duration Flux duration, 如 1h, 1d12h, -30m
+     * @return 计算后的时间点
+     */
+    public static Instant addDuration(Instant base, String duration)
+    {
+        String value = duration.trim();
+        if (!DURATION.matcher(value).matches()) {
+            throw AddaxException.asAddaxException(InfluxDB2ReaderErrorCode.ILLEGAL_VALUE,
+                    "The duration '" + duration + "' is invalid, it should be like 1h, 30m or 1d12h");
+        }
+        int sign = value.startsWith("-") ? -1 : 1;
+        ZonedDateTime result = base.atZone(ZoneOffset.UTC);
+        Matcher matcher = DURATION_PART.matcher(value);
+        while (matcher.find()) {
+            long n = sign * Long.parseLong(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "y":
+                    result = result.plusYears(n);
+                    break;
+                case "mo":
+                    result = result.plusMonths(n);
+                    break;
+                case "w":
+                    result = result.plusWeeks(n);
+                    break;
+                case "d":
+                    result = result.plusDays(n);
+                    break;
+                case "h":
+                    result = result.plusHours(n);
+                    break;
+                case "m":
+                    result = result.plusMinutes(n);
+                    break;
+                case "s":
+                    result = result.plusSeconds(n);
+                    break;
+                case "ms":
+                    result = result.plus(Duration.ofMillis(n));
+                    break;
+                case "us":
+                case "µs":
+                    result = result.plus(Duration.ofNanos(n * 1000));
+                    break;
+                default:
+                    result = result.plusNanos(n);
+                    break;
+            }
+        }
+        return result.toInstant();
+    }
+
+    /**
+     * 按固定的时间间隔切分 [start, stop), 最后一个窗口在 stop 处截止
+     *
+     * @param start 开始时间(包含)
+     * @param stop 结束时间(不包含)
+     * @param interval 窗口大小, Flux duration 格式
+     * @return 窗口的边界, 第 i 个窗口为 [bounds[i], bounds[i+1])
+     */
+    public static List<Instant> splitByInterval(Instant start, Instant stop, String interval)
+    {
+        List<Instant> bounds = new ArrayList<>();
+        bounds.add(start);
+        Instant current = start;
+        while (current.isBefore(stop)) {
+            Instant next = addDuration(current, interval);
+            if (!next.isAfter(current)) {
+                throw AddaxException.asAddaxException(InfluxDB2ReaderErrorCode.ILLEGAL_VALUE,
+                        "The splitInterval '" + interval + "' must be a positive duration");
+            }
+            current = next.isAfter(stop) ? stop : next;
+            bounds.add(current);
+        }
+        return bounds;
+    }
+
+    /**
+     * 把 [start, stop) 切分为 number 个等长的窗口
+     *
+     * @param start 开始时间(包含)
+     * @param stop 结束时间(不包含)
+     * @param number 窗口个数
+     * @return 窗口的边界, 第 i 个窗口为 [bounds[i], bounds[i+1])
+     */
+    public static List<Instant> splitByNumber(Instant start, Instant stop, int number)
+    {
+        List<Instant> bounds = new ArrayList<>();
+        bounds.add(start);
+        Duration step = Duration.between(start, stop).dividedBy(number);
+        if (step.isZero()) {
+            bounds.add(stop);
+            return bounds;
+        }
+        for (int i = 1; i < number; i++) {
+            bounds.add(start.plus(step.multipliedBy(i)));
+        }
+        bounds.add(stop);
+        return bounds;
+    }
+}
@@ -36,10 +36,14 @@ import com.wgzhao.addax.common.util.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.wgzhao.addax.common.base.Key.COLUMN;
 import static com.wgzhao.addax.common.base.Key.CONNECTION;
@@ -94,14 +98,23 @@ public class InfluxDB2Reader
                 columns.clear();
             }
 
-            String querySql = generalQueryQL();
+            String startTime = null, endTime = null;
+            if (!range.isEmpty()) {
+                startTime = range.get(0);
+                if (range.size() == 2) {
+                    endTime = range.get(1);
+                }
+            }
+            String querySql = generalQueryQL(startTime, endTime);
             // write query sql
             conf.set(QUERY_SQL, querySql);
 
-            InfluxDBClient influxDBClient = InfluxDBClientFactory.create(endpoint, token.toCharArray(), org, bucket);
-            QueryApi queryApi = influxDBClient.getQueryApi();
-            // ONly get schema , so limit records to one
-            final List<FluxTable> fluxTables = queryApi.query(querySql + " |> limit(n:1) ");
+            final List<FluxTable> fluxTables;
+            try (InfluxDBClient influxDBClient = InfluxDBClientFactory.create(endpoint, token.toCharArray(), org, bucket)) {
+                QueryApi queryApi = influxDBClient.getQueryApi();
+                // ONly get schema , so limit records to one
+                fluxTables = queryApi.query(querySql + " |> limit(n:1) ");
+            }
             if (fluxTables.isEmpty()) {
                 return conf;
             }
@@ -145,18 +158,8 @@ public class InfluxDB2Reader
             return conf;
         }
 
-        private String generalQueryQL()
+        private String generalQueryQL(String startTime, String endTime)
         {
-            Configuration connConf = Configuration.from(originalConfig.getList(CONNECTION, Object.class).get(0).toString());
-            String bucket = connConf.getString(InfluxDB2Key.BUCKET);
-            String startTime = null, endTime = null;
-            if (!range.isEmpty()) {
-                startTime = range.get(0);
-                if (range.size() == 2) {
-                    endTime = range.get(1);
-                }
-            }
-
             StringBuilder queryBuilder = new StringBuilder();
 
             queryBuilder.append("from(bucket:\"").append(bucket).append("\")\n");
@@ -180,13 +183,13 @@ public class InfluxDB2Reader
 
             if (tables != null && !tables.isEmpty()) {
                 queryBuilder.append("  |> filter(fn: (r) => ");
-                queryBuilder.append(" r._measurement ==\"").append(tables.get(0));
+                queryBuilder.append(" r._measurement ==\"").append(tables.get(0)).append("\"");
                 if (tables.size() > 1) {
                     for (int i = 1; i < tables.size(); i++) {
-                        queryBuilder.append(" or r._measurement ==\"").append(tables.get(i));
+                        queryBuilder.append(" or r._measurement ==\"").append(tables.get(i)).append("\"");
                     }
                 }
-                queryBuilder.append("\") \n");
+                queryBuilder.append(") \n");
             }
             if (! columns.isEmpty()) {
                 queryBuilder.append("  |> filter(fn: (r) => r._field ==\"").append(columns.get(0)).append("\" ");
@@ -204,12 +207,43 @@ public class InfluxDB2Reader
             return queryBuilder.toString();
         }
 
+        /**
+         * 把 range 切分为多个首尾相接的时间窗口, 每个窗口一个任务.
+         * 配置了 splitInterval 时按该间隔切分, 否则按 adviceNumber 等分.
+         * 指定了 limit, 或者 range 中的时间无法解析时不切分.
+         */
         @Override
         public List<Configuration> split(int adviceNumber)
         {
             Configuration readerSliceConfig = super.getPluginJobConf();
             List<Configuration> splitConfigs = new ArrayList<>();
-            splitConfigs.add(readerSliceConfig);
+            String splitInterval = readerSliceConfig.getString(InfluxDB2Key.SPLIT_INTERVAL);
+            if (readerSliceConfig.getInt(InfluxDB2Key.LIMIT) != null || (splitInterval == null && adviceNumber <= 1)) {
+                splitConfigs.add(readerSliceConfig);
+                return splitConfigs;
+            }
+
+            Instant now = Instant.now();
+            Instant start = FluxTimeRange.parse(range.get(0), now);
+            Instant stop = range.size() == 2 ? FluxTimeRange.parse(range.get(1), now) : now;
+            if (start == null || stop == null || !start.isBefore(stop)) {
+                LOG.warn("Can not split the range {} into time windows, read it in one task", range);
+                splitConfigs.add(readerSliceConfig);
+                return splitConfigs;
+            }
+
+            List<Instant> bounds = splitInterval == null
+                    ? FluxTimeRange.splitByNumber(start, stop, adviceNumber)
+                    : FluxTimeRange.splitByInterval(start, stop, splitInterval);
+            for (int i = 0; i < bounds.size() - 1; i++) {
+                Configuration conf = readerSliceConfig.clone();
+                String windowStart = bounds.get(i).toString();
+                String windowStop = bounds.get(i + 1).toString();
+                conf.set(InfluxDB2Key.RANGE, Arrays.asList(windowStart, windowStop));
+                conf.set(QUERY_SQL, generalQueryQL(windowStart, windowStop));
+                splitConfigs.add(conf);
+            }
+            LOG.info("Split the range [{}, {}) into {} time windows", start, stop, splitConfigs.size());
             return splitConfigs;
         }
 
@@ -255,52 +289,76 @@ public class InfluxDB2Reader
             LOG.info("query sql: \n{}", queryQL);
         }
 
+        /**
+         * 使用流式查询, 每解析出一条记录就发送给 writer, 不再把整个查询结果保存在内存中.
+         * 回调在客户端的 IO 线程中依次执行, channel 写满时回调阻塞, 响应的读取也随之暂停.
+         */
         @Override
         public void startRead(RecordSender recordSender)
         {
-            InfluxDBClient influxDBClient = InfluxDBClientFactory.create(endpoint, token.toCharArray(), org, bucket);
-
-            QueryApi queryApi = influxDBClient.getQueryApi();
+            CountDownLatch finished = new CountDownLatch(1);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+
+            try (InfluxDBClient influxDBClient = InfluxDBClientFactory.create(endpoint, token.toCharArray(), org, bucket)) {
+                QueryApi queryApi = influxDBClient.getQueryApi();
+                queryApi.query(queryQL,
+                        (cancellable, fluxRecord) -> {
+                            try {
+                                recordSender.sendToWriter(buildRecord(recordSender, fluxRecord));
+                            }
+                            catch (Throwable e) {
+                                failure.compareAndSet(null, e);
+                                cancellable.cancel();
+                                finished.countDown();
+                            }
+                        },
+                        e -> {
+                            failure.compareAndSet(null, e);
+                            finished.countDown();
+                        },
+                        finished::countDown);
+                finished.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw AddaxException.asAddaxException(InfluxDB2ReaderErrorCode.QUERY_ERROR, "Interrupted while reading data", e);
+            }
 
-            List<FluxTable> tables = queryApi.query(queryQL);
-            if (tables.isEmpty()) {
-                influxDBClient.close();
-                return;
+            if (failure.get() != null) {
+                throw AddaxException.asAddaxException(InfluxDB2ReaderErrorCode.QUERY_ERROR,
+                        "Failed to execute the query: " + queryQL, failure.get());
             }
+        }
 
-            for (FluxTable fluxTable : tables) {
-                List<FluxRecord> records = fluxTable.getRecords();
-                for (FluxRecord fluxRecord : records) {
-                    Record record = recordSender.createRecord();
-
-                    for (Map<String, String> column : columns) {
-                        Object v = fluxRecord.getValueByKey(column.get("name"));
-                        if (v == null) {
-                            record.addColumn(new StringColumn());
-                            continue;
-                        }
-
-                        switch (column.get("type")) {
-                            case "long":
-                            case "int":
-                                record.addColumn(new LongColumn((long) v));
-                                break;
-
-                            case "double":
-                            case "float":
-                                record.addColumn(new DoubleColumn((double) v));
-                                break;
-
-                            case "string":
-                            default:
-                                record.addColumn(new StringColumn(v.toString()));
-                                break;
-                        }
-                    }
-                    recordSender.sendToWriter(record);
+        private Record buildRecord(RecordSender recordSender, FluxRecord fluxRecord)
+        {
+            Record record = recordSender.createRecord();
+
+            for (Map<String, String> column : columns) {
+                Object v = fluxRecord.getValueByKey(column.get("name"));
+                if (v == null) {
+                    record.addColumn(new StringColumn());
+                    continue;
+                }
+
+                switch (column.get("type")) {
+                    case "long":
+                    case "int":
+                        record.addColumn(new LongColumn((long) v));
+                        break;
+
+                    case "double":
+                    case "float":
+                        record.addColumn(new DoubleColumn((double) v));
+                        break;
+
+                    case "string":
+                    default:
+                        record.addColumn(new StringColumn(v.toString()));
+                        break;
                 }
             }
-            influxDBClient.close();
+            return record;
         }
 
         @Override
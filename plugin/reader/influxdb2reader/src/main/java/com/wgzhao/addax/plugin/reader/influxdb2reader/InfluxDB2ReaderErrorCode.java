@@ -25,7 +25,9 @@ public enum InfluxDB2ReaderErrorCode
         implements ErrorCode
 {
     REQUIRED_VALUE("InfluxDB2Reader-00", "Missing mandatory configuration items"),
-    MISSING_COLUMN("InfluxDB2Reader-01", "Column does not exist");
+    MISSING_COLUMN("InfluxDB2Reader-01", "Column does not exist"),
+    ILLEGAL_VALUE("InfluxDB2Reader-02", "Illegal value"),
+    QUERY_ERROR("InfluxDB2Reader-03", "Failed to query data");
 
     private final String code;
     private final String description;
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.influxdb2reader;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestFluxTimeRange
+{
+    private static final Instant NOW = Instant.parse("2021-03-31T12:00:00Z");
+
+    @Test
+    public void testParse()
+    {
+        assertEquals(NOW, FluxTimeRange.parse(" now() ", NOW));
+        assertEquals(NOW.minus(Duration.ofHours(1)), FluxTimeRange.parse("-1h", NOW));
+        assertEquals(NOW.minus(Duration.ofDays(7).plusHours(12)), FluxTimeRange.parse("-7d12h", NOW));
+        assertEquals(NOW.plus(Duration.ofMinutes(30)), FluxTimeRange.parse("30m", NOW));
+        assertEquals(Instant.parse("2021-01-01T00:00:00Z"), FluxTimeRange.parse("2021-01-01T00:00:00Z", NOW));
+        assertEquals(Instant.parse("2020-12-31T16:00:00Z"), FluxTimeRange.parse("2021-01-01T00:00:00+08:00", NOW));
+        assertEquals(Instant.parse("2021-01-01T00:00:00Z"), FluxTimeRange.parse("2021-01-01", NOW));
+        assertEquals(Instant.ofEpochSecond(1609459200L), FluxTimeRange.parse("1609459200", NOW));
+        assertNull(FluxTimeRange.parse(null, NOW));
+        assertNull(FluxTimeRange.parse("v.timeRangeStart", NOW));
+    }
+
+    @Test
+    public void testAddDuration()
+    {
+        // 月和年按日历计算
+        assertEquals(Instant.parse("2021-02-28T12:00:00Z"), FluxTimeRange.addDuration(Instant.parse("2021-01-31T12:00:00Z"), "1mo"));
+        assertEquals(Instant.parse("2021-02-28T00:00:00Z"), FluxTimeRange.addDuration(Instant.parse("2020-02-29T00:00:00Z"), "1y"));
+        assertEquals(Instant.parse("2021-02-25T12:00:00Z"), FluxTimeRange.addDuration(NOW, "-1mo3d"));
+        assertEquals(NOW.plus(Duration.ofDays(14)), FluxTimeRange.addDuration(NOW, "2w"));
+        assertEquals(NOW.plusMillis(1500), FluxTimeRange.addDuration(NOW, "1s500ms"));
+        assertEquals(NOW.plusNanos(2_003), FluxTimeRange.addDuration(NOW, "2us3ns"));
+        assertEquals(NOW.plusNanos(4_000), FluxTimeRange.addDuration(NOW, "4µs"));
+        assertEquals(NOW.minus(Duration.ofHours(1).plusMinutes(30)), FluxTimeRange.addDuration(NOW, "-1h30m"));
+        assertThrows(AddaxException.class, () -> FluxTimeRange.addDuration(NOW, "1x"));
+        assertThrows(AddaxException.class, () -> FluxTimeRange.addDuration(NOW, "h"));
+    }
+
+    @Test
+    public void testSplitByInterval()
+    {
+        Instant start = Instant.parse("2021-01-01T00:00:00Z");
+        assertEquals(instants("2021-01-01T00:00:00Z", "2021-01-01T06:00:00Z", "2021-01-01T12:00:00Z",
+                        "2021-01-01T18:00:00Z", "2021-01-02T00:00:00Z"),
+                FluxTimeRange.splitByInterval(start, Instant.parse("2021-01-02T00:00:00Z"), "6h"));
+        // 最后一个窗口在 stop 处截止
+        assertEquals(instants("2021-01-01T00:00:00Z", "2021-01-01T06:00:00Z", "2021-01-01T07:30:00Z"),
+                FluxTimeRange.splitByInterval(start, Instant.parse("2021-01-01T07:30:00Z"), "6h"));
+        // 按月切分时窗口的长度不同
+        assertEquals(instants("2021-01-01T00:00:00Z", "2021-02-01T00:00:00Z", "2021-03-01T00:00:00Z", "2021-03-15T00:00:00Z"),
+                FluxTimeRange.splitByInterval(start, Instant.parse("2021-03-15T00:00:00Z"), "1mo"));
+        assertEquals(instants("2021-01-01T00:00:00Z", "2021-01-01T00:00:01Z"),
+                FluxTimeRange.splitByInterval(start, Instant.parse("2021-01-01T00:00:01Z"), "1d"));
+        assertThrows(AddaxException.class, () -> FluxTimeRange.splitByInterval(start, Instant.parse("2021-01-02T00:00:00Z"), "0s"));
+        assertThrows(AddaxException.class, () -> FluxTimeRange.splitByInterval(start, Instant.parse("2021-01-02T00:00:00Z"), "-1h"));
+    }
+
+    @Test
+    public void testSplitByNumber()
+    {
+        Instant start = Instant.parse("2021-01-01T00:00:00Z");
+        assertEquals(instants("2021-01-01T00:00:00Z", "2021-01-01T08:00:00Z", "2021-01-01T16:00:00Z", "2021-01-02T00:00:00Z"),
+                FluxTimeRange.splitByNumber(start, Instant.parse("2021-01-02T00:00:00Z"), 3));
+        assertEquals(instants("2021-01-01T00:00:00Z", "2021-01-02T00:00:00Z"),
+                FluxTimeRange.splitByNumber(start, Instant.parse("2021-01-02T00:00:00Z"), 1));
+
+        // 不能整除时最后一个窗口包含余数, 所有窗口首尾相接
+        Instant stop = start.plusNanos(10);
+        List<Instant> bounds = FluxTimeRange.splitByNumber(start, stop, 3);
+        assertEquals(Arrays.asList(start, start.plusNanos(3), start.plusNanos(6), stop), bounds);
+
+        // 时间范围小于窗口个数时不切分
+        assertEquals(Arrays.asList(start, start.plusNanos(2)), FluxTimeRange.splitByNumber(start, start.plusNanos(2), 3));
+    }
+
+    private static List<Instant> instants(String... values)
+    {
+        Instant[] instants = new Instant[values.length];
+        for (int i = 0; i < values.length; i++) {
+            instants[i] = Instant.parse(values[i]);
+        }
+        return Arrays.asList(instants);
+    }
+}
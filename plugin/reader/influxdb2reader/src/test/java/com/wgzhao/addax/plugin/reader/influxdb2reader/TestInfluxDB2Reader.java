@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.influxdb2reader;
+
+import com.alibaba.fastjson.JSON;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.util.Configuration;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.wgzhao.addax.common.base.Key.COLUMN;
+import static com.wgzhao.addax.common.base.Key.QUERY_SQL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用本地的 HTTP 服务模拟 InfluxDB 2 的 /api/v2/query, 返回 annotated CSV
+ */
+public class TestInfluxDB2Reader
+{
+    private static final String CSV_HEADER = "#datatype,string,long,dateTime:RFC3339,dateTime:RFC3339,dateTime:RFC3339,string,double,long,string\r\n"
+            + "#group,false,false,true,true,false,true,false,false,true\r\n"
+            + "#default,_result,,,,,,,,\r\n"
+            + ",result,table,_start,_stop,_time,_measurement,temp,count,host\r\n";
+    private static final Instant START = Instant.parse("2021-01-01T00:00:00Z");
+
+    private HttpServer server;
+    private String endpoint;
+    private final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+    // 数据查询返回的行数
+    private volatile int rows;
+    // 不为 null 时, 服务端写出第一行后等待它, 再写出剩余的行
+    private volatile CountDownLatch firstRecordReceived;
+    private volatile boolean failQuery;
+
+    @BeforeEach
+    public void setUp()
+            throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/v2/query", this::query);
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void testSplitByInterval()
+    {
+        List<Configuration> splits = split("{\"splitInterval\":\"6h\"}", 1);
+        assertEquals(4, splits.size());
+        for (int i = 0; i < splits.size(); i++) {
+            String windowStart = START.plus(Duration.ofHours(6L * i)).toString();
+            String windowStop = START.plus(Duration.ofHours(6L * (i + 1))).toString();
+            Configuration split = splits.get(i);
+            assertEquals(windowStart, split.getList(InfluxDB2Key.RANGE, String.class).get(0));
+            assertEquals(windowStop, split.getList(InfluxDB2Key.RANGE, String.class).get(1));
+            assertTrue(split.getString(QUERY_SQL).contains("range(start: " + windowStart + ", stop: " + windowStop + ")"),
+                    split.getString(QUERY_SQL));
+        }
+        // 只有获取表结构的一次查询
+        assertEquals(1, queries.size());
+        assertTrue(queries.get(0).contains("limit(n:1)"));
+        List<Map> columns = splits.get(0).getList(COLUMN, Map.class);
+        assertEquals("[_time, temp, count, host]", names(columns).toString());
+        assertEquals("double", columns.get(1).get("type"));
+    }
+
+    @Test
+    public void testSplitByNumber()
+    {
+        List<Configuration> splits = split("{}", 3);
+        assertEquals(3, splits.size());
+        assertEquals("2021-01-01T08:00:00Z", splits.get(0).getList(InfluxDB2Key.RANGE, String.class).get(1));
+        assertEquals("2021-01-01T08:00:00Z", splits.get(1).getList(InfluxDB2Key.RANGE, String.class).get(0));
+        assertEquals("2021-01-02T00:00:00Z", splits.get(2).getList(InfluxDB2Key.RANGE, String.class).get(1));
+    }
+
+    @Test
+    public void testNoSplit()
+    {
+        assertEquals(1, split("{}", 1).size());
+        assertEquals(1, split("{\"splitInterval\":\"6h\",\"limit\":10}", 4).size());
+        assertEquals(1, split("{\"range\":[\"v.timeRangeStart\"]}", 4).size());
+    }
+
+    @Test
+    public void testStreamingRead()
+    {
+        rows = 20000;
+        firstRecordReceived = new CountDownLatch(1);
+        CollectingRecordSender sender = new CollectingRecordSender();
+        // 客户端等到整个响应结束才处理时, 服务端一直等待第一条记录, 这里会超时
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> read(sender));
+
+        assertEquals(rows, sender.records.size());
+        Record first = sender.records.get(0);
+        assertEquals(4, first.getColumnNumber());
+        assertEquals("2021-01-01T00:00:00Z", first.getColumn(0).asString());
+        assertEquals(Column.Type.DOUBLE, first.getColumn(1).getType());
+        assertEquals(0.5d, first.getColumn(1).asDouble(), 0.0001d);
+        assertEquals(Column.Type.LONG, first.getColumn(2).getType());
+        assertEquals(0L, (long) first.getColumn(2).asLong());
+        assertEquals("host0", first.getColumn(3).asString());
+        // 空值
+        assertNull(sender.records.get(1).getColumn(1).getRawData());
+        Record last = sender.records.get(rows - 1);
+        assertEquals(rows - 1L, (long) last.getColumn(2).asLong());
+    }
+
+    @Test
+    public void testQueryError()
+    {
+        failQuery = true;
+        AddaxException e = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> assertThrows(AddaxException.class, () -> read(new CollectingRecordSender())));
+        assertEquals(InfluxDB2ReaderErrorCode.QUERY_ERROR, e.getErrorCode());
+    }
+
+    @Test
+    public void testSenderFailureCancelsQuery()
+    {
+        rows = 1000;
+        CollectingRecordSender sender = new CollectingRecordSender();
+        sender.failAt = 10;
+        AddaxException e = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> assertThrows(AddaxException.class, () -> read(sender)));
+        assertEquals(InfluxDB2ReaderErrorCode.QUERY_ERROR, e.getErrorCode());
+        assertEquals(10, sender.records.size());
+    }
+
+    private List<Configuration> split(String extra, int adviceNumber)
+    {
+        Configuration conf = config();
+        conf.set(InfluxDB2Key.RANGE, Arrays.asList("2021-01-01T00:00:00Z", "2021-01-02T00:00:00Z"));
+        conf.merge(Configuration.from(extra), true);
+        InfluxDB2Reader.Job job = new InfluxDB2Reader.Job();
+        job.setPluginJobConf(conf);
+        job.init();
+        job.prepare();
+        return job.split(adviceNumber);
+    }
+
+    private void read(RecordSender sender)
+    {
+        Configuration conf = config();
+        conf.set(COLUMN, JSON.parseArray("[{\"name\":\"_time\",\"type\":\"dateTime:RFC3339\"},{\"name\":\"temp\",\"type\":\"double\"},"
+                + "{\"name\":\"count\",\"type\":\"long\"},{\"name\":\"host\",\"type\":\"string\"}]"));
+        conf.set(QUERY_SQL, "from(bucket:\"test\") |> range(start: 0)");
+        InfluxDB2Reader.Task task = new InfluxDB2Reader.Task();
+        task.setPluginJobConf(conf);
+        task.init();
+        task.startRead(sender);
+    }
+
+    private Configuration config()
+    {
+        return Configuration.from("{\"token\":\"secret\",\"column\":[\"*\"],\"connection\":[{\"endpoint\":\"" + endpoint
+                + "\",\"bucket\":\"test\",\"org\":\"addax\",\"table\":[\"cpu\"]}]}");
+    }
+
+    private static List<Object> names(List<Map> columns)
+    {
+        List<Object> names = new ArrayList<>();
+        for (Map column : columns) {
+            names.add(column.get("name"));
+        }
+        return names;
+    }
+
+    private void query(HttpExchange exchange)
+            throws IOException
+    {
+        String query = JSON.parseObject(IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8)).getString("query");
+        queries.add(query);
+        if (failQuery) {
+            byte[] body = "{\"code\":\"invalid\",\"message\":\"compilation failed\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(400, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        int count = query.contains("limit(n:1)") ? 1 : rows;
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < count; i++) {
+                String line = ",,0,2021-01-01T00:00:00Z,2021-01-02T00:00:00Z," + START.plusSeconds(i) + ",cpu,"
+                        + (i == 1 ? "" : String.valueOf(i + 0.5)) + "," + i + ",host" + (i % 3) + "\r\n";
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+                if (i == 0 && firstRecordReceived != null) {
+                    out.flush();
+                    if (!firstRecordReceived.await(30, TimeUnit.SECONDS)) {
+                        return;
+                    }
+                }
+            }
+            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException ignored) {
+            // the client cancelled the query
+        }
+    }
+
+    private static class ListRecord
+            implements Record
+    {
+        private final List<Column> columns = new ArrayList<>();
+
+        @Override
+        public void addColumn(Column column)
+        {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column)
+        {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i)
+        {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize()
+        {
+            return 0;
+        }
+    }
+
+    private class CollectingRecordSender
+            implements RecordSender
+    {
+        private final List<Record> records = Collections.synchronizedList(new ArrayList<>());
+        private int failAt = -1;
+
+        @Override
+        public Record createRecord()
+        {
+            return new ListRecord();
+        }
+
+        @Override
+        public void sendToWriter(Record record)
+        {
+            if (records.size() == failAt) {
+                throw new IllegalStateException("the writer failed");
+            }
+            records.add(record);
+            if (firstRecordReceived != null) {
+                firstRecordReceived.countDown();
+            }
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void terminate() {}
+
+        @Override
+        public void shutdown() {}
+    }
+}
@@ -13,4 +13,7 @@ public final class InfluxDBKey extends Key
     public static final String CONNECTION = "connection";
     public static final String CONNECT_TIMEOUT_SECONDS = "connTimeout";
     public static final String SOCKET_TIMEOUT_SECONDS = "socketTimeout";
+    public static final String RANGE = "range";
+    public static final String SPLIT_INTERVAL = "splitInterval";
+    public static final String CHUNK_SIZE = "chunkSize";
 }
@@ -27,12 +27,15 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class InfluxDBReader
         extends Reader
 {
+    public static final String TIME_FILTER = "#timeFilter#";
 
     public static class Job
             extends Reader.Job
@@ -69,12 +72,91 @@ public class InfluxDBReader
             }
         }
 
+        @Override
+        public void prepare()
+        {
+            String querySql = originalConfig.getString(InfluxDBKey.QUERY_SQL, null);
+            boolean hasRange = originalConfig.getList(InfluxDBKey.RANGE, String.class) != null;
+            if (StringUtils.isBlank(querySql)) {
+                originalConfig.set(InfluxDBKey.QUERY_SQL, buildQuerySql(hasRange));
+            }
+            else if (hasRange && !querySql.contains(TIME_FILTER)) {
+                throw AddaxException.asAddaxException(InfluxDBReaderErrorCode.ILLEGAL_VALUE,
+                        "The querySql must contain the " + TIME_FILTER + " placeholder when the range is specified");
+            }
+        }
+
+        /*
+         * SELECT <column> FROM <table> [WHERE <where>], the time filter of each task is appended when range is specified
+         */
+        private String buildQuerySql(boolean hasRange)
+        {
+            Configuration conn = Configuration.from(originalConfig.getList(InfluxDBKey.CONNECTION).get(0).toString());
+            String table = conn.getNecessaryValue(InfluxDBKey.TABLE, InfluxDBReaderErrorCode.REQUIRED_VALUE);
+            String where = conn.getString(InfluxDBKey.WHERE, null);
+            List<String> columns = originalConfig.getList(InfluxDBKey.COLUMN, String.class);
+
+            StringBuilder sql = new StringBuilder("SELECT ");
+            if (columns.size() == 1 && "*".equals(columns.get(0))) {
+                sql.append("*");
+            }
+            else {
+                sql.append(columns.stream().map(c -> "\"" + c + "\"").collect(Collectors.joining(", ")));
+            }
+            sql.append(" FROM \"").append(table).append("\"");
+            if (StringUtils.isNotBlank(where)) {
+                sql.append(" WHERE (").append(where).append(")");
+                if (hasRange) {
+                    sql.append(" AND ").append(TIME_FILTER);
+                }
+            }
+            else if (hasRange) {
+                sql.append(" WHERE ").append(TIME_FILTER);
+            }
+            return sql.toString();
+        }
+
+        /**
+         * 配置了 range 时, 把时间范围切分为首尾相接的时间窗口, 每个窗口一个任务.
+         * 配置了 splitInterval 时按该间隔切分, 否则按 adviceNumber 等分.
+         * 每个任务的 querySql 中的 #timeFilter# 会被替换为该窗口的时间条件.
+         */
         @Override
         public List<Configuration> split(int adviceNumber)
         {
             Configuration readerSliceConfig = super.getPluginJobConf();
             List<Configuration> splitConfigs = new ArrayList<>();
-            splitConfigs.add(readerSliceConfig);
+            List<String> range = readerSliceConfig.getList(InfluxDBKey.RANGE, String.class);
+            if (range == null) {
+                splitConfigs.add(readerSliceConfig);
+                return splitConfigs;
+            }
+            if (range.isEmpty() || range.size() > 2) {
+                throw AddaxException.asAddaxException(InfluxDBReaderErrorCode.ILLEGAL_VALUE,
+                        "The range should be [start] or [start, end]");
+            }
+
+            Instant now = Instant.now();
+            Instant start = InfluxQLTimeRange.parse(range.get(0), now);
+            Instant stop = range.size() == 2 ? InfluxQLTimeRange.parse(range.get(1), now) : now;
+            if (!start.isBefore(stop)) {
+                throw AddaxException.asAddaxException(InfluxDBReaderErrorCode.ILLEGAL_VALUE,
+                        "The start time of range " + range + " must be earlier than the end time");
+            }
+
+            String splitInterval = readerSliceConfig.getString(InfluxDBKey.SPLIT_INTERVAL, null);
+            List<Instant> bounds = splitInterval != null
+                    ? InfluxQLTimeRange.splitByInterval(start, stop, splitInterval)
+                    : InfluxQLTimeRange.splitByNumber(start, stop, adviceNumber);
+
+            String querySql = readerSliceConfig.getString(InfluxDBKey.QUERY_SQL);
+            for (int i = 0; i < bounds.size() - 1; i++) {
+                Configuration conf = readerSliceConfig.clone();
+                String timeFilter = String.format("time >= '%s' AND time < '%s'", bounds.get(i), bounds.get(i + 1));
+                conf.set(InfluxDBKey.QUERY_SQL, querySql.replace(TIME_FILTER, timeFilter));
+                splitConfigs.add(conf);
+            }
+            LOG.info("Split the range [{}, {}) into {} time windows", start, stop, splitConfigs.size());
             return splitConfigs;
         }
 
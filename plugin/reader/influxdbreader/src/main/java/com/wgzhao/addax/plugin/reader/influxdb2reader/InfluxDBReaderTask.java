@@ -29,12 +29,18 @@ import com.wgzhao.addax.common.plugin.RecordSender;
 import com.wgzhao.addax.common.plugin.TaskPluginCollector;
 import com.wgzhao.addax.common.util.Configuration;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpEntity;
 import org.apache.http.client.fluent.Content;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
@@ -48,6 +54,7 @@ public class InfluxDBReaderTask
 
     private static final int CONNECT_TIMEOUT_SECONDS_DEFAULT = 15;
     private static final int SOCKET_TIMEOUT_SECONDS_DEFAULT = 20;
+    private static final int CHUNK_SIZE_DEFAULT = 10000;
 
     private String querySql;
     private final String database;
@@ -57,6 +64,7 @@ public class InfluxDBReaderTask
 
     private final int connTimeout;
     private final int socketTimeout;
+    private final int chunkSize;
 
     public InfluxDBReaderTask(Configuration configuration)
     {
@@ -69,6 +77,7 @@ public class InfluxDBReaderTask
         this.password = configuration.getString(InfluxDBKey.PASSWORD, null);
         this.connTimeout = configuration.getInt(InfluxDBKey.CONNECT_TIMEOUT_SECONDS, CONNECT_TIMEOUT_SECONDS_DEFAULT) * 1000;
         this.socketTimeout = configuration.getInt(InfluxDBKey.SOCKET_TIMEOUT_SECONDS, SOCKET_TIMEOUT_SECONDS_DEFAULT) * 1000;
+        this.chunkSize = configuration.getInt(InfluxDBKey.CHUNK_SIZE, CHUNK_SIZE_DEFAULT);
     }
 
     public void post()
@@ -87,62 +96,103 @@ public class InfluxDBReaderTask
 
         String tail = "/query";
         String enc = "utf-8";
-        String result;
+        String url;
         try {
-            String url = endpoint + tail + "?db=" + URLEncoder.encode(database, enc);
-            if (!"".equals(username)) {
+            url = endpoint + tail + "?db=" + URLEncoder.encode(database, enc);
+            if (StringUtils.isNotEmpty(username)) {
                 url += "&u=" + URLEncoder.encode(username, enc);
             }
-            if (!"".equals(password)) {
+            if (StringUtils.isNotEmpty(password)) {
                 url += "&p=" + URLEncoder.encode(password, enc);
             }
             if (querySql.contains("#lastMinute#")) {
                 this.querySql = querySql.replace("#lastMinute#", getLastMinute());
             }
             url += "&q=" + URLEncoder.encode(querySql, enc);
-            result = get(url);
+            // the response is a stream of JSON objects, one per line, each contains at most chunkSize points
+            url += "&chunked=true&chunk_size=" + chunkSize;
         }
-        catch (Exception e) {
+        catch (UnsupportedEncodingException e) {
+            throw AddaxException.asAddaxException(
+                    InfluxDBReaderErrorCode.ILLEGAL_VALUE, "Failed to encode the query url", e);
+        }
+        LOG.info("query sql: {}", querySql);
+
+        try {
+            Request.Get(url)
+                    .connectTimeout(this.connTimeout)
+                    .socketTimeout(this.socketTimeout)
+                    .execute()
+                    .handleResponse(response -> {
+                        HttpEntity entity = response.getEntity();
+                        int status = response.getStatusLine().getStatusCode();
+                        if (status >= 300) {
+                            String body = entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+                            throw AddaxException.asAddaxException(InfluxDBReaderErrorCode.ILLEGAL_VALUE,
+                                    "Failed to get data point, status: " + status + ", response: " + body);
+                        }
+                        if (entity == null) {
+                            throw AddaxException.asAddaxException(InfluxDBReaderErrorCode.ILLEGAL_VALUE, "Get nothing!");
+                        }
+                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8))) {
+                            String line;
+                            while ((line = reader.readLine()) != null) {
+                                if (!StringUtils.isBlank(line)) {
+                                    sendChunk(JSON.parseObject(line), recordSender);
+                                }
+                            }
+                        }
+                        return null;
+                    });
+        }
+        catch (IOException e) {
             throw AddaxException.asAddaxException(
                     InfluxDBReaderErrorCode.ILLEGAL_VALUE, "Failed to get data point！", e);
         }
+    }
 
-        if (StringUtils.isBlank(result)) {
+    /*
+     * one chunk: {"results": [{"statement_id": 0, "series": [{"name": "", "columns": [], "values": [[]]}], "partial": true}]}
+     */
+    private void sendChunk(JSONObject chunk, RecordSender recordSender)
+    {
+        if (chunk.containsKey("error")) {
             throw AddaxException.asAddaxException(
-                    InfluxDBReaderErrorCode.ILLEGAL_VALUE, "Get nothing!", null);
+                    InfluxDBReaderErrorCode.ILLEGAL_VALUE, "Error occurred in data sets: " + chunk.getString("error"));
         }
-        try {
-            JSONObject jsonObject = JSONObject.parseObject(result);
-            JSONArray results = (JSONArray) jsonObject.get("results");
-            JSONObject resultsMap = (JSONObject) results.get(0);
-            if (resultsMap.containsKey("series")) {
-                JSONArray series = (JSONArray) resultsMap.get("series");
-                JSONObject seriesMap = (JSONObject) series.get(0);
-                if (seriesMap.containsKey("values")) {
-                    JSONArray values = (JSONArray) seriesMap.get("values");
-                    for (Object row : values) {
-                        JSONArray rowArray = (JSONArray) row;
-                        Record record = recordSender.createRecord();
-                        for (Object s : rowArray) {
-                            if (null != s) {
-                                record.addColumn(new StringColumn(s.toString()));
-                            }
-                            else {
-                                record.addColumn(new StringColumn());
-                            }
+        JSONArray results = chunk.getJSONArray("results");
+        if (results == null) {
+            return;
+        }
+        for (int i = 0; i < results.size(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            if (result.containsKey("error")) {
+                throw AddaxException.asAddaxException(
+                        InfluxDBReaderErrorCode.ILLEGAL_VALUE, "Error occurred in data sets: " + result.getString("error"));
+            }
+            JSONArray series = result.getJSONArray("series");
+            if (series == null) {
+                continue;
+            }
+            for (int j = 0; j < series.size(); j++) {
+                JSONArray values = series.getJSONObject(j).getJSONArray("values");
+                if (values == null) {
+                    continue;
+                }
+                for (Object row : values) {
+                    JSONArray rowArray = (JSONArray) row;
+                    Record record = recordSender.createRecord();
+                    for (Object s : rowArray) {
+                        if (null != s) {
+                            record.addColumn(new StringColumn(s.toString()));
+                        }
+                        else {
+                            record.addColumn(new StringColumn());
                         }
-                        recordSender.sendToWriter(record);
                     }
+                    recordSender.sendToWriter(record);
                 }
             }
-            else if (resultsMap.containsKey("error")) {
-                throw AddaxException.asAddaxException(
-                        InfluxDBReaderErrorCode.ILLEGAL_VALUE, "Error occurred in data sets！", null);
-            }
-        }
-        catch (Exception e) {
-            throw AddaxException.asAddaxException(
-                    InfluxDBReaderErrorCode.ILLEGAL_VALUE, "Failed to send data", e);
         }
     }
 
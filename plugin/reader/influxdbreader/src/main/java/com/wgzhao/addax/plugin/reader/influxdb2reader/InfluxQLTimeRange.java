@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.influxdb2reader;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 解析 range 中的时间表达式, 并把时间范围切分为多个首尾相接的时间窗口.
+ * <p>
+ * 与 influxdb2reader 的 FluxTimeRange 用途相同, 但语法按 InfluxQL 处理, 因此没有共用:
+ * 相对时间写作 {@code now() - 1h}, duration 只有单个单位(如 {@code 30m}, 微秒为 {@code u} 或 {@code µ}),
+ * 没有 Flux 的 {@code mo}, {@code y} 和 {@code 1d12h} 这样的组合, 都是固定长度.
+ * 相对时间以作业开始的时间为基准计算, 所有切分出来的窗口使用同一个基准.
+ */
+public final class InfluxQLTimeRange
+{
+    private static final Pattern DURATION = Pattern.compile("(\\d+)(ns|u|µ|ms|s|m|h|d|w)");
+    private static final Pattern RELATIVE_TIME = Pattern.compile("(?:now\\(\\)\\s*)?([+-])\\s*(\\d+(?:ns|u|µ|ms|s|m|h|d|w))");
+
+    private InfluxQLTimeRange() {}
+
+    /**
+     * 支持 now(), now() - 1h, -1h, RFC3339 时间, 日期以及 Unix 时间戳(秒)
+     *
+     * @param expr 时间表达式
+     * @param now 计算相对时间的基准
+     * @return 对应的时间点
+     */
+    public static Instant parse(String expr, Instant now)
+    {
+        String value = expr.trim();
+        if ("now()".equals(value)) {
+            return now;
+        }
+        Matcher matcher = RELATIVE_TIME.matcher(value);
+        if (matcher.matches()) {
+            Duration offset = parseDuration(matcher.group(2));
+            return "-".equals(matcher.group(1)) ? now.minus(offset) : now.plus(offset);
+        }
+        if (value.matches("-?\\d+")) {
+            return Instant.ofEpochSecond(Long.parseLong(value));
+        }
+        try {
+            return OffsetDateTime.parse(value).toInstant();
+        }
+        catch (DateTimeParseException ignored) {
+            // try the date only format
+        }
+        try {
+            return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+        catch (DateTimeParseException e) {
+            throw AddaxException.asAddaxException(InfluxDBReaderErrorCode.ILLEGAL_VALUE,
+                    "The time '" + expr + "' in range is invalid, it should be like now() - 1h, -1h or 2021-01-01T00:00:00Z");
+        }
+    }
+
+    /**
+     * @param expr InfluxQL duration, 如 30m, 6h, 1d
+     * @return 对应的时长
+     */
+    public static Duration parseDuration(String expr)
+    {
+        Matcher matcher = DURATION.matcher(expr.trim());
+        if (!matcher.matches()) {
+            throw AddaxException.asAddaxException(InfluxDBReaderErrorCode.ILLEGAL_VALUE,
+                    "The duration '" + expr + "' is invalid, it should be like 30m, 6h or 1d");
+        }
+        long n = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "w":
+                return Duration.ofDays(n * 7);
+            case "d":
+                return Duration.ofDays(n);
+            case "h":
+                return Duration.ofHours(n);
+            case "m":
+                return Duration.ofMinutes(n);
+            case "s":
+                return Duration.ofSeconds(n);
+            case "ms":
+                return Duration.ofMillis(n);
+            case "u":
+            case "µ":
+                return Duration.ofNanos(n * 1000);
+            default:
+                return Duration.ofNanos(n);
+        }
+    }
+
+    /**
+     * 按固定的时间间隔切分 [start, stop), 最后一个窗口在 stop 处截止
+     *
+     * @param start 开始时间(包含)
+     * @param stop 结束时间(不包含)
+     * @param interval 窗口大小, InfluxQL duration 格式
+     * @return 窗口的边界, 第 i 个窗口为 [bounds[i], bounds[i+1])
+     */
+    public static List<Instant> splitByInterval(Instant start, Instant stop, String interval)
+    {
+        Duration step = parseDuration(interval);
+        if (step.isZero()) {
+            throw AddaxException.asAddaxException(InfluxDBReaderErrorCode.ILLEGAL_VALUE,
+                    "The splitInterval '" + interval + "' must be a positive duration");
+        }
+        List<Instant> bounds = new ArrayList<>();
+        bounds.add(start);
+        for (Instant t = start.plus(step); t.isBefore(stop); t = t.plus(step)) {
+            bounds.add(t);
+        }
+        bounds.add(stop);
+        return bounds;
+    }
+
+    /**
+     * 把 [start, stop) 切分为 number 个等长的窗口
+     *
+     * @param start 开始时间(包含)
+     * @param stop 结束时间(不包含)
+     * @param number 窗口个数
+     * @return 窗口的边界, 第 i 个窗口为 [bounds[i], bounds[i+1])
+     */
+    public static List<Instant> splitByNumber(Instant start, Instant stop, int number)
+    {
+        List<Instant> bounds = new ArrayList<>();
+        bounds.add(start);
+        Duration step = Duration.between(start, stop).dividedBy(Math.max(number, 1));
+        for (int i = 1; i < number && !step.isZero(); i++) {
+            bounds.add(start.plus(step.multipliedBy(i)));
+        }
+        bounds.add(stop);
+        return bounds;
+    }
+}
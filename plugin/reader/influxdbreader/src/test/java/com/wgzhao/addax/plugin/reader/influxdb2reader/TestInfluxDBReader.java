@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.influxdb2reader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.util.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用本地的 HTTP 服务模拟 InfluxDB 1.x 的 /query, 以 chunked=true 方式每行返回一个 JSON 数据块
+ */
+public class TestInfluxDBReader
+{
+    private static final String SERIES_A = "{\"name\":\"cpu\",\"tags\":{\"host\":\"a\"},\"columns\":[\"time\",\"usage\"],"
+            + "\"values\":[[\"2021-01-01T00:00:00Z\",0.5],[\"2021-01-01T00:00:10Z\",0.6]]}";
+    private static final String SERIES_B = "{\"name\":\"cpu\",\"tags\":{\"host\":\"b\"},\"columns\":[\"time\",\"usage\"],"
+            + "\"values\":[[\"2021-01-01T00:00:00Z\",null]],\"partial\":true}";
+    private static final String SERIES_B_REST = "{\"name\":\"cpu\",\"tags\":{\"host\":\"b\"},\"columns\":[\"time\",\"usage\"],"
+            + "\"values\":[[\"2021-01-01T00:00:10Z\",0.8]]}";
+
+    private HttpServer server;
+    private String endpoint;
+    // 每次请求的参数
+    private final List<Map<String, String>> requests = Collections.synchronizedList(new ArrayList<>());
+    // 依次返回的数据块, 每个数据块一行
+    private volatile List<String> chunks = Collections.emptyList();
+    private volatile int status = 200;
+
+    @BeforeEach
+    public void setUp()
+            throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/query", this::query);
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void testMultiSeriesChunks()
+    {
+        chunks = Arrays.asList(
+                "{\"results\":[{\"statement_id\":0,\"series\":[" + SERIES_A + "," + SERIES_B + "],\"partial\":true}]}",
+                "{\"results\":[{\"statement_id\":0,\"series\":[" + SERIES_B_REST + "]}]}");
+        Configuration conf = config();
+        conf.set(InfluxDBKey.QUERY_SQL, "select * from cpu group by host");
+        conf.set(InfluxDBKey.CHUNK_SIZE, 2);
+        CollectingRecordSender sender = new CollectingRecordSender();
+        read(conf, sender);
+
+        assertEquals(1, requests.size());
+        Map<String, String> params = requests.get(0);
+        assertEquals("test", params.get("db"));
+        assertEquals("select * from cpu group by host", params.get("q"));
+        assertEquals("true", params.get("chunked"));
+        assertEquals("2", params.get("chunk_size"));
+
+        assertEquals(Arrays.asList("2021-01-01T00:00:00Z|0.5", "2021-01-01T00:00:10Z|0.6", "2021-01-01T00:00:00Z|null",
+                "2021-01-01T00:00:10Z|0.8"), sender.rows());
+        assertNull(sender.records.get(2).getColumn(1).getRawData());
+    }
+
+    @Test
+    public void testErrorInChunk()
+    {
+        chunks = Arrays.asList(
+                "{\"results\":[{\"statement_id\":0,\"series\":[" + SERIES_A + "],\"partial\":true}]}",
+                "{\"results\":[{\"statement_id\":0,\"error\":\"max-select-point limit exceeded\"}]}",
+                "{\"results\":[{\"statement_id\":0,\"series\":[" + SERIES_B_REST + "]}]}");
+        Configuration conf = config();
+        conf.set(InfluxDBKey.QUERY_SQL, "select * from cpu");
+        CollectingRecordSender sender = new CollectingRecordSender();
+        AddaxException e = assertThrows(AddaxException.class, () -> read(conf, sender));
+        assertEquals(InfluxDBReaderErrorCode.ILLEGAL_VALUE, e.getErrorCode());
+        assertTrue(e.getMessage().contains("max-select-point limit exceeded"), e.getMessage());
+        // 出错之前的数据块已经发送, 之后的不再读取
+        assertEquals(2, sender.records.size());
+    }
+
+    @Test
+    public void testHttpError()
+    {
+        status = 400;
+        chunks = Collections.singletonList("{\"error\":\"error parsing query: found EOF\"}");
+        Configuration conf = config();
+        conf.set(InfluxDBKey.QUERY_SQL, "select * from");
+        AddaxException e = assertThrows(AddaxException.class, () -> read(conf, new CollectingRecordSender()));
+        assertTrue(e.getMessage().contains("status: 400"), e.getMessage());
+        assertTrue(e.getMessage().contains("found EOF"), e.getMessage());
+    }
+
+    @Test
+    public void testTimeFilterInQuerySql()
+    {
+        chunks = Collections.singletonList("{\"results\":[{\"statement_id\":0}]}");
+        Configuration conf = config();
+        conf.set(InfluxDBKey.QUERY_SQL, "select * from cpu where #timeFilter# and host = 'a'");
+        conf.set(InfluxDBKey.RANGE, Arrays.asList("2021-01-01", "2021-01-02"));
+        conf.set(InfluxDBKey.SPLIT_INTERVAL, "8h");
+        List<Configuration> splits = split(conf, 1);
+        assertEquals(3, splits.size());
+        assertEquals("select * from cpu where time >= '2021-01-01T08:00:00Z' AND time < '2021-01-01T16:00:00Z' and host = 'a'",
+                splits.get(1).getString(InfluxDBKey.QUERY_SQL));
+
+        // 任务把替换后的 SQL 发送给服务端
+        read(splits.get(1), new CollectingRecordSender());
+        assertEquals(splits.get(1).getString(InfluxDBKey.QUERY_SQL), requests.get(0).get("q"));
+    }
+
+    @Test
+    public void testTimeFilterInTable()
+    {
+        Configuration conf = config();
+        conf.set("connection[0].table", "cpu");
+        conf.set("connection[0].where", "host = 'a'");
+        conf.set(InfluxDBKey.COLUMN, Arrays.asList("time", "usage"));
+        conf.set(InfluxDBKey.RANGE, Arrays.asList("2021-01-01T00:00:00Z", "2021-01-02T00:00:00Z"));
+        List<Configuration> splits = split(conf, 2);
+        assertEquals(2, splits.size());
+        assertEquals("SELECT \"time\", \"usage\" FROM \"cpu\" WHERE (host = 'a') AND time >= '2021-01-01T00:00:00Z' AND time < '2021-01-01T12:00:00Z'",
+                splits.get(0).getString(InfluxDBKey.QUERY_SQL));
+        assertEquals("SELECT \"time\", \"usage\" FROM \"cpu\" WHERE (host = 'a') AND time >= '2021-01-01T12:00:00Z' AND time < '2021-01-02T00:00:00Z'",
+                splits.get(1).getString(InfluxDBKey.QUERY_SQL));
+    }
+
+    @Test
+    public void testTimeFilterRequired()
+    {
+        Configuration conf = config();
+        conf.set(InfluxDBKey.QUERY_SQL, "select * from cpu");
+        conf.set(InfluxDBKey.RANGE, Collections.singletonList("-1h"));
+        AddaxException e = assertThrows(AddaxException.class, () -> split(conf, 2));
+        assertEquals(InfluxDBReaderErrorCode.ILLEGAL_VALUE, e.getErrorCode());
+    }
+
+    private List<Configuration> split(Configuration conf, int adviceNumber)
+    {
+        InfluxDBReader.Job job = new InfluxDBReader.Job();
+        job.setPluginJobConf(conf);
+        job.init();
+        job.prepare();
+        return job.split(adviceNumber);
+    }
+
+    private static void read(Configuration conf, RecordSender sender)
+    {
+        InfluxDBReader.Task task = new InfluxDBReader.Task();
+        task.setPluginJobConf(conf);
+        task.init();
+        task.startRead(sender);
+    }
+
+    private Configuration config()
+    {
+        return Configuration.from("{\"column\":[\"*\"],\"connection\":[{\"endpoint\":\"" + endpoint + "\",\"database\":\"test\"}]}");
+    }
+
+    private void query(HttpExchange exchange)
+            throws IOException
+    {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : exchange.getRequestURI().getRawQuery().split("&")) {
+            int i = pair.indexOf('=');
+            params.put(pair.substring(0, i), URLDecoder.decode(pair.substring(i + 1), "UTF-8"));
+        }
+        requests.add(params);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (String chunk : chunks) {
+                out.write((chunk + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        }
+        catch (IOException ignored) {
+            // the client stopped reading
+        }
+    }
+
+    private static class ListRecord
+            implements Record
+    {
+        private final List<Column> columns = new ArrayList<>();
+
+        @Override
+        public void addColumn(Column column)
+        {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column)
+        {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i)
+        {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize()
+        {
+            return 0;
+        }
+    }
+
+    private static class CollectingRecordSender
+            implements RecordSender
+    {
+        private final List<Record> records = Collections.synchronizedList(new ArrayList<>());
+
+        List<String> rows()
+        {
+            List<String> rows = new ArrayList<>();
+            for (Record record : records) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 0; i < record.getColumnNumber(); i++) {
+                    row.append(i == 0 ? "" : "|").append(record.getColumn(i).asString());
+                }
+                rows.add(row.toString());
+            }
+            return rows;
+        }
+
+        @Override
+        public Record createRecord()
+        {
+            return new ListRecord();
+        }
+
+        @Override
+        public void sendToWriter(Record record)
+        {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void terminate() {}
+
+        @Override
+        public void shutdown() {}
+    }
+}
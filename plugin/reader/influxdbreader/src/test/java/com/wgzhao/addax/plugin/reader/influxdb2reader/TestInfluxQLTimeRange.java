@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.influxdb2reader;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestInfluxQLTimeRange
+{
+    private static final Instant NOW = Instant.parse("2021-03-31T12:00:00Z");
+
+    @Test
+    public void testParse()
+    {
+        assertEquals(NOW, InfluxQLTimeRange.parse(" now() ", NOW));
+        assertEquals(NOW.minus(Duration.ofHours(1)), InfluxQLTimeRange.parse("now() - 1h", NOW));
+        assertEquals(NOW.plus(Duration.ofMinutes(30)), InfluxQLTimeRange.parse("now()+30m", NOW));
+        assertEquals(NOW.minus(Duration.ofDays(7)), InfluxQLTimeRange.parse("-7d", NOW));
+        assertEquals(Instant.parse("2021-01-01T00:00:00Z"), InfluxQLTimeRange.parse("2021-01-01T00:00:00Z", NOW));
+        assertEquals(Instant.parse("2020-12-31T16:00:00Z"), InfluxQLTimeRange.parse("2021-01-01T00:00:00+08:00", NOW));
+        assertEquals(Instant.parse("2021-01-01T00:00:00Z"), InfluxQLTimeRange.parse("2021-01-01", NOW));
+        assertEquals(Instant.ofEpochSecond(1609459200L), InfluxQLTimeRange.parse("1609459200", NOW));
+        // Flux 的写法不是合法的 InfluxQL duration
+        assertThrows(AddaxException.class, () -> InfluxQLTimeRange.parse("-1d12h", NOW));
+        assertThrows(AddaxException.class, () -> InfluxQLTimeRange.parse("yesterday", NOW));
+    }
+
+    @Test
+    public void testParseDuration()
+    {
+        assertEquals(Duration.ofDays(14), InfluxQLTimeRange.parseDuration("2w"));
+        assertEquals(Duration.ofMillis(5), InfluxQLTimeRange.parseDuration("5ms"));
+        assertEquals(Duration.ofNanos(3000), InfluxQLTimeRange.parseDuration("3u"));
+        assertEquals(Duration.ofNanos(3000), InfluxQLTimeRange.parseDuration("3µ"));
+        assertEquals(Duration.ofNanos(7), InfluxQLTimeRange.parseDuration("7ns"));
+        assertThrows(AddaxException.class, () -> InfluxQLTimeRange.parseDuration("1mo"));
+        assertThrows(AddaxException.class, () -> InfluxQLTimeRange.parseDuration("-1h"));
+    }
+
+    @Test
+    public void testSplitByInterval()
+    {
+        Instant start = Instant.parse("2021-01-01T00:00:00Z");
+        List<Instant> bounds = InfluxQLTimeRange.splitByInterval(start, Instant.parse("2021-01-01T20:00:00Z"), "8h");
+        assertEquals(Arrays.asList(start, Instant.parse("2021-01-01T08:00:00Z"), Instant.parse("2021-01-01T16:00:00Z"),
+                Instant.parse("2021-01-01T20:00:00Z")), bounds);
+        assertEquals(2, InfluxQLTimeRange.splitByInterval(start, start.plusSeconds(1), "1d").size());
+        assertThrows(AddaxException.class, () -> InfluxQLTimeRange.splitByInterval(start, start.plusSeconds(1), "0s"));
+    }
+
+    @Test
+    public void testSplitByNumber()
+    {
+        Instant start = Instant.parse("2021-01-01T00:00:00Z");
+        Instant stop = Instant.parse("2021-01-02T00:00:00Z");
+        assertEquals(Arrays.asList(start, Instant.parse("2021-01-01T08:00:00Z"), Instant.parse("2021-01-01T16:00:00Z"), stop),
+                InfluxQLTimeRange.splitByNumber(start, stop, 3));
+        assertEquals(Arrays.asList(start, stop), InfluxQLTimeRange.splitByNumber(start, stop, 0));
+        // 时间范围小于窗口个数时不再切分
+        assertEquals(Arrays.asList(start, start.plusNanos(1)), InfluxQLTimeRange.splitByNumber(start, start.plusNanos(1), 4));
+    }
+}
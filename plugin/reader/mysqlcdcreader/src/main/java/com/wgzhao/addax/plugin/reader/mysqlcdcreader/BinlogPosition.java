@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.mysqlcdcreader;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcErrorCode;
+
+/**
+ * binlog 中的位置, 格式为 {@code 文件名:偏移量}, 比如 {@code mysql-bin.000003:154}
+ */
+public class BinlogPosition
+        implements Comparable<BinlogPosition>
+{
+    private final String file;
+    private final long position;
+
+    public BinlogPosition(String file, long position)
+    {
+        this.file = file;
+        this.position = position;
+    }
+
+    public static BinlogPosition parse(String text)
+    {
+        int index = text == null ? -1 : text.lastIndexOf(':');
+        if (index <= 0) {
+            throw AddaxException.asAddaxException(CdcErrorCode.ILLEGAL_VALUE,
+                    String.format("binlog 位置 [%s] 格式错误, 正确的格式为 文件名:偏移量, 比如 mysql-bin.000003:154", text));
+        }
+        try {
+            return new BinlogPosition(text.substring(0, index).trim(), Long.parseLong(text.substring(index + 1).trim()));
+        }
+        catch (NumberFormatException e) {
+            throw AddaxException.asAddaxException(CdcErrorCode.ILLEGAL_VALUE,
+                    String.format("binlog 位置 [%s] 的偏移量不是数字", text));
+        }
+    }
+
+    public String getFile()
+    {
+        return file;
+    }
+
+    public long getPosition()
+    {
+        return position;
+    }
+
+    /*
+     * binlog 文件名的序号部分至少 6 位, 超过 999999 之后会变成 7 位(mysql-bin.1000000),
+     * 所以序号部分先比较长度再按字符串比较
+     */
+    @Override
+    public int compareTo(BinlogPosition o)
+    {
+        int dot = file.lastIndexOf('.');
+        int otherDot = o.file.lastIndexOf('.');
+        int c = file.substring(0, dot + 1).compareTo(o.file.substring(0, otherDot + 1));
+        if (c == 0) {
+            c = Integer.compare(file.length() - dot, o.file.length() - otherDot);
+        }
+        if (c == 0) {
+            c = file.compareTo(o.file);
+        }
+        return c != 0 ? c : Long.compare(position, o.position);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BinlogPosition)) {
+            return false;
+        }
+        return compareTo((BinlogPosition) o) == 0;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return file.hashCode() * 31 + Long.hashCode(position);
+    }
+
+    @Override
+    public String toString()
+    {
+        return file + ":" + position;
+    }
+}
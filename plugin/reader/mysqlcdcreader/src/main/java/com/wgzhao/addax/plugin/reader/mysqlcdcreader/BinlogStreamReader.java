@@ -0,0 +1,506 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.mysqlcdcreader;
+
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.RotateEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonBinary;
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.element.BoolColumn;
+import com.wgzhao.addax.common.element.BytesColumn;
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.DateColumn;
+import com.wgzhao.addax.common.element.DoubleColumn;
+import com.wgzhao.addax.common.element.LongColumn;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.element.StringColumn;
+import com.wgzhao.addax.common.element.TimestampColumn;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcErrorCode;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcKey;
+import com.wgzhao.addax.rdbms.reader.cdc.ChangeRecord;
+import com.wgzhao.addax.rdbms.util.DBUtil;
+import com.wgzhao.addax.rdbms.util.DataBaseType;
+import com.wgzhao.addax.rdbms.util.RdbmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 以复制客户端的身份从 MySQL 读取 [cdcStart, cdcEnd) 之间的 row 格式 binlog, 把指定表的变更转换为记录.
+ * binlog 事件在客户端线程中接收, 经过有界队列交给 task 线程转换和发送, 写入端变慢时会反压到 MySQL 连接上
+ */
+public class BinlogStreamReader
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BinlogStreamReader.class);
+
+    private static final int QUEUE_SIZE = 1024;
+    private static final long CONNECT_TIMEOUT_MS = 30_000L;
+    private static final BigInteger UNSIGNED_BIGINT_OFFSET = BigInteger.ONE.shiftLeft(64);
+
+    private final Configuration readerSliceConfig;
+    private final TaskPluginCollector taskPluginCollector;
+    private final String jdbcUrl;
+    private final String username;
+    private final String password;
+    private final BinlogPosition start;
+    private final BinlogPosition end;
+
+    // 表名(database.table, 小写) -> 表结构
+    private final Map<String, TableSchema> schemas = new HashMap<>();
+    // binlog 中的 table id -> 表结构, 只包含需要读取的表
+    private final Map<Long, TableSchema> tableIds = new HashMap<>();
+
+    private volatile boolean running = true;
+
+    public BinlogStreamReader(Configuration readerSliceConfig, TaskPluginCollector taskPluginCollector)
+    {
+        this.readerSliceConfig = readerSliceConfig;
+        this.taskPluginCollector = taskPluginCollector;
+        this.jdbcUrl = readerSliceConfig.getString(Key.JDBC_URL);
+        this.username = readerSliceConfig.getString(Key.USERNAME);
+        this.password = readerSliceConfig.getString(Key.PASSWORD);
+        this.start = BinlogPosition.parse(readerSliceConfig.getString(CdcKey.CDC_START));
+        this.end = BinlogPosition.parse(readerSliceConfig.getString(CdcKey.CDC_END));
+    }
+
+    public void read(RecordSender recordSender)
+    {
+        if (start.compareTo(end) >= 0) {
+            LOG.info("No new binlog event between {} and {}.", start, end);
+            return;
+        }
+        loadSchemas();
+        LOG.info("Begin to read binlog from {} to {}.", start, end);
+
+        MysqlCdcReader.JdbcAddress address = MysqlCdcReader.parseJdbcUrl(jdbcUrl);
+        BinaryLogClient client = new BinaryLogClient(address.host, address.port, username, password);
+        client.setServerId(readerSliceConfig.getLong(MysqlCdcKey.SERVER_ID));
+        client.setBinlogFilename(start.getFile());
+        client.setBinlogPosition(start.getPosition());
+        client.setKeepAlive(false);
+        EventDeserializer deserializer = new EventDeserializer();
+        deserializer.setCompatibilityMode(EventDeserializer.CompatibilityMode.DATE_AND_TIME_AS_LONG_MICRO,
+                EventDeserializer.CompatibilityMode.CHAR_AND_BINARY_AS_BYTE_ARRAY);
+        client.setEventDeserializer(deserializer);
+
+        BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        client.registerEventListener(event -> {
+            try {
+                while (running && !queue.offer(event, 100, TimeUnit.MILLISECONDS)) {
+                    // 队列已满, 等待 task 线程消费
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        client.registerLifecycleListener(new BinaryLogClient.AbstractLifecycleListener()
+        {
+            @Override
+            public void onCommunicationFailure(BinaryLogClient client, Exception ex)
+            {
+                failure.set(ex);
+            }
+
+            @Override
+            public void onEventDeserializationFailure(BinaryLogClient client, Exception ex)
+            {
+                failure.set(ex);
+            }
+        });
+
+        try {
+            client.connect(CONNECT_TIMEOUT_MS);
+        }
+        catch (Exception e) {
+            throw AddaxException.asAddaxException(CdcErrorCode.CONNECT_ERROR,
+                    String.format("以复制客户端连接 %s:%d 失败, 请确认用户具有 REPLICATION SLAVE 权限.", address.host, address.port), e);
+        }
+
+        long count = 0;
+        try {
+            String currentFile = start.getFile();
+            while (true) {
+                Event event = queue.poll(1, TimeUnit.SECONDS);
+                if (event == null) {
+                    checkFailure(failure.get(), client);
+                    continue;
+                }
+                EventData data = event.getData();
+                if (data instanceof RotateEventData) {
+                    currentFile = ((RotateEventData) data).getBinlogFilename();
+                    continue;
+                }
+                count += handle(data, recordSender);
+                long nextPosition = ((EventHeaderV4) event.getHeader()).getNextPosition();
+                if (nextPosition > 0 && new BinlogPosition(currentFile, nextPosition).compareTo(end) >= 0) {
+                    break;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AddaxException.asAddaxException(CdcErrorCode.READ_ERROR, "读取 binlog 时被中断", e);
+        }
+        finally {
+            running = false;
+            try {
+                client.disconnect();
+            }
+            catch (IOException e) {
+                LOG.warn("Failed to disconnect from the binlog: {}", e.getMessage());
+            }
+        }
+        LOG.info("Finished reading binlog to {}, {} change(s) read.", end, count);
+    }
+
+    private void checkFailure(Exception failure, BinaryLogClient client)
+    {
+        if (failure != null) {
+            throw AddaxException.asAddaxException(CdcErrorCode.READ_ERROR,
+                    String.format("读取 binlog 失败, 如果是找不到 binlog 文件, 说明 %s 之后的 binlog 已经被清理, 需要删除位置文件后重新做快照.", start),
+                    failure);
+        }
+        if (!client.isConnected()) {
+            throw AddaxException.asAddaxException(CdcErrorCode.READ_ERROR, "binlog 连接在读取到 " + end + " 之前断开");
+        }
+    }
+
+    private int handle(EventData data, RecordSender recordSender)
+    {
+        if (data instanceof TableMapEventData) {
+            TableMapEventData tableMap = (TableMapEventData) data;
+            TableSchema schema = schemas.get(qualify(tableMap.getDatabase(), tableMap.getTable()));
+            if (schema != null) {
+                if (tableMap.getColumnTypes().length != schema.columns.size()) {
+                    throw AddaxException.asAddaxException(CdcErrorCode.READ_ERROR,
+                            String.format("表 [%s] 在 binlog 中有 %d 个字段, 与当前的表结构(%d 个字段)不一致, 不支持读取期间修改表结构.",
+                                    schema.name, tableMap.getColumnTypes().length, schema.columns.size()));
+                }
+                tableIds.put(tableMap.getTableId(), schema);
+            }
+            return 0;
+        }
+        if (data instanceof WriteRowsEventData) {
+            WriteRowsEventData rows = (WriteRowsEventData) data;
+            TableSchema schema = tableIds.get(rows.getTableId());
+            if (schema == null) {
+                return 0;
+            }
+            for (Serializable[] row : rows.getRows()) {
+                send(recordSender, ChangeRecord.INSERT, schema, rows.getIncludedColumns(), row);
+            }
+            return rows.getRows().size();
+        }
+        if (data instanceof UpdateRowsEventData) {
+            UpdateRowsEventData rows = (UpdateRowsEventData) data;
+            TableSchema schema = tableIds.get(rows.getTableId());
+            if (schema == null) {
+                return 0;
+            }
+            for (Map.Entry<Serializable[], Serializable[]> row : rows.getRows()) {
+                send(recordSender, ChangeRecord.UPDATE, schema, rows.getIncludedColumns(), row.getValue());
+            }
+            return rows.getRows().size();
+        }
+        if (data instanceof DeleteRowsEventData) {
+            DeleteRowsEventData rows = (DeleteRowsEventData) data;
+            TableSchema schema = tableIds.get(rows.getTableId());
+            if (schema == null) {
+                return 0;
+            }
+            for (Serializable[] row : rows.getRows()) {
+                send(recordSender, ChangeRecord.DELETE, schema, rows.getIncludedColumns(), row);
+            }
+            return rows.getRows().size();
+        }
+        return 0;
+    }
+
+    private void send(RecordSender recordSender, String operation, TableSchema schema, BitSet includedColumns, Serializable[] row)
+    {
+        // row 中只有 includedColumns 中的字段, binlog_row_image 不是 FULL 时缺失的字段输出为 null
+        Serializable[] values = new Serializable[schema.columns.size()];
+        for (int i = 0, j = 0; i < values.length && j < row.length; i++) {
+            if (includedColumns.get(i)) {
+                values[i] = row[j++];
+            }
+        }
+        Record record = ChangeRecord.create(recordSender, operation);
+        try {
+            for (int index : schema.output) {
+                record.addColumn(toColumn(schema.columns.get(index), values[index]));
+            }
+        }
+        catch (Exception e) {
+            taskPluginCollector.collectDirtyRecord(record, e);
+            return;
+        }
+        recordSender.sendToWriter(record);
+    }
+
+    private void loadSchemas()
+    {
+        MysqlCdcReader.JdbcAddress address = MysqlCdcReader.parseJdbcUrl(jdbcUrl);
+        List<String> columns = readerSliceConfig.getList(Key.COLUMN, String.class);
+        String sql = "SELECT COLUMN_NAME, DATA_TYPE, COLUMN_TYPE FROM information_schema.COLUMNS "
+                + "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? ORDER BY ORDINAL_POSITION";
+        Connection conn = DBUtil.getConnection(DataBaseType.MySql, jdbcUrl, username, password);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (String table : readerSliceConfig.getList(Key.TABLE, String.class)) {
+                String name = ChangeRecord.unquote(table);
+                String database = address.database;
+                int dot = name.indexOf('.');
+                if (dot > 0) {
+                    database = ChangeRecord.unquote(name.substring(0, dot));
+                    name = ChangeRecord.unquote(name.substring(dot + 1));
+                }
+                ps.setString(1, database);
+                ps.setString(2, name);
+                List<ColumnMeta> metas = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        metas.add(new ColumnMeta(rs.getString(1), rs.getString(2), rs.getString(3)));
+                    }
+                }
+                if (metas.isEmpty()) {
+                    throw AddaxException.asAddaxException(CdcErrorCode.ILLEGAL_VALUE,
+                            String.format("表 [%s.%s] 不存在或者没有读取权限.", database, name));
+                }
+                List<String> names = new ArrayList<>(metas.size());
+                for (ColumnMeta meta : metas) {
+                    names.add(meta.name);
+                }
+                TableSchema schema = new TableSchema(database + "." + name, metas, ChangeRecord.selectColumns(columns, names, table));
+                schemas.put(qualify(database, name), schema);
+            }
+        }
+        catch (SQLException e) {
+            throw RdbmsException.asQueryException(e, sql);
+        }
+        finally {
+            DBUtil.closeDBResources(null, conn);
+        }
+    }
+
+    private static String qualify(String database, String table)
+    {
+        return (database + "." + table).toLowerCase();
+    }
+
+    /*
+     * 值的类型由 EventDeserializer 决定: 字符串和二进制为 byte[], 日期和时间为微秒数(DATETIME/DATE/TIME 按 UTC 计算字面值),
+     * DECIMAL 为 BigDecimal, BIT 为 BitSet, ENUM 为序号, SET 为位图
+     */
+    private static Column toColumn(ColumnMeta meta, Serializable value)
+            throws IOException
+    {
+        switch (meta.dataType) {
+            case "tinyint":
+            case "smallint":
+            case "mediumint":
+            case "int":
+            case "integer":
+            case "year":
+                return new LongColumn(value == null ? null : unsigned(meta, ((Number) value).longValue()));
+            case "bigint":
+                if (value != null && meta.unsigned && ((Number) value).longValue() < 0) {
+                    return new LongColumn(BigInteger.valueOf(((Number) value).longValue()).add(UNSIGNED_BIGINT_OFFSET));
+                }
+                return new LongColumn(value == null ? null : ((Number) value).longValue());
+            case "decimal":
+            case "numeric":
+                return new DoubleColumn((BigDecimal) value);
+            case "float":
+            case "double":
+            case "real":
+                return new DoubleColumn(value == null ? null : ((Number) value).doubleValue());
+            case "bit":
+                if (value == null) {
+                    return meta.columnType.equals("bit(1)") ? new BoolColumn((Boolean) null) : new LongColumn((Long) null);
+                }
+                long[] bits = ((BitSet) value).toLongArray();
+                long bit = bits.length == 0 ? 0L : bits[0];
+                return meta.columnType.equals("bit(1)") ? new BoolColumn(bit != 0) : new LongColumn(bit);
+            case "date":
+                return value == null ? new DateColumn((java.sql.Date) null)
+                        : new DateColumn(java.sql.Date.valueOf(utcDateTime((Long) value).toLocalDate()));
+            case "time":
+                return value == null ? new DateColumn((Time) null) : new DateColumn(Time.valueOf(utcDateTime((Long) value).toLocalTime()));
+            case "datetime":
+                return new TimestampColumn(value == null ? null : Timestamp.valueOf(utcDateTime((Long) value)));
+            case "timestamp":
+                if (value == null) {
+                    return new TimestampColumn((Timestamp) null);
+                }
+                long micros = (Long) value;
+                return new TimestampColumn(Timestamp.from(Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                        Math.floorMod(micros, 1_000_000L) * 1000L)));
+            case "enum":
+                if (value == null || ((Number) value).intValue() == 0) {
+                    return new StringColumn(null);
+                }
+                return new StringColumn(meta.values.get(((Number) value).intValue() - 1));
+            case "set":
+                if (value == null) {
+                    return new StringColumn(null);
+                }
+                long mask = ((Number) value).longValue();
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < meta.values.size(); i++) {
+                    if ((mask & (1L << i)) != 0) {
+                        sb.append(sb.length() == 0 ? "" : ",").append(meta.values.get(i));
+                    }
+                }
+                return new StringColumn(sb.toString());
+            case "json":
+                return new StringColumn(value == null ? null : JsonBinary.parseAsString((byte[]) value));
+            case "binary":
+            case "varbinary":
+            case "tinyblob":
+            case "blob":
+            case "mediumblob":
+            case "longblob":
+            case "geometry":
+                return new BytesColumn((byte[]) value);
+            default:
+                if (value == null) {
+                    return new StringColumn(null);
+                }
+                return new StringColumn(value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : value.toString());
+        }
+    }
+
+    private static long unsigned(ColumnMeta meta, long value)
+    {
+        if (!meta.unsigned || value >= 0) {
+            return value;
+        }
+        switch (meta.dataType) {
+            case "tinyint":
+                return value + (1L << 8);
+            case "smallint":
+                return value + (1L << 16);
+            case "mediumint":
+                return value + (1L << 24);
+            default:
+                return value + (1L << 32);
+        }
+    }
+
+    private static LocalDateTime utcDateTime(long micros)
+    {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    private static class TableSchema
+    {
+        private final String name;
+        private final List<ColumnMeta> columns;
+        private final int[] output;
+
+        TableSchema(String name, List<ColumnMeta> columns, int[] output)
+        {
+            this.name = name;
+            this.columns = columns;
+            this.output = output;
+        }
+    }
+
+    private static class ColumnMeta
+    {
+        private final String name;
+        private final String dataType;
+        private final String columnType;
+        private final boolean unsigned;
+        // ENUM 和 SET 的可选值
+        private final List<String> values = new ArrayList<>();
+
+        ColumnMeta(String name, String dataType, String columnType)
+        {
+            this.name = name;
+            this.dataType = dataType.toLowerCase();
+            this.columnType = columnType.toLowerCase();
+            this.unsigned = this.columnType.contains("unsigned");
+            if ("enum".equals(this.dataType) || "set".equals(this.dataType)) {
+                // enum('a','b''c') -> [a, b'c]
+                String list = columnType.substring(columnType.indexOf('(') + 1, columnType.lastIndexOf(')'));
+                StringBuilder sb = new StringBuilder();
+                boolean quoted = false;
+                for (int i = 0; i < list.length(); i++) {
+                    char c = list.charAt(i);
+                    if (c == '\'') {
+                        if (quoted && i + 1 < list.length() && list.charAt(i + 1) == '\'') {
+                            sb.append('\'');
+                            i++;
+                        }
+                        else {
+                            quoted = !quoted;
+                        }
+                    }
+                    else if (c == ',' && !quoted) {
+                        values.add(sb.toString());
+                        sb.setLength(0);
+                    }
+                    else {
+                        sb.append(c);
+                    }
+                }
+                values.add(sb.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.mysqlcdcreader;
+
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.spi.Reader;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.reader.CommonRdbmsReader;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcErrorCode;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcKey;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcSnapshotTask;
+import com.wgzhao.addax.rdbms.reader.cdc.PositionStore;
+import com.wgzhao.addax.rdbms.util.DBUtil;
+import com.wgzhao.addax.rdbms.util.DataBaseType;
+import com.wgzhao.addax.rdbms.util.RdbmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 读取 MySQL binlog 中的变更数据. 每次运行读取从上一次结束位置到作业开始时 binlog 末尾之间的变更,
+ * 作业成功后保存结束位置, 下一次运行从该位置继续
+ */
+public class MysqlCdcReader
+        extends Reader
+{
+    private static final DataBaseType DATABASE_TYPE = DataBaseType.MySql;
+
+    private static final Pattern JDBC_URL_PATTERN = Pattern.compile("^jdbc:mysql://([^/:,?]+)(?::(\\d+))?[^/]*/([^?;]*)");
+
+    static JdbcAddress parseJdbcUrl(String jdbcUrl)
+    {
+        Matcher matcher = JDBC_URL_PATTERN.matcher(jdbcUrl);
+        if (!matcher.find()) {
+            throw AddaxException.asAddaxException(CdcErrorCode.ILLEGAL_VALUE,
+                    String.format("无法从 jdbcUrl [%s] 中解析出主机和数据库, 正确的格式为 jdbc:mysql://host:port/database", jdbcUrl));
+        }
+        int port = matcher.group(2) == null ? 3306 : Integer.parseInt(matcher.group(2));
+        return new JdbcAddress(matcher.group(1), port, matcher.group(3));
+    }
+
+    static class JdbcAddress
+    {
+        final String host;
+        final int port;
+        final String database;
+
+        JdbcAddress(String host, int port, String database)
+        {
+            this.host = host;
+            this.port = port;
+            this.database = database;
+        }
+    }
+
+    public static class Job
+            extends Reader.Job
+    {
+        private static final Logger LOG = LoggerFactory.getLogger(Job.class);
+
+        private Configuration originalConfig = null;
+        private CommonRdbmsReader.Job commonRdbmsReaderJob;
+        private PositionStore positionStore;
+        private String jdbcUrl;
+        private List<String> tables;
+        private String mode;
+        private BinlogPosition start;
+        private BinlogPosition end;
+
+        @Override
+        public void init()
+        {
+            this.originalConfig = getPluginJobConf();
+            originalConfig.getNecessaryValue(Key.USERNAME, CdcErrorCode.REQUIRED_VALUE);
+            originalConfig.getNecessaryValue(Key.COLUMN, CdcErrorCode.REQUIRED_VALUE);
+            List<Object> connections = originalConfig.getList(Key.CONNECTION, Object.class);
+            if (connections == null || connections.size() != 1) {
+                throw AddaxException.asAddaxException(CdcErrorCode.ILLEGAL_VALUE, "mysqlcdcreader 的 connection 只能配置一个数据源.");
+            }
+            Configuration connConf = Configuration.from(connections.get(0).toString());
+            List<String> jdbcUrls = connConf.getList(Key.JDBC_URL, String.class);
+            this.tables = connConf.getList(Key.TABLE, String.class);
+            if (jdbcUrls == null || jdbcUrls.isEmpty() || tables == null || tables.isEmpty()) {
+                throw AddaxException.asAddaxException(CdcErrorCode.REQUIRED_VALUE, "mysqlcdcreader 需要配置 jdbcUrl 和 table, 不支持 querySql.");
+            }
+            this.jdbcUrl = jdbcUrls.get(0);
+            parseJdbcUrl(jdbcUrl);
+
+            this.end = currentPosition();
+            this.positionStore = new PositionStore(jdbcUrl + "|" + String.join(",", tables));
+            String saved = positionStore.load();
+            if (saved != null) {
+                this.mode = CdcKey.MODE_STREAM;
+                this.start = BinlogPosition.parse(saved);
+            }
+            else if (originalConfig.getBool(CdcKey.SNAPSHOT, true)) {
+                // 快照之前记录 binlog 位置, 下一次运行从该位置开始, 快照期间的变更会被重复应用
+                this.mode = CdcKey.MODE_SNAPSHOT;
+                this.start = end;
+            }
+            else {
+                this.mode = CdcKey.MODE_STREAM;
+                String startPosition = originalConfig.getString(CdcKey.START_POSITION);
+                this.start = startPosition == null ? end : BinlogPosition.parse(startPosition);
+            }
+            LOG.info("The position file is {}, mode: {}, read binlog from {} to {}.",
+                    positionStore.getFile().getAbsolutePath(), mode, start, end);
+
+            if (CdcKey.MODE_SNAPSHOT.equals(mode)) {
+                this.originalConfig.set(Key.FETCH_SIZE, Integer.MIN_VALUE);
+                this.commonRdbmsReaderJob = new CommonRdbmsReader.Job(DATABASE_TYPE);
+                this.originalConfig = this.commonRdbmsReaderJob.init(this.originalConfig);
+            }
+        }
+
+        @Override
+        public void preCheck()
+        {
+            if (commonRdbmsReaderJob != null) {
+                this.commonRdbmsReaderJob.preCheck(this.originalConfig, DATABASE_TYPE);
+            }
+        }
+
+        @Override
+        public List<Configuration> split(int adviceNumber)
+        {
+            if (CdcKey.MODE_SNAPSHOT.equals(mode)) {
+                List<Configuration> splits = this.commonRdbmsReaderJob.split(this.originalConfig, adviceNumber);
+                for (Configuration split : splits) {
+                    split.set(CdcKey.CDC_MODE, mode);
+                }
+                return splits;
+            }
+            // binlog 只能顺序读取, 因此只有一个 task
+            Configuration split = originalConfig.clone();
+            split.remove(Key.CONNECTION);
+            split.set(Key.JDBC_URL, jdbcUrl);
+            split.set(Key.TABLE, tables);
+            split.set(CdcKey.CDC_MODE, mode);
+            split.set(CdcKey.CDC_START, start.toString());
+            split.set(CdcKey.CDC_END, end.toString());
+            split.set(MysqlCdcKey.SERVER_ID, originalConfig.getLong(MysqlCdcKey.SERVER_ID,
+                    5400L + Math.abs((long) positionStore.getFile().getName().hashCode()) % 1000));
+            return Collections.singletonList(split);
+        }
+
+        @Override
+        public void post()
+        {
+            if (commonRdbmsReaderJob != null) {
+                this.commonRdbmsReaderJob.post(this.originalConfig);
+            }
+            positionStore.save(end.toString());
+        }
+
+        @Override
+        public void destroy()
+        {
+            if (commonRdbmsReaderJob != null) {
+                this.commonRdbmsReaderJob.destroy(this.originalConfig);
+            }
+        }
+
+        private BinlogPosition currentPosition()
+        {
+            String username = originalConfig.getString(Key.USERNAME);
+            String password = originalConfig.getString(Key.PASSWORD);
+            Connection conn = DBUtil.getConnection(DATABASE_TYPE, jdbcUrl, username, password);
+            String sql = "SHOW MASTER STATUS";
+            try (Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT @@binlog_format")) {
+                    if (rs.next() && !"ROW".equalsIgnoreCase(rs.getString(1))) {
+                        throw AddaxException.asAddaxException(CdcErrorCode.ILLEGAL_VALUE,
+                                String.format("binlog_format 为 %s, mysqlcdcreader 要求 binlog_format 为 ROW.", rs.getString(1)));
+                    }
+                }
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    if (!rs.next()) {
+                        throw AddaxException.asAddaxException(CdcErrorCode.ILLEGAL_VALUE,
+                                "SHOW MASTER STATUS 没有返回结果, 请确认数据库开启了 binlog(log_bin) 并且用户具有 REPLICATION CLIENT 权限.");
+                    }
+                    return new BinlogPosition(rs.getString("File"), rs.getLong("Position"));
+                }
+            }
+            catch (SQLException e) {
+                throw RdbmsException.asQueryException(e, sql);
+            }
+            finally {
+                DBUtil.closeDBResources(null, conn);
+            }
+        }
+    }
+
+    public static class Task
+            extends Reader.Task
+    {
+        private Configuration readerSliceConfig;
+        private CommonRdbmsReader.Task commonRdbmsReaderTask;
+        private BinlogStreamReader binlogStreamReader;
+
+        @Override
+        public void init()
+        {
+            this.readerSliceConfig = getPluginJobConf();
+            if (CdcKey.MODE_SNAPSHOT.equals(readerSliceConfig.getString(CdcKey.CDC_MODE))) {
+                this.commonRdbmsReaderTask = new CdcSnapshotTask(DATABASE_TYPE, getTaskGroupId(), getTaskId());
+                this.commonRdbmsReaderTask.init(this.readerSliceConfig);
+            }
+            else {
+                this.binlogStreamReader = new BinlogStreamReader(readerSliceConfig, getTaskPluginCollector());
+            }
+        }
+
+        @Override
+        public void startRead(RecordSender recordSender)
+        {
+            if (commonRdbmsReaderTask != null) {
+                int fetchSize = this.readerSliceConfig.getInt(Key.FETCH_SIZE);
+                this.commonRdbmsReaderTask.startRead(this.readerSliceConfig, recordSender, getTaskPluginCollector(), fetchSize);
+            }
+            else {
+                this.binlogStreamReader.read(recordSender);
+            }
+        }
+
+        @Override
+        public void post()
+        {
+            if (commonRdbmsReaderTask != null) {
+                this.commonRdbmsReaderTask.post(this.readerSliceConfig);
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            if (commonRdbmsReaderTask != null) {
+                this.commonRdbmsReaderTask.destroy(this.readerSliceConfig);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.mysqlcdcreader;
+
+import com.wgzhao.addax.common.exception.AddaxException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestBinlogPosition
+{
+    @Test
+    public void testParse()
+    {
+        BinlogPosition position = BinlogPosition.parse(" mysql-bin.000003 : 154 ");
+        assertEquals("mysql-bin.000003", position.getFile());
+        assertEquals(154L, position.getPosition());
+        assertEquals("mysql-bin.000003:154", position.toString());
+        assertEquals(position, BinlogPosition.parse(position.toString()));
+    }
+
+    @Test
+    public void testParseUsesLastColon()
+    {
+        BinlogPosition position = BinlogPosition.parse("/var/lib/mysql:bin/mysql-bin.000001:4");
+        assertEquals("/var/lib/mysql:bin/mysql-bin.000001", position.getFile());
+        assertEquals(4L, position.getPosition());
+    }
+
+    @Test
+    public void testParseInvalid()
+    {
+        assertThrows(AddaxException.class, () -> BinlogPosition.parse(null));
+        assertThrows(AddaxException.class, () -> BinlogPosition.parse("mysql-bin.000003"));
+        assertThrows(AddaxException.class, () -> BinlogPosition.parse(":154"));
+        assertThrows(AddaxException.class, () -> BinlogPosition.parse("mysql-bin.000003:"));
+        assertThrows(AddaxException.class, () -> BinlogPosition.parse("mysql-bin.000003:abc"));
+    }
+
+    @Test
+    public void testOrdering()
+    {
+        BinlogPosition a = BinlogPosition.parse("mysql-bin.000003:154");
+        BinlogPosition b = BinlogPosition.parse("mysql-bin.000003:4096");
+        BinlogPosition c = BinlogPosition.parse("mysql-bin.000004:4");
+        BinlogPosition d = BinlogPosition.parse("mysql-bin.999999:4");
+        BinlogPosition e = BinlogPosition.parse("mysql-bin.1000000:4");
+
+        List<BinlogPosition> positions = new ArrayList<>(Arrays.asList(e, c, a, d, b));
+        Collections.sort(positions);
+        assertEquals(Arrays.asList(a, b, c, d, e), positions);
+
+        assertTrue(a.compareTo(b) < 0);
+        assertTrue(b.compareTo(c) < 0);
+        assertTrue(d.compareTo(e) < 0);
+        assertTrue(e.compareTo(d) > 0);
+    }
+
+    @Test
+    public void testEquality()
+    {
+        BinlogPosition a = new BinlogPosition("mysql-bin.000003", 154);
+        BinlogPosition b = BinlogPosition.parse("mysql-bin.000003:154");
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(0, a.compareTo(b));
+        assertNotEquals(a, new BinlogPosition("mysql-bin.000003", 155));
+        assertNotEquals(a, new BinlogPosition("mysql-bin.000004", 154));
+    }
+}
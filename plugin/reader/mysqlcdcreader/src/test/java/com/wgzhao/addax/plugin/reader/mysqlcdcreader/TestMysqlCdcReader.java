@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.mysqlcdcreader;
+
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the reader against a real MySQL with binlog_format=ROW, skipped unless one is given by
+ * <pre>
+ * mvn test -pl plugin/reader/mysqlcdcreader -Dmysqlcdc.jdbcUrl=jdbc:mysql://127.0.0.1:3306/test \
+ *     -Dmysqlcdc.username=root -Dmysqlcdc.password=...
+ * </pre>
+ * The user needs the REPLICATION SLAVE and REPLICATION CLIENT privileges, the test creates and drops the table
+ * {@code addax_cdc_test}.
+ */
+public class TestMysqlCdcReader
+{
+    private static final String TABLE = "addax_cdc_test";
+
+    private String jdbcUrl;
+    private String username;
+    private String password;
+    private String addaxHome;
+    private Path home;
+    private Connection conn;
+
+    @BeforeEach
+    public void setUp()
+            throws IOException, SQLException
+    {
+        jdbcUrl = System.getProperty("mysqlcdc.jdbcUrl");
+        assumeTrue(jdbcUrl != null, "set -Dmysqlcdc.jdbcUrl to run against a MySQL server");
+        username = System.getProperty("mysqlcdc.username", "root");
+        password = System.getProperty("mysqlcdc.password", "");
+
+        // the positions are saved under ${addax.home}/cdc
+        addaxHome = System.getProperty("addax.home");
+        home = Files.createTempDirectory("mysqlcdc");
+        System.setProperty("addax.home", home.toString());
+
+        conn = DriverManager.getConnection(jdbcUrl, username, password);
+        execute("DROP TABLE IF EXISTS " + TABLE);
+        execute("CREATE TABLE " + TABLE + " (id INT PRIMARY KEY, name VARCHAR(20))");
+    }
+
+    @AfterEach
+    public void tearDown()
+            throws IOException, SQLException
+    {
+        if (conn != null) {
+            execute("DROP TABLE IF EXISTS " + TABLE);
+            conn.close();
+        }
+        if (home != null) {
+            File[] files = new File(home.toFile(), "cdc").listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    Files.delete(file.toPath());
+                }
+            }
+            Files.deleteIfExists(home.resolve("cdc"));
+            Files.delete(home);
+            if (addaxHome == null) {
+                System.clearProperty("addax.home");
+            }
+            else {
+                System.setProperty("addax.home", addaxHome);
+            }
+        }
+    }
+
+    @Test
+    public void testReadBinlogUpToMasterStatusAndResume()
+            throws SQLException
+    {
+        BinlogPosition before = masterStatus();
+        execute("INSERT INTO " + TABLE + " VALUES (1, 'a'), (2, 'b'), (3, 'c')");
+        execute("UPDATE " + TABLE + " SET name = 'bb' WHERE id = 2");
+        execute("DELETE FROM " + TABLE + " WHERE id = 3");
+
+        Configuration jobConf = jobConf();
+        jobConf.set(CdcKey.SNAPSHOT, false);
+        jobConf.set(CdcKey.START_POSITION, before.toString());
+        MysqlCdcReader.Job job = new MysqlCdcReader.Job();
+        job.setPluginJobConf(jobConf);
+        job.init();
+        // the end position is the binlog end when the job starts
+        BinlogPosition end = masterStatus();
+        Configuration split = job.split(1).get(0);
+        assertEquals(before.toString(), split.getString(CdcKey.CDC_START));
+        assertEquals(end.toString(), split.getString(CdcKey.CDC_END));
+
+        // a change after the job started belongs to the next run
+        execute("INSERT INTO " + TABLE + " VALUES (4, 'd')");
+
+        assertEquals(Arrays.asList("INSERT|1|a", "INSERT|2|b", "INSERT|3|c", "UPDATE|2|bb", "DELETE|3|c"), read(split));
+
+        // the next run starts from the saved end position
+        job.post();
+        MysqlCdcReader.Job next = new MysqlCdcReader.Job();
+        next.setPluginJobConf(jobConf());
+        next.init();
+        Configuration nextSplit = next.split(1).get(0);
+        assertEquals(end.toString(), nextSplit.getString(CdcKey.CDC_START));
+        assertEquals(Collections.singletonList("INSERT|4|d"), read(nextSplit));
+    }
+
+    @Test
+    public void testNothingToReadWithoutChanges()
+    {
+        Configuration jobConf = jobConf();
+        jobConf.set(CdcKey.SNAPSHOT, false);
+        MysqlCdcReader.Job job = new MysqlCdcReader.Job();
+        job.setPluginJobConf(jobConf);
+        job.init();
+        Configuration split = job.split(1).get(0);
+        assertEquals(split.getString(CdcKey.CDC_START), split.getString(CdcKey.CDC_END));
+        assertEquals(Collections.emptyList(), read(split));
+    }
+
+    private List<String> read(Configuration split)
+    {
+        List<String> rows = new ArrayList<>();
+        MysqlCdcReader.Task task = new MysqlCdcReader.Task();
+        task.setPluginJobConf(split);
+        task.setTaskPluginCollector(new FailingPluginCollector());
+        task.init();
+        // the read must stop at the end position instead of waiting for new events
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> task.startRead(new CollectingRecordSender(rows)));
+        task.post();
+        task.destroy();
+        return rows;
+    }
+
+    private Configuration jobConf()
+    {
+        Configuration conf = Configuration.from("{\"column\": [\"*\"], \"connection\": [{\"table\": [\"" + TABLE + "\"]}]}");
+        conf.set(Key.USERNAME, username);
+        conf.set(Key.PASSWORD, password);
+        conf.set(Key.CONNECTION + "[0]." + Key.JDBC_URL, Collections.singletonList(jdbcUrl));
+        return conf;
+    }
+
+    private BinlogPosition masterStatus()
+            throws SQLException
+    {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SHOW MASTER STATUS")) {
+            assumeTrue(rs.next(), "the binlog is not enabled");
+            return new BinlogPosition(rs.getString("File"), rs.getLong("Position"));
+        }
+    }
+
+    private void execute(String sql)
+            throws SQLException
+    {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static class ListRecord
+            implements Record
+    {
+        private final List<Column> columns = new ArrayList<>();
+
+        @Override
+        public void addColumn(Column column)
+        {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column)
+        {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i)
+        {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize()
+        {
+            return 0;
+        }
+    }
+
+    private static class CollectingRecordSender
+            implements RecordSender
+    {
+        private final List<String> rows;
+
+        CollectingRecordSender(List<String> rows)
+        {
+            this.rows = rows;
+        }
+
+        @Override
+        public Record createRecord()
+        {
+            return new ListRecord();
+        }
+
+        @Override
+        public void sendToWriter(Record record)
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < record.getColumnNumber(); i++) {
+                if (i > 0) {
+                    sb.append('|');
+                }
+                sb.append(record.getColumn(i).asString());
+            }
+            rows.add(sb.toString());
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void terminate() {}
+
+        @Override
+        public void shutdown() {}
+    }
+
+    private static class FailingPluginCollector
+            extends TaskPluginCollector
+    {
+        @Override
+        public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage)
+        {
+            throw new AssertionError("unexpected dirty record: " + errorMessage, t);
+        }
+
+        @Override
+        public void collectMessage(String key, String value) {}
+    }
+}
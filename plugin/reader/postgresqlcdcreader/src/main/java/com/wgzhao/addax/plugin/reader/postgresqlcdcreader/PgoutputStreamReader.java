@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.postgresqlcdcreader;
+
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.element.BoolColumn;
+import com.wgzhao.addax.common.element.BytesColumn;
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.DateColumn;
+import com.wgzhao.addax.common.element.DoubleColumn;
+import com.wgzhao.addax.common.element.LongColumn;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.element.StringColumn;
+import com.wgzhao.addax.common.element.TimestampColumn;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcKey;
+import com.wgzhao.addax.rdbms.reader.cdc.ChangeRecord;
+import com.wgzhao.addax.rdbms.util.DBUtil;
+import com.wgzhao.addax.rdbms.util.DataBaseType;
+import com.wgzhao.addax.rdbms.util.RdbmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 通过 pg_logical_slot_peek_binary_changes 读取复制槽中 [confirmed_flush_lsn, cdcEnd] 之间的变更, 按 pgoutput 协议(版本 1)解码.
+ * peek 不会推进复制槽, 作业成功后由 Job.post 把复制槽推进到 cdcEnd
+ */
+public class PgoutputStreamReader
+{
+    private static final Logger LOG = LoggerFactory.getLogger(PgoutputStreamReader.class);
+
+    private static final String CHANGES_SQL = "SELECT data FROM pg_logical_slot_peek_binary_changes(?, ?::pg_lsn, NULL, "
+            + "'proto_version', '1', 'publication_names', ?)";
+    private static final int FETCH_SIZE = 1024;
+
+    private final Configuration readerSliceConfig;
+    private final TaskPluginCollector taskPluginCollector;
+    private final String jdbcUrl;
+    private final String username;
+    private final String password;
+    private final List<String> columns;
+
+    // relation 消息中的表结构, key 为表的 oid
+    private final Map<Integer, Relation> relations = new HashMap<>();
+    // 需要读取的表的 oid
+    final Set<Integer> tableOids = new HashSet<>();
+
+    public PgoutputStreamReader(Configuration readerSliceConfig, TaskPluginCollector taskPluginCollector)
+    {
+        this.readerSliceConfig = readerSliceConfig;
+        this.taskPluginCollector = taskPluginCollector;
+        this.jdbcUrl = readerSliceConfig.getString(Key.JDBC_URL);
+        this.username = readerSliceConfig.getString(Key.USERNAME);
+        this.password = readerSliceConfig.getString(Key.PASSWORD);
+        this.columns = readerSliceConfig.getList(Key.COLUMN, String.class);
+    }
+
+    public void read(RecordSender recordSender)
+    {
+        String slot = readerSliceConfig.getString(PostgresqlCdcKey.SLOT_NAME);
+        String end = readerSliceConfig.getString(CdcKey.CDC_END);
+        LOG.info("Begin to read the changes of slot {} from {} to {}.", slot, readerSliceConfig.getString(CdcKey.CDC_START), end);
+        Connection conn = DBUtil.getConnection(DataBaseType.PostgreSQL, jdbcUrl, username, password);
+        long count = 0;
+        try {
+            loadTableOids(conn);
+            // 游标方式读取需要关闭自动提交; 时区设置为 UTC 以便解析 timestamptz 的文本
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET TimeZone TO 'UTC'");
+            }
+            try (PreparedStatement ps = conn.prepareStatement(CHANGES_SQL)) {
+                ps.setFetchSize(FETCH_SIZE);
+                ps.setString(1, slot);
+                ps.setString(2, end);
+                ps.setString(3, readerSliceConfig.getString(PostgresqlCdcKey.PUBLICATION));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        count += decode(ByteBuffer.wrap(rs.getBytes(1)), recordSender);
+                    }
+                }
+            }
+            conn.commit();
+        }
+        catch (SQLException e) {
+            throw RdbmsException.asQueryException(e, CHANGES_SQL);
+        }
+        finally {
+            DBUtil.closeDBResources(null, conn);
+        }
+        LOG.info("Finished reading the changes of slot {} to {}, {} change(s) read.", slot, end, count);
+    }
+
+    private void loadTableOids(Connection conn)
+            throws SQLException
+    {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT ?::regclass::oid")) {
+            for (String table : readerSliceConfig.getList(Key.TABLE, String.class)) {
+                ps.setString(1, table);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    tableOids.add(rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    int decode(ByteBuffer buf, RecordSender recordSender)
+    {
+        char type = (char) buf.get();
+        switch (type) {
+            case 'R':
+                Relation relation = new Relation(buf);
+                if (tableOids.contains(relation.oid)) {
+                    relation.output = ChangeRecord.selectColumns(columns, relation.columnNames, relation.name);
+                    relations.put(relation.oid, relation);
+                }
+                return 0;
+            case 'I':
+                return emit(ChangeRecord.INSERT, buf, recordSender);
+            case 'U':
+                return emit(ChangeRecord.UPDATE, buf, recordSender);
+            case 'D':
+                return emit(ChangeRecord.DELETE, buf, recordSender);
+            case 'T':
+                LOG.warn("TRUNCATE is not a row change and is ignored.");
+                return 0;
+            default:
+                // B(begin), C(commit), O(origin), Y(type) 与数据无关
+                return 0;
+        }
+    }
+
+    /*
+     * INSERT: relid 'N' TupleData
+     * UPDATE: relid ['K'|'O' TupleData] 'N' TupleData
+     * DELETE: relid 'K'|'O' TupleData, 只有 'K' 时非主键字段为 null
+     */
+    private int emit(String operation, ByteBuffer buf, RecordSender recordSender)
+    {
+        Relation relation = relations.get(buf.getInt());
+        if (relation == null) {
+            return 0;
+        }
+        char kind = (char) buf.get();
+        String[] values = readTuple(buf);
+        if (ChangeRecord.UPDATE.equals(operation) && kind != 'N') {
+            buf.get();
+            values = readTuple(buf);
+        }
+        Record record = ChangeRecord.create(recordSender, operation);
+        try {
+            for (int index : relation.output) {
+                record.addColumn(toColumn(relation.typeOids[index], values[index]));
+            }
+        }
+        catch (Exception e) {
+            taskPluginCollector.collectDirtyRecord(record, e);
+            return 1;
+        }
+        recordSender.sendToWriter(record);
+        return 1;
+    }
+
+    /*
+     * 'n' 为 null, 'u' 为未修改的 TOAST 值(表没有设置 REPLICA IDENTITY FULL 时出现), 都输出为 null; 't' 为文本格式的值
+     */
+    private static String[] readTuple(ByteBuffer buf)
+    {
+        String[] values = new String[buf.getShort()];
+        for (int i = 0; i < values.length; i++) {
+            char kind = (char) buf.get();
+            if (kind == 't') {
+                byte[] bytes = new byte[buf.getInt()];
+                buf.get(bytes);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return values;
+    }
+
+    private static String readString(ByteBuffer buf)
+    {
+        int start = buf.position();
+        while (buf.get() != 0) {
+            // 以 \0 结尾
+        }
+        return new String(buf.array(), start, buf.position() - start - 1, StandardCharsets.UTF_8);
+    }
+
+    private static Column toColumn(int typeOid, String value)
+    {
+        switch (typeOid) {
+            case 16:
+                return new BoolColumn(value == null ? null : "t".equals(value));
+            case 20:
+            case 21:
+            case 23:
+            case 26:
+                return new LongColumn(value);
+            case 700:
+            case 701:
+            case 1700:
+                return new DoubleColumn(value);
+            case 1082:
+                return new DateColumn(value == null ? null : java.sql.Date.valueOf(value));
+            case 1083:
+                return new DateColumn(value == null ? null : Time.valueOf(LocalTime.parse(value)));
+            case 1114:
+                return new TimestampColumn(value == null ? null : Timestamp.valueOf(value));
+            case 1184:
+                if (value == null) {
+                    return new TimestampColumn((Timestamp) null);
+                }
+                // 会话时区为 UTC, 文本格式为 2021-01-01 08:00:00.123+00
+                Timestamp utc = Timestamp.valueOf(value.substring(0, value.lastIndexOf('+')));
+                return new TimestampColumn(Timestamp.from(utc.toLocalDateTime().toInstant(ZoneOffset.UTC)));
+            case 17:
+                return new BytesColumn(value == null ? null : hexToBytes(value));
+            default:
+                return new StringColumn(value);
+        }
+    }
+
+    // bytea 的 hex 输出格式: \x0a1b...
+    private static byte[] hexToBytes(String value)
+    {
+        byte[] bytes = new byte[(value.length() - 2) / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(value.substring(2 + i * 2, 4 + i * 2), 16);
+        }
+        return bytes;
+    }
+
+    private static class Relation
+    {
+        private final int oid;
+        private final String name;
+        private final List<String> columnNames = new ArrayList<>();
+        private final int[] typeOids;
+        private int[] output;
+
+        // relid namespace name replicaIdentity ncols {flags name typeOid typmod}
+        Relation(ByteBuffer buf)
+        {
+            this.oid = buf.getInt();
+            String namespace = readString(buf);
+            this.name = namespace + "." + readString(buf);
+            buf.get();
+            this.typeOids = new int[buf.getShort()];
+            for (int i = 0; i < typeOids.length; i++) {
+                buf.get();
+                columnNames.add(readString(buf));
+                typeOids[i] = buf.getInt();
+                buf.getInt();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.postgresqlcdcreader;
+
+import com.wgzhao.addax.rdbms.reader.cdc.CdcKey;
+
+public final class PostgresqlCdcKey
+        extends CdcKey
+{
+    // 逻辑复制槽名称, 读取位置保存在复制槽中. string type
+    public static final String SLOT_NAME = "slotName";
+    // 发布名称, 不存在时自动创建并包含 table 中的表. string type
+    public static final String PUBLICATION = "publication";
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.postgresqlcdcreader;
+
+import com.wgzhao.addax.common.base.Constant;
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.spi.Reader;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.reader.CommonRdbmsReader;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcErrorCode;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcKey;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcSnapshotTask;
+import com.wgzhao.addax.rdbms.util.DBUtil;
+import com.wgzhao.addax.rdbms.util.DataBaseType;
+import com.wgzhao.addax.rdbms.util.RdbmsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 通过逻辑复制槽(pgoutput)读取 PostgreSQL 的变更数据. 每次运行读取从复制槽的 confirmed_flush_lsn 到作业开始时 WAL 末尾之间的变更,
+ * 作业成功后把复制槽推进到该位置, 读取位置保存在数据库中
+ */
+public class PostgresqlCdcReader
+        extends Reader
+{
+    private static final DataBaseType DATABASE_TYPE = DataBaseType.PostgreSQL;
+
+    public static class Job
+            extends Reader.Job
+    {
+        private static final Logger LOG = LoggerFactory.getLogger(Job.class);
+
+        private Configuration originalConfig = null;
+        private CommonRdbmsReader.Job commonRdbmsReaderJob;
+        private String jdbcUrl;
+        private List<String> tables;
+        private String slot;
+        private String publication;
+        private String mode;
+        private String start;
+        private String end;
+
+        @Override
+        public void init()
+        {
+            this.originalConfig = getPluginJobConf();
+            originalConfig.getNecessaryValue(Key.USERNAME, CdcErrorCode.REQUIRED_VALUE);
+            originalConfig.getNecessaryValue(Key.COLUMN, CdcErrorCode.REQUIRED_VALUE);
+            List<Object> connections = originalConfig.getList(Key.CONNECTION, Object.class);
+            if (connections == null || connections.size() != 1) {
+                throw AddaxException.asAddaxException(CdcErrorCode.ILLEGAL_VALUE, "postgresqlcdcreader 的 connection 只能配置一个数据源.");
+            }
+            Configuration connConf = Configuration.from(connections.get(0).toString());
+            List<String> jdbcUrls = connConf.getList(Key.JDBC_URL, String.class);
+            this.tables = connConf.getList(Key.TABLE, String.class);
+            if (jdbcUrls == null || jdbcUrls.isEmpty() || tables == null || tables.isEmpty()) {
+                throw AddaxException.asAddaxException(CdcErrorCode.REQUIRED_VALUE, "postgresqlcdcreader 需要配置 jdbcUrl 和 table, 不支持 querySql.");
+            }
+            this.jdbcUrl = jdbcUrls.get(0);
+            String defaultName = String.format("addax_%08x", (jdbcUrl + "|" + String.join(",", tables)).hashCode());
+            this.slot = originalConfig.getString(PostgresqlCdcKey.SLOT_NAME, defaultName);
+            this.publication = originalConfig.getString(PostgresqlCdcKey.PUBLICATION, defaultName);
+
+            boolean created = prepareSlot();
+            if (created && originalConfig.getBool(CdcKey.SNAPSHOT, true)) {
+                // 复制槽在快照之前创建, 下一次运行从创建时的位置开始, 快照期间的变更会被重复应用
+                this.mode = CdcKey.MODE_SNAPSHOT;
+            }
+            else {
+                this.mode = CdcKey.MODE_STREAM;
+            }
+            LOG.info("Use the slot {} and the publication {}, mode: {}, read changes from {} to {}.", slot, publication, mode, start, end);
+
+            if (CdcKey.MODE_SNAPSHOT.equals(mode)) {
+                this.originalConfig.set(Key.FETCH_SIZE, originalConfig.getInt(Key.FETCH_SIZE, Constant.DEFAULT_FETCH_SIZE));
+                this.commonRdbmsReaderJob = new CommonRdbmsReader.Job(DATABASE_TYPE);
+                this.originalConfig = this.commonRdbmsReaderJob.init(this.originalConfig);
+            }
+        }
+
+        @Override
+        public void preCheck()
+        {
+            if (commonRdbmsReaderJob != null) {
+                this.commonRdbmsReaderJob.preCheck(this.originalConfig, DATABASE_TYPE);
+            }
+        }
+
+        @Override
+        public List<Configuration> split(int adviceNumber)
+        {
+            if (CdcKey.MODE_SNAPSHOT.equals(mode)) {
+                List<Configuration> splits = this.commonRdbmsReaderJob.split(this.originalConfig, adviceNumber);
+                for (Configuration split : splits) {
+                    split.set(CdcKey.CDC_MODE, mode);
+                }
+                return splits;
+            }
+            // 复制槽只能顺序读取, 因此只有一个 task
+            Configuration split = originalConfig.clone();
+            split.remove(Key.CONNECTION);
+            split.set(Key.JDBC_URL, jdbcUrl);
+            split.set(Key.TABLE, tables);
+            split.set(PostgresqlCdcKey.SLOT_NAME, slot);
+            split.set(PostgresqlCdcKey.PUBLICATION, publication);
+            split.set(CdcKey.CDC_MODE, mode);
+            split.set(CdcKey.CDC_START, start);
+            split.set(CdcKey.CDC_END, end);
+            return Collections.singletonList(split);
+        }
+
+        @Override
+        public void post()
+        {
+            if (commonRdbmsReaderJob != null) {
+                this.commonRdbmsReaderJob.post(this.originalConfig);
+                return;
+            }
+            if (parseLsn(end) <= parseLsn(start)) {
+                return;
+            }
+            String sql = "SELECT pg_replication_slot_advance(?, ?::pg_lsn)";
+            Connection conn = getConnection();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, slot);
+                ps.setString(2, end);
+                ps.execute();
+                LOG.info("Advanced the slot {} to {}.", slot, end);
+            }
+            catch (SQLException e) {
+                throw RdbmsException.asQueryException(e, sql);
+            }
+            finally {
+                DBUtil.closeDBResources(null, conn);
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            if (commonRdbmsReaderJob != null) {
+                this.commonRdbmsReaderJob.destroy(this.originalConfig);
+            }
+        }
+
+        /*
+         * 创建不存在的发布和复制槽, 记录读取的起止位置. 返回复制槽是否为本次新建
+         */
+        private boolean prepareSlot()
+        {
+            Connection conn = getConnection();
+            String sql = null;
+            try {
+                if (conn.getMetaData().getDatabaseMajorVersion() < 11) {
+                    throw AddaxException.asAddaxException(CdcErrorCode.ILLEGAL_VALUE,
+                            "postgresqlcdcreader 需要 PostgreSQL 11 及以上版本(依赖 pg_replication_slot_advance).");
+                }
+                sql = "SELECT 1 FROM pg_publication WHERE pubname = ?";
+                if (queryString(conn, sql, publication) == null) {
+                    sql = String.format("CREATE PUBLICATION \"%s\" FOR TABLE %s", publication, String.join(", ", tables));
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute(sql);
+                    }
+                    LOG.info("Created the publication {} for {}.", publication, tables);
+                }
+                boolean created = false;
+                sql = "SELECT confirmed_flush_lsn::text FROM pg_replication_slots WHERE slot_name = ?";
+                this.start = queryString(conn, sql, slot);
+                if (start == null) {
+                    sql = "SELECT lsn::text FROM pg_create_logical_replication_slot(?, 'pgoutput')";
+                    this.start = queryString(conn, sql, slot);
+                    created = true;
+                    LOG.info("Created the logical replication slot {} at {}.", slot, start);
+                }
+                sql = "SELECT pg_current_wal_lsn()::text";
+                this.end = queryString(conn, sql, null);
+                return created;
+            }
+            catch (SQLException e) {
+                throw RdbmsException.asQueryException(e, sql);
+            }
+            finally {
+                DBUtil.closeDBResources(null, conn);
+            }
+        }
+
+        private Connection getConnection()
+        {
+            return DBUtil.getConnection(DATABASE_TYPE, jdbcUrl, originalConfig.getString(Key.USERNAME), originalConfig.getString(Key.PASSWORD));
+        }
+
+        private static String queryString(Connection conn, String sql, String parameter)
+                throws SQLException
+        {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                if (parameter != null) {
+                    ps.setString(1, parameter);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getString(1) : null;
+                }
+            }
+        }
+
+        // LSN 的文本格式为 高32位/低32位, 都是十六进制
+        private static long parseLsn(String lsn)
+        {
+            int index = lsn.indexOf('/');
+            return (Long.parseLong(lsn.substring(0, index), 16) << 32) | Long.parseLong(lsn.substring(index + 1), 16);
+        }
+    }
+
+    public static class Task
+            extends Reader.Task
+    {
+        private Configuration readerSliceConfig;
+        private CommonRdbmsReader.Task commonRdbmsReaderTask;
+        private PgoutputStreamReader streamReader;
+
+        @Override
+        public void init()
+        {
+            this.readerSliceConfig = getPluginJobConf();
+            if (CdcKey.MODE_SNAPSHOT.equals(readerSliceConfig.getString(CdcKey.CDC_MODE))) {
+                this.commonRdbmsReaderTask = new CdcSnapshotTask(DATABASE_TYPE, getTaskGroupId(), getTaskId());
+                this.commonRdbmsReaderTask.init(this.readerSliceConfig);
+            }
+            else {
+                this.streamReader = new PgoutputStreamReader(readerSliceConfig, getTaskPluginCollector());
+            }
+        }
+
+        @Override
+        public void startRead(RecordSender recordSender)
+        {
+            if (commonRdbmsReaderTask != null) {
+                int fetchSize = this.readerSliceConfig.getInt(Key.FETCH_SIZE);
+                this.commonRdbmsReaderTask.startRead(this.readerSliceConfig, recordSender, getTaskPluginCollector(), fetchSize);
+            }
+            else {
+                this.streamReader.read(recordSender);
+            }
+        }
+
+        @Override
+        public void post()
+        {
+            if (commonRdbmsReaderTask != null) {
+                this.commonRdbmsReaderTask.post(this.readerSliceConfig);
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            if (commonRdbmsReaderTask != null) {
+                this.commonRdbmsReaderTask.destroy(this.readerSliceConfig);
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.postgresqlcdcreader;
+
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import com.wgzhao.addax.common.util.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按 pgoutput 协议(版本 1)构造消息, 检查解码得到的记录
+ */
+public class TestPgoutputStreamReader
+{
+    private static final int TABLE_OID = 16384;
+    private static final int OTHER_OID = 16390;
+
+    // id int8, name text, flag bool, amount numeric, created timestamptz, payload bytea
+    private static final String[] COLUMN_NAMES = {"id", "name", "flag", "amount", "created", "payload"};
+    private static final int[] TYPE_OIDS = {20, 25, 16, 1700, 1184, 17};
+
+    private final List<Record> sent = new ArrayList<>();
+    private final List<Record> dirty = new ArrayList<>();
+    private PgoutputStreamReader reader;
+    private RecordSender recordSender;
+
+    @BeforeEach
+    public void setUp()
+            throws IOException
+    {
+        Configuration conf = Configuration.from("{\"column\":[\"name\",\"id\",\"created\",\"payload\",\"flag\",\"amount\"]}");
+        reader = new PgoutputStreamReader(conf, new CollectingPluginCollector());
+        reader.tableOids.add(TABLE_OID);
+        recordSender = new CollectingRecordSender();
+        assertEquals(0, reader.decode(relation(TABLE_OID, "public", "orders"), recordSender));
+    }
+
+    @Test
+    public void testInsert()
+            throws IOException
+    {
+        ByteBuffer insert = message('I', TABLE_OID, 'N',
+                "42", "张三", "t", "12.50", "2021-01-01 08:00:00.123+00", "\\x0a1bff");
+        assertEquals(1, reader.decode(insert, recordSender));
+
+        Record record = single();
+        assertEquals(7, record.getColumnNumber());
+        assertEquals("INSERT", record.getColumn(0).asString());
+        assertEquals("张三", record.getColumn(1).asString());
+        assertEquals(42L, (long) record.getColumn(2).asLong());
+        assertEquals(Column.Type.TIMESTAMP, record.getColumn(3).getType());
+        assertEquals(Instant.parse("2021-01-01T08:00:00.123Z").toEpochMilli(), record.getColumn(3).asDate().getTime());
+        assertArrayEquals(new byte[] {0x0a, 0x1b, (byte) 0xff}, record.getColumn(4).asBytes());
+        assertTrue(record.getColumn(5).asBoolean());
+        assertEquals(12.5d, record.getColumn(6).asDouble(), 0.0001d);
+    }
+
+    @Test
+    public void testNullAndUnchangedToastValues()
+            throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte('I');
+        out.writeInt(TABLE_OID);
+        out.writeByte('N');
+        out.writeShort(6);
+        writeText(out, "1");
+        out.writeByte('n');
+        writeText(out, "f");
+        out.writeByte('n');
+        out.writeByte('n');
+        out.writeByte('u');
+        assertEquals(1, reader.decode(ByteBuffer.wrap(bytes.toByteArray()), recordSender));
+
+        Record record = single();
+        assertNull(record.getColumn(1).getRawData());
+        assertEquals(1L, (long) record.getColumn(2).asLong());
+        assertNull(record.getColumn(3).getRawData());
+        assertNull(record.getColumn(4).getRawData());
+        assertEquals(false, record.getColumn(5).asBoolean());
+        assertNull(record.getColumn(6).getRawData());
+    }
+
+    @Test
+    public void testUpdateWithOldTupleUsesNewValues()
+            throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte('U');
+        out.writeInt(TABLE_OID);
+        writeTuple(out, 'O', "7", "old", "f", "1", null, null);
+        writeTuple(out, 'N', "7", "new", "t", "2", null, null);
+        assertEquals(1, reader.decode(ByteBuffer.wrap(bytes.toByteArray()), recordSender));
+
+        Record record = single();
+        assertEquals("UPDATE", record.getColumn(0).asString());
+        assertEquals("new", record.getColumn(1).asString());
+        assertEquals(7L, (long) record.getColumn(2).asLong());
+        assertTrue(record.getColumn(5).asBoolean());
+    }
+
+    @Test
+    public void testUpdateWithoutOldTuple()
+            throws IOException
+    {
+        assertEquals(1, reader.decode(message('U', TABLE_OID, 'N', "8", "only new", "t", "3", null, null), recordSender));
+        Record record = single();
+        assertEquals("UPDATE", record.getColumn(0).asString());
+        assertEquals("only new", record.getColumn(1).asString());
+    }
+
+    @Test
+    public void testDeleteWithKeyOnly()
+            throws IOException
+    {
+        assertEquals(1, reader.decode(message('D', TABLE_OID, 'K', "9", null, null, null, null, null), recordSender));
+        Record record = single();
+        assertEquals("DELETE", record.getColumn(0).asString());
+        assertNull(record.getColumn(1).getRawData());
+        assertEquals(9L, (long) record.getColumn(2).asLong());
+    }
+
+    @Test
+    public void testIgnoreOtherTablesAndMessages()
+            throws IOException
+    {
+        assertEquals(0, reader.decode(relation(OTHER_OID, "public", "other"), recordSender));
+        assertEquals(0, reader.decode(message('I', OTHER_OID, 'N', "1", "x", "t", "1", null, null), recordSender));
+        assertEquals(0, reader.decode(ByteBuffer.wrap(new byte[] {'B', 0, 0, 0, 0}), recordSender));
+        assertEquals(0, reader.decode(ByteBuffer.wrap(new byte[] {'T', 0, 0, 0, 1}), recordSender));
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void testInvalidValueIsDirty()
+            throws IOException
+    {
+        assertEquals(1, reader.decode(message('I', TABLE_OID, 'N', "not a number", "x", "t", "1", null, null), recordSender));
+        assertTrue(sent.isEmpty());
+        assertEquals(1, dirty.size());
+    }
+
+    private Record single()
+    {
+        assertEquals(1, sent.size());
+        assertTrue(dirty.isEmpty());
+        return sent.get(0);
+    }
+
+    private static ByteBuffer relation(int oid, String namespace, String name)
+            throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte('R');
+        out.writeInt(oid);
+        writeString(out, namespace);
+        writeString(out, name);
+        out.writeByte('d');
+        out.writeShort(COLUMN_NAMES.length);
+        for (int i = 0; i < COLUMN_NAMES.length; i++) {
+            out.writeByte(i == 0 ? 1 : 0);
+            writeString(out, COLUMN_NAMES[i]);
+            out.writeInt(TYPE_OIDS[i]);
+            out.writeInt(-1);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static ByteBuffer message(char type, int oid, char kind, String... values)
+            throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeInt(oid);
+        writeTuple(out, kind, values);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static void writeTuple(DataOutputStream out, char kind, String... values)
+            throws IOException
+    {
+        out.writeByte(kind);
+        out.writeShort(values.length);
+        for (String value : values) {
+            if (value == null) {
+                out.writeByte('n');
+            }
+            else {
+                writeText(out, value);
+            }
+        }
+    }
+
+    private static void writeText(DataOutputStream out, String value)
+            throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeByte('t');
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeString(DataOutputStream out, String value)
+            throws IOException
+    {
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+        out.writeByte(0);
+    }
+
+    private static class ListRecord
+            implements Record
+    {
+        private final List<Column> columns = new ArrayList<>();
+
+        @Override
+        public void addColumn(Column column)
+        {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column)
+        {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i)
+        {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize()
+        {
+            return 0;
+        }
+    }
+
+    private class CollectingRecordSender
+            implements RecordSender
+    {
+        @Override
+        public Record createRecord()
+        {
+            return new ListRecord();
+        }
+
+        @Override
+        public void sendToWriter(Record record)
+        {
+            sent.add(record);
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void terminate() {}
+
+        @Override
+        public void shutdown() {}
+    }
+
+    private class CollectingPluginCollector
+            extends TaskPluginCollector
+    {
+        @Override
+        public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage)
+        {
+            dirty.add(dirtyRecord);
+        }
+
+        @Override
+        public void collectMessage(String key, String value) {}
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.postgresqlcdcreader;
+
+import com.wgzhao.addax.common.base.Key;
+import com.wgzhao.addax.common.element.Column;
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.plugin.RecordSender;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.reader.cdc.CdcKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the reader against a real PostgreSQL 11+ with wal_level=logical, skipped unless one is given by
+ * <pre>
+ * mvn test -pl plugin/reader/postgresqlcdcreader -Dpgcdc.jdbcUrl=jdbc:postgresql://127.0.0.1:5432/postgres \
+ *     -Dpgcdc.username=postgres -Dpgcdc.password=...
+ * </pre>
+ * The user needs the REPLICATION attribute, the test creates and drops the table, the publication and the slot
+ * {@code addax_cdc_test}.
+ */
+public class TestPostgresqlCdcReader
+{
+    private static final String TABLE = "addax_cdc_test";
+
+    private String jdbcUrl;
+    private String username;
+    private String password;
+    private Connection conn;
+
+    @BeforeEach
+    public void setUp()
+            throws SQLException
+    {
+        jdbcUrl = System.getProperty("pgcdc.jdbcUrl");
+        assumeTrue(jdbcUrl != null, "set -Dpgcdc.jdbcUrl to run against a PostgreSQL server");
+        username = System.getProperty("pgcdc.username", "postgres");
+        password = System.getProperty("pgcdc.password", "");
+
+        conn = DriverManager.getConnection(jdbcUrl, username, password);
+        dropAll();
+        execute("CREATE TABLE " + TABLE + " (id INT PRIMARY KEY, name VARCHAR(20))");
+        // the deleted rows keep all the columns
+        execute("ALTER TABLE " + TABLE + " REPLICA IDENTITY FULL");
+    }
+
+    @AfterEach
+    public void tearDown()
+            throws SQLException
+    {
+        if (conn != null) {
+            // a slot left behind keeps the WAL forever
+            dropAll();
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testPeekUpToCurrentLsnAndAdvanceSlotInPost()
+            throws SQLException
+    {
+        // the first run creates the slot, there is nothing to read yet
+        Configuration created = split(newJob());
+        assertEquals(created.getString(CdcKey.CDC_START), confirmedFlushLsn());
+        assertEquals(Collections.emptyList(), read(created));
+
+        execute("INSERT INTO " + TABLE + " VALUES (1, 'a'), (2, 'b'), (3, 'c')");
+        execute("UPDATE " + TABLE + " SET name = 'bb' WHERE id = 2");
+        execute("DELETE FROM " + TABLE + " WHERE id = 3");
+
+        PostgresqlCdcReader.Job job = newJob();
+        Configuration split = split(job);
+        String end = split.getString(CdcKey.CDC_END);
+        assertEquals(created.getString(CdcKey.CDC_START), split.getString(CdcKey.CDC_START));
+        assertTrue(lsn(end) > lsn(split.getString(CdcKey.CDC_START)));
+
+        // a change after the job started belongs to the next run
+        execute("INSERT INTO " + TABLE + " VALUES (4, 'd')");
+
+        List<String> expected = Arrays.asList("INSERT|1|a", "INSERT|2|b", "INSERT|3|c", "UPDATE|2|bb", "DELETE|3|c");
+        assertEquals(expected, read(split));
+        // peek does not consume the changes, a failed job reads them again
+        assertEquals(expected, read(split));
+        assertEquals(created.getString(CdcKey.CDC_START), confirmedFlushLsn());
+
+        // post advances the slot to the end position, the next run starts from there
+        job.post();
+        assertEquals(end, confirmedFlushLsn());
+        Configuration next = split(newJob());
+        assertEquals(end, next.getString(CdcKey.CDC_START));
+        assertEquals(Collections.singletonList("INSERT|4|d"), read(next));
+    }
+
+    private List<String> read(Configuration split)
+    {
+        List<String> rows = new ArrayList<>();
+        PostgresqlCdcReader.Task task = new PostgresqlCdcReader.Task();
+        task.setPluginJobConf(split);
+        task.setTaskPluginCollector(new FailingPluginCollector());
+        task.init();
+        // the read must stop at the end position instead of waiting for new changes
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> task.startRead(new CollectingRecordSender(rows)));
+        task.post();
+        task.destroy();
+        return rows;
+    }
+
+    private PostgresqlCdcReader.Job newJob()
+    {
+        Configuration conf = Configuration.from("{\"column\": [\"*\"], \"connection\": [{\"table\": [\"" + TABLE + "\"]}]}");
+        conf.set(Key.USERNAME, username);
+        conf.set(Key.PASSWORD, password);
+        conf.set(Key.CONNECTION + "[0]." + Key.JDBC_URL, Collections.singletonList(jdbcUrl));
+        conf.set(CdcKey.SNAPSHOT, false);
+        conf.set(PostgresqlCdcKey.SLOT_NAME, TABLE);
+        conf.set(PostgresqlCdcKey.PUBLICATION, TABLE);
+        PostgresqlCdcReader.Job job = new PostgresqlCdcReader.Job();
+        job.setPluginJobConf(conf);
+        job.init();
+        return job;
+    }
+
+    private static Configuration split(PostgresqlCdcReader.Job job)
+    {
+        List<Configuration> splits = job.split(1);
+        assertEquals(1, splits.size());
+        assertEquals(CdcKey.MODE_STREAM, splits.get(0).getString(CdcKey.CDC_MODE));
+        return splits.get(0);
+    }
+
+    private String confirmedFlushLsn()
+            throws SQLException
+    {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT confirmed_flush_lsn::text FROM pg_replication_slots WHERE slot_name = ?")) {
+            ps.setString(1, TABLE);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getString(1);
+            }
+        }
+    }
+
+    private static long lsn(String text)
+    {
+        int index = text.indexOf('/');
+        return (Long.parseLong(text.substring(0, index), 16) << 32) | Long.parseLong(text.substring(index + 1), 16);
+    }
+
+    private void dropAll()
+            throws SQLException
+    {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT pg_drop_replication_slot(slot_name) FROM pg_replication_slots WHERE slot_name = ?")) {
+            ps.setString(1, TABLE);
+            ps.execute();
+        }
+        execute("DROP PUBLICATION IF EXISTS " + TABLE);
+        execute("DROP TABLE IF EXISTS " + TABLE);
+    }
+
+    private void execute(String sql)
+            throws SQLException
+    {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static class ListRecord
+            implements Record
+    {
+        private final List<Column> columns = new ArrayList<>();
+
+        @Override
+        public void addColumn(Column column)
+        {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column)
+        {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i)
+        {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize()
+        {
+            return 0;
+        }
+    }
+
+    private static class CollectingRecordSender
+            implements RecordSender
+    {
+        private final List<String> rows;
+
+        CollectingRecordSender(List<String> rows)
+        {
+            this.rows = rows;
+        }
+
+        @Override
+        public Record createRecord()
+        {
+            return new ListRecord();
+        }
+
+        @Override
+        public void sendToWriter(Record record)
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < record.getColumnNumber(); i++) {
+                if (i > 0) {
+                    sb.append('|');
+                }
+                sb.append(record.getColumn(i).asString());
+            }
+            rows.add(sb.toString());
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void terminate() {}
+
+        @Override
+        public void shutdown() {}
+    }
+
+    private static class FailingPluginCollector
+            extends TaskPluginCollector
+    {
+        @Override
+        public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage)
+        {
+            throw new AssertionError("unexpected dirty record: " + errorMessage, t);
+        }
+
+        @Override
+        public void collectMessage(String key, String value) {}
+    }
+}
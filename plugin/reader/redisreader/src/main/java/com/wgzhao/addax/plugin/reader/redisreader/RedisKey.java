@@ -27,4 +27,8 @@ public class RedisKey
     public static final String MODE = "mode";
     public static final String AUTH = "auth";
     public static final String MASTER_NAME  = "masterName";
+    // shard local rdb file by "db" or "key" across tasks
+    public static final String SHARD_BY = "shardBy";
+    public static final String SHARD_INDEX = "shardIndex";
+    public static final String SHARD_COUNT = "shardCount";
 }
@@ -35,6 +35,7 @@ import com.wgzhao.addax.common.plugin.RecordSender;
 import com.wgzhao.addax.common.spi.Reader;
 import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.plugin.reader.redisreader.impl.SentinelReplicator;
+import com.wgzhao.addax.plugin.reader.redisreader.impl.ShardRdbVisitor;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -43,6 +44,7 @@ import org.apache.http.impl.client.HttpClientBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.util.JedisClusterCRC16;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
@@ -89,6 +91,8 @@ public class RedisReader
     public static class Job
             extends Reader.Job
     {
+        private static final Logger LOG = LoggerFactory.getLogger(Job.class);
+
         private Configuration conf;
 
         @Override
@@ -116,6 +120,10 @@ public class RedisReader
                     conConf.getNecessaryValue(RedisKey.MASTER_NAME, RedisErrorCode.REQUIRED_VALUE);
                 }
             }
+            String shardBy = conf.getString(RedisKey.SHARD_BY, null);
+            if (shardBy != null && !"db".equalsIgnoreCase(shardBy) && !"key".equalsIgnoreCase(shardBy)) {
+                throw AddaxException.asAddaxException(RedisErrorCode.ILLEGAL_VALUE, "shardBy only support db or key, but got " + shardBy);
+            }
         }
 
         @Override
@@ -124,11 +132,52 @@ public class RedisReader
 
         }
 
+        /**
+         * 切分任务:
+         * 1. tcp 地址中的多个 master 节点(非 sentinel 模式)各自一个任务, 并发 dump 和解析;
+         * 2. 配置了 shardBy 的本地 rdb 文件按 db 或 key 哈希切分为 adviceNumber 个任务,
+         * 每个任务都扫描整个文件, 但只解析属于自己的 key, 其他 key 直接跳过;
+         * 3. 其他 http/tcp 来源每个连接一个任务.
+         *
+         * @param adviceNumber advice number
+         * @return list of configuration
+         */
         @Override
         public List<Configuration> split(int adviceNumber)
         {
-            // ignore adviceNumber
-            return Collections.singletonList(conf);
+            String shardBy = conf.getString(RedisKey.SHARD_BY, null);
+            List<Configuration> splits = new ArrayList<>();
+            for (Object obj : conf.getList("connection")) {
+                Configuration connection = Configuration.from(obj.toString());
+                String uri = connection.getString(RedisKey.URI);
+                String mode = connection.getString(RedisKey.MODE, "standalone");
+                if (uri.startsWith("tcp") && !"sentinel".equalsIgnoreCase(mode)) {
+                    for (String host : uri.split(",")) {
+                        Configuration one = connection.clone();
+                        one.set(RedisKey.URI, host.trim());
+                        splits.add(buildSplit(one, 0, 1));
+                    }
+                }
+                else if (shardBy != null && !uri.startsWith("http") && !uri.startsWith("tcp") && adviceNumber > 1) {
+                    for (int i = 0; i < adviceNumber; i++) {
+                        splits.add(buildSplit(connection, i, adviceNumber));
+                    }
+                }
+                else {
+                    splits.add(buildSplit(connection, 0, 1));
+                }
+            }
+            LOG.info("split into {} task(s)", splits.size());
+            return splits;
+        }
+
+        private Configuration buildSplit(Configuration connection, int shardIndex, int shardCount)
+        {
+            Configuration split = conf.clone();
+            split.set("connection", Collections.singletonList(connection.getInternal()));
+            split.set(RedisKey.SHARD_INDEX, shardIndex);
+            split.set(RedisKey.SHARD_COUNT, shardCount);
+            return split;
         }
     }
 
@@ -166,6 +215,16 @@ public class RedisReader
          */
         private int keyThresholdLength = 64 * 1024 * 1024;
 
+        /**
+         * 切分方式(db 或 key), 以及当前任务负责的分片
+         */
+        private boolean shardByDb;
+        private int shardIndex;
+        private int shardCount;
+
+        private long skippedKeys = 0;
+        private final Map<String, Long> skippedTypeMap = new HashMap<>();
+
         @Override
         public void startRead(RecordSender recordSender)
         {
@@ -178,6 +237,9 @@ public class RedisReader
                     String mode = connection.getString(RedisKey.MODE, "standalone");
                     String masterName = connection.getString(RedisKey.MASTER_NAME, null);
                     File file = new File(UUID.randomUUID() + ".rdb");
+                    // only the file downloaded or dumped by this task is temporary, a local rdb file given by the user
+                    // is shared by all the shards and must be kept
+                    boolean temporary = true;
                     if (uri.startsWith("http") || uri.startsWith("https")) {
                         this.download(new URI(uri), file);
                     }
@@ -186,10 +248,13 @@ public class RedisReader
                     }
                     else {
                         file = new File(uri);
+                        temporary = false;
                     }
 
                     LOG.info("loading {} ", file.getAbsolutePath());
                     RedisReplicator r = new RedisReplicator(file, FileType.RDB, com.moilioncircle.redis.replicator.Configuration.defaultSetting());
+                    ShardRdbVisitor visitor = new ShardRdbVisitor(r, this::isOwned);
+                    r.setRdbVisitor(visitor);
                     r.addEventListener((replicator, event) -> {
                         if (event instanceof KeyStringValueString) {
                             KeyStringValueString dkv = (KeyStringValueString) event;
@@ -205,24 +270,24 @@ public class RedisReader
                             //记录数据类型
                             collectType(rdbType);
 
-                            if (Task.this.matchDB((int) dbNumber) && Task.this.matchKey(key)) {
-                                Record record = recordSender.createRecord();
-                                record.addColumn(new LongColumn(dbNumber));
-                                record.addColumn(new LongColumn(rdbType));
-                                record.addColumn(new LongColumn(expire));
-                                record.addColumn(new BytesColumn(key));
-                                record.addColumn(new BytesColumn(value));
-                                recordSender.sendToWriter(record);
-                            }
-                        }
-                        else {
-                            LOG.warn("The type is unsupported yet");
+                            // db and key filters have been applied by ShardRdbVisitor
+                            Record record = recordSender.createRecord();
+                            record.addColumn(new LongColumn(dbNumber));
+                            record.addColumn(new LongColumn(rdbType));
+                            record.addColumn(new LongColumn(expire));
+                            record.addColumn(new BytesColumn(key));
+                            record.addColumn(new BytesColumn(value));
+                            recordSender.sendToWriter(record);
                         }
                     });
                     r.open();
                     r.close();
+                    skippedKeys += visitor.getSkippedKeys();
+                    visitor.getSkippedTypes().forEach((type, count) -> skippedTypeMap.merge(getTypeName(type), count, Long::sum));
                     // delete temporary local file
-                    Files.deleteIfExists(Paths.get(file.getAbsolutePath()));
+                    if (temporary) {
+                        Files.deleteIfExists(Paths.get(file.getAbsolutePath()));
+                    }
                 } // end for
             }
             catch (Exception e) {
@@ -238,6 +303,9 @@ public class RedisReader
             List<Object> exclude = pluginJobConf.getList("exclude");
             List<Object> db = pluginJobConf.getList("db");
             this.keyThresholdLength = pluginJobConf.getInt("keyThresholdLength", 64 * 1024 * 1024);
+            this.shardByDb = "db".equalsIgnoreCase(pluginJobConf.getString(RedisKey.SHARD_BY, "key"));
+            this.shardIndex = pluginJobConf.getInt(RedisKey.SHARD_INDEX, 0);
+            this.shardCount = pluginJobConf.getInt(RedisKey.SHARD_COUNT, 1);
             if (include != null) {
                 for (Object reg : include) {
                     Pattern pattern = Pattern.compile(reg.toString());
@@ -290,6 +358,37 @@ public class RedisReader
             }
 
             LOG.info(sb.toString());
+
+            if (!skippedTypeMap.isEmpty()) {
+                sb = new StringBuilder("不支持的数据类型(已跳过):\n");
+                for (Map.Entry<String, Long> entry : skippedTypeMap.entrySet()) {
+                    sb.append(entry.getKey())
+                            .append("\t")
+                            .append(entry.getValue())
+                            .append("\n");
+                }
+                LOG.warn(sb.toString());
+            }
+            LOG.info("shard {}/{} skipped {} key(s) not owned or filtered", shardIndex, shardCount, skippedKeys);
+        }
+
+        /**
+         * 判断 key 是否由当前任务处理: 先按分片归属判断, 再按 db 和 key 规则过滤.
+         * key 分片采用 redis cluster 的 slot 计算方式, 因此相同 hash tag 的 key 落在同一分片
+         *
+         * @param db db index
+         * @param key key bytes
+         * @return true if current task should decode the value
+         */
+        private boolean isOwned(long db, byte[] key)
+        {
+            if (shardCount > 1) {
+                long hash = shardByDb ? db : JedisClusterCRC16.getSlot(key);
+                if (hash % shardCount != shardIndex) {
+                    return false;
+                }
+            }
+            return matchDB((int) db) && matchKey(key);
         }
 
         private boolean matchKey(byte[] bytes)
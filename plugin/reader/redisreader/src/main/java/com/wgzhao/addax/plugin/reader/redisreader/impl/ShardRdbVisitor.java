@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.reader.redisreader.impl;
+
+import com.moilioncircle.redis.replicator.Replicator;
+import com.moilioncircle.redis.replicator.event.Event;
+import com.moilioncircle.redis.replicator.io.RedisInputStream;
+import com.moilioncircle.redis.replicator.rdb.BaseRdbParser;
+import com.moilioncircle.redis.replicator.rdb.DefaultRdbVisitor;
+import com.moilioncircle.redis.replicator.rdb.datatype.ContextKeyValuePair;
+import com.moilioncircle.redis.replicator.rdb.datatype.KeyStringValueString;
+import com.moilioncircle.redis.replicator.rdb.skip.SkipRdbParser;
+import com.moilioncircle.redis.replicator.rdb.skip.SkipRdbVisitor;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiPredicate;
+
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_HASH;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_HASH_ZIPLIST;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_HASH_ZIPMAP;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_LIST;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_LIST_QUICKLIST;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_LIST_ZIPLIST;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_MODULE;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_MODULE_2;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_SET;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_SET_INTSET;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_STREAM_LISTPACKS;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_STRING;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_ZSET;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_ZSET_2;
+import static com.moilioncircle.redis.replicator.Constants.RDB_TYPE_ZSET_ZIPLIST;
+
+/**
+ * RDB visitor which only decodes the string values owned by current task.
+ * <p>
+ * The key of every entry is read first and passed to the owner predicate (db number, key bytes),
+ * values of keys which are not owned are skipped without being decoded.
+ * Composite types are not supported by the reader, so they are always skipped
+ * via {@link SkipRdbVisitor} and only counted.
+ */
+public class ShardRdbVisitor
+        extends DefaultRdbVisitor
+{
+    private final SkipRdbVisitor skipVisitor;
+    private final BiPredicate<Long, byte[]> owner;
+    private final Map<Integer, Long> skippedTypes = new TreeMap<>();
+    private long skippedKeys = 0;
+
+    public ShardRdbVisitor(Replicator replicator, BiPredicate<Long, byte[]> owner)
+    {
+        super(replicator);
+        this.skipVisitor = new SkipRdbVisitor(replicator);
+        this.owner = owner;
+    }
+
+    /**
+     * number of string keys which are not owned by current task
+     *
+     * @return skipped key count
+     */
+    public long getSkippedKeys()
+    {
+        return skippedKeys;
+    }
+
+    /**
+     * number of skipped composite values, grouped by rdb type
+     *
+     * @return map of rdb type to count
+     */
+    public Map<Integer, Long> getSkippedTypes()
+    {
+        return skippedTypes;
+    }
+
+    @Override
+    public Event applyString(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        byte[] key = new BaseRdbParser(in).rdbLoadEncodedStringObject().first();
+        if (!owner.test(context.getDb().getDbNumber(), key)) {
+            new SkipRdbParser(in).rdbLoadEncodedStringObject();
+            skippedKeys++;
+            return null;
+        }
+        byte[] value = valueVisitor.applyString(in, version);
+        KeyStringValueString kv = new KeyStringValueString();
+        kv.setValueRdbType(RDB_TYPE_STRING);
+        kv.setKey(key);
+        kv.setValue(value);
+        return context.valueOf(kv);
+    }
+
+    @Override
+    public Event applyList(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_LIST);
+        return skipVisitor.applyList(in, version, context);
+    }
+
+    @Override
+    public Event applySet(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_SET);
+        return skipVisitor.applySet(in, version, context);
+    }
+
+    @Override
+    public Event applyZSet(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_ZSET);
+        return skipVisitor.applyZSet(in, version, context);
+    }
+
+    @Override
+    public Event applyZSet2(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_ZSET_2);
+        return skipVisitor.applyZSet2(in, version, context);
+    }
+
+    @Override
+    public Event applyHash(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_HASH);
+        return skipVisitor.applyHash(in, version, context);
+    }
+
+    @Override
+    public Event applyHashZipMap(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_HASH_ZIPMAP);
+        return skipVisitor.applyHashZipMap(in, version, context);
+    }
+
+    @Override
+    public Event applyListZipList(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_LIST_ZIPLIST);
+        return skipVisitor.applyListZipList(in, version, context);
+    }
+
+    @Override
+    public Event applySetIntSet(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_SET_INTSET);
+        return skipVisitor.applySetIntSet(in, version, context);
+    }
+
+    @Override
+    public Event applyZSetZipList(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_ZSET_ZIPLIST);
+        return skipVisitor.applyZSetZipList(in, version, context);
+    }
+
+    @Override
+    public Event applyHashZipList(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_HASH_ZIPLIST);
+        return skipVisitor.applyHashZipList(in, version, context);
+    }
+
+    @Override
+    public Event applyListQuickList(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_LIST_QUICKLIST);
+        return skipVisitor.applyListQuickList(in, version, context);
+    }
+
+    @Override
+    public Event applyModule(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_MODULE);
+        return skipVisitor.applyModule(in, version, context);
+    }
+
+    @Override
+    public Event applyModule2(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_MODULE_2);
+        return skipVisitor.applyModule2(in, version, context);
+    }
+
+    @Override
+    public Event applyStreamListPacks(RedisInputStream in, int version, ContextKeyValuePair context)
+            throws IOException
+    {
+        countSkipped(RDB_TYPE_STREAM_LISTPACKS);
+        return skipVisitor.applyStreamListPacks(in, version, context);
+    }
+
+    private void countSkipped(int type)
+    {
+        skippedTypes.merge(type, 1L, Long::sum);
+    }
+}
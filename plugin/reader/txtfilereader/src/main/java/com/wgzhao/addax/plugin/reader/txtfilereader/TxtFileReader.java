@@ -27,18 +27,22 @@ import com.wgzhao.addax.common.spi.Reader;
 import com.wgzhao.addax.common.util.Configuration;
 import com.wgzhao.addax.storage.reader.StorageReaderUtil;
 import com.wgzhao.addax.storage.util.FileHelper;
+import com.wgzhao.addax.storage.util.FileSplitPlanner;
+import com.wgzhao.addax.storage.util.FileSplitPlanner.FileRange;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by haiwei.luo on 14-9-20.
@@ -118,20 +122,22 @@ public class TxtFileReader
             LOG.debug("split() begin...");
             List<Configuration> readerSplitConfigs = new ArrayList<>();
 
-            // warn:每个slice拖且仅拖一个文件,
-            // int splitNumber = adviceNumber
-            int splitNumber = this.sourceFiles.size();
-            if (0 == splitNumber) {
+            if (this.sourceFiles.isEmpty()) {
                 throw AddaxException.asAddaxException(
                         TxtFileReaderErrorCode.EMPTY_DIR_EXCEPTION, String
                                 .format("未能找到待读取的文件,请确认您的配置项path: %s",
                                         this.originConfig.getString(Key.PATH)));
             }
 
-            List<List<String>> splitSourceFiles = FileHelper.splitSourceFiles(this.sourceFiles, splitNumber);
-            for (List<String> files : splitSourceFiles) {
+            // 按文件大小分配给各个任务, 配置了 splitSize 时大文件切分为多个字节区间
+            Map<String, Long> fileSizes = new LinkedHashMap<>();
+            for (String file : this.sourceFiles) {
+                fileSizes.put(file, new File(file).length());
+            }
+            long splitSize = StorageReaderUtil.getSplitSize(this.originConfig);
+            for (List<FileRange> ranges : FileSplitPlanner.plan(fileSizes, adviceNumber, splitSize)) {
                 Configuration splitConfig = this.originConfig.clone();
-                splitConfig.set(Key.SOURCE_FILES, files);
+                FileSplitPlanner.setTaskRanges(splitConfig, ranges);
                 readerSplitConfigs.add(splitConfig);
             }
             LOG.debug("split() ok and end...");
@@ -185,13 +191,15 @@ public class TxtFileReader
         private static final Logger LOG = LoggerFactory.getLogger(Task.class);
 
         private Configuration readerSliceConfig;
-        private List<String> sourceFiles;
+        private List<FileRange> sourceRanges;
+        private boolean useMappedParser;
 
         @Override
         public void init()
         {
             this.readerSliceConfig = this.getPluginJobConf();
-            this.sourceFiles = this.readerSliceConfig.getList(Key.SOURCE_FILES, String.class);
+            this.sourceRanges = FileSplitPlanner.getTaskRanges(this.readerSliceConfig);
+            this.useMappedParser = StorageReaderUtil.useMappedParser(this.readerSliceConfig);
         }
 
         @Override
@@ -217,18 +225,31 @@ public class TxtFileReader
         {
             LOG.debug("start read source files...");
             FileInputStream inputStream;
-            for (String fileName : this.sourceFiles) {
-                LOG.info("reading file : [{}]", fileName);
+            for (FileRange range : this.sourceRanges) {
+                String fileName = range.getPath();
+                LOG.info("reading file : [{}]", range);
+                if (useMappedParser) {
+                    StorageReaderUtil.readFromMappedFile(fileName, range.getStart(), range.getEnd(),
+                            readerSliceConfig, recordSender, getTaskPluginCollector());
+                    continue;
+                }
                 try {
                     inputStream = new FileInputStream(fileName);
+                    if (range.isWholeFile()) {
+                        StorageReaderUtil.readFromStream(inputStream, fileName, readerSliceConfig, recordSender, getTaskPluginCollector());
+                    }
+                    else {
+                        inputStream.getChannel().position(range.getStart());
+                        StorageReaderUtil.readFromStream(inputStream, fileName, range.getStart(), range.getEnd(),
+                                readerSliceConfig, recordSender, getTaskPluginCollector());
+                    }
                 }
-                catch (FileNotFoundException e) {
+                catch (IOException e) {
                     throw AddaxException.asAddaxException(
                             TxtFileReaderErrorCode.OPEN_FILE_ERROR,
-                            "Open file '" + fileName + "' failure"
+                            "Open file '" + fileName + "' failure", e
                     );
                 }
-                StorageReaderUtil.readFromStream(inputStream, fileName, readerSliceConfig, recordSender, getTaskPluginCollector());
             }
             LOG.debug("end read source files...");
         }
@@ -94,12 +94,12 @@ public class ClickHouseWriter
             this.commonRdbmsWriterSlave = new CommonRdbmsWriter.Task(DATABASE_TYPE)
             {
                 @Override
-                protected PreparedStatement fillPreparedStatementColumnType(PreparedStatement preparedStatement, int columnIndex,
+                protected PreparedStatement fillPreparedStatementColumnType(PreparedStatement preparedStatement, int parameterIndex, int columnIndex,
                         int columnSqlType, Column column)
                         throws SQLException
                 {
                     if (column == null || column.getRawData() == null) {
-                        preparedStatement.setObject(columnIndex, null);
+                        preparedStatement.setObject(parameterIndex, null);
                         return preparedStatement;
                     }
 
@@ -108,19 +108,19 @@ public class ClickHouseWriter
                         String columnTypeName = (String) this.resultSetMetaData.get(columnIndex).get("typeName");
                         if (columnTypeName.startsWith("DateTime64(") && columnTypeName.contains(",")) {
                             tz = columnTypeName.substring(15, columnTypeName.length() - 2);
-                            preparedStatement.setObject(columnIndex, column.asTimestamp()); //setTimestamp is slow and not recommended
+                            preparedStatement.setObject(parameterIndex, column.asTimestamp()); //setTimestamp is slow and not recommended
                         }
                         else if (columnTypeName.startsWith("DateTime(")) {
                             tz = columnTypeName.substring(10, columnTypeName.length() - 2);
-                            preparedStatement.setObject(columnIndex, column.asTimestamp());
+                            preparedStatement.setObject(parameterIndex, column.asTimestamp());
                         }
                         else {
-                            preparedStatement.setString(columnIndex, column.asString());
+                            preparedStatement.setString(parameterIndex, column.asString());
                         }
                         return preparedStatement;
                     }
 
-                    return super.fillPreparedStatementColumnType(preparedStatement, columnIndex, columnSqlType, column);
+                    return super.fillPreparedStatementColumnType(preparedStatement, parameterIndex, columnIndex, columnSqlType, column);
                 }
 
                 @Override
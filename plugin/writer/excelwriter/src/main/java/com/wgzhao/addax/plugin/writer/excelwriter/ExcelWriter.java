@@ -6,12 +6,15 @@ import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.RecordReceiver;
 import com.wgzhao.addax.common.spi.Writer;
 import com.wgzhao.addax.common.util.Configuration;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.CreationHelper;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -27,6 +30,10 @@ import static com.wgzhao.addax.common.base.Key.PATH;
 public class ExcelWriter
     extends Writer
 {
+    private static final String ROW_ACCESS_WINDOW_SIZE = "rowAccessWindowSize";
+    private static final String MAX_ROWS_PER_SHEET = "maxRowsPerSheet";
+    private static final String ROLLOVER = "rollover";
+
     public static class Job
         extends Writer.Job
     {
@@ -92,50 +99,77 @@ public class ExcelWriter
     public static class Task
         extends Writer.Task
     {
+        private static final Logger LOG = LoggerFactory.getLogger(Task.class);
+
+        // xlsx 每个 sheet 最多 1048576 行
+        private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
 
         private Configuration conf;
 
-        private String filePath;
+        private String path;
+        private String fileName;
         private List<String> header;
+        private int rowAccessWindowSize;
+        private int maxRowsPerSheet;
+        private boolean rolloverFile;
+
+        private SXSSFWorkbook workbook;
+        private SXSSFSheet sheet;
+        private CellStyle dateStyle;
+        private int fileNum = 0;
+        private int rowNum;
 
         @Override
         public void init()
         {
             this.conf = this.getPluginJobConf();
-            this.filePath = this.conf.get(PATH) + "/" + this.conf.get(FILE_NAME);
+            this.path = this.conf.getString(PATH);
+            this.fileName = this.conf.getString(FILE_NAME);
             this.header =this.conf.getList(HEADER, String.class);
+            this.rowAccessWindowSize = this.conf.getInt(ROW_ACCESS_WINDOW_SIZE, SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+            this.maxRowsPerSheet = Math.min(this.conf.getInt(MAX_ROWS_PER_SHEET, MAX_ROWS), MAX_ROWS);
+            String rollover = this.conf.getString(ROLLOVER, "sheet");
+            if (!"sheet".equalsIgnoreCase(rollover) && !"file".equalsIgnoreCase(rollover)) {
+                throw AddaxException.asAddaxException(ExcelWriterErrorCode.ILLEGAL_VALUE,
+                        "rollover only supports 'sheet' or 'file', but got '" + rollover + "'");
+            }
+            this.rolloverFile = "file".equalsIgnoreCase(rollover);
+            // 表头占用一行, 每个 sheet 至少还要写入一行数据
+            int minRows = this.header == null || this.header.isEmpty() ? 1 : 2;
+            if (this.maxRowsPerSheet < minRows) {
+                throw AddaxException.asAddaxException(ExcelWriterErrorCode.ILLEGAL_VALUE,
+                        "maxRowsPerSheet must be at least " + minRows + ", but got " + this.maxRowsPerSheet);
+            }
         }
 
         @Override
         public void destroy()
         {
-
+            if (this.workbook != null) {
+                // 删除 SXSSF 产生的临时文件
+                this.workbook.dispose();
+            }
         }
 
         @Override
         public void startWrite(RecordReceiver lineReceiver)
         {
             Record record;
-            XSSFWorkbook workbook = new XSSFWorkbook();
-            XSSFSheet sheet = workbook.createSheet();
             Row row;
             Cell cell;
-            int rowNum = 0;
-            // set header ?
-            if (!header.isEmpty()) {
-                row = sheet.createRow(rowNum++);
-                for(int i =0 ;i< header.size();i++) {
-                    cell = row.createCell(i);
-                    cell.setCellValue(header.get(i));
-                }
-            }
-            // set date format
-            CellStyle dateStyle = workbook.createCellStyle();
-            CreationHelper createHelper = workbook.getCreationHelper();
-            dateStyle.setDataFormat(createHelper.createDataFormat().getFormat("yyyy-MM-dd HH:mm:ss"));
-
+            newWorkbook();
             while ( (record = lineReceiver.getFromReader()) != null)
             {
+                if (rowNum >= maxRowsPerSheet) {
+                    // 超过单个 sheet 的行数限制, 写入到新的 sheet 或者新的文件
+                    if (rolloverFile) {
+                        closeWorkbook();
+                        newWorkbook();
+                    }
+                    else {
+                        newSheet();
+                    }
+                }
                 int recordLength = record.getColumnNumber();
                 row = sheet.createRow(rowNum++);
                 Column column;
@@ -166,10 +200,52 @@ public class ExcelWriter
                     }
                 }
             }
+            closeWorkbook();
+        }
+
+        /*
+         * SXSSF 只在内存中保留最近的 rowAccessWindowSize 行, 其余的行写入压缩的临时文件
+         */
+        private void newWorkbook()
+        {
+            this.workbook = new SXSSFWorkbook(rowAccessWindowSize);
+            this.workbook.setCompressTempFiles(true);
+            // set date format
+            this.dateStyle = workbook.createCellStyle();
+            CreationHelper createHelper = workbook.getCreationHelper();
+            dateStyle.setDataFormat(createHelper.createDataFormat().getFormat("yyyy-MM-dd HH:mm:ss"));
+            newSheet();
+        }
+
+        private void newSheet()
+        {
+            this.sheet = workbook.createSheet();
+            this.rowNum = 0;
+            // set header ?
+            if (header != null && !header.isEmpty()) {
+                Row row = sheet.createRow(rowNum++);
+                for(int i =0 ;i< header.size();i++) {
+                    row.createCell(i).setCellValue(header.get(i));
+                }
+            }
+        }
+
+        /*
+         * 第一个文件为配置的文件名, 之后的文件依次为 name_1.xlsx, name_2.xlsx ...
+         */
+        private void closeWorkbook()
+        {
+            String name = fileName;
+            if (fileNum > 0) {
+                int dot = fileName.lastIndexOf('.');
+                name = fileName.substring(0, dot) + "_" + fileNum + fileName.substring(dot);
+            }
+            fileNum++;
+            String filePath = path + "/" + name;
             // write to file
             try(FileOutputStream out = new FileOutputStream(filePath)) {
                 workbook.write(out);
-                workbook.close();
+                LOG.info("Finished writing {} sheet(s) to {}.", workbook.getNumberOfSheets(), filePath);
             }
             catch (FileNotFoundException e) {
                 throw AddaxException.asAddaxException(ExcelWriterErrorCode.WRITE_FILE_ERROR, "No such file: " + filePath);
@@ -177,6 +253,16 @@ public class ExcelWriter
             catch (IOException e) {
                 throw AddaxException.asAddaxException(ExcelWriterErrorCode.WRITE_FILE_IO_ERROR, "IOException occurred while writing to " + filePath);
             }
+            finally {
+                workbook.dispose();
+                try {
+                    workbook.close();
+                }
+                catch (IOException ignored) {
+                    //
+                }
+                workbook = null;
+            }
         }
     }
 }
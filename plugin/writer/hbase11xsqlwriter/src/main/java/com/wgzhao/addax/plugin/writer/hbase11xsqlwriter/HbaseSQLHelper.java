@@ -43,10 +43,12 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -341,6 +343,60 @@ public class HbaseSQLHelper
         }
     }
 
+    /**
+     * 从系统表中获取表的盐值分桶数(SALT_BUCKETS), 没有加盐的表返回 0
+     *
+     * @param conn database connection {@link Connection}
+     * @param schema the schema of table, null for the default schema
+     * @param tableName table name without schema
+     * @return the number of salt buckets
+     * @throws SQLException query failure
+     */
+    public static int getSaltBuckets(Connection conn, String schema, String tableName)
+            throws SQLException
+    {
+        String sql = "SELECT SALT_BUCKETS FROM SYSTEM.CATALOG WHERE TABLE_NAME = ? AND COLUMN_NAME IS NULL AND COLUMN_FAMILY IS NULL"
+                + (schema == null ? " AND TABLE_SCHEM IS NULL" : " AND TABLE_SCHEM = ?");
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, tableName);
+            if (schema != null) {
+                ps.setString(2, schema);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * 从系统表中获取表的主键列, 按主键中的顺序排列
+     *
+     * @param conn database connection {@link Connection}
+     * @param schema the schema of table, null for the default schema
+     * @param tableName table name without schema
+     * @return the primary key columns
+     * @throws SQLException query failure
+     */
+    public static List<String> getPrimaryKeyColumns(Connection conn, String schema, String tableName)
+            throws SQLException
+    {
+        String sql = "SELECT COLUMN_NAME FROM SYSTEM.CATALOG WHERE TABLE_NAME = ? AND COLUMN_NAME IS NOT NULL AND KEY_SEQ IS NOT NULL"
+                + (schema == null ? " AND TABLE_SCHEM IS NULL" : " AND TABLE_SCHEM = ?") + " ORDER BY KEY_SEQ";
+        List<String> columns = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, tableName);
+            if (schema != null) {
+                ps.setString(2, schema);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+        }
+        return columns;
+    }
+
     /**
      * 检查表
      *
@@ -23,6 +23,7 @@ import com.wgzhao.addax.common.base.HBaseConstant;
 import com.wgzhao.addax.common.base.HBaseKey;
 import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.writer.util.PartitionedUpsertWriter;
 import com.google.common.base.Strings;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.hbase.HConstants;
@@ -55,6 +56,8 @@ public class HbaseSQLWriterConfig
     private NullModeType nullMode;
     private int batchSize;                  // 一次批量写入多少行
     private boolean truncate;               // 导入开始前是否要清空目的表
+    private boolean partitionWrite;         // 是否按主键分区并发提交
+    private int flushThreads;               // 分区提交使用的线程数(即连接数)
     private boolean isThinClient;
     private String namespace;
     private String username;
@@ -93,6 +96,17 @@ public class HbaseSQLWriterConfig
         cfg.batchSize = jobConf.getInt(HBaseKey.BATCH_SIZE, HBaseConstant.DEFAULT_BATCH_ROW_COUNT);
         cfg.truncate = jobConf.getBool(HBaseKey.TRUNCATE, HBaseConstant.DEFAULT_TRUNCATE);
         cfg.isThinClient = jobConf.getBool(HBaseKey.THIN_CLIENT, HBaseConstant.DEFAULT_USE_THIN_CLIENT);
+        String writeMode = jobConf.getString(HBaseKey.WRITE_MODE, "batch");
+        if (!"batch".equalsIgnoreCase(writeMode) && !PartitionedUpsertWriter.WRITE_MODE.equalsIgnoreCase(writeMode)) {
+            throw AddaxException.asAddaxException(HbaseSQLWriterErrorCode.ILLEGAL_VALUE,
+                    "The writeMode " + writeMode + " is unsupported, here are available writeMode: [batch, partition]");
+        }
+        cfg.partitionWrite = PartitionedUpsertWriter.WRITE_MODE.equalsIgnoreCase(writeMode);
+        cfg.flushThreads = jobConf.getInt(HBaseKey.FLUSH_THREADS, HBaseConstant.DEFAULT_FLUSH_THREADS);
+        if (cfg.flushThreads < 1) {
+            throw AddaxException.asAddaxException(HbaseSQLWriterErrorCode.ILLEGAL_VALUE,
+                    "The flushThreads must be greater than 0");
+        }
 
         // 4. 解析kerberos 配置
         cfg.haveKerberos = jobConf.getBool(HBaseKey.HAVE_KERBEROS, HBaseConstant.DEFAULT_HAVE_KERBEROS);
@@ -239,6 +253,19 @@ public class HbaseSQLWriterConfig
         return truncate;
     }
 
+    /**
+     * @return 是否按主键分区, 在多个连接上并发提交
+     */
+    public boolean isPartitionWrite()
+    {
+        return partitionWrite;
+    }
+
+    public int getFlushThreads()
+    {
+        return flushThreads;
+    }
+
     public boolean isThinClient()
     {
         return isThinClient;
@@ -305,6 +332,9 @@ public class HbaseSQLWriterConfig
         ret.append("[truncate]");
         ret.append(truncate);
         ret.append("\n");
+        ret.append("[partitionWrite]");
+        ret.append(partitionWrite);
+        ret.append("\n");
 
         return ret.toString();
     }
@@ -26,8 +26,11 @@ import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.RecordReceiver;
 import com.wgzhao.addax.common.plugin.TaskPluginCollector;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.writer.util.PartitionedUpsertWriter;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.SchemaUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,14 +74,15 @@ public class HbaseSQLWriterTask
             // 准备阶段
             prepare();
 
+            if (cfg.isPartitionWrite()) {
+                writePartitioned(lineReceiver);
+                return;
+            }
+
             List<Record> buffer = new ArrayList<>(cfg.getBatchSize());
             while ((record = lineReceiver.getFromReader()) != null) {
                 // 校验列数量是否符合预期
-                if (record.getColumnNumber() != numberOfColumnsToRead) {
-                    throw AddaxException.asAddaxException(HbaseSQLWriterErrorCode.ILLEGAL_VALUE,
-                            "The number of fields(" + record.getColumnNumber()
-                                    + ") in the source and the number of fields(" + numberOfColumnsToRead + ") you configured in 'column' are not the same.");
-                }
+                checkColumnNumber(record);
 
                 buffer.add(record);
                 if (buffer.size() > cfg.getBatchSize()) {
@@ -102,6 +106,15 @@ public class HbaseSQLWriterTask
         }
     }
 
+    private void checkColumnNumber(Record record)
+    {
+        if (record.getColumnNumber() != numberOfColumnsToRead) {
+            throw AddaxException.asAddaxException(HbaseSQLWriterErrorCode.ILLEGAL_VALUE,
+                    "The number of fields(" + record.getColumnNumber()
+                            + ") in the source and the number of fields(" + numberOfColumnsToRead + ") you configured in 'column' are not the same.");
+        }
+    }
+
     private void prepare()
             throws SQLException
     {
@@ -112,11 +125,92 @@ public class HbaseSQLWriterTask
 
         if (ps == null) {
             // 一个Task的生命周期中只使用一个PreparedStatement对象，所以，在
-            ps = createPreparedStatement();
+            ps = createPreparedStatement(connection);
             columnTypes = getColumnSqlType(cfg.getColumns());
         }
     }
 
+    /*
+     * 按主键把记录分到多个分区, 每个分区攒满一批后在连接池中异步提交, 读取记录不再等待提交完成
+     */
+    private void writePartitioned(RecordReceiver lineReceiver)
+    {
+        PartitionedUpsertWriter writer = createPartitionedWriter();
+        try {
+            Record record;
+            while ((record = lineReceiver.getFromReader()) != null) {
+                checkColumnNumber(record);
+                writer.write(record);
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    private PartitionedUpsertWriter createPartitionedWriter()
+    {
+        String schema = cfg.isThinClient() ? cfg.getNamespace() : SchemaUtil.getSchemaNameFromFullName(cfg.getTableName());
+        schema = StringUtils.isBlank(schema) ? null : SchemaUtil.normalizeIdentifier(schema);
+        String tableName = SchemaUtil.normalizeIdentifier(SchemaUtil.getTableNameFromFullName(cfg.getTableName()));
+        int saltBuckets = 0;
+        List<String> keyColumns = Collections.emptyList();
+        try {
+            saltBuckets = HbaseSQLHelper.getSaltBuckets(connection, schema, tableName);
+            keyColumns = HbaseSQLHelper.getPrimaryKeyColumns(connection, schema, tableName);
+        }
+        catch (SQLException e) {
+            LOG.warn("Failed to get the salt buckets and primary key of the table {}, partition records by all columns.", cfg.getTableName(), e);
+        }
+
+        // 分区的主键列在记录中的位置
+        List<Integer> indexes = new ArrayList<>();
+        for (String key : keyColumns) {
+            for (int i = 0; i < cfg.getColumns().size(); i++) {
+                if (key.equalsIgnoreCase(cfg.getColumns().get(i))) {
+                    indexes.add(i);
+                    break;
+                }
+            }
+        }
+        int threads = cfg.getFlushThreads();
+        // 加盐的表分区数与分桶数相同
+        int partitions = saltBuckets > 0 ? saltBuckets : threads * 2;
+        LOG.info("The table {} has {} salt buckets, partition records by the columns {}.", cfg.getTableName(), saltBuckets, keyColumns);
+
+        return new PartitionedUpsertWriter(HbaseSQLWriterErrorCode.PUT_HBASE_ERROR, partitions, threads, cfg.getBatchSize(), indexes.stream().mapToInt(Integer::intValue).toArray())
+        {
+            @Override
+            protected Connection newConnection()
+            {
+                return HbaseSQLHelper.getJdbcConnection(cfg);
+            }
+
+            @Override
+            protected PreparedStatement prepareUpsert(Connection connection)
+                    throws SQLException
+            {
+                return createPreparedStatement(connection);
+            }
+
+            @Override
+            protected void bind(PreparedStatement ps, Record record)
+                    throws SQLException
+            {
+                setupStatement(ps, record);
+            }
+
+            @Override
+            protected void collectDirtyRecord(Record record, Exception e)
+            {
+                LOG.error("Failed to write hbase", e);
+                synchronized (taskPluginCollector) {
+                    taskPluginCollector.collectDirtyRecord(record, e);
+                }
+            }
+        };
+    }
+
     private void close()
     {
         if (ps != null) {
@@ -148,7 +242,7 @@ public class HbaseSQLWriterTask
         try {
             // 将所有record提交到connection缓存
             for (Record r : records) {
-                setupStatement(r);
+                setupStatement(ps, r);
                 ps.executeUpdate();
             }
 
@@ -174,7 +268,7 @@ public class HbaseSQLWriterTask
     {
         for (Record r : records) {
             try {
-                setupStatement(r);
+                setupStatement(ps, r);
                 ps.executeUpdate();
                 connection.commit();
             }
@@ -189,7 +283,7 @@ public class HbaseSQLWriterTask
     /*
      * 生成sql模板，并根据模板创建PreparedStatement
      */
-    private PreparedStatement createPreparedStatement()
+    private PreparedStatement createPreparedStatement(Connection connection)
             throws SQLException
     {
         // 生成列名集合，列之间用逗号分隔： col1,col2,col3,...
@@ -225,7 +319,7 @@ public class HbaseSQLWriterTask
         return types;
     }
 
-    private void setupStatement(Record record)
+    private void setupStatement(PreparedStatement ps, Record record)
             throws SQLException
     {
         // 一开始的时候就已经校验过record中的列数量与ps中需要的值数量相等
@@ -233,11 +327,11 @@ public class HbaseSQLWriterTask
             Column col = record.getColumn(i);
             int sqlType = columnTypes[i];
             // PreparedStatement中的索引从1开始，所以用i+1
-            setupColumn(i + 1, sqlType, col);
+            setupColumn(ps, i + 1, sqlType, col);
         }
     }
 
-    private void setupColumn(int pos, int sqlType, Column col)
+    private void setupColumn(PreparedStatement ps, int pos, int sqlType, Column col)
             throws SQLException
     {
         if (col.getRawData() != null) {
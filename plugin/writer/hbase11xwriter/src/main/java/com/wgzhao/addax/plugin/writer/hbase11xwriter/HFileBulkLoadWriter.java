@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.writer.hbase11xwriter;
+
+import com.wgzhao.addax.common.base.HBaseKey;
+import com.wgzhao.addax.common.util.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.MD5Hash;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Write each region batch as sorted HFiles (one per column family) under {@code stagingDir/<family>/},
+ * the job loads the whole staging directory into the table once all tasks finished.
+ * <p>
+ * The records of a task are not sorted, so every flush of a region buffer creates new HFiles.
+ * The file name starts with the hash of the region start key, the job counts the files of every region
+ * and family with it to raise the bulk load limit of files per region and family.
+ */
+public class HFileBulkLoadWriter
+        extends RegionBufferedWriter
+{
+    // separates the region hash from the rest of the HFile name
+    public static final String REGION_SEPARATOR = "-";
+
+    private final org.apache.hadoop.conf.Configuration hConfiguration;
+    private final Path stagingDir;
+    private final HFileContext hFileContext;
+    private final String filePrefix;
+
+    public HFileBulkLoadWriter(Configuration configuration)
+    {
+        super(configuration);
+        this.hConfiguration = this.connection.getConfiguration();
+        this.stagingDir = new Path(configuration.getString(HBaseKey.STAGING_DIR));
+        String compress = configuration.getString(HBaseKey.COMPRESS, "none");
+        this.hFileContext = new HFileContextBuilder()
+                .withCompression(Compression.getCompressionAlgorithmByName(compress.toLowerCase()))
+                .build();
+        this.filePrefix = UUID.randomUUID().toString().replace("-", "");
+    }
+
+    @Override
+    protected void flushRegion(byte[] startKey, List<Put> puts)
+            throws IOException
+    {
+        // cells without explicit version get the flush time, just like the region server does
+        long now = System.currentTimeMillis();
+        Map<byte[], List<Cell>> familyCells = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        for (Put put : puts) {
+            for (Map.Entry<byte[], List<Cell>> entry : put.getFamilyCellMap().entrySet()) {
+                List<Cell> cells = familyCells.computeIfAbsent(entry.getKey(), k -> new ArrayList<>());
+                for (Cell cell : entry.getValue()) {
+                    long ts = cell.getTimestamp() == HConstants.LATEST_TIMESTAMP ? now : cell.getTimestamp();
+                    cells.add(new KeyValue(CellUtil.cloneRow(cell), CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell),
+                            ts, KeyValue.Type.Put, CellUtil.cloneValue(cell)));
+                }
+            }
+        }
+
+        FileSystem fs = this.stagingDir.getFileSystem(this.hConfiguration);
+        String regionPrefix = MD5Hash.getMD5AsHex(startKey) + REGION_SEPARATOR;
+        for (Map.Entry<byte[], List<Cell>> entry : familyCells.entrySet()) {
+            List<Cell> cells = entry.getValue();
+            // stable sort, so the later put of a duplicated cell stays behind
+            cells.sort(KeyValue.COMPARATOR);
+            Path file = new Path(new Path(this.stagingDir, Bytes.toString(entry.getKey())),
+                    regionPrefix + this.filePrefix + "_" + UUID.randomUUID().toString().replace("-", ""));
+            HFile.Writer writer = HFile.getWriterFactory(this.hConfiguration, new CacheConfig(this.hConfiguration))
+                    .withPath(fs, file)
+                    .withFileContext(this.hFileContext)
+                    .withComparator(KeyValue.COMPARATOR)
+                    .create();
+            try {
+                for (int i = 0; i < cells.size(); i++) {
+                    // only keep the last one of the duplicated cells
+                    if (i + 1 < cells.size() && KeyValue.COMPARATOR.compare(cells.get(i), cells.get(i + 1)) == 0) {
+                        continue;
+                    }
+                    writer.append(cells.get(i));
+                }
+                writer.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY, Bytes.toBytes(now));
+            }
+            finally {
+                writer.close();
+            }
+        }
+    }
+}
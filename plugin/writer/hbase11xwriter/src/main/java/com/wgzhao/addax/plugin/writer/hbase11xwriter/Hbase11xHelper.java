@@ -28,6 +28,9 @@ import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.util.Configuration;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Admin;
@@ -36,13 +39,16 @@ import org.apache.hadoop.hbase.client.BufferedMutatorParams;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +56,8 @@ public class Hbase11xHelper
 {
 
     private static final Logger LOG = LoggerFactory.getLogger(Hbase11xHelper.class);
+    // the default value of hbase.mapreduce.bulkload.max.hfiles.perRegion.perFamily
+    private static final int DEFAULT_MAX_FILES_PER_REGION_PER_FAMILY = 32;
 
     private Hbase11xHelper() {}
 
@@ -200,6 +208,110 @@ public class Hbase11xHelper
         }
     }
 
+    public static void closeRegionLocator(RegionLocator regionLocator)
+    {
+        try {
+            if (null != regionLocator) {
+                regionLocator.close();
+            }
+        }
+        catch (IOException e) {
+            throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.CLOSE_HBASE_TABLE_ERROR, e);
+        }
+    }
+
+    /**
+     * The staging directory must be empty, otherwise the HFiles left by the former job will be loaded again
+     *
+     * @param configuration configuration
+     */
+    public static void prepareStagingDir(Configuration configuration)
+    {
+        String hbaseConfig = configuration.getString(HBaseKey.HBASE_CONFIG);
+        Path stagingDir = new Path(configuration.getString(HBaseKey.STAGING_DIR));
+        try {
+            FileSystem fs = stagingDir.getFileSystem(Hbase11xHelper.getHbaseConfiguration(hbaseConfig));
+            if (fs.exists(stagingDir)) {
+                if (fs.listStatus(stagingDir).length > 0) {
+                    throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.ILLEGAL_VALUE,
+                            "The stagingDir[" + stagingDir + "] is not empty, please clean it first.");
+                }
+            }
+            else {
+                fs.mkdirs(stagingDir);
+            }
+        }
+        catch (IOException e) {
+            throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.BULK_LOAD_ERROR, e);
+        }
+    }
+
+    public static void bulkLoad(Configuration configuration)
+    {
+        String hbaseConfig = configuration.getString(HBaseKey.HBASE_CONFIG);
+        TableName hTableName = TableName.valueOf(configuration.getString(HBaseKey.TABLE));
+        Path stagingDir = new Path(configuration.getString(HBaseKey.STAGING_DIR));
+        LOG.info("Begin bulk loading HFiles under {} into table {} .", stagingDir, hTableName);
+        org.apache.hadoop.hbase.client.Connection hConnection = Hbase11xHelper.getHbaseConnection(hbaseConfig);
+        org.apache.hadoop.hbase.client.Admin admin = null;
+        org.apache.hadoop.hbase.client.Table hTable = null;
+        RegionLocator regionLocator = null;
+        try {
+            admin = hConnection.getAdmin();
+            hTable = hConnection.getTable(hTableName);
+            regionLocator = hConnection.getRegionLocator(hTableName);
+            org.apache.hadoop.conf.Configuration loadConf = new org.apache.hadoop.conf.Configuration(hConnection.getConfiguration());
+            FileSystem fs = stagingDir.getFileSystem(loadConf);
+            // every flush of a region buffer creates a new HFile, raise the limit to the files actually staged
+            int maxFiles = countMaxFilesPerRegionFamily(fs, stagingDir);
+            int limit = loadConf.getInt(LoadIncrementalHFiles.MAX_FILES_PER_REGION_PER_FAMILY, DEFAULT_MAX_FILES_PER_REGION_PER_FAMILY);
+            if (maxFiles > limit) {
+                LOG.warn("Up to {} HFiles are staged for one region and family, more than the bulk load limit {}, raise the limit. "
+                        + "Increase {} to create fewer HFiles.", maxFiles, limit, HBaseKey.REGION_BUFFER_SIZE);
+                loadConf.setInt(LoadIncrementalHFiles.MAX_FILES_PER_REGION_PER_FAMILY, maxFiles);
+            }
+            new LoadIncrementalHFiles(loadConf).doBulkLoad(stagingDir, admin, hTable, regionLocator);
+            // the loaded HFiles are moved away, only the empty family directories are left
+            stagingDir.getFileSystem(hConnection.getConfiguration()).delete(stagingDir, true);
+        }
+        catch (Exception e) {
+            throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.BULK_LOAD_ERROR, e);
+        }
+        finally {
+            Hbase11xHelper.closeRegionLocator(regionLocator);
+            Hbase11xHelper.closeTable(hTable);
+            Hbase11xHelper.closeAdmin(admin);
+            Hbase11xHelper.closeConnection(hConnection);
+        }
+    }
+
+    /**
+     * Count the staged HFiles of every region and family, the name of the HFiles starts with the hash of the region start key
+     *
+     * @param fs the file system of the staging directory
+     * @param stagingDir the staging directory
+     * @return the max number of HFiles of a region and family
+     * @throws IOException failed to list the staging directory
+     */
+    private static int countMaxFilesPerRegionFamily(FileSystem fs, Path stagingDir)
+            throws IOException
+    {
+        int maxFiles = 0;
+        for (FileStatus familyDir : fs.listStatus(stagingDir)) {
+            if (!familyDir.isDirectory()) {
+                continue;
+            }
+            Map<String, Integer> regionFiles = new HashMap<>();
+            for (FileStatus file : fs.listStatus(familyDir.getPath())) {
+                String name = file.getPath().getName();
+                int idx = name.indexOf(HFileBulkLoadWriter.REGION_SEPARATOR);
+                String region = idx > 0 ? name.substring(0, idx) : name;
+                maxFiles = Math.max(maxFiles, regionFiles.merge(region, 1, Integer::sum));
+            }
+        }
+        return maxFiles;
+    }
+
     public static void closeTable(Table table)
     {
         try {
@@ -249,6 +361,15 @@ public class Hbase11xHelper
         originalConfig.set(HBaseKey.WAL_FLAG, walFlag);
         long writeBufferSize = originalConfig.getLong(HBaseKey.WRITE_BUFFER_SIZE, HBaseConstant.DEFAULT_WRITE_BUFFER_SIZE);
         originalConfig.set(HBaseKey.WRITE_BUFFER_SIZE, writeBufferSize);
+
+        WriteModeType writeMode = WriteModeType.getByTypeName(originalConfig.getString(HBaseKey.WRITE_MODE, HBaseConstant.DEFAULT_WRITE_MODE));
+        originalConfig.set(HBaseKey.WRITE_MODE, writeMode.toString());
+        if (writeMode == WriteModeType.BULK_LOAD) {
+            originalConfig.getNecessaryValue(HBaseKey.STAGING_DIR, Hbase11xWriterErrorCode.REQUIRED_VALUE);
+        }
+        if (originalConfig.getInt(HBaseKey.FLUSH_THREADS, HBaseConstant.DEFAULT_FLUSH_THREADS) < 1) {
+            throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.ILLEGAL_VALUE, "The item flushThreads must be positive number");
+        }
     }
 
     private static void validateMode(Configuration originalConfig)
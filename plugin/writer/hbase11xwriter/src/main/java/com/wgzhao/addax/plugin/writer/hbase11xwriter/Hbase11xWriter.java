@@ -54,6 +54,9 @@ public class Hbase11xWriter
             if (truncate) {
                 Hbase11xHelper.truncateTable(this.originConfig);
             }
+            if (isBulkLoad()) {
+                Hbase11xHelper.prepareStagingDir(this.originConfig);
+            }
         }
 
         @Override
@@ -66,11 +69,24 @@ public class Hbase11xWriter
             return splitResultConfigs;
         }
 
+        @Override
+        public void post()
+        {
+            if (isBulkLoad()) {
+                Hbase11xHelper.bulkLoad(this.originConfig);
+            }
+        }
+
         @Override
         public void destroy()
         {
             //
         }
+
+        private boolean isBulkLoad()
+        {
+            return WriteModeType.getByTypeName(originConfig.getString(HBaseKey.WRITE_MODE)) == WriteModeType.BULK_LOAD;
+        }
     }
 
     public static class Task
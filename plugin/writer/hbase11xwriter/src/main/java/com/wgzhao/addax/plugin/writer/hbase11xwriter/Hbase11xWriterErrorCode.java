@@ -41,7 +41,8 @@ public enum Hbase11xWriterErrorCode
     CONSTRUCT_VERSION_ERROR("Hbasewriter-11", "Failed to put version."),
     GET_HBASE_BUFFERED_MUTATOR_ERROR("Hbasewriter-12", "Failed to get the BufferedMutator."),
     CLOSE_HBASE_BUFFERED_MUTATOR_ERROR("Hbasewriter-13", "Failed to close BufferedMutator handler."),
-    KERBEROS_LOGIN_ERROR("Hbasewriter-14", "Kerberos authentication failed.")
+    KERBEROS_LOGIN_ERROR("Hbasewriter-14", "Kerberos authentication failed."),
+    BULK_LOAD_ERROR("Hbasewriter-15", "Failed to bulk load HFiles.")
     ;
     private final String code;
     private final String description;
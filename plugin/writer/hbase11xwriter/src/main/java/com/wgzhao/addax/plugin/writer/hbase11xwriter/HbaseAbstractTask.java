@@ -52,6 +52,8 @@ public abstract class HbaseAbstractTask
     public String encoding;
     public Boolean walFlag;
     public BufferedMutator bufferedMutator;
+    // only used when writeMode is region or bulkLoad
+    public RegionBufferedWriter regionWriter;
 
     public HbaseAbstractTask(Configuration configuration)
     {
@@ -62,7 +64,17 @@ public abstract class HbaseAbstractTask
         this.encoding = configuration.getString(HBaseKey.ENCODING, HBaseConstant.DEFAULT_ENCODING);
         this.nullMode = NullModeType.getByTypeName(configuration.getString(HBaseKey.NULL_MODE, HBaseConstant.DEFAULT_NULL_MODE));
         this.walFlag = configuration.getBool(HBaseKey.WAL_FLAG, false);
-        this.bufferedMutator = Hbase11xHelper.getBufferedMutator(configuration);
+        WriteModeType writeMode = WriteModeType.getByTypeName(configuration.getString(HBaseKey.WRITE_MODE, HBaseConstant.DEFAULT_WRITE_MODE));
+        switch (writeMode) {
+            case REGION:
+                this.regionWriter = new RegionPutWriter(configuration);
+                break;
+            case BULK_LOAD:
+                this.regionWriter = new HFileBulkLoadWriter(configuration);
+                break;
+            default:
+                this.bufferedMutator = Hbase11xHelper.getBufferedMutator(configuration);
+        }
     }
 
     public void startWriter(RecordReceiver lineReceiver, TaskPluginCollector taskPluginCollector)
@@ -79,7 +91,16 @@ public abstract class HbaseAbstractTask
                     continue;
                 }
                 try {
-                    this.bufferedMutator.mutate(put);
+                    if (this.regionWriter != null) {
+                        if (put.isEmpty()) {
+                            // keep the same behavior as BufferedMutator
+                            throw new IllegalArgumentException("No columns to insert");
+                        }
+                        this.regionWriter.write(put);
+                    }
+                    else {
+                        this.bufferedMutator.mutate(put);
+                    }
                 }
                 catch (IllegalArgumentException e) {
                     if (e.getMessage().equals("No columns to insert") && nullMode.equals(NullModeType.SKIP)) {
@@ -95,7 +116,7 @@ public abstract class HbaseAbstractTask
             throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.PUT_HBASE_ERROR, e);
         }
         finally {
-            Hbase11xHelper.closeBufferedMutator(this.bufferedMutator);
+            this.close();
         }
     }
 
@@ -103,6 +124,9 @@ public abstract class HbaseAbstractTask
 
     public void close()
     {
+        if (this.regionWriter != null) {
+            this.regionWriter.close();
+        }
         Hbase11xHelper.closeBufferedMutator(this.bufferedMutator);
     }
 
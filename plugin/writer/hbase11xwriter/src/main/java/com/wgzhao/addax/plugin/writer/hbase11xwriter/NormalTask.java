@@ -42,9 +42,53 @@ public class NormalTask
 {
     private static final Logger LOG = LoggerFactory.getLogger(NormalTask.class);
 
+    // column family, qualifier and type are parsed once per task instead of once per record
+    private final int[] columnIndexes;
+    private final ColumnType[] columnTypes;
+    private final byte[][] families;
+    private final byte[][] qualifiers;
+
+    // the index is -1 for constant part of rowkey, whose bytes are in rowkeyConstants
+    private final int[] rowkeyIndexes;
+    private final ColumnType[] rowkeyTypes;
+    private final byte[][] rowkeyConstants;
+
+    private final SimpleDateFormat dfSeconds = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private final SimpleDateFormat dfMs = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss SSS");
+
     public NormalTask(Configuration configuration)
     {
         super(configuration);
+
+        int columnSize = columns.size();
+        this.columnIndexes = new int[columnSize];
+        this.columnTypes = new ColumnType[columnSize];
+        this.families = new byte[columnSize][];
+        this.qualifiers = new byte[columnSize][];
+        for (int i = 0; i < columnSize; i++) {
+            Configuration aColumn = columns.get(i);
+            String name = aColumn.getString(HBaseKey.NAME);
+            String promptInfo = "The name[" + name + "] of column should be cf:qualifier";
+            String[] cfAndQualifier = name.split(":");
+            Validate.isTrue(cfAndQualifier.length == 2 && StringUtils.isNotBlank(cfAndQualifier[0]) && StringUtils.isNotBlank(cfAndQualifier[1]), promptInfo);
+            this.columnIndexes[i] = aColumn.getInt(HBaseKey.INDEX);
+            this.columnTypes[i] = ColumnType.getByTypeName(aColumn.getString(HBaseKey.TYPE));
+            this.families[i] = Bytes.toBytes(cfAndQualifier[0]);
+            this.qualifiers[i] = Bytes.toBytes(cfAndQualifier[1]);
+        }
+
+        int rowkeySize = rowkeyColumn.size();
+        this.rowkeyIndexes = new int[rowkeySize];
+        this.rowkeyTypes = new ColumnType[rowkeySize];
+        this.rowkeyConstants = new byte[rowkeySize][];
+        for (int i = 0; i < rowkeySize; i++) {
+            Configuration aRowkeyColumn = rowkeyColumn.get(i);
+            this.rowkeyIndexes[i] = aRowkeyColumn.getInt(HBaseKey.INDEX);
+            this.rowkeyTypes[i] = ColumnType.getByTypeName(aRowkeyColumn.getString(HBaseKey.TYPE));
+            if (this.rowkeyIndexes[i] == -1) {
+                this.rowkeyConstants[i] = getValueByte(this.rowkeyTypes[i], aRowkeyColumn.getString(HBaseKey.VALUE));
+            }
+        }
     }
 
     @Override
@@ -63,22 +107,16 @@ public class NormalTask
             long timestamp = getVersion(record);
             put = new Put(rowkey, timestamp);
         }
-        for (Configuration aColumn : columns) {
-            Integer index = aColumn.getInt(HBaseKey.INDEX);
-            String type = aColumn.getString(HBaseKey.TYPE);
-            ColumnType columnType = ColumnType.getByTypeName(type);
-            String name = aColumn.getString(HBaseKey.NAME);
-            String promptInfo = "The name[" + name + "] of column should be cf:qualifier";
-            String[] cfAndQualifier = name.split(":");
-            Validate.isTrue(cfAndQualifier.length == 2 && StringUtils.isNotBlank(cfAndQualifier[0]) && StringUtils.isNotBlank(cfAndQualifier[1]), promptInfo);
+        for (int i = 0; i < this.columnIndexes.length; i++) {
+            int index = this.columnIndexes[i];
             if (index >= record.getColumnNumber()) {
                 throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.ILLEGAL_VALUE,
                         String.format("The field[index] of column is out-range, it should be less than %s. actually got %s.", record.getColumnNumber(), index));
             }
-            byte[] columnBytes = getColumnByte(columnType, record.getColumn(index));
+            byte[] columnBytes = getColumnByte(this.columnTypes[i], record.getColumn(index));
             //columnBytes 为null忽略这列
             if (null != columnBytes) {
-                put.addColumn(Bytes.toBytes(cfAndQualifier[0]), Bytes.toBytes(cfAndQualifier[1]), columnBytes);
+                put.addColumn(this.families[i], this.qualifiers[i], columnBytes);
             }
         }
         return put;
@@ -86,23 +124,31 @@ public class NormalTask
 
     public byte[] getRowkey(Record record)
     {
-        byte[] rowkeyBuffer = {};
-        for (Configuration aRowkeyColumn : rowkeyColumn) {
-            Integer index = aRowkeyColumn.getInt(HBaseKey.INDEX);
-            String type = aRowkeyColumn.getString(HBaseKey.TYPE);
-            ColumnType columnType = ColumnType.getByTypeName(type);
+        byte[][] parts = new byte[this.rowkeyIndexes.length][];
+        int length = 0;
+        for (int i = 0; i < this.rowkeyIndexes.length; i++) {
+            int index = this.rowkeyIndexes[i];
             if (index == -1) {
-                String value = aRowkeyColumn.getString(HBaseKey.VALUE);
-                rowkeyBuffer = Bytes.add(rowkeyBuffer, getValueByte(columnType, value));
+                parts[i] = this.rowkeyConstants[i];
             }
             else {
                 if (index >= record.getColumnNumber()) {
                     throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.CONSTRUCT_ROWKEY_ERROR,
                             String.format("The field[index] of rowkeyColumn is out-range, it should be less than %s. actually got %s.", record.getColumnNumber(), index));
                 }
-                byte[] value = getColumnByte(columnType, record.getColumn(index));
-                rowkeyBuffer = Bytes.add(rowkeyBuffer, value);
+                parts[i] = getColumnByte(this.rowkeyTypes[i], record.getColumn(index));
+                if (parts[i] == null) {
+                    throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.CONSTRUCT_ROWKEY_ERROR,
+                            String.format("The field[%s] of rowkeyColumn is null.", index));
+                }
             }
+            length += parts[i].length;
+        }
+        byte[] rowkeyBuffer = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, rowkeyBuffer, offset, part.length);
+            offset += part.length;
         }
         return rowkeyBuffer;
     }
@@ -127,8 +173,6 @@ public class NormalTask
             if (record.getColumn(index).getRawData() == null) {
                 throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.CONSTRUCT_VERSION_ERROR, "The version is empty");
             }
-            SimpleDateFormat dfSeconds = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            SimpleDateFormat dfMs = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss SSS");
             if (record.getColumn(index) instanceof LongColumn || record.getColumn(index) instanceof DoubleColumn) {
                 timestamp = record.getColumn(index).asLong();
             }
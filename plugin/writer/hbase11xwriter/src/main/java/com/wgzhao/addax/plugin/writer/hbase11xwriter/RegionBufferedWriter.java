@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.writer.hbase11xwriter;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.wgzhao.addax.common.base.HBaseConstant;
+import com.wgzhao.addax.common.base.HBaseKey;
+import com.wgzhao.addax.common.exception.AddaxException;
+import com.wgzhao.addax.common.statistics.LatencyHistogram;
+import com.wgzhao.addax.common.util.Configuration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route puts to per-region buffers by rowkey, and flush the full region buffer on a small thread pool.
+ * At most one batch of each region is in flight so that puts of the same row keep their order,
+ * and the total size of in-flight batches is bounded by {@code maxInFlightSize}.
+ */
+public abstract class RegionBufferedWriter
+{
+    private static final Logger LOG = LoggerFactory.getLogger(RegionBufferedWriter.class);
+    private static final LatencyHistogram LATENCY = LatencyHistogram.get("hbase.regionFlush");
+
+    protected final Connection connection;
+    protected final TableName tableName;
+
+    // the start key of every region, in ascending order
+    private final byte[][] startKeys;
+    private final List<Put>[] buffers;
+    private final long[] bufferSizes;
+    private final Future<?>[] inFlightBatches;
+
+    private final long regionBufferSize;
+    private final int maxInFlightPermits;
+    private final Semaphore inFlightPermits;
+    private final ExecutorService flushPool;
+
+    private volatile Exception flushException = null;
+    private boolean closed = false;
+
+    @SuppressWarnings("unchecked")
+    public RegionBufferedWriter(Configuration configuration)
+    {
+        this.tableName = TableName.valueOf(configuration.getString(HBaseKey.TABLE));
+        this.connection = Hbase11xHelper.getHbaseConnection(configuration.getString(HBaseKey.HBASE_CONFIG));
+        RegionLocator regionLocator = null;
+        try {
+            regionLocator = this.connection.getRegionLocator(this.tableName);
+            byte[][] keys = regionLocator.getStartKeys();
+            Arrays.sort(keys, Bytes.BYTES_COMPARATOR);
+            this.startKeys = keys;
+        }
+        catch (IOException e) {
+            Hbase11xHelper.closeConnection(this.connection);
+            throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.HBASE_TABLE_ERROR, e);
+        }
+        finally {
+            Hbase11xHelper.closeRegionLocator(regionLocator);
+        }
+
+        this.buffers = new List[this.startKeys.length];
+        for (int i = 0; i < this.buffers.length; i++) {
+            this.buffers[i] = new ArrayList<>();
+        }
+        this.bufferSizes = new long[this.startKeys.length];
+        this.inFlightBatches = new Future<?>[this.startKeys.length];
+
+        this.regionBufferSize = configuration.getLong(HBaseKey.REGION_BUFFER_SIZE, HBaseConstant.DEFAULT_REGION_BUFFER_SIZE);
+        long maxInFlightSize = configuration.getLong(HBaseKey.MAX_IN_FLIGHT_SIZE, HBaseConstant.DEFAULT_MAX_IN_FLIGHT_SIZE);
+        // one permit stands for 1KB
+        this.maxInFlightPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxInFlightSize / 1024));
+        this.inFlightPermits = new Semaphore(this.maxInFlightPermits);
+        int flushThreads = configuration.getInt(HBaseKey.FLUSH_THREADS, HBaseConstant.DEFAULT_FLUSH_THREADS);
+        this.flushPool = Executors.newFixedThreadPool(flushThreads, new ThreadFactoryBuilder()
+                .setNameFormat("region-flush-%d")
+                .setDaemon(true)
+                .build());
+        LOG.info("The table {} has {} regions, flush region batches with {} threads.", this.tableName, this.startKeys.length, flushThreads);
+    }
+
+    /**
+     * Write the batch of puts which all belong to one region
+     *
+     * @param startKey the start key of the region
+     * @param puts the puts of one region
+     * @throws IOException write failure
+     */
+    protected abstract void flushRegion(byte[] startKey, List<Put> puts)
+            throws IOException;
+
+    public void write(Put put)
+    {
+        checkFlushException();
+        int region = locateRegion(put.getRow());
+        this.buffers[region].add(put);
+        this.bufferSizes[region] += put.heapSize();
+        if (this.bufferSizes[region] >= this.regionBufferSize) {
+            submit(region);
+        }
+    }
+
+    public void close()
+    {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            if (this.flushException == null) {
+                for (int i = 0; i < this.buffers.length; i++) {
+                    if (!this.buffers[i].isEmpty()) {
+                        submit(i);
+                    }
+                }
+            }
+            this.flushPool.shutdown();
+            while (!this.flushPool.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.info("Waiting for the region batches to be flushed.");
+            }
+            checkFlushException();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.PUT_HBASE_ERROR, e);
+        }
+        finally {
+            this.flushPool.shutdownNow();
+            Hbase11xHelper.closeConnection(this.connection);
+        }
+    }
+
+    private int locateRegion(byte[] row)
+    {
+        int idx = Arrays.binarySearch(this.startKeys, row, Bytes.BYTES_COMPARATOR);
+        // not found, the row belongs to the region before the insertion point
+        return idx >= 0 ? idx : Math.max(0, -idx - 2);
+    }
+
+    private void submit(int region)
+    {
+        // keep at most one batch of a region in flight, so the puts of the same row are applied in order
+        waitInFlight(region);
+        List<Put> batch = this.buffers[region];
+        int permits = (int) Math.min(this.maxInFlightPermits, Math.max(1, this.bufferSizes[region] / 1024));
+        this.buffers[region] = new ArrayList<>();
+        this.bufferSizes[region] = 0;
+        try {
+            this.inFlightPermits.acquire(permits);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.PUT_HBASE_ERROR, e);
+        }
+        this.inFlightBatches[region] = this.flushPool.submit(() -> {
+            long startTime = System.nanoTime();
+            try {
+                flushRegion(this.startKeys[region], batch);
+                LATENCY.observeSince(startTime);
+            }
+            catch (Exception e) {
+                LOG.error("Failed to flush {} puts to the table {}.", batch.size(), this.tableName, e);
+                this.flushException = e;
+            }
+            finally {
+                this.inFlightPermits.release(permits);
+            }
+        });
+    }
+
+    private void waitInFlight(int region)
+    {
+        Future<?> future = this.inFlightBatches[region];
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.PUT_HBASE_ERROR, e);
+        }
+        catch (ExecutionException e) {
+            throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.PUT_HBASE_ERROR, e.getCause());
+        }
+        this.inFlightBatches[region] = null;
+    }
+
+    private void checkFlushException()
+    {
+        if (this.flushException != null) {
+            throw AddaxException.asAddaxException(Hbase11xWriterErrorCode.PUT_HBASE_ERROR, this.flushException);
+        }
+    }
+}
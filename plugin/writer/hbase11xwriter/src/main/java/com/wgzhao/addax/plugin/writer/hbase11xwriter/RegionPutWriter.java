@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.writer.hbase11xwriter;
+
+import com.wgzhao.addax.common.util.Configuration;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Write each region batch with one multi put request
+ */
+public class RegionPutWriter
+        extends RegionBufferedWriter
+{
+    public RegionPutWriter(Configuration configuration)
+    {
+        super(configuration);
+    }
+
+    @Override
+    protected void flushRegion(byte[] startKey, List<Put> puts)
+            throws IOException
+    {
+        // Table is lightweight but not thread safe, get one for every batch
+        try (Table table = this.connection.getTable(this.tableName)) {
+            table.put(puts);
+        }
+    }
+}
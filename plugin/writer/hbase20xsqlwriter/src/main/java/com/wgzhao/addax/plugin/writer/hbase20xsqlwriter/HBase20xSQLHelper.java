@@ -23,12 +23,14 @@ import com.wgzhao.addax.common.base.HBaseConstant;
 import com.wgzhao.addax.common.base.HBaseKey;
 import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.writer.util.PartitionedUpsertWriter;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -89,6 +91,14 @@ public class HBase20xSQLHelper
             throw AddaxException.asAddaxException(
                     HBase20xSQLWriterErrorCode.ILLEGAL_VALUE, "HBase的columns配置不能为空,请添加目标表的列名配置.");
         }
+        String writeMode = originalConfig.getString(HBaseKey.WRITE_MODE, "batch");
+        if (!"batch".equalsIgnoreCase(writeMode) && !PartitionedUpsertWriter.WRITE_MODE.equalsIgnoreCase(writeMode)) {
+            throw AddaxException.asAddaxException(HBase20xSQLWriterErrorCode.ILLEGAL_VALUE,
+                    "不支持您配置的写入模式: " + writeMode + ", 目前支持的写入模式是: [batch, partition]");
+        }
+        if (originalConfig.getInt(HBaseKey.FLUSH_THREADS, HBaseConstant.DEFAULT_FLUSH_THREADS) < 1) {
+            throw AddaxException.asAddaxException(HBase20xSQLWriterErrorCode.ILLEGAL_VALUE, "flushThreads 必须大于 0.");
+        }
         String schema = originalConfig.getString(HBaseKey.SCHEMA);
         // 检查表以及配置列是否存在
         checkTable(conn, schema, tableName, columnNames);
@@ -163,6 +173,60 @@ public class HBase20xSQLHelper
         }
     }
 
+    /**
+     * 从系统表中获取表的盐值分桶数(SALT_BUCKETS), 没有加盐的表返回 0
+     *
+     * @param conn database connection {@link Connection}
+     * @param schema the schema of table, null for the default schema
+     * @param tableName table name without schema
+     * @return the number of salt buckets
+     * @throws SQLException query failure
+     */
+    public static int getSaltBuckets(Connection conn, String schema, String tableName)
+            throws SQLException
+    {
+        String sql = "SELECT SALT_BUCKETS FROM SYSTEM.CATALOG WHERE TABLE_NAME = ? AND COLUMN_NAME IS NULL AND COLUMN_FAMILY IS NULL"
+                + (schema == null ? " AND TABLE_SCHEM IS NULL" : " AND TABLE_SCHEM = ?");
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, tableName);
+            if (schema != null) {
+                ps.setString(2, schema);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * 从系统表中获取表的主键列, 按主键中的顺序排列
+     *
+     * @param conn database connection {@link Connection}
+     * @param schema the schema of table, null for the default schema
+     * @param tableName table name without schema
+     * @return the primary key columns
+     * @throws SQLException query failure
+     */
+    public static List<String> getPrimaryKeyColumns(Connection conn, String schema, String tableName)
+            throws SQLException
+    {
+        String sql = "SELECT COLUMN_NAME FROM SYSTEM.CATALOG WHERE TABLE_NAME = ? AND COLUMN_NAME IS NOT NULL AND KEY_SEQ IS NOT NULL"
+                + (schema == null ? " AND TABLE_SCHEM IS NULL" : " AND TABLE_SCHEM = ?") + " ORDER BY KEY_SEQ";
+        List<String> columns = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, tableName);
+            if (schema != null) {
+                ps.setString(2, schema);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+        }
+        return columns;
+    }
+
     private static String getSelectSystemSQL(String schema, String tableName)
     {
         String sql = String.format(SELECT_CATALOG_TABLE_STRING, tableName);
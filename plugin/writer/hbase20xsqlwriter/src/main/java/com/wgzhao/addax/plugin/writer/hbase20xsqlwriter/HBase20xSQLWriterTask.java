@@ -27,6 +27,7 @@ import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.RecordReceiver;
 import com.wgzhao.addax.common.plugin.TaskPluginCollector;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.rdbms.writer.util.PartitionedUpsertWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +43,7 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class HBase20xSQLWriterTask
@@ -64,6 +66,11 @@ public class HBase20xSQLWriterTask
 
     private NullModeType nullModeType;
     private int batchSize;
+    private String schema;
+    private String tableName;
+    // 是否按主键分区, 在多个连接上并发提交
+    private boolean partitionWrite;
+    private int flushThreads;
 
     public HBase20xSQLWriterTask(Configuration configuration)
     {
@@ -80,7 +87,12 @@ public class HBase20xSQLWriterTask
             initialize();
 
             // 写入数据
-            writeData(lineReceiver);
+            if (partitionWrite) {
+                writePartitioned(lineReceiver);
+            }
+            else {
+                writeData(lineReceiver);
+            }
         }
         catch (Throwable e) {
             throw AddaxException.asAddaxException(HBase20xSQLWriterErrorCode.PUT_HBASE_ERROR, e);
@@ -105,8 +117,10 @@ public class HBase20xSQLWriterTask
         }
         nullModeType = NullModeType.getByTypeName(configuration.getString(HBaseKey.NULL_MODE, HBaseConstant.DEFAULT_NULL_MODE));
         batchSize = configuration.getInt(HBaseKey.BATCH_SIZE, HBaseConstant.DEFAULT_BATCH_ROW_COUNT);
-        String schema = configuration.getString(HBaseKey.SCHEMA);
-        String tableName = configuration.getNecessaryValue(HBaseKey.TABLE, HBase20xSQLWriterErrorCode.REQUIRED_VALUE);
+        partitionWrite = PartitionedUpsertWriter.WRITE_MODE.equalsIgnoreCase(configuration.getString(HBaseKey.WRITE_MODE));
+        flushThreads = configuration.getInt(HBaseKey.FLUSH_THREADS, HBaseConstant.DEFAULT_FLUSH_THREADS);
+        schema = configuration.getString(HBaseKey.SCHEMA);
+        tableName = configuration.getNecessaryValue(HBaseKey.TABLE, HBase20xSQLWriterErrorCode.REQUIRED_VALUE);
         fullTableName = "\"" + tableName + "\"";
         if (schema != null && !schema.isEmpty()) {
             fullTableName = "\"" + schema + "\".\"" + tableName + "\"";
@@ -114,17 +128,18 @@ public class HBase20xSQLWriterTask
         columns = configuration.getList(HBaseKey.COLUMN, String.class);
         if (pstmt == null) {
             // 一个Task的生命周期中只使用一个PreparedStatement对象
-            pstmt = createPreparedStatement();
+            pstmt = createPreparedStatement(connection);
             columnTypes = getColumnSqlType();
         }
     }
 
     /**
      * 生成sql模板，并根据模板创建PreparedStatement
+     * @param connection the connection
      * @return A {@link PreparedStatement}
      * @throws SQLException if occurred
      */
-    private PreparedStatement createPreparedStatement()
+    private PreparedStatement createPreparedStatement(Connection connection)
             throws SQLException
     {
         // 生成列名集合，列之间用逗号分隔： col1,col2,col3,...
@@ -207,11 +222,7 @@ public class HBase20xSQLWriterTask
         Record record;
         while ((record = lineReceiver.getFromReader()) != null) {
             // 校验列数量是否符合预期
-            if (record.getColumnNumber() != numberOfColumnsToRead) {
-                throw AddaxException.asAddaxException(HBase20xSQLWriterErrorCode.ILLEGAL_VALUE,
-                        "数据源给出的列数量[" + record.getColumnNumber() + "]与您配置中的列数量[" + numberOfColumnsToRead +
-                                "]不同, 请检查您的配置 或者 联系 Hbase 管理员.");
-            }
+            checkColumnNumber(record);
 
             buffer.add(record);
             if (buffer.size() > batchSize) {
@@ -227,6 +238,96 @@ public class HBase20xSQLWriterTask
         }
     }
 
+    private void checkColumnNumber(Record record)
+    {
+        if (record.getColumnNumber() != numberOfColumnsToRead) {
+            throw AddaxException.asAddaxException(HBase20xSQLWriterErrorCode.ILLEGAL_VALUE,
+                    "数据源给出的列数量[" + record.getColumnNumber() + "]与您配置中的列数量[" + numberOfColumnsToRead +
+                            "]不同, 请检查您的配置 或者 联系 Hbase 管理员.");
+        }
+    }
+
+    /**
+     * 按主键把记录分到多个分区, 每个分区攒满一批后在连接池中异步提交, 读取记录不再等待提交完成
+     *
+     * @param lineReceiver record
+     */
+    private void writePartitioned(RecordReceiver lineReceiver)
+    {
+        PartitionedUpsertWriter writer = createPartitionedWriter();
+        try {
+            Record record;
+            while ((record = lineReceiver.getFromReader()) != null) {
+                checkColumnNumber(record);
+                writer.write(record);
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    private PartitionedUpsertWriter createPartitionedWriter()
+    {
+        String schemaName = schema == null || schema.isEmpty() ? null : schema;
+        int saltBuckets = 0;
+        List<String> keyColumns = Collections.emptyList();
+        try {
+            saltBuckets = HBase20xSQLHelper.getSaltBuckets(connection, schemaName, tableName);
+            keyColumns = HBase20xSQLHelper.getPrimaryKeyColumns(connection, schemaName, tableName);
+        }
+        catch (SQLException e) {
+            LOG.warn("获取表 {} 的分桶数和主键失败, 按所有列分区.", fullTableName, e);
+        }
+
+        // 分区的主键列在记录中的位置
+        List<Integer> indexes = new ArrayList<>();
+        for (String key : keyColumns) {
+            int idx = columns.indexOf(key);
+            if (idx >= 0) {
+                indexes.add(idx);
+            }
+        }
+        // 加盐的表分区数与分桶数相同
+        int partitions = saltBuckets > 0 ? saltBuckets : flushThreads * 2;
+        LOG.info("The table {} has {} salt buckets, partition records by the columns {}.", fullTableName, saltBuckets, keyColumns);
+
+        return new PartitionedUpsertWriter(HBase20xSQLWriterErrorCode.PUT_HBASE_ERROR, partitions, flushThreads, batchSize, indexes.stream().mapToInt(Integer::intValue).toArray())
+        {
+            @Override
+            protected Connection newConnection()
+                    throws SQLException
+            {
+                Connection conn = HBase20xSQLHelper.getJdbcConnection(configuration);
+                conn.setAutoCommit(false);
+                return conn;
+            }
+
+            @Override
+            protected PreparedStatement prepareUpsert(Connection conn)
+                    throws SQLException
+            {
+                return createPreparedStatement(conn);
+            }
+
+            @Override
+            protected void bind(PreparedStatement ps, Record record)
+                    throws SQLException
+            {
+                setupStatement(ps, record);
+            }
+
+            @Override
+            protected void collectDirtyRecord(Record record, Exception e)
+            {
+                LOG.error("Failed writing to phoenix", e);
+                synchronized (taskPluginCollector) {
+                    taskPluginCollector.collectDirtyRecord(record, e);
+                }
+            }
+        };
+    }
+
     /**
      * 批量提交一组数据，如果失败，则尝试一行行提交，如果仍然失败，抛错给用户
      *
@@ -239,7 +340,7 @@ public class HBase20xSQLWriterTask
         try {
             // 将所有record提交到connection缓存
             for (Record r : records) {
-                setupStatement(r);
+                setupStatement(pstmt, r);
                 pstmt.addBatch();
             }
 
@@ -256,7 +357,7 @@ public class HBase20xSQLWriterTask
             connection.rollback();
             HBase20xSQLHelper.closeJdbc(null, pstmt, null);
             connection.setAutoCommit(true);
-            pstmt = createPreparedStatement();
+            pstmt = createPreparedStatement(connection);
             doSingleUpsert(records);
         }
         catch (Exception e) {
@@ -275,7 +376,7 @@ public class HBase20xSQLWriterTask
         for (Record r : records) {
             try {
                 rowNumber++;
-                setupStatement(r);
+                setupStatement(pstmt, r);
                 pstmt.executeUpdate();
             }
             catch (SQLException e) {
@@ -286,18 +387,18 @@ public class HBase20xSQLWriterTask
         }
     }
 
-    private void setupStatement(Record record)
+    private void setupStatement(PreparedStatement pstmt, Record record)
             throws SQLException
     {
         for (int i = 0; i < numberOfColumnsToWrite; i++) {
             Column col = record.getColumn(i);
             int sqlType = columnTypes[i];
             // PreparedStatement中的索引从1开始，所以用i+1
-            setupColumn(i + 1, sqlType, col);
+            setupColumn(pstmt, i + 1, sqlType, col);
         }
     }
 
-    private void setupColumn(int pos, int sqlType, Column col)
+    private void setupColumn(PreparedStatement pstmt, int pos, int sqlType, Column col)
             throws SQLException
     {
         if (col.getRawData() != null) {
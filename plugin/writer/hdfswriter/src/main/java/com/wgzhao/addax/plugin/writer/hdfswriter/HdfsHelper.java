@@ -29,6 +29,8 @@ import com.wgzhao.addax.common.exception.AddaxException;
 import com.wgzhao.addax.common.plugin.RecordReceiver;
 import com.wgzhao.addax.common.plugin.TaskPluginCollector;
 import com.wgzhao.addax.common.util.Configuration;
+import com.wgzhao.addax.storage.writer.DelimitedRecordEncoder;
+import com.wgzhao.addax.storage.writer.ParallelCompressorOutputStream;
 import org.apache.avro.Conversions;
 import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
@@ -61,6 +63,7 @@ import org.apache.hadoop.mapred.RecordWriter;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapred.TextOutputFormat;
 import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.orc.CompressionKind;
 import org.apache.orc.OrcFile;
 import org.apache.orc.TypeDescription;
@@ -74,13 +77,16 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringJoiner;
 
@@ -92,24 +98,20 @@ public class HdfsHelper
     private FileSystem fileSystem = null;
     private JobConf conf = null;
     private org.apache.hadoop.conf.Configuration hadoopConf = null;
+    // 可以多线程压缩的 text file 压缩格式, 以及对应的 commons-compress 名称
+    private static final Map<String, String> PARALLEL_TEXT_COMPRESS = new HashMap<>();
+
+    static {
+        PARALLEL_TEXT_COMPRESS.put("GZIP", "gz");
+        PARALLEL_TEXT_COMPRESS.put("BZIP2", "bzip2");
+        PARALLEL_TEXT_COMPRESS.put("ZSTD", "zstd");
+    }
+
     // Kerberos
     private boolean haveKerberos = false;
     private String kerberosKeytabFilePath;
     private String kerberosPrincipal;
 
-    public static MutablePair<Text, Boolean> transportOneRecord(
-            Record record, char fieldDelimiter, List<Configuration> columnsConfiguration, TaskPluginCollector taskPluginCollector)
-    {
-        MutablePair<List<Object>, Boolean> transportResultList = transportOneRecord(record, columnsConfiguration, taskPluginCollector);
-        //保存<转换后的数据,是否是脏数据>
-        MutablePair<Text, Boolean> transportResult = new MutablePair<>();
-        transportResult.setRight(false);
-        Text recordResult = new Text(StringUtils.join(transportResultList.getLeft(), fieldDelimiter));
-        transportResult.setRight(transportResultList.getRight());
-        transportResult.setLeft(recordResult);
-        return transportResult;
-    }
-
     public static MutablePair<List<Object>, Boolean> transportOneRecord(
             Record record, List<Configuration> columnsConfiguration,
             TaskPluginCollector taskPluginCollector)
@@ -482,14 +484,29 @@ public class HdfsHelper
         Path outputPath = new Path(fileName);
         FileOutputFormat.setOutputPath(conf, outputPath);
         FileOutputFormat.setWorkOutputPath(conf, outputPath);
+        int compressThreads = config.getInt(Key.COMPRESS_THREADS, 1);
         try {
+            if (compressThreads > 1 && PARALLEL_TEXT_COMPRESS.containsKey(compress)) {
+                // 与 TextOutputFormat 一样, 文件名为去掉后缀的文件名加上压缩格式的扩展名
+                CompressionCodec codec = ReflectionUtils.newInstance(getCompressCodec(compress), conf);
+                Path file = new Path(fileName + codec.getDefaultExtension());
+                textFileParallelWrite(lineReceiver, file, PARALLEL_TEXT_COMPRESS.get(compress),
+                        config.getInt(Key.COMPRESS_LEVEL, -1), compressThreads, fieldDelimiter, columns, taskPluginCollector);
+                return;
+            }
             RecordWriter<NullWritable, Text> writer = new TextOutputFormat<NullWritable, Text>()
                     .getRecordWriter(fileSystem, conf, outputPath.toString(), Reporter.NULL);
+            // 转换后的值直接编码为 UTF-8 字节, 不加引号, null 写为空字符串, 每行复用同一个 Text
+            DelimitedRecordEncoder encoder = new DelimitedRecordEncoder(StandardCharsets.UTF_8, fieldDelimiter, null, null, false);
+            Text line = new Text();
             Record record;
             while ((record = lineReceiver.getFromReader()) != null) {
-                MutablePair<Text, Boolean> transportResult = transportOneRecord(record, fieldDelimiter, columns, taskPluginCollector);
+                MutablePair<List<Object>, Boolean> transportResult = transportOneRecord(record, columns, taskPluginCollector);
                 if (Boolean.FALSE.equals(transportResult.getRight())) {
-                    writer.write(NullWritable.get(), transportResult.getLeft());
+                    encoder.reset();
+                    encoder.encodeValues(transportResult.getLeft());
+                    line.set(encoder.getBuffer(), 0, encoder.getLength());
+                    writer.write(NullWritable.get(), line);
                 }
             }
             writer.close(Reporter.NULL);
@@ -502,6 +519,30 @@ public class HdfsHelper
         }
     }
 
+    /*
+     * 多线程压缩写 text file, 压缩结果为多个首尾相接的标准压缩流, 对应的 Hadoop codec 可以直接读取
+     */
+    private void textFileParallelWrite(RecordReceiver lineReceiver, Path file, String compress, int compressLevel,
+            int compressThreads, char fieldDelimiter, List<Configuration> columns, TaskPluginCollector taskPluginCollector)
+            throws IOException
+    {
+        DelimitedRecordEncoder encoder = new DelimitedRecordEncoder(StandardCharsets.UTF_8, fieldDelimiter, null, null, false);
+        try (OutputStream out = new ParallelCompressorOutputStream(fileSystem.create(file, false), compress, compressLevel, compressThreads)) {
+            Record record;
+            while ((record = lineReceiver.getFromReader()) != null) {
+                MutablePair<List<Object>, Boolean> transportResult = transportOneRecord(record, columns, taskPluginCollector);
+                if (Boolean.FALSE.equals(transportResult.getRight())) {
+                    encoder.encodeValues(transportResult.getLeft());
+                    encoder.newLine();
+                    if (encoder.getLength() >= ParallelCompressorOutputStream.BLOCK_SIZE) {
+                        encoder.writeTo(out);
+                    }
+                }
+            }
+            encoder.writeTo(out);
+        }
+    }
+
     // compress 已经转为大写
     public Class<? extends CompressionCodec> getCompressCodec(String compress)
     {
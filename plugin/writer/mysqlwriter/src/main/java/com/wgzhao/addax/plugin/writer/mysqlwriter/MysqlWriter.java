@@ -100,30 +100,30 @@ public class MysqlWriter
             {
 
                 @Override
-                protected PreparedStatement fillPreparedStatementColumnType(PreparedStatement preparedStatement, int columnIndex,
+                protected PreparedStatement fillPreparedStatementColumnType(PreparedStatement preparedStatement, int parameterIndex, int columnIndex,
                         int columnSqlType, Column column)
                         throws SQLException
                 {
                     if (column == null || column.getRawData() == null) {
-                        preparedStatement.setObject(columnIndex, null);
+                        preparedStatement.setObject(parameterIndex, null);
                         return preparedStatement;
                     }
                     if (columnSqlType == Types.BIT) {
                         // BIT(1) -> java.lang.Boolean
                         if (column.getType() == Column.Type.BOOL) {
-                            preparedStatement.setBoolean(columnIndex, column.asBoolean());
+                            preparedStatement.setBoolean(parameterIndex, column.asBoolean());
                         }
                         else {
                             // BIT ( > 1) -> byte[]
-                            preparedStatement.setObject(columnIndex, Integer.valueOf(column.asString(), 2));
+                            preparedStatement.setObject(parameterIndex, Integer.valueOf(column.asString(), 2));
                         }
                         return preparedStatement;
                     }
                     if (columnSqlType == Types.DATE && "YEAR".equals(this.resultSetMetaData.get(columnIndex).get("typeName"))) {
-                        preparedStatement.setLong(columnIndex, column.asLong());
+                        preparedStatement.setLong(parameterIndex, column.asLong());
                         return preparedStatement;
                     }
-                    return super.fillPreparedStatementColumnType(preparedStatement, columnIndex, columnSqlType, column);
+                    return super.fillPreparedStatementColumnType(preparedStatement, parameterIndex, columnIndex, columnSqlType, column);
                 }
             };
             this.commonRdbmsWriterTask.init(this.writerSliceConfig);
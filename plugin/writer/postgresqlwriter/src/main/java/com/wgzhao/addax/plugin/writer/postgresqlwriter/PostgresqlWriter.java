@@ -128,11 +128,11 @@ public class PostgresqlWriter
                 }
 
                 @Override
-                protected PreparedStatement fillPreparedStatementColumnType(PreparedStatement preparedStatement, int columnIndex, int columnSqlType, Column column)
+                protected PreparedStatement fillPreparedStatementColumnType(PreparedStatement preparedStatement, int parameterIndex, int columnIndex, int columnSqlType, Column column)
                         throws SQLException
                 {
                     if (column == null || column.getRawData() == null) {
-                        preparedStatement.setObject(columnIndex, null);
+                        preparedStatement.setObject(parameterIndex, null);
                         return preparedStatement;
                     }
 
@@ -143,11 +143,11 @@ public class PostgresqlWriter
                         } else {
                             v = bytes2Binary(column.asBytes());
                         }
-                        preparedStatement.setString(columnIndex, v);
+                        preparedStatement.setString(parameterIndex, v);
                         return preparedStatement;
                     }
 
-                    return super.fillPreparedStatementColumnType(preparedStatement, columnIndex, columnSqlType, column);
+                    return super.fillPreparedStatementColumnType(preparedStatement, parameterIndex, columnIndex, columnSqlType, column);
                 }
             };
 
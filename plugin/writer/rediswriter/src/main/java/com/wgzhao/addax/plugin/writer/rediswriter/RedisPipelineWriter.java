@@ -0,0 +1,345 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.writer.rediswriter;
+
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import com.wgzhao.addax.common.statistics.LatencyHistogram;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pipelined RESTORE writer.
+ * <p>
+ * Commands are buffered per redis node and grouped by db, so a batch only sends a SELECT when the db changes.
+ * A batch is written to the connection without waiting for its replies, at most {@code maxInFlight} batches
+ * of one node are waiting for replies, the oldest one is read back before a new one is sent.
+ * In cluster mode, the commands answered with MOVED or ASK are sent again to the right node instead of failing the job.
+ */
+public class RedisPipelineWriter
+{
+    private static final Logger LOG = LoggerFactory.getLogger(RedisPipelineWriter.class);
+
+    private static final int SLOT_COUNT = 16384;
+    private static final int MAX_REDIRECTS = 5;
+    private static final LatencyHistogram LATENCY = LatencyHistogram.get("redis.pipeline");
+
+    private final boolean isCluster;
+    private final int timeout;
+    private final String auth;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final TaskPluginCollector taskPluginCollector;
+
+    // host:port -> node
+    private final Map<String, Node> nodes = new HashMap<>();
+    // slot -> node, only used in cluster mode
+    private final Node[] slots = new Node[SLOT_COUNT];
+    private Node standaloneNode;
+
+    public RedisPipelineWriter(boolean isCluster, int timeout, String auth, int batchSize, int maxInFlight,
+            TaskPluginCollector taskPluginCollector)
+    {
+        this.isCluster = isCluster;
+        this.timeout = timeout;
+        this.auth = auth;
+        this.batchSize = batchSize;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.taskPluginCollector = taskPluginCollector;
+    }
+
+    /**
+     * connect to the given redis, in cluster mode, all masters are discovered by CLUSTER SLOTS
+     *
+     * @param host host of redis
+     * @param port port of redis
+     */
+    public void connect(String host, int port)
+    {
+        if (!this.isCluster) {
+            this.standaloneNode = getNode(host, port);
+            return;
+        }
+        StringBuilder sb = new StringBuilder("\r\nRedis Cluster 节点分配\r\n");
+        Jedis seed = new Jedis(host, port, this.timeout, this.timeout);
+        try {
+            if (StringUtils.isNotBlank(this.auth)) {
+                seed.auth(this.auth);
+            }
+            for (Object slot : seed.clusterSlots()) {
+                List<?> list = (List<?>) slot;
+                int start = ((Long) list.get(0)).intValue();
+                int end = ((Long) list.get(1)).intValue();
+                // the first host is master
+                List<?> hostInfo = (List<?>) list.get(2);
+                String nodeHost = new String((byte[]) hostInfo.get(0));
+                int nodePort = ((Long) hostInfo.get(1)).intValue();
+                Node node = getNode(nodeHost, nodePort);
+                for (int i = start; i <= end; i++) {
+                    this.slots[i] = node;
+                }
+                sb.append(nodeHost).append(":").append(nodePort).append("\t")
+                        .append("slot:").append(start).append("-").append(end).append("\r\n");
+            }
+        }
+        finally {
+            seed.close();
+        }
+        LOG.info(sb.toString());
+    }
+
+    public Collection<Jedis> getConnections()
+    {
+        List<Jedis> result = new ArrayList<>();
+        for (Node node : this.nodes.values()) {
+            result.add(node.jedis);
+        }
+        return result;
+    }
+
+    public void write(Record record, int db, byte[] key, byte[] value, long expireAt)
+    {
+        RestoreCommand command = new RestoreCommand(record, this.isCluster ? 0 : db, key, value, expireAt);
+        Node node = this.isCluster ? this.slots[JedisClusterCRC16.getSlot(key)] : this.standaloneNode;
+        if (node == null) {
+            this.taskPluginCollector.collectDirtyRecord(record, "No redis node serves the slot of the key");
+            return;
+        }
+        add(node, command);
+    }
+
+    /**
+     * send all buffered commands and wait for all replies, including the redirected ones
+     */
+    public void flush()
+    {
+        boolean pending = true;
+        while (pending) {
+            pending = false;
+            for (Node node : new ArrayList<>(this.nodes.values())) {
+                if (node.bufferedCount > 0) {
+                    send(node);
+                }
+                while (!node.inFlight.isEmpty()) {
+                    readOldest(node);
+                }
+            }
+            // redirected commands may be buffered to any node again
+            for (Node node : this.nodes.values()) {
+                if (node.bufferedCount > 0) {
+                    pending = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    public void close()
+    {
+        for (Node node : this.nodes.values()) {
+            node.jedis.close();
+        }
+        this.nodes.clear();
+    }
+
+    private void add(Node node, RestoreCommand command)
+    {
+        node.buffered.computeIfAbsent(command.db, k -> new ArrayList<>()).add(command);
+        node.bufferedCount++;
+        if (node.bufferedCount >= this.batchSize) {
+            send(node);
+        }
+    }
+
+    private Node getNode(String host, int port)
+    {
+        return this.nodes.computeIfAbsent(host + ":" + port, k -> {
+            Jedis jedis = new Jedis(host, port, this.timeout, this.timeout);
+            if (StringUtils.isNotBlank(this.auth)) {
+                jedis.auth(this.auth);
+            }
+            return new Node(jedis);
+        });
+    }
+
+    private void send(Node node)
+    {
+        if (node.inFlight.size() >= this.maxInFlight) {
+            readOldest(node);
+        }
+        Client client = node.client;
+        List<Reply> sent = new ArrayList<>(node.bufferedCount * 2 + node.buffered.size());
+        for (Map.Entry<Integer, List<RestoreCommand>> entry : node.buffered.entrySet()) {
+            int db = entry.getKey();
+            if (db != node.currentDb) {
+                client.select(db);
+                sent.add(new Reply(ReplyType.SELECT, null));
+                node.currentDb = db;
+            }
+            for (RestoreCommand command : entry.getValue()) {
+                if (command.asking) {
+                    client.asking();
+                    sent.add(new Reply(ReplyType.ASKING, command));
+                }
+                client.restore(command.key, 0, command.value);
+                sent.add(new Reply(ReplyType.RESTORE, command));
+                if (command.expireAt > 0) {
+                    if (command.asking) {
+                        client.asking();
+                        sent.add(new Reply(ReplyType.ASKING, command));
+                    }
+                    client.pexpireAt(command.key, command.expireAt);
+                    sent.add(new Reply(ReplyType.EXPIRE, command));
+                }
+            }
+        }
+        node.buffered.clear();
+        node.bufferedCount = 0;
+        node.inFlight.addLast(sent);
+        node.sentAt.addLast(System.nanoTime());
+    }
+
+    private void readOldest(Node node)
+    {
+        List<Reply> sent = node.inFlight.pollFirst();
+        if (sent == null) {
+            return;
+        }
+        List<Object> replies = node.client.getMany(sent.size());
+        LATENCY.observeSince(node.sentAt.pollFirst());
+        for (int i = 0; i < sent.size(); i++) {
+            Object reply = replies.get(i);
+            if (!(reply instanceof JedisDataException)) {
+                continue;
+            }
+            Reply expected = sent.get(i);
+            JedisDataException e = (JedisDataException) reply;
+            if (expected.type == ReplyType.SELECT) {
+                throw e;
+            }
+            RestoreCommand command = expected.command;
+            if (command.failed) {
+                // the error of the same record has been handled
+                continue;
+            }
+            command.failed = true;
+            String message = StringUtils.defaultString(e.getMessage());
+            if (this.isCluster && (message.startsWith("MOVED ") || message.startsWith("ASK ")) && command.redirects < MAX_REDIRECTS) {
+                redirect(command, message);
+            }
+            else {
+                this.taskPluginCollector.collectDirtyRecord(command.record, e);
+            }
+        }
+    }
+
+    /**
+     * MOVED slot host:port means the slot has been moved permanently, ASK slot host:port means only this command
+     * should be sent to the target node with ASKING
+     */
+    private void redirect(RestoreCommand command, String message)
+    {
+        String[] parts = message.split(" ");
+        int slot = Integer.parseInt(parts[1]);
+        int idx = parts[2].lastIndexOf(':');
+        Node target = getNode(parts[2].substring(0, idx), Integer.parseInt(parts[2].substring(idx + 1)));
+        RestoreCommand retry = new RestoreCommand(command.record, command.db, command.key, command.value, command.expireAt);
+        retry.redirects = command.redirects + 1;
+        if (message.startsWith("MOVED ")) {
+            LOG.info("The slot {} has been moved to {}.", slot, parts[2]);
+            this.slots[slot] = target;
+        }
+        else {
+            retry.asking = true;
+        }
+        add(target, retry);
+    }
+
+    private enum ReplyType
+    {
+        SELECT, ASKING, RESTORE, EXPIRE
+    }
+
+    private static class Reply
+    {
+        final ReplyType type;
+        final RestoreCommand command;
+
+        Reply(ReplyType type, RestoreCommand command)
+        {
+            this.type = type;
+            this.command = command;
+        }
+    }
+
+    private static class RestoreCommand
+    {
+        final Record record;
+        final int db;
+        final byte[] key;
+        final byte[] value;
+        final long expireAt;
+        boolean asking = false;
+        boolean failed = false;
+        int redirects = 0;
+
+        RestoreCommand(Record record, int db, byte[] key, byte[] value, long expireAt)
+        {
+            this.record = record;
+            this.db = db;
+            this.key = key;
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private static class Node
+    {
+        final Jedis jedis;
+        final Client client;
+        // db -> commands, sorted by db so a batch switches db as few times as possible
+        final Map<Integer, List<RestoreCommand>> buffered = new TreeMap<>();
+        final Deque<List<Reply>> inFlight = new ArrayDeque<>();
+        // the time each in-flight batch was sent, used to measure the round trip latency
+        final Deque<Long> sentAt = new ArrayDeque<>();
+        int bufferedCount = 0;
+        int currentDb = 0;
+
+        Node(Jedis jedis)
+        {
+            this.jedis = jedis;
+            this.client = jedis.getClient();
+        }
+    }
+}
@@ -24,23 +24,16 @@ import com.wgzhao.addax.common.element.Record;
 import com.wgzhao.addax.common.plugin.RecordReceiver;
 import com.wgzhao.addax.common.spi.Writer;
 import com.wgzhao.addax.common.util.Configuration;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Client;
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.exceptions.JedisDataException;
-import redis.clients.jedis.util.JedisClusterCRC16;
 
 import java.net.URI;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class RedisWriter
         extends Writer
@@ -52,32 +45,24 @@ public class RedisWriter
 
         private static final Logger LOG = LoggerFactory.getLogger(Task.class);
         private static final AtomicBoolean FLUSH_FLAG = new AtomicBoolean(false);
-        /**
-         * slot 对应cluster Redis 节点
-         */
-        private final Map<Integer, Jedis> cluster = new HashMap<>();
-        private final Map<Jedis, AtomicLong> nodeCounterMap = new HashMap<>();
-        /**
-         * 单机redis
-         */
-        private Jedis jedis;
-        /**
-         * 每次批量处理数量
-         */
-        private long batchSize = 1000L;
+
+        private RedisPipelineWriter pipelineWriter;
 
         @Override
         public void startWrite(RecordReceiver lineReceiver)
         {
-            Configuration pluginJobConf = this.getPluginJobConf();
-
-            boolean isCluster = pluginJobConf.getBool("redisCluster", false);
-            if (isCluster) {
-                this.clusterWrite(lineReceiver);
-            }
-            else {
-                this.standaloneWrite(lineReceiver);
+            Record fromReader;
+            while ((fromReader = lineReceiver.getFromReader()) != null) {
+                Column dbColumn = fromReader.getColumn(0);
+//                Column type = fromReader.getColumn(1)
+                Column expireColumn = fromReader.getColumn(2);
+                Column keyColumn = fromReader.getColumn(3);
+                Column valueColumn = fromReader.getColumn(4);
+                // the expire column is the absolute expire time in milliseconds
+                this.pipelineWriter.write(fromReader, dbColumn.asLong().intValue(), keyColumn.asBytes(), valueColumn.asBytes(),
+                        expireColumn.asLong());
             }
+            this.pipelineWriter.flush();
         }
 
         @Override
@@ -87,57 +72,21 @@ public class RedisWriter
             List connections = pluginJobConf.getList("connection");
             boolean isCluster = pluginJobConf.getBool("redisCluster", false);
             int timeout = pluginJobConf.getInt("timeout", 60000);
-            this.batchSize = pluginJobConf.getLong("batchSize", 1000L);
+            // 每次批量处理数量
+            int batchSize = pluginJobConf.getInt("batchSize", 1000);
+            // 每个节点最多有多少批命令在等待返回
+            int maxInFlight = pluginJobConf.getInt("maxInFlight", 4);
             if (connections.isEmpty()) {
                 throw new RuntimeException("请添加redis 连接");
             }
             else {
                 Map connection = (Map) connections.get(0);
                 URI uri = URI.create(connection.get("uri").toString());
-                String host = uri.getHost();
-                int port = uri.getPort();
-                this.jedis = new Jedis(host, port, timeout, timeout);
-
+                String auth = (String) connection.get("auth");
+                this.pipelineWriter = new RedisPipelineWriter(isCluster, timeout, auth, batchSize, maxInFlight,
+                        this.getTaskPluginCollector());
                 //如果是redis cluster,将获取cluster主机节点对应的slot槽
-                if (isCluster) {
-                    StringBuilder sb = new StringBuilder("\r\nRedis Cluster 节点分配\r\n");
-                    List<Object> slots = this.jedis.clusterSlots();
-
-                    for (Object slot : slots) {
-
-                        List list = (List) slot;
-                        //slot 开始节点
-                        Long start = (Long) list.get(0);
-                        //slot 结束节点
-                        Long end = (Long) list.get(1);
-                        //slot 对应主机信息
-                        List hostInfo = (List) list.get(2);
-
-                        String nodeHost = new String((byte[]) hostInfo.get(0));
-                        Long nodePort = (Long) hostInfo.get(1);
-                        Jedis node = new Jedis(nodeHost, nodePort.intValue(), timeout, timeout);
-                        for (int i = start.intValue(); i <= end.intValue(); i++) {
-                            this.cluster.put(i, node);
-                        }
-
-                        this.nodeCounterMap.put(node, new AtomicLong());
-                        sb.append(nodeHost)
-                                .append(":")
-                                .append(nodePort)
-                                .append("\t")
-                                .append("slot:")
-                                .append(start)
-                                .append("-").append(end)
-                                .append("\r\n");
-                    }
-                    LOG.info(sb.toString());
-                }
-                else {
-                    String auth = (String) connection.get("auth");
-                    if (StringUtils.isNotBlank(auth)) {
-                        this.jedis.auth(auth);
-                    }
-                }
+                this.pipelineWriter.connect(uri.getHost(), uri.getPort());
             }
             prepare();
         }
@@ -156,93 +105,8 @@ public class RedisWriter
 
         public void destroy()
         {
-            if (this.jedis != null) {
-                this.jedis.close();
-            }
-
-            this.nodeCounterMap.clear();
-            for (Jedis cJedis : new HashSet<>(this.cluster.values())) {
-                cJedis.close();
-            }
-
-            this.cluster.clear();
-        }
-
-        /**
-         * 单机或proxy 写入模式
-         *
-         * @param lineReceiver record
-         */
-        private void standaloneWrite(RecordReceiver lineReceiver)
-        {
-            AtomicLong counter = new AtomicLong(0L);
-            Client client = this.jedis.getClient();
-            Record fromReader;
-            while ((fromReader = lineReceiver.getFromReader()) != null) {
-                Column dbColumn = fromReader.getColumn(0);
-//                Column type = fromReader.getColumn(1)
-                Column expireColumn = fromReader.getColumn(2);
-                Column keyColumn = fromReader.getColumn(3);
-                Column valueColumn = fromReader.getColumn(4);
-                Long db = dbColumn.asLong();
-                long expire = expireColumn.asLong();
-                byte[] key = keyColumn.asBytes();
-                byte[] value = valueColumn.asBytes();
-                client.select(db.intValue());
-                restore(client, key, value, expire, counter);
-            }
-
-            if (counter.get() % this.batchSize != 0L) {
-                flushAndCheckReply(client);
-            }
-        }
-
-        /**
-         * redis cluster 集群写入
-         *
-         * @param lineReceiver record
-         */
-        private void clusterWrite(RecordReceiver lineReceiver)
-        {
-
-            Record fromReader;
-            while ((fromReader = lineReceiver.getFromReader()) != null) {
-                Column expireColumn = fromReader.getColumn(2);
-                Column keyColumn = fromReader.getColumn(3);
-                Column valueColumn = fromReader.getColumn(4);
-                Long expire = expireColumn.asLong();
-                byte[] key = keyColumn.asBytes();
-                byte[] value = valueColumn.asBytes();
-                int slot = JedisClusterCRC16.getSlot(key);
-                Jedis node = this.cluster.get(slot);
-                Client client = node.getClient();
-                AtomicLong nodeCounter = nodeCounterMap.get(node);
-                restore(client, key, value, expire, nodeCounter);
-            }
-
-            for (Entry<Jedis, AtomicLong> entry : nodeCounterMap.entrySet()) {
-                AtomicLong nodeCounter = entry.getValue();
-                Jedis node = entry.getKey();
-                if (nodeCounter.get() % this.batchSize != 0L) {
-                    Client client = node.getClient();
-                    flushAndCheckReply(client);
-                }
-            }
-        }
-
-        private void restore(Client client, byte[] key, byte[] value, long expire, AtomicLong currentCounter)
-        {
-
-            client.restore(key, 0, value);
-
-            if (expire > 0) {
-                client.expireAt(key, expire);
-            }
-
-            long count = currentCounter.incrementAndGet();
-
-            if (count % this.batchSize == 0L) {
-                flushAndCheckReply(client);
+            if (this.pipelineWriter != null) {
+                this.pipelineWriter.close();
             }
         }
 
@@ -253,41 +117,15 @@ public class RedisWriter
                     return;
                 }
 
-                boolean isCluster = getPluginJobConf().getBool("redisCluster", false);
-
-                if (isCluster) {
-                    for (Jedis cJedis : new HashSet<>(cluster.values())) {
-                        Client client = cJedis.getClient();
-                        LOG.info("格式化: {}: {}", client.getHost(), client.getPort());
-                        jedis.flushAll();
-                    }
-                }
-                else {
-                    if (this.jedis != null) {
-                        Client client = jedis.getClient();
-                        LOG.info("格式化: {}:{}", client.getHost(), client.getPort());
-                        jedis.flushAll();
-                    }
+                for (Jedis cJedis : this.pipelineWriter.getConnections()) {
+                    Client client = cJedis.getClient();
+                    LOG.info("格式化: {}:{}", client.getHost(), client.getPort());
+                    cJedis.flushAll();
                 }
 
                 FLUSH_FLAG.set(true);
             }
         }
-
-        /**
-         * 发送并检查异常
-         *
-         * @param client redis client
-         */
-        private void flushAndCheckReply(Client client)
-        {
-            List<Object> allReply = client.getObjectMultiBulkReply();
-            for (Object o : allReply) {
-                if (o instanceof JedisDataException) {
-                    throw (JedisDataException) o;
-                }
-            }
-        }
     }
 
     public static class Job
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.writer.rediswriter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stand-in of redis-server which speaks just enough RESP for the writer.
+ * <p>
+ * The replies of the commands read in one burst are held back for {@code latencyMicros}, so every
+ * round trip costs about the same as on a real network. RESTORE of a key starting with {@code bad}
+ * is answered with an error.
+ */
+public class RespStubServer
+        implements Closeable
+{
+    private final ServerSocket serverSocket;
+    private final long latencyMicros;
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private final Thread acceptor;
+
+    final AtomicInteger selects = new AtomicInteger();
+    final AtomicInteger restores = new AtomicInteger();
+    final AtomicInteger expires = new AtomicInteger();
+    final AtomicInteger roundTrips = new AtomicInteger();
+    // db -> number of restored keys
+    final Map<Integer, AtomicInteger> restoresPerDb = new ConcurrentHashMap<>();
+
+    public RespStubServer(long latencyMicros)
+            throws IOException
+    {
+        this.latencyMicros = latencyMicros;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(this::accept, "resp-stub-acceptor");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    private void accept()
+    {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sockets.add(socket);
+                Thread handler = new Thread(() -> serve(socket), "resp-stub-" + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            }
+            catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket)
+    {
+        int db = 0;
+        try (InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+                OutputStream out = socket.getOutputStream()) {
+            ByteArrayOutputStream replies = new ByteArrayOutputStream();
+            while (true) {
+                byte[][] command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                String name = new String(command[0], StandardCharsets.UTF_8).toUpperCase();
+                switch (name) {
+                    case "SELECT":
+                        selects.incrementAndGet();
+                        db = Integer.parseInt(new String(command[1], StandardCharsets.UTF_8));
+                        write(replies, "+OK");
+                        break;
+                    case "RESTORE":
+                        if (new String(command[1], StandardCharsets.UTF_8).startsWith("bad")) {
+                            write(replies, "-ERR DUMP payload version or checksum are wrong");
+                        }
+                        else {
+                            restores.incrementAndGet();
+                            restoresPerDb.computeIfAbsent(db, k -> new AtomicInteger()).incrementAndGet();
+                            write(replies, "+OK");
+                        }
+                        break;
+                    case "PEXPIREAT":
+                        expires.incrementAndGet();
+                        write(replies, ":1");
+                        break;
+                    case "PING":
+                        write(replies, "+PONG");
+                        break;
+                    case "AUTH":
+                    case "ASKING":
+                        write(replies, "+OK");
+                        break;
+                    default:
+                        write(replies, "-ERR unknown command '" + name + "'");
+                        break;
+                }
+                // the client is waiting for the replies once nothing more has been sent
+                if (in.available() == 0) {
+                    roundTrips.incrementAndGet();
+                    if (latencyMicros > 0) {
+                        TimeUnit.MICROSECONDS.sleep(latencyMicros);
+                    }
+                    replies.writeTo(out);
+                    out.flush();
+                    replies.reset();
+                }
+            }
+        }
+        catch (IOException | InterruptedException e) {
+            // the connection is closed
+        }
+    }
+
+    private static void write(ByteArrayOutputStream out, String reply)
+    {
+        byte[] bytes = (reply + "\r\n").getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[][] readCommand(InputStream in)
+            throws IOException
+    {
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        if (first != '*') {
+            throw new IOException("Only RESP arrays are supported, got " + (char) first);
+        }
+        int count = Integer.parseInt(readLine(in));
+        byte[][] args = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Only bulk strings are supported");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] arg = new byte[length];
+            int off = 0;
+            while (off < length) {
+                int n = in.read(arg, off, length - off);
+                if (n == -1) {
+                    throw new EOFException();
+                }
+                off += n;
+            }
+            // CRLF
+            in.read();
+            in.read();
+            args[i] = arg;
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in)
+            throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c == -1) {
+                throw new EOFException();
+            }
+            sb.append((char) c);
+        }
+        in.read();
+        return sb.toString();
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wgzhao.addax.plugin.writer.rediswriter;
+
+import com.wgzhao.addax.common.element.Record;
+import com.wgzhao.addax.common.plugin.TaskPluginCollector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Run {@link RedisPipelineWriter} against {@link RespStubServer}, a local stand-in of redis-server.
+ * <p>
+ * The old write path sends SELECT before every record and waits for the replies of every batch.
+ * {@link #benchmarkPipeline()} compares it with the pipelined writer while the stub adds 1ms to every round trip,
+ * it only runs with {@code -Drediswriter.benchmark=true}.
+ */
+public class TestRedisPipelineWriter
+{
+    private static final byte[] VALUE = new byte[64];
+    private static final int DBS = 4;
+
+    private RespStubServer server;
+
+    @AfterEach
+    public void tearDown()
+            throws Exception
+    {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testWriteGroupedByDb()
+            throws Exception
+    {
+        server = new RespStubServer(0);
+        CountingCollector collector = new CountingCollector();
+        int total = 10000;
+        int batchSize = 500;
+        RedisPipelineWriter writer = new RedisPipelineWriter(false, 5000, null, batchSize, 4, collector);
+        try {
+            writer.connect("127.0.0.1", server.getPort());
+            for (int i = 0; i < total; i++) {
+                String key = (i % 1000 == 7 ? "bad" : "key") + i;
+                writer.write(null, i % DBS, key.getBytes(StandardCharsets.UTF_8), VALUE, i % 2 == 0 ? 1700000000000L : 0);
+            }
+            writer.flush();
+        }
+        finally {
+            writer.close();
+        }
+
+        int bad = total / 1000;
+        assertEquals(bad, collector.dirty.get());
+        assertEquals(total - bad, server.restores.get());
+        assertEquals(total / 2, server.expires.get());
+        for (int db = 0; db < DBS; db++) {
+            assertEquals(total / DBS - (db == 3 ? bad : 0), server.restoresPerDb.get(db).get(), "restores of db " + db);
+        }
+        // records are interleaved over the dbs, but every batch switches the db at most DBS times
+        int batches = (total + batchSize - 1) / batchSize;
+        assertTrue(server.selects.get() <= batches * DBS, "selects: " + server.selects.get());
+    }
+
+    @Test
+    public void testFewerRoundTripsThanOldPath()
+            throws Exception
+    {
+        int total = 20000;
+        int batchSize = 500;
+        server = new RespStubServer(1000);
+        writeOldPath(total, batchSize);
+        int oldRoundTrips = server.roundTrips.get();
+        assertEquals(total, server.restores.get());
+        // the old path waits for the replies of every batch
+        assertTrue(oldRoundTrips >= total / batchSize, "old path round trips: " + oldRoundTrips);
+
+        server.close();
+        server = new RespStubServer(1000);
+        CountingCollector collector = new CountingCollector();
+        writePipelined(total, batchSize, collector);
+        assertEquals(total, server.restores.get());
+        assertEquals(0, collector.dirty.get());
+        // the next batches are sent while the replies of the former ones are held back
+        assertTrue(server.roundTrips.get() < oldRoundTrips,
+                "round trips: pipelined " + server.roundTrips.get() + ", old path " + oldRoundTrips);
+    }
+
+    @Test
+    public void benchmarkPipeline()
+            throws Exception
+    {
+        assumeTrue(Boolean.getBoolean("rediswriter.benchmark"), "set -Drediswriter.benchmark=true to run the benchmark");
+        int total = 50000;
+        int batchSize = 1000;
+        server = new RespStubServer(1000);
+
+        long start = System.nanoTime();
+        writeOldPath(total, batchSize);
+        long oldNanos = System.nanoTime() - start;
+        int oldRoundTrips = server.roundTrips.get();
+        assertEquals(total, server.restores.get());
+
+        server.close();
+        server = new RespStubServer(1000);
+        CountingCollector collector = new CountingCollector();
+        start = System.nanoTime();
+        writePipelined(total, batchSize, collector);
+        long newNanos = System.nanoTime() - start;
+        assertEquals(total, server.restores.get());
+        assertEquals(0, collector.dirty.get());
+
+        System.out.printf("old path:  %d records in %d ms, %d round trips, %d records/s%n",
+                total, oldNanos / 1_000_000, oldRoundTrips, total * 1_000_000_000L / oldNanos);
+        System.out.printf("pipelined: %d records in %d ms, %d round trips, %d records/s%n",
+                total, newNanos / 1_000_000, server.roundTrips.get(), total * 1_000_000_000L / newNanos);
+    }
+
+    private void writePipelined(int total, int batchSize, CountingCollector collector)
+    {
+        RedisPipelineWriter writer = new RedisPipelineWriter(false, 5000, null, batchSize, 4, collector);
+        try {
+            writer.connect("127.0.0.1", server.getPort());
+            for (int i = 0; i < total; i++) {
+                writer.write(null, i % DBS, ("key" + i).getBytes(StandardCharsets.UTF_8), VALUE, 0);
+            }
+            writer.flush();
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /*
+     * the write path before the pipelined writer: SELECT before every RESTORE, and wait for the replies of a batch
+     * before sending the next one
+     */
+    private void writeOldPath(int total, int batchSize)
+    {
+        try (Jedis jedis = new Jedis("127.0.0.1", server.getPort(), 5000, 5000)) {
+            Client client = jedis.getClient();
+            int pending = 0;
+            for (int i = 0; i < total; i++) {
+                client.select(i % DBS);
+                client.restore(("key" + i).getBytes(StandardCharsets.UTF_8), 0, VALUE);
+                pending += 2;
+                if ((i + 1) % batchSize == 0) {
+                    client.getMany(pending);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                client.getMany(pending);
+            }
+        }
+    }
+
+    private static class CountingCollector
+            extends TaskPluginCollector
+    {
+        final AtomicInteger dirty = new AtomicInteger();
+
+        @Override
+        public void collectDirtyRecord(Record dirtyRecord, Throwable t, String errorMessage)
+        {
+            dirty.incrementAndGet();
+        }
+
+        @Override
+        public void collectMessage(String key, String value)
+        {
+            // not used
+        }
+    }
+}
@@ -104,12 +104,12 @@ public class SqliteWriter
             this.writerSliceConfig = super.getPluginJobConf();
             this.commonRdbmsWriterTask = new CommonRdbmsWriter.Task(DATABASE_TYPE) {
                 @Override
-                protected PreparedStatement fillPreparedStatementColumnType(PreparedStatement preparedStatement, int columnIndex,
+                protected PreparedStatement fillPreparedStatementColumnType(PreparedStatement preparedStatement, int parameterIndex, int columnIndex,
                         int columnSqlType, Column column)
                         throws SQLException
                 {
                     if (column == null || column.getRawData() == null) {
-                        preparedStatement.setObject(columnIndex, null);
+                        preparedStatement.setObject(parameterIndex, null);
                         return preparedStatement;
                     }
                     if (columnSqlType == Types.DATE) {
@@ -117,10 +117,10 @@ public class SqliteWriter
                         // Instead, the built-in Date And Time Functions of SQLite are capable of storing dates and times as
                         // TEXT, REAL, or INTEGER values: https://www.sqlite.org/datatype3.html
                         SimpleDateFormat sdf = new SimpleDateFormat(DEFAULT_DATE_FORMAT);
-                        preparedStatement.setString(columnIndex, sdf.format(column.asDate()));
+                        preparedStatement.setString(parameterIndex, sdf.format(column.asDate()));
                         return preparedStatement;
                     }
-                    return super.fillPreparedStatementColumnType(preparedStatement, columnIndex, columnSqlType, column);
+                    return super.fillPreparedStatementColumnType(preparedStatement, parameterIndex, columnIndex, columnSqlType, column);
                 }
             };
             this.commonRdbmsWriterTask.init(this.writerSliceConfig);